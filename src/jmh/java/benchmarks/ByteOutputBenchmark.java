@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing sentences to a stream, as corpus generation does: building a
+ * {@code String} and encoding it to UTF-8, against {@code FlatGrammar.writeTo}, which copies
+ * pre-encoded terminal bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteOutputBenchmark {
+
+	@Param({"insult_grammar.json", "term_paper_grammar.json", "wide-100000"})
+	public String grammar;
+
+	private Object parsed;
+	private Object flat;
+	private RandomGenerator random;
+	private final StringBuilder out = new StringBuilder();
+	private final OutputStream stream = OutputStream.nullOutputStream();
+
+	@Setup
+	public void setUp() {
+		parsed = GrammarApi.parse(SyntheticGrammars.file(grammar));
+		flat = GrammarApi.flatten(parsed);
+		random = GrammarApi.createRandom("L64X128MixRandom", 42);
+	}
+
+	@Benchmark
+	public int encodeString() throws IOException {
+		out.setLength(0);
+		GrammarApi.generateInto(flat, out, parsed, random);
+		byte[] bytes = out.toString().getBytes(StandardCharsets.UTF_8);
+		stream.write(bytes);
+		return bytes.length;
+	}
+
+	@Benchmark
+	public int writeBytes() {
+		return GrammarApi.writeTo(flat, stream, parsed, random);
+	}
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sentence generation over the bundled and synthetic grammars through each generation
+ * path: the recursive {@code generate}, the single-buffer {@code generateInto}, the
+ * explicit-stack {@code ExpansionEngine}, the array-based {@code FlatGrammar}, and one level
+ * of {@code Rule} and {@code CollectionOfSymbol} generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark {
+
+	@Param({"poem_grammar.json", "insult_grammar.json", "term_paper_grammar.json", "wide-10000", "wide-100000",
+			"deep-1000"})
+	public String grammar;
+
+	private Object parsed;
+	private Object startRule;
+	private Object engine;
+	private Object flat;
+	private RandomGenerator random;
+	private final StringBuilder out = new StringBuilder();
+
+	@Setup
+	public void setUp() {
+		parsed = GrammarApi.parse(SyntheticGrammars.file(grammar));
+		GrammarApi.compile(parsed);
+		startRule = GrammarApi.getRule(parsed, GrammarApi.findRule(parsed, "start"));
+		engine = GrammarApi.newEngine();
+		flat = GrammarApi.flatten(parsed);
+		random = GrammarApi.createRandom("L64X128MixRandom", 42);
+	}
+
+	@Benchmark
+	public String grammarGenerate() {
+		return GrammarApi.generate(parsed, parsed, random);
+	}
+
+	@Benchmark
+	public int grammarGenerateInto() {
+		out.setLength(0);
+		GrammarApi.generateInto(parsed, out, parsed, random);
+		return out.length();
+	}
+
+	@Benchmark
+	public int engineGenerateInto() {
+		out.setLength(0);
+		GrammarApi.generateInto(engine, out, parsed, random);
+		return out.length();
+	}
+
+	@Benchmark
+	public int flatGenerateInto() {
+		out.setLength(0);
+		GrammarApi.generateInto(flat, out, parsed, random);
+		return out.length();
+	}
+
+	@Benchmark
+	public String ruleGenerate() {
+		return GrammarApi.generate(startRule, parsed, random);
+	}
+
+	@Benchmark
+	public String collectionGenerate() {
+		return GrammarApi.generate(GrammarApi.chooseAlternative(startRule, random), parsed, random);
+	}
+}
@@ -0,0 +1,209 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.random.RandomGenerator;
+
+/**
+ * Access to the generator classes from the benchmarks.
+ *
+ * <p>JMH refuses benchmark classes in the unnamed package, and code in a named package cannot
+ * refer to classes in the unnamed package, so the benchmarks reach {@code Grammar} and friends
+ * through method handles. The handles are {@code static final}, which lets the JIT inline them
+ * like direct calls.
+ */
+final class GrammarApi {
+
+	private static final MethodHandle NEW_PARSER;
+	private static final MethodHandle PARSE;
+	private static final MethodHandle COMPILE;
+	private static final MethodHandle FLATTEN;
+	private static final MethodHandle WRITE_TO;
+	private static final MethodHandle FIND_RULE;
+	private static final MethodHandle GET_RULE_ID;
+	private static final MethodHandle GET_RULE;
+	private static final MethodHandle GENERATE;
+	private static final MethodHandle GENERATE_INTO;
+	private static final MethodHandle CHOOSE_ALTERNATIVE;
+	private static final MethodHandle NEW_ENGINE;
+	private static final MethodHandle CREATE_RANDOM;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> grammar = Class.forName("Grammar");
+			Class<?> generable = Class.forName("Generable");
+			Class<?> rule = Class.forName("Rule");
+			Class<?> compiled = Class.forName("CompiledGrammar");
+			Class<?> collection = Class.forName("CollectionOfSymbol");
+			Class<?> parser = Class.forName("JsonFileParser");
+			Class<?> engine = Class.forName("ExpansionEngine");
+
+			NEW_PARSER = erase(lookup.findConstructor(parser, MethodType.methodType(void.class, String.class)));
+			PARSE = erase(lookup.findVirtual(parser, "JsonFileParser", MethodType.methodType(grammar)));
+			COMPILE = erase(lookup.findVirtual(grammar, "compile", MethodType.methodType(compiled)));
+			FLATTEN = erase(lookup.findVirtual(grammar, "flatten",
+					MethodType.methodType(Class.forName("FlatGrammar"))));
+			WRITE_TO = erase(lookup.findVirtual(Class.forName("FlatGrammar"), "writeTo",
+					MethodType.methodType(int.class, OutputStream.class, grammar, RandomGenerator.class)));
+			FIND_RULE = erase(lookup.findVirtual(grammar, "findRule",
+					MethodType.methodType(int.class, int.class, String.class)));
+			GET_RULE_ID = erase(lookup.findVirtual(compiled, "getRuleId",
+					MethodType.methodType(int.class, String.class)));
+			GET_RULE = erase(lookup.findVirtual(grammar, "getRule", MethodType.methodType(rule, int.class)));
+			GENERATE = erase(lookup.findVirtual(generable, "generate",
+					MethodType.methodType(String.class, grammar, RandomGenerator.class)));
+			GENERATE_INTO = erase(lookup.findVirtual(generable, "generateInto",
+					MethodType.methodType(void.class, StringBuilder.class, grammar, RandomGenerator.class)));
+			CHOOSE_ALTERNATIVE = erase(lookup.findVirtual(rule, "chooseAlternative",
+					MethodType.methodType(collection, RandomGenerator.class)));
+			NEW_ENGINE = erase(lookup.findConstructor(engine, MethodType.methodType(void.class)));
+			CREATE_RANDOM = lookup.findStatic(Class.forName("RandomAlgorithms"), "create",
+					MethodType.methodType(RandomGenerator.class, String.class, long.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private GrammarApi() {
+	}
+
+	/** Replaces every reference type other than the JDK types used here with {@code Object}. */
+	private static MethodHandle erase(MethodHandle handle) {
+		MethodType type = handle.type();
+		for (int i = 0; i < type.parameterCount(); i++) {
+			if (!isJdkType(type.parameterType(i))) {
+				type = type.changeParameterType(i, Object.class);
+			}
+		}
+		if (!isJdkType(type.returnType())) {
+			type = type.changeReturnType(Object.class);
+		}
+		return handle.asType(type);
+	}
+
+	private static boolean isJdkType(Class<?> type) {
+		return type.isPrimitive() || type.getName().startsWith("java.");
+	}
+
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException e) {
+			return e;
+		}
+		if (t instanceof Error e) {
+			throw e;
+		}
+		return new IllegalStateException(t);
+	}
+
+	/** Parses a grammar file with {@code JsonFileParser}. */
+	static Object parse(String file) {
+		try {
+			Object parser = (Object) NEW_PARSER.invokeExact(file);
+			return (Object) PARSE.invokeExact(parser);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Grammar.compile()}. */
+	static Object compile(Object grammar) {
+		try {
+			return (Object) COMPILE.invokeExact(grammar);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Grammar.flatten()}. */
+	static Object flatten(Object grammar) {
+		try {
+			return (Object) FLATTEN.invokeExact(grammar);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code FlatGrammar.writeTo(out, grammar, random)}. */
+	static int writeTo(Object flat, OutputStream out, Object grammar, RandomGenerator random) {
+		try {
+			return (int) WRITE_TO.invokeExact(flat, out, grammar, random);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Grammar.findRule(0, name)}. */
+	static int findRule(Object grammar, String name) {
+		try {
+			return (int) FIND_RULE.invokeExact(grammar, 0, name);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code CompiledGrammar.getRuleId(name)}. */
+	static int getRuleId(Object compiled, String name) {
+		try {
+			return (int) GET_RULE_ID.invokeExact(compiled, name);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Grammar.getRule(index)}. */
+	static Object getRule(Object grammar, int index) {
+		try {
+			return (Object) GET_RULE.invokeExact(grammar, index);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Generable.generate(grammar, random)} on any grammar block. */
+	static String generate(Object generable, Object grammar, RandomGenerator random) {
+		try {
+			return (String) GENERATE.invokeExact(generable, grammar, random);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Generable.generateInto(out, grammar, random)} on any grammar block. */
+	static void generateInto(Object generable, StringBuilder out, Object grammar, RandomGenerator random) {
+		try {
+			GENERATE_INTO.invokeExact(generable, out, grammar, random);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code Rule.chooseAlternative(random)}. */
+	static Object chooseAlternative(Object rule, RandomGenerator random) {
+		try {
+			return (Object) CHOOSE_ALTERNATIVE.invokeExact(rule, random);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Creates an {@code ExpansionEngine} with the default limits. */
+	static Object newEngine() {
+		try {
+			return (Object) NEW_ENGINE.invokeExact();
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls {@code RandomAlgorithms.create(name, seed)}. */
+	static RandomGenerator createRandom(String algorithm, long seed) {
+		try {
+			return (RandomGenerator) CREATE_RANDOM.invokeExact(algorithm, seed);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+}
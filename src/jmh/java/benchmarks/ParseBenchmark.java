@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast {@code JsonFileParser} turns a grammar file into a {@code Grammar}. The
+ * {@code bytes} secondary result of {@link #parse(Throughput)} is the parse throughput in bytes
+ * per second; divide by 10^6 for MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({"poem_grammar.json", "insult_grammar.json", "term_paper_grammar.json", "wide-10000", "wide-100000"})
+	public String grammar;
+
+	private String file;
+	private long size;
+
+	/** Counts the bytes parsed, which JMH reports as a rate. */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+		public long bytes;
+	}
+
+	@Setup
+	public void setUp() {
+		file = SyntheticGrammars.file(grammar);
+		size = new File(file).length();
+	}
+
+	@Benchmark
+	public Object parse(Throughput throughput) {
+		throughput.bytes += size;
+		return GrammarApi.parse(file);
+	}
+
+	@Benchmark
+	public Object parseAndCompile() {
+		Object parsed = GrammarApi.parse(file);
+		GrammarApi.compile(parsed);
+		return parsed;
+	}
+}
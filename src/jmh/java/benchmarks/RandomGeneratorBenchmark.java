@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sentences per second on the insult grammar for each random number generator
+ * algorithm offered by {@code RandomAlgorithms}, one generator per benchmark thread, and for a
+ * single {@code java.util.Random} shared by every thread, as generation worked before the
+ * per-thread generators; run it with {@code -PjmhArgs="-t 4"} to see the contention.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomGeneratorBenchmark {
+
+	@Param({"L64X128MixRandom", "Xoroshiro128PlusPlus", "SplittableRandom", "Random"})
+	public String algorithm;
+
+	private Object grammar;
+	private Object engine;
+	private RandomGenerator random;
+	private final StringBuilder out = new StringBuilder();
+
+	@Setup
+	public void setUp() {
+		grammar = GrammarApi.parse(SyntheticGrammars.file("insult_grammar.json"));
+		GrammarApi.compile(grammar);
+		engine = GrammarApi.newEngine();
+		random = GrammarApi.createRandom(algorithm, 42);
+	}
+
+	/**
+	 * One {@code java.util.Random} for every benchmark thread.
+	 */
+	@State(Scope.Benchmark)
+	public static class SharedRandom {
+
+		private final RandomGenerator random = GrammarApi.createRandom("Random", 42);
+	}
+
+	@Benchmark
+	public int sentence() {
+		out.setLength(0);
+		GrammarApi.generateInto(engine, out, grammar, random);
+		return out.length();
+	}
+
+	@Benchmark
+	public int sharedRandom(SharedRandom shared) {
+		out.setLength(0);
+		GrammarApi.generateInto(engine, out, grammar, shared.random);
+		return out.length();
+	}
+}
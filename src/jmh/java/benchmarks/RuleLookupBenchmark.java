@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the linear {@code Grammar.findRule} scan with the compiled rule id lookup, searching
+ * for the last rule of a wide synthetic grammar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleLookupBenchmark {
+
+	@Param({"10000", "100000"})
+	public int rules;
+
+	private Object grammar;
+	private Object compiled;
+	private String name;
+
+	@Setup
+	public void setUp() {
+		grammar = GrammarApi.parse(SyntheticGrammars.file("wide-" + rules));
+		compiled = GrammarApi.compile(grammar);
+		name = SyntheticGrammars.lastRule(rules);
+	}
+
+	@Benchmark
+	public int findRule() {
+		return GrammarApi.findRule(grammar, name);
+	}
+
+	@Benchmark
+	public int compiledRuleId() {
+		return GrammarApi.getRuleId(compiled, name);
+	}
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes synthetic grammar files for the benchmarks, in the same JSON format as the bundled
+ * grammars, so they go through the same parser.
+ */
+final class SyntheticGrammars {
+
+	/** The bundled grammar directory. */
+	static final String BUNDLED = "src/main/resources/grammar/";
+
+	private SyntheticGrammars() {
+	}
+
+	/**
+	 * Resolves a benchmark grammar name. Bundled grammars are named by file name; {@code wide-N}
+	 * is a grammar of N rules and {@code deep-N} a chain of N nested rules.
+	 *
+	 * @param name the grammar name
+	 * @return the path of a grammar file
+	 */
+	static String file(String name) {
+		if (name.startsWith("wide-")) {
+			return write(name, wide(Integer.parseInt(name.substring("wide-".length()))));
+		}
+		if (name.startsWith("deep-")) {
+			return write(name, deep(Integer.parseInt(name.substring("deep-".length()))));
+		}
+		return BUNDLED + name;
+	}
+
+	/**
+	 * Returns the name of the rule a lookup benchmark should search for: the last rule, which
+	 * is the worst case for a linear scan.
+	 *
+	 * @param ruleCount the number of rules in a wide grammar
+	 * @return the rule name
+	 */
+	static String lastRule(int ruleCount) {
+		return "r" + (ruleCount - 1);
+	}
+
+	/**
+	 * A grammar of {@code rules} rules arranged as a binary tree: rule {@code i} expands to a
+	 * word and one of its two children, so a sentence visits about log2(rules) rules spread over
+	 * the whole rule list.
+	 */
+	static String wide(int rules) {
+		StringBuilder json = new StringBuilder(rules * 48);
+		json.append("{\"grammarTitle\": \"wide-").append(rules).append("\",\n");
+		json.append("\"grammarDesc\": \"synthetic\",\n");
+		json.append("\"start\": [\"<r0> .\"]");
+		for (int i = 0; i < rules; i++) {
+			json.append(",\n\"r").append(i).append("\": [");
+			int left = 2 * i + 1;
+			int right = 2 * i + 2;
+			if (left < rules) {
+				json.append("\"w").append(i).append(" <r").append(left).append(">\", ");
+			}
+			if (right < rules) {
+				json.append("\"w").append(i).append(" <r").append(right).append(">\", ");
+			}
+			json.append("\"w").append(i).append("\"]");
+		}
+		return json.append("\n}\n").toString();
+	}
+
+	/**
+	 * A chain of {@code depth} rules in which rule {@code i} expands to rule {@code i + 1}
+	 * followed by a word, so every sentence nests {@code depth} levels deep.
+	 */
+	static String deep(int depth) {
+		StringBuilder json = new StringBuilder(depth * 24);
+		json.append("{\"grammarTitle\": \"deep-").append(depth).append("\",\n");
+		json.append("\"grammarDesc\": \"synthetic\",\n");
+		json.append("\"start\": [\"<r0>\"]");
+		for (int i = 0; i < depth; i++) {
+			json.append(",\n\"r").append(i).append("\": [");
+			if (i + 1 < depth) {
+				json.append("\"<r").append(i + 1).append("> w").append(i).append("\"]");
+			} else {
+				json.append("\"w").append(i).append("\"]");
+			}
+		}
+		return json.append("\n}\n").toString();
+	}
+
+	private static String write(String name, String json) {
+		try {
+			Path file = Files.createTempFile(name, ".json");
+			file.toFile().deleteOnExit();
+			Files.writeString(file, json);
+			return file.toString();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A local load test of {@link GenerationServer} that reports requests per second. Each client
+ * thread sends {@code GET} requests back to back over a keep-alive connection and reads every
+ * response to the end.
+ *
+ * <p>Usage: {@code ServerLoadTest [url] [threads] [seconds]}. Without a URL, or with the URL
+ * {@code local}, a server for {@code src/main/resources/grammar} is started on a free port and
+ * {@code /generate?grammar=1&count=1} is requested from it, with Nagle's algorithm turned off
+ * as {@code --serve} does unless {@link GenerationServer#NO_DELAY_PROPERTY} is set.
+ */
+public final class ServerLoadTest {
+
+	private static final String LOCAL = "local";
+	private static final Path GRAMMARS = Path.of("src/main/resources/grammar");
+	private static final String REQUEST = "/generate?grammar=1&count=1";
+	private static final int DEFAULT_SECONDS = 10;
+	private static final int WARM_UP_SECONDS = 2;
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private ServerLoadTest() {
+	}
+
+	/**
+	 * Runs the load test and prints the requests per second.
+	 *
+	 * @param args the optional URL, client thread count and duration in seconds
+	 * @throws Exception if a client thread fails
+	 */
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : LOCAL;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+		GenerationServer server = null;
+		if (LOCAL.equals(url)) {
+			if (System.getProperty(GenerationServer.NO_DELAY_PROPERTY) == null) {
+				System.setProperty(GenerationServer.NO_DELAY_PROPERTY, "true");
+			}
+			server = GenerationServer.load(GRAMMARS, 0);
+			server.start();
+			url = "http://localhost:" + server.getPort() + REQUEST;
+		}
+		try {
+			System.out.printf("%s, %d client threads, %d s%n", url, threads, seconds);
+			run(new URL(url), threads, WARM_UP_SECONDS); // Warm up
+			System.out.printf("%,14.0f requests/s%n", run(new URL(url), threads, seconds));
+		} finally {
+			if (server != null) {
+				server.stop(0);
+			}
+		}
+	}
+
+	/**
+	 * Sends requests to the URL from the client threads for the given time.
+	 *
+	 * @param url the URL to request
+	 * @param threads the number of client threads
+	 * @param seconds how long to send requests for
+	 * @return the number of requests answered per second over all threads
+	 * @throws Exception if a client thread fails
+	 */
+	public static double run(URL url, int threads, int seconds) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Long>> futures = new ArrayList<>();
+			long start = System.nanoTime();
+			long deadline = start + seconds * NANOS_PER_SECOND;
+			for (int t = 0; t < threads; t++) {
+				futures.add(pool.submit(() -> {
+					long requests = 0;
+					while (System.nanoTime() < deadline) {
+						request(url);
+						requests++;
+					}
+					return requests;
+				}));
+			}
+			long requests = 0;
+			for (Future<Long> future : futures) {
+				requests += future.get();
+			}
+			long elapsed = Math.max(1, System.nanoTime() - start);
+			return (double) requests * NANOS_PER_SECOND / elapsed;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Sends one request and reads the response to the end, so the connection is kept alive for
+	 * the next request of the thread.
+	 */
+	private static void request(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			throw new IOException(url + ": HTTP " + connection.getResponseCode());
+		}
+		try (InputStream in = connection.getInputStream()) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+	}
+}
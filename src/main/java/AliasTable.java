@@ -0,0 +1,91 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * An {@code AliasTable} samples an index from a fixed discrete distribution in constant time,
+ * using Vose's variant of Walker's alias method. The table is built once from the weights and
+ * is immutable afterwards, so it can be shared by any number of threads.
+ */
+public final class AliasTable {
+
+	private final double[] probability; // The chance of keeping column i rather than its alias
+	private final int[] alias; // The index that column i falls back to
+
+	/**
+	 * Builds an alias table for the given weights.
+	 *
+	 * @param weights the relative weight of each index; every weight must be positive and finite
+	 * @throws IllegalArgumentException if there are no weights or a weight is not positive and finite
+	 */
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		if (n == 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_WEIGHT.getDetailMessage());
+		}
+		double total = 0;
+		for (double weight : weights) {
+			if (!(weight > 0) || Double.isInfinite(weight)) {
+				throw new IllegalArgumentException(CustomException.INVALID_WEIGHT.getDetailMessage());
+			}
+			total += weight;
+		}
+		probability = new double[n];
+		alias = new int[n];
+
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1.0) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		while (smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			probability[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+			if (scaled[more] < 1.0) {
+				small[smallCount++] = more;
+			} else {
+				large[largeCount++] = more;
+			}
+		}
+		// Whatever is left is 1 up to rounding error
+		while (largeCount > 0) {
+			int index = large[--largeCount];
+			probability[index] = 1.0;
+			alias[index] = index;
+		}
+		while (smallCount > 0) {
+			int index = small[--smallCount];
+			probability[index] = 1.0;
+			alias[index] = index;
+		}
+	}
+
+	/**
+	 * Returns the number of indexes the table samples from.
+	 *
+	 * @return the size of the distribution
+	 */
+	public int size() {
+		return probability.length;
+	}
+
+	/**
+	 * Samples an index. Each index is returned with probability proportional to its weight.
+	 *
+	 * @param random the random generator to sample with
+	 * @return an index between 0 and {@code size() - 1}
+	 */
+	public int sample(RandomGenerator random) {
+		int column = random.nextInt(probability.length);
+		return random.nextDouble() < probability[column] ? column : alias[column];
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * An {@code AlternativeTokenizer} splits the text of an alternative into symbols in a single
+ * pass, without regular expressions.
+ *
+ * <p>Words are separated by single blanks, exactly as {@code String.split(" ")} separates them:
+ * two blanks in a row give an empty terminal, which keeps the extra blank in the output, and
+ * blanks at the end are dropped. Within a word, {@code <name>} is a nonterminal and any other
+ * text is a terminal, so {@code <adj>,} is the nonterminal {@code adj} followed by a comma that
+ * is glued to it. Text before a nonterminal in the same word becomes a terminal of its own,
+ * separated from the nonterminal by a blank. {@code \<}, {@code \>} and {@code \\} stand for
+ * the literal characters.
+ *
+ * <p>A tokenizer reuses one buffer between calls and is not safe for use by several threads.
+ */
+public class AlternativeTokenizer {
+
+	private static final char BLANK = ' ';
+	private static final char OPEN = '<';
+	private static final char CLOSE = '>';
+	private static final char ESCAPE = '\\';
+	private static final String EMPTY = "";
+
+	private final SymbolTable symbols;
+	private final StringBuilder word = new StringBuilder();
+
+	/**
+	 * Constructs a tokenizer that interns its symbols into the given table.
+	 *
+	 * @param symbols the symbol table of the grammar being parsed
+	 */
+	public AlternativeTokenizer(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Splits the text of an alternative into its symbols.
+	 *
+	 * @param text the text of the alternative
+	 * @return the symbols of the alternative
+	 */
+	public CollectionOfSymbol tokenize(String text) {
+		CollectionOfSymbol collection = new CollectionOfSymbol();
+		if (text.isEmpty()) {
+			collection.addToSequence(symbols.terminal(EMPTY));
+			return collection;
+		}
+		int n = text.length();
+		int emptyWords = 0; // Empty words are only kept if a non-empty word follows them
+		int i = 0;
+		while (i <= n) {
+			int end = i;
+			while (end < n && text.charAt(end) != BLANK) {
+				end++;
+			}
+			if (end == i) {
+				emptyWords++;
+			} else {
+				for (; emptyWords > 0; emptyWords--) {
+					collection.addToSequence(symbols.terminal(EMPTY));
+				}
+				tokenizeWord(text, i, end, collection);
+			}
+			i = end + 1;
+		}
+		return collection;
+	}
+
+	/**
+	 * Adds the symbols of one non-empty word. Every symbol after the first is glued to the one
+	 * before it, except nonterminals, which are always separated by a blank.
+	 */
+	private void tokenizeWord(String text, int start, int end, CollectionOfSymbol collection) {
+		boolean first = true;
+		word.setLength(0);
+		int i = start;
+		while (i < end) {
+			char c = text.charAt(i);
+			if (c == ESCAPE && i + 1 < end && isEscapable(text.charAt(i + 1))) {
+				word.append(text.charAt(i + 1));
+				i += 2;
+				continue;
+			}
+			if (c == OPEN) {
+				int close = findClose(text, i + 1, end);
+				if (close > i + 1) {
+					if (word.length() > 0) {
+						collection.addToSequence(symbols.terminal(word.toString(), !first));
+						word.setLength(0);
+					}
+					collection.addToSequence(symbols.nonterminal(text.substring(i + 1, close)));
+					first = false;
+					i = close + 1;
+					continue;
+				}
+			}
+			word.append(c);
+			i++;
+		}
+		if (word.length() > 0) {
+			collection.addToSequence(symbols.terminal(word.toString(), !first));
+		}
+	}
+
+	/** Returns the index of the {@code >} closing a nonterminal name, or -1 if there is none. */
+	private static int findClose(String text, int from, int end) {
+		for (int i = from; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == CLOSE) {
+				return i;
+			}
+			if (c == OPEN || c == ESCAPE) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isEscapable(char c) {
+		return c == OPEN || c == CLOSE || c == ESCAPE;
+	}
+}
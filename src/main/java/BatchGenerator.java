@@ -0,0 +1,314 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The {@code BatchGenerator} class generates many sentences from one grammar at once, spreading
+ * the work over the threads of a fork-join pool.
+ *
+ * <p>Sentences are produced in blocks. Each block is split in half recursively down to a fixed
+ * leaf size, and each half receives its own generator split from its parent's
+ * {@link SplittableRandom}. Because the shape of the split tree only depends on the number of
+ * sentences, the output for a given seed is the same whatever the size of the pool.
+ *
+ * <p>The indexed methods instead give every sentence its own {@link IndexedRandom} stream
+ * derived from the seed and the sentence index, so any range of a run can be regenerated on
+ * its own, for example to redo a failed shard.
+ *
+ * <p>The write methods produce the same sentences as UTF-8 lines on a stream. Their leaves
+ * generate through {@link FlatGrammar#writeTo(OutputStream, Grammar, RandomGenerator)}, so no
+ * {@code String} is built and encoded again for any sentence.
+ */
+public final class BatchGenerator {
+
+	/** The number of sentences generated by one fork-join invocation. */
+	static final int BLOCK_SIZE = 1 << 14;
+
+	/** The number of sentences a leaf task generates sequentially. */
+	static final int LEAF_SIZE = 256;
+
+	private static final int NEWLINE = '\n';
+
+	private BatchGenerator() {
+	}
+
+	/**
+	 * Generates sentences from the grammar on the common fork-join pool.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param count the number of sentences to generate
+	 * @param seed the seed that determines the output
+	 * @return an ordered stream of {@code count} sentences, generated lazily block by block
+	 */
+	public static Stream<String> generate(Grammar grammar, long count, long seed) {
+		return generate(grammar, count, seed, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Generates sentences from the grammar on the given fork-join pool.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param count the number of sentences to generate
+	 * @param seed the seed that determines the output
+	 * @param pool the pool the generation work runs on
+	 * @return an ordered stream of {@code count} sentences, generated lazily block by block
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static Stream<String> generate(Grammar grammar, long count, long seed, ForkJoinPool pool) {
+		if (count < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return stream(grammar, count, new BlockIterator(grammar, count, new SplittableRandom(seed), seed, 0, pool));
+	}
+
+	/**
+	 * Generates the sentences with indexes {@code fromIndex} to {@code fromIndex + count - 1}
+	 * of a run, on the common fork-join pool.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param seed the seed of the run
+	 * @param fromIndex the index of the first sentence
+	 * @param count the number of sentences to generate
+	 * @return an ordered stream of {@code count} sentences, generated lazily block by block
+	 */
+	public static Stream<String> generateIndexed(Grammar grammar, long seed, long fromIndex, long count) {
+		return generateIndexed(grammar, seed, fromIndex, count, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Generates the sentences with indexes {@code fromIndex} to {@code fromIndex + count - 1}
+	 * of a run, on the given fork-join pool. Sentence {@code i} is the same as
+	 * {@link #sentenceAt(Grammar, long, long)} returns for {@code i}.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param seed the seed of the run
+	 * @param fromIndex the index of the first sentence
+	 * @param count the number of sentences to generate
+	 * @param pool the pool the generation work runs on
+	 * @return an ordered stream of {@code count} sentences, generated lazily block by block
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static Stream<String> generateIndexed(Grammar grammar, long seed, long fromIndex, long count,
+			ForkJoinPool pool) {
+		if (count < 0 || fromIndex < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return stream(grammar, count, new BlockIterator(grammar, count, null, seed, fromIndex, pool));
+	}
+
+	/**
+	 * Generates a single sentence of an indexed run.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param seed the seed of the run
+	 * @param index the index of the sentence
+	 * @return the sentence with that index
+	 */
+	public static String sentenceAt(Grammar grammar, long seed, long index) {
+		return new ExpansionEngine().generate(grammar, new IndexedRandom(seed, index));
+	}
+
+	/**
+	 * Writes the sentences {@link #generate(Grammar, long, long, ForkJoinPool)} returns to a
+	 * stream, each encoded as UTF-8 and followed by a newline.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param count the number of sentences to generate
+	 * @param seed the seed that determines the output
+	 * @param pool the pool the generation work runs on
+	 * @param out the stream the sentences are written to; it is neither flushed nor closed
+	 * @throws IOException if the stream cannot be written
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static void write(Grammar grammar, long count, long seed, ForkJoinPool pool, OutputStream out)
+			throws IOException {
+		if (count < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		write(grammar, count, new SplittableRandom(seed), seed, 0, pool, out);
+	}
+
+	/**
+	 * Writes the sentences {@link #generateIndexed(Grammar, long, long, long, ForkJoinPool)}
+	 * returns to a stream, each encoded as UTF-8 and followed by a newline.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param seed the seed of the run
+	 * @param fromIndex the index of the first sentence
+	 * @param count the number of sentences to generate
+	 * @param pool the pool the generation work runs on
+	 * @param out the stream the sentences are written to; it is neither flushed nor closed
+	 * @throws IOException if the stream cannot be written
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static void writeIndexed(Grammar grammar, long seed, long fromIndex, long count, ForkJoinPool pool,
+			OutputStream out) throws IOException {
+		if (count < 0 || fromIndex < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		write(grammar, count, null, seed, fromIndex, pool, out);
+	}
+
+	/**
+	 * Generates the blocks the iterator would, in the same order and with the same generators,
+	 * and writes the lines of each leaf as soon as its block is done.
+	 */
+	private static void write(Grammar grammar, long count, SplittableRandom random, long seed, long fromIndex,
+			ForkJoinPool pool, OutputStream out) throws IOException {
+		grammar.flatten(); // Resolve and flatten the rules once, before the grammar is shared by workers
+		for (long next = fromIndex, remaining = count; remaining > 0; ) {
+			ByteArrayOutputStream[] lines = new ByteArrayOutputStream[(int) Math.min(remaining, BLOCK_SIZE)];
+			SplittableRandom blockRandom = random == null ? null : random.split();
+			pool.invoke(new GenerateTask(grammar, null, lines, 0, lines.length, blockRandom, seed, next));
+			for (ByteArrayOutputStream leaf : lines) {
+				if (leaf != null) {
+					leaf.writeTo(out);
+				}
+			}
+			next += lines.length;
+			remaining -= lines.length;
+		}
+	}
+
+	private static Stream<String> stream(Grammar grammar, long count, Iterator<String> sentences) {
+		grammar.flatten(); // Resolve and flatten the rules once, before the grammar is shared by workers
+		int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED;
+		return StreamSupport.stream(Spliterators.spliterator(sentences, count, characteristics), false);
+	}
+
+	/**
+	 * Iterates over the sentences of a batch, generating the next block when the current one
+	 * has been consumed. When {@code random} is {@code null} the sentences are indexed.
+	 */
+	private static final class BlockIterator implements Iterator<String> {
+
+		private final Grammar grammar;
+		private final SplittableRandom random;
+		private final long seed;
+		private final ForkJoinPool pool;
+		private long nextIndex;
+		private long remaining;
+		private String[] block = new String[0];
+		private int next;
+
+		BlockIterator(Grammar grammar, long count, SplittableRandom random, long seed, long fromIndex,
+				ForkJoinPool pool) {
+			this.grammar = grammar;
+			this.remaining = count;
+			this.random = random;
+			this.seed = seed;
+			this.nextIndex = fromIndex;
+			this.pool = pool;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < block.length || remaining > 0;
+		}
+
+		@Override
+		public String next() {
+			if (next == block.length) {
+				if (remaining == 0) {
+					throw new NoSuchElementException();
+				}
+				block = new String[(int) Math.min(remaining, BLOCK_SIZE)];
+				SplittableRandom blockRandom = random == null ? null : random.split();
+				pool.invoke(new GenerateTask(grammar, block, null, 0, block.length, blockRandom, seed, nextIndex));
+				nextIndex += block.length;
+				remaining -= block.length;
+				next = 0;
+			}
+			String sentence = block[next];
+			block[next++] = null;
+			return sentence;
+		}
+	}
+
+	/**
+	 * Fills a range of a block with sentences, splitting the range and its random generator in
+	 * half until it is small enough to generate sequentially. When {@code random} is
+	 * {@code null}, sentence {@code i} of the block uses the stream of index
+	 * {@code firstIndex + i} instead. When {@code results} is {@code null} a leaf writes its
+	 * sentences as lines of UTF-8 into one buffer, stored at the index of its first sentence.
+	 */
+	private static final class GenerateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Grammar grammar;
+		private final String[] results;
+		private final ByteArrayOutputStream[] lines;
+		private final int from;
+		private final int to;
+		private final SplittableRandom random;
+		private final long seed;
+		private final long firstIndex;
+
+		GenerateTask(Grammar grammar, String[] results, ByteArrayOutputStream[] lines, int from, int to,
+				SplittableRandom random, long seed, long firstIndex) {
+			this.grammar = grammar;
+			this.results = results;
+			this.lines = lines;
+			this.from = from;
+			this.to = to;
+			this.random = random;
+			this.seed = seed;
+			this.firstIndex = firstIndex;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= LEAF_SIZE) {
+				FlatGrammar flat = grammar.flatten();
+				IndexedRandom indexed = random == null ? new IndexedRandom(seed) : null;
+				RandomGenerator leafRandom = random == null ? indexed : random;
+				if (results == null) {
+					writeLines(flat, indexed, leafRandom);
+					return;
+				}
+				StringBuilder out = new StringBuilder();
+				for (int i = from; i < to; i++) {
+					if (indexed != null) {
+						indexed.jump(firstIndex + i);
+					}
+					out.setLength(0);
+					flat.generateInto(out, grammar, leafRandom);
+					results[i] = out.toString();
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			SplittableRandom left = random == null ? null : random.split();
+			invokeAll(new GenerateTask(grammar, results, lines, from, mid, left, seed, firstIndex),
+					new GenerateTask(grammar, results, lines, mid, to, random, seed, firstIndex));
+		}
+
+		private void writeLines(FlatGrammar flat, IndexedRandom indexed, RandomGenerator leafRandom) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try {
+				for (int i = from; i < to; i++) {
+					if (indexed != null) {
+						indexed.jump(firstIndex + i);
+					}
+					flat.writeTo(out, grammar, leafRandom);
+					out.write(NEWLINE);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e); // Writing to a ByteArrayOutputStream does not fail
+			}
+			lines[from] = out;
+		}
+	}
+}
@@ -0,0 +1,349 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code BinaryGrammarFormat} class writes a {@link Grammar} to a compact, precompiled
+ * binary file and loads it back by memory-mapping the file.
+ *
+ * <p>A file holds a header followed by flat arrays, all big-endian:
+ * <pre>
+ *   int magic, int version
+ *   int stringCount, int ruleCount, int alternativeCount, int symbolCount
+ *   int titleString, int descriptionString            (-1 when absent)
+ *   int[ruleCount]            rule name strings
+ *   int[ruleCount + 1]        first alternative of each rule
+ *   int[alternativeCount + 1] first symbol of each alternative
+ *   double[alternativeCount]  alternative weights
+ *   int[symbolCount]          symbols: string index &lt;&lt; 2, bit 0 set for nonterminals and
+ *                             bit 1 for glued terminals
+ *   int[stringCount + 1]      byte offset of each string in the string data
+ *   byte[]                    UTF-8 string data
+ * </pre>
+ * Loading memory-maps the file and copies the rule, alternative and symbol arrays out of the
+ * mapping in bulk into a {@link FlatGrammar}, whose encoding they already are but for the
+ * symbol codes, decoding only the strings of the terminals and rule names. The loaded grammar
+ * generates through {@link Grammar#flatten()} without building any {@link Rule},
+ * {@link CollectionOfSymbol} or {@link Symbol}; those are decoded from the mapping the first
+ * time the rules themselves are needed, for instance to compile or edit the grammar, each
+ * pooled string at most once and each symbol looked up once in a {@link SymbolTable}. The
+ * loaded grammar has the same rules, alternatives and weights in the same order as the one
+ * written, and so produces the same sentences for the same seed.
+ */
+public final class BinaryGrammarFormat {
+
+	/** The file extension of binary grammar files. */
+	public static final String EXTENSION = ".gbin";
+
+	private static final int MAGIC = 0x52474742; // "RGGB"
+	private static final int VERSION = 2;
+	private static final int HEADER_INTS = 8;
+	private static final int NO_STRING = -1;
+	private static final int NONTERMINAL_BIT = 1;
+	private static final int GLUED_BIT = 2;
+	private static final int KIND_BITS = 2;
+	private static final int NO_RULE = -1;
+	private static final String START = "start"; // The rule generation starts from
+	private static final double DEFAULT_WEIGHT = 1.0;
+	private static final String BLANK = " "; // The separator of a terminal that is not glued
+	private static final String GLUED = "";
+
+	private BinaryGrammarFormat() {
+	}
+
+	/**
+	 * Writes a grammar to a binary grammar file.
+	 *
+	 * @param grammar the grammar to write
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Grammar grammar, Path file) throws IOException {
+		Map<String, Integer> stringIds = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		int alternativeCount = 0;
+		int symbolCount = 0;
+		for (Rule rule : grammar.getRules()) {
+			alternativeCount += rule.sequence.size();
+			for (CollectionOfSymbol alternative : rule.sequence) {
+				symbolCount += alternative.getSequence().size();
+			}
+		}
+
+		int[] ruleNames = new int[grammar.getRules().size()];
+		int[] ruleStarts = new int[grammar.getRules().size() + 1];
+		int[] alternativeStarts = new int[alternativeCount + 1];
+		double[] weights = new double[alternativeCount];
+		int[] symbols = new int[symbolCount];
+		int alternative = 0;
+		int symbol = 0;
+		for (int r = 0; r < grammar.getRules().size(); r++) {
+			Rule rule = grammar.getRules().get(r);
+			ruleNames[r] = intern(rule.getRuleName(), stringIds, strings);
+			ruleStarts[r] = alternative;
+			for (int a = 0; a < rule.sequence.size(); a++) {
+				alternativeStarts[alternative] = symbol;
+				weights[alternative++] = rule.getWeight(a);
+				for (Symbol s : rule.sequence.get(a).getSequence()) {
+					symbols[symbol++] = intern(s.getName(), stringIds, strings) << KIND_BITS | kind(s);
+				}
+			}
+		}
+		ruleStarts[grammar.getRules().size()] = alternative;
+		alternativeStarts[alternativeCount] = symbol;
+		int title = grammar.grammarName == null ? NO_STRING : intern(grammar.grammarName, stringIds, strings);
+		int description = grammar.grammarDesc == null ? NO_STRING : intern(grammar.grammarDesc, stringIds, strings);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(strings.size());
+			out.writeInt(ruleNames.length);
+			out.writeInt(alternativeCount);
+			out.writeInt(symbolCount);
+			out.writeInt(title);
+			out.writeInt(description);
+			writeInts(out, ruleNames);
+			writeInts(out, ruleStarts);
+			writeInts(out, alternativeStarts);
+			for (double weight : weights) {
+				out.writeDouble(weight);
+			}
+			writeInts(out, symbols);
+			byte[][] encoded = new byte[strings.size()][];
+			int offset = 0;
+			for (int i = 0; i < encoded.length; i++) {
+				encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(offset);
+				offset += encoded[i].length;
+			}
+			out.writeInt(offset);
+			for (byte[] bytes : encoded) {
+				out.write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Loads a grammar from a binary grammar file.
+	 *
+	 * @param file the file to load
+	 * @return the grammar
+	 * @throws IOException if the file cannot be read or is not a binary grammar file
+	 */
+	public static Grammar read(Path file) throws IOException {
+		return read(file, new SymbolTable());
+	}
+
+	/**
+	 * Loads a grammar from a binary grammar file, interning its terminals into a shared table.
+	 *
+	 * @param file the file to load
+	 * @param symbols the symbol table to intern terminals into
+	 * @return the grammar
+	 * @throws IOException if the file cannot be read or is not a binary grammar file
+	 */
+	public static Grammar read(Path file, SymbolTable symbols) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return decode(buffer, symbols.forGrammar());
+		} catch (RuntimeException e) {
+			throw new IOException(CustomException.INVALID_BINARY_GRAMMAR.getDetailMessage() + " " + file, e);
+		}
+	}
+
+	private static Grammar decode(ByteBuffer buffer, SymbolTable table) throws IOException {
+		IntBuffer header = buffer.slice(0, HEADER_INTS * Integer.BYTES).asIntBuffer();
+		if (header.get(0) != MAGIC || header.get(1) != VERSION) {
+			throw new IOException(CustomException.INVALID_BINARY_GRAMMAR.getDetailMessage());
+		}
+		int stringCount = header.get(2);
+		int ruleCount = header.get(3);
+		int alternativeCount = header.get(4);
+		int symbolCount = header.get(5);
+
+		int position = HEADER_INTS * Integer.BYTES;
+		int[] ruleNames = ints(buffer, position, ruleCount);
+		position += ruleCount * Integer.BYTES;
+		int[] ruleStarts = ints(buffer, position, ruleCount + 1);
+		position += (ruleCount + 1) * Integer.BYTES;
+		int[] alternativeStarts = ints(buffer, position, alternativeCount + 1);
+		position += (alternativeCount + 1) * Integer.BYTES;
+		double[] weights = new double[alternativeCount];
+		buffer.slice(position, alternativeCount * Double.BYTES).asDoubleBuffer().get(weights);
+		position += alternativeCount * Double.BYTES;
+		int[] symbols = ints(buffer, position, symbolCount);
+		position += symbolCount * Integer.BYTES;
+		int[] stringOffsets = ints(buffer, position, stringCount + 1);
+		position += (stringCount + 1) * Integer.BYTES;
+		ByteBuffer stringData = buffer.slice(position, buffer.limit() - position);
+		String[] strings = new String[stringCount];
+
+		Grammar grammar = new Grammar();
+		grammar.grammarName = string(header.get(6), strings, stringOffsets, stringData);
+		grammar.grammarDesc = string(header.get(7), strings, stringOffsets, stringData);
+		FlatGrammar flat = flatten(grammar, ruleNames, ruleStarts, alternativeStarts, weights, symbols, strings,
+				stringOffsets, stringData);
+		grammar.defer(flat, () -> rules(table, ruleNames, ruleStarts, alternativeStarts, weights, symbols, strings,
+				stringOffsets, stringData));
+		return grammar;
+	}
+
+	/**
+	 * Builds the flat form of the rules from the arrays of the file. The rule and alternative
+	 * ranges are those of the file; only the symbol codes are translated, nonterminals to the id
+	 * of the first rule with their name and terminals to their text, which is decoded once.
+	 *
+	 * @return the flat grammar, or {@code null} if a nonterminal has no rule, which is reported
+	 *     when the rules are compiled
+	 */
+	private static FlatGrammar flatten(Grammar grammar, int[] ruleNames, int[] ruleStarts, int[] alternativeStarts,
+			double[] weights, int[] symbols, String[] strings, int[] stringOffsets, ByteBuffer stringData) {
+		int[] ruleIds = new int[strings.length];
+		Arrays.fill(ruleIds, NO_RULE);
+		int startRuleId = NO_RULE;
+		AliasTable[] aliases = new AliasTable[ruleNames.length];
+		for (int r = 0; r < ruleNames.length; r++) {
+			if (ruleIds[ruleNames[r]] == NO_RULE) {
+				ruleIds[ruleNames[r]] = r;
+				if (startRuleId == NO_RULE && START.equals(string(ruleNames[r], strings, stringOffsets, stringData))) {
+					startRuleId = r;
+				}
+			}
+			for (int a = ruleStarts[r]; a < ruleStarts[r + 1]; a++) {
+				if (weights[a] != DEFAULT_WEIGHT) { // Rule keeps weights once one of them is not the default
+					aliases[r] = new AliasTable(Arrays.copyOfRange(weights, ruleStarts[r], ruleStarts[r + 1]));
+					break;
+				}
+			}
+		}
+
+		int[] codes = new int[symbols.length];
+		int[] terminalIds = new int[strings.length]; // Pool index + 1 of each string as a terminal
+		int[] gluedTerminalIds = new int[strings.length];
+		Map<String, Integer> pool = new LinkedHashMap<>();
+		for (int s = 0; s < symbols.length; s++) {
+			int code = symbols[s];
+			int id = code >>> KIND_BITS;
+			if ((code & NONTERMINAL_BIT) != 0) {
+				if (ruleIds[id] == NO_RULE) {
+					return null;
+				}
+				codes[s] = ruleIds[id] << 1 | FlatGrammar.NONTERMINAL_BIT;
+				continue;
+			}
+			boolean glued = (code & GLUED_BIT) != 0;
+			int[] ids = glued ? gluedTerminalIds : terminalIds;
+			if (ids[id] == 0) {
+				// The text a terminal appends, as Terminal#generate returns it
+				String text = (glued ? GLUED : BLANK) + string(id, strings, stringOffsets, stringData);
+				pool.putIfAbsent(text, pool.size());
+				ids[id] = pool.get(text) + 1;
+			}
+			codes[s] = ids[id] - 1 << 1;
+		}
+		return FlatGrammar.of(grammar, ruleStarts, alternativeStarts, codes, pool.keySet().toArray(new String[0]),
+				aliases, startRuleId);
+	}
+
+	/**
+	 * Builds the rules from the arrays of the file, looking each symbol up once in the table.
+	 */
+	private static List<Rule> rules(SymbolTable table, int[] ruleNames, int[] ruleStarts, int[] alternativeStarts,
+			double[] weights, int[] symbols, String[] strings, int[] stringOffsets, ByteBuffer stringData) {
+		Terminal[] terminals = new Terminal[strings.length];
+		Terminal[] gluedTerminals = new Terminal[strings.length];
+		NonterminalName[] nonterminals = new NonterminalName[strings.length];
+		List<Rule> rules = new ArrayList<>(ruleNames.length);
+		for (int r = 0; r < ruleNames.length; r++) {
+			Rule rule = new Rule(string(ruleNames[r], strings, stringOffsets, stringData));
+			for (int a = ruleStarts[r]; a < ruleStarts[r + 1]; a++) {
+				CollectionOfSymbol alternative = new CollectionOfSymbol();
+				for (int s = alternativeStarts[a]; s < alternativeStarts[a + 1]; s++) {
+					int code = symbols[s];
+					int id = code >>> KIND_BITS;
+					if ((code & NONTERMINAL_BIT) != 0) {
+						if (nonterminals[id] == null) {
+							nonterminals[id] = table.nonterminal(string(id, strings, stringOffsets, stringData));
+						}
+						alternative.addToSequence(nonterminals[id]);
+					} else if ((code & GLUED_BIT) != 0) {
+						if (gluedTerminals[id] == null) {
+							gluedTerminals[id] = table.terminal(string(id, strings, stringOffsets, stringData), true);
+						}
+						alternative.addToSequence(gluedTerminals[id]);
+					} else {
+						if (terminals[id] == null) {
+							terminals[id] = table.terminal(string(id, strings, stringOffsets, stringData));
+						}
+						alternative.addToSequence(terminals[id]);
+					}
+				}
+				rule.addToArrayList(alternative, weights[a]);
+			}
+			rules.add(rule);
+		}
+		return rules;
+	}
+
+	private static int kind(Symbol symbol) {
+		if (symbol instanceof NonterminalName) {
+			return NONTERMINAL_BIT;
+		}
+		return symbol instanceof Terminal terminal && terminal.isGlued() ? GLUED_BIT : 0;
+	}
+
+	/**
+	 * Copies {@code count} big-endian ints that start at a byte position of the buffer.
+	 */
+	private static int[] ints(ByteBuffer buffer, int position, int count) {
+		int[] values = new int[count];
+		buffer.slice(position, count * Integer.BYTES).asIntBuffer().get(values);
+		return values;
+	}
+
+	private static String string(int id, String[] strings, int[] offsets, ByteBuffer data) {
+		if (id == NO_STRING) {
+			return null;
+		}
+		String s = strings[id];
+		if (s == null) {
+			int start = offsets[id];
+			int length = offsets[id + 1] - start;
+			byte[] bytes = new byte[length];
+			data.get(start, bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+			strings[id] = s;
+		}
+		return s;
+	}
+
+	private static int intern(String s, Map<String, Integer> ids, List<String> strings) {
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = strings.size();
+			ids.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@code BulkCommand} generates a fixed number of sentences from one grammar file without
+ * any interaction and writes them to standard output or a file, one per line.
+ *
+ * <p>The options are:
+ * <pre>
+ *   --grammar FILE    the JSON or binary grammar file (required)
+ *   --count N         the number of sentences (default 1)
+ *   --seed S          the seed of the run (default: a new random seed)
+ *   --threads T       the number of generating threads (default 1)
+ *   --out FILE        the file to write instead of standard output
+ *   --format F        text (default) or jsonl
+ *   --materialize M   replace the rules with at most M expansions by tables, see {@link GrammarMaterializer}
+ *   --split B         write the text output as a series of files of at most B bytes, see {@link CorpusWriter}
+ * </pre>
+ * Sentence {@code i} is the one {@link BatchGenerator#sentenceAt(Grammar, long, long)} returns
+ * for the seed and {@code i}, as in {@link GenerationServer}, so for a given grammar and seed the
+ * output is the same whatever the number of threads, the format or {@code --split}, and a run
+ * with a larger count starts with the sentences of a smaller one. When {@code --seed} is omitted the
+ * chosen seed is reported by {@link #isSeedChosen()} and {@link #getSeed()}, so that the run can
+ * be repeated. The grammar is first rewritten by
+ * {@link GrammarOptimizer}, which makes generation faster without changing the output. Text
+ * output is generated as UTF-8 bytes, see {@link BatchGenerator#writeIndexed}, so no sentence becomes
+ * a {@code String}; JSON lines are escaped by a writer. Either goes through one large buffer
+ * and is flushed once at the end.
+ *
+ * <p>With {@code --split} and {@code --out corpus.txt} the sentences are written by a
+ * {@link CorpusWriter} to {@code corpus-00000.txt}, {@code corpus-00001.txt} and so on next to
+ * {@code corpus.txt}, compressed in gzip format when the name ends with {@code .gz}, and the
+ * writer's {@link CorpusWriter.Report} with the throughput of the run is returned.
+ */
+public class BulkCommand {
+
+	/** A one-line summary of the options, printed when they are invalid. */
+	public static final String USAGE = "Usage: --grammar FILE [--count N] [--seed S] [--threads T]"
+			+ " [--out FILE] [--format text|jsonl] [--materialize M] [--split B]";
+
+	/** The output formats. */
+	public enum Format {
+		/** One sentence per line. */
+		TEXT,
+		/** One JSON object per line, with the sentence's index and text. */
+		JSONL
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final char NEWLINE = '\n';
+	private static final int HEX_DIGITS = 4;
+	private static final int NO_MATERIALIZE = -1;
+	private static final long NO_SPLIT = -1;
+	private static final String GZIP_SUFFIX = ".gz";
+	private static final String TEXT_SUFFIX = ".txt";
+
+	private final Path grammarFile;
+	private final long count;
+	private final long seed;
+	private final boolean seedChosen;
+	private final int threads;
+	private final Path outFile;
+	private final Format format;
+	private final int maxExpansions;
+	private final long splitBytes;
+
+	private BulkCommand(Path grammarFile, long count, long seed, boolean seedChosen, int threads, Path outFile,
+			Format format, int maxExpansions, long splitBytes) {
+		this.grammarFile = grammarFile;
+		this.count = count;
+		this.seed = seed;
+		this.seedChosen = seedChosen;
+		this.threads = threads;
+		this.outFile = outFile;
+		this.format = format;
+		this.maxExpansions = maxExpansions;
+		this.splitBytes = splitBytes;
+	}
+
+	/**
+	 * Tells whether the arguments select the bulk command rather than the interactive mode.
+	 *
+	 * @param args the command-line arguments
+	 * @return {@code true} if the first argument is a bulk option
+	 */
+	public static boolean isBulk(String[] args) {
+		return args.length > 0 && args[0].startsWith("--") && !args[0].equals("--compile")
+				&& !args[0].equals("--serve");
+	}
+
+	/**
+	 * Parses the command-line options.
+	 *
+	 * @param args the command-line arguments
+	 * @return the command
+	 * @throws IllegalArgumentException if an option is unknown, lacks its value or has an invalid value
+	 */
+	public static BulkCommand parse(String[] args) {
+		Path grammarFile = null;
+		long count = 1;
+		Long seed = null;
+		int threads = 1;
+		Path outFile = null;
+		Format format = Format.TEXT;
+		int maxExpansions = NO_MATERIALIZE;
+		long splitBytes = NO_SPLIT;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 == args.length) {
+				throw invalid("Missing value for " + args[i]);
+			}
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "--grammar":
+					grammarFile = Path.of(value);
+					break;
+				case "--count":
+					count = parseLong(args[i], value);
+					break;
+				case "--seed":
+					seed = parseLong(args[i], value);
+					break;
+				case "--threads":
+					threads = (int) Math.min(parseLong(args[i], value), Integer.MAX_VALUE);
+					break;
+				case "--out":
+					outFile = Path.of(value);
+					break;
+				case "--format":
+					format = parseFormat(value);
+					break;
+				case "--materialize":
+					maxExpansions = (int) Math.min(parseLong(args[i], value), Integer.MAX_VALUE);
+					break;
+				case "--split":
+					splitBytes = parseLong(args[i], value);
+					if (splitBytes <= 0) {
+						throw invalid("--split must be positive");
+					}
+					break;
+				default:
+					throw invalid("Unknown option " + args[i]);
+			}
+		}
+		if (grammarFile == null) {
+			throw invalid("Missing --grammar");
+		}
+		if (count < 0 || threads <= 0 || maxExpansions < NO_MATERIALIZE) {
+			throw invalid("--count and --materialize must not be negative and --threads must be positive");
+		}
+		if (splitBytes != NO_SPLIT && (outFile == null || format != Format.TEXT)) {
+			throw invalid("--split needs --out and the text format");
+		}
+		return new BulkCommand(grammarFile, count, seed == null ? new SplittableRandom().nextLong() : seed,
+				seed == null, threads, outFile, format, maxExpansions, splitBytes);
+	}
+
+	private static long parseLong(String option, String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw invalid("Invalid value for " + option + ": " + value);
+		}
+	}
+
+	private static Format parseFormat(String value) {
+		for (Format format : Format.values()) {
+			if (format.name().equalsIgnoreCase(value)) {
+				return format;
+			}
+		}
+		throw invalid("Invalid value for --format: " + value);
+	}
+
+	private static IllegalArgumentException invalid(String detail) {
+		return new IllegalArgumentException(detail);
+	}
+
+	/**
+	 * Returns the seed of the run, which reproduces the output when passed back with
+	 * {@code --seed}.
+	 *
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Tells whether the seed was chosen at random because {@code --seed} was omitted.
+	 *
+	 * @return {@code true} if the seed was not given
+	 */
+	public boolean isSeedChosen() {
+		return seedChosen;
+	}
+
+	/**
+	 * Loads the grammar and writes the sentences.
+	 *
+	 * @param stdout the stream written when no output file is given; it is flushed but not closed
+	 * @return the report of a {@code --split} run, or {@code null} when the output is not split
+	 * @throws IOException if the grammar cannot be read or the output cannot be written
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule, or
+	 *     a sentence exceeds the depth or token limit
+	 */
+	public CorpusWriter.Report run(OutputStream stdout) throws IOException {
+		return run(load(), stdout);
+	}
+
+	/**
+	 * Loads the grammar file and prepares the grammar for generation.
+	 *
+	 * @return the grammar
+	 * @throws IOException if the grammar cannot be read
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public Grammar load() throws IOException {
+		Grammar grammar = GenerateProcessing.loadGrammar(grammarFile, new SymbolTable());
+		if (maxExpansions != NO_MATERIALIZE) {
+			grammar = GrammarMaterializer.materialize(grammar, maxExpansions);
+		}
+		return GrammarOptimizer.optimize(grammar).getGrammar();
+	}
+
+	/**
+	 * Writes the sentences of a grammar returned by {@link #load()}. When the run fails, the
+	 * partly written output file, if any, is deleted; the files of a split run are left as they are.
+	 *
+	 * @param grammar the grammar
+	 * @param stdout the stream written when no output file is given; it is flushed but not closed
+	 * @return the report of a {@code --split} run, or {@code null} when the output is not split
+	 * @throws IOException if the output cannot be written
+	 * @throws IllegalStateException if a sentence exceeds the depth or token limit
+	 */
+	public CorpusWriter.Report run(Grammar grammar, OutputStream stdout) throws IOException {
+		if (splitBytes != NO_SPLIT) {
+			return split(grammar);
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			if (outFile == null) {
+				OutputStream out = new BufferedOutputStream(stdout, BUFFER_SIZE);
+				write(grammar, pool, out);
+				out.flush();
+			} else {
+				try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outFile), BUFFER_SIZE)) {
+					write(grammar, pool, out);
+				} catch (IOException | RuntimeException e) {
+					Files.deleteIfExists(outFile);
+					throw e;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return null;
+	}
+
+	private CorpusWriter.Report split(Grammar grammar) throws IOException {
+		String name = outFile.getFileName().toString();
+		boolean compress = name.endsWith(GZIP_SUFFIX);
+		if (compress) {
+			name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+		}
+		if (name.endsWith(TEXT_SUFFIX)) {
+			name = name.substring(0, name.length() - TEXT_SUFFIX.length());
+		}
+		return new CorpusWriter(outFile.toAbsolutePath().getParent(), name, splitBytes, compress)
+				.write(grammar, count, seed, threads);
+	}
+
+	/**
+	 * Writes the sentences to the buffered stream, which the caller flushes or closes.
+	 */
+	private void write(Grammar grammar, ForkJoinPool pool, OutputStream out) throws IOException {
+		if (format == Format.TEXT) {
+			BatchGenerator.writeIndexed(grammar, seed, 0, count, pool, out);
+			return;
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		Iterator<String> sentences = BatchGenerator.generateIndexed(grammar, seed, 0, count, pool).iterator();
+		long index = 0;
+		while (sentences.hasNext()) {
+			writer.write("{\"index\":");
+			writer.write(Long.toString(index++));
+			writer.write(",\"text\":\"");
+			writeJsonEscaped(writer, sentences.next());
+			writer.write("\"}");
+			writer.write(NEWLINE);
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Writes a string with the characters JSON requires to be escaped replaced by escapes.
+	 */
+	static void writeJsonEscaped(Writer writer, String s) throws IOException {
+		int start = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c != '"' && c != '\\' && c >= ' ') {
+				continue;
+			}
+			writer.write(s, start, i - start);
+			start = i + 1;
+			switch (c) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				case '\n':
+					writer.write("\\n");
+					break;
+				case '\r':
+					writer.write("\\r");
+					break;
+				case '\t':
+					writer.write("\\t");
+					break;
+				default:
+					String hex = Integer.toHexString(c);
+					writer.write("\\u");
+					writer.write("0".repeat(HEX_DIGITS - hex.length()));
+					writer.write(hex);
+			}
+		}
+		writer.write(s, start, s.length() - start);
+	}
+}
@@ -1,6 +1,6 @@
 import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * A {@code CollectionOfSymbol} represents a sequence of grammar symbols, which can be terminals
@@ -29,17 +29,31 @@ public class CollectionOfSymbol implements Generable {
 	 * a provided grammar and random seed.
 	 *
 	 * @param grammar the {@code Grammar} context to use for generation
-	 * @param random the {@code Random} instance to use for any randomness in generation
+	 * @param random the {@code RandomGenerator} instance to use for any randomness in generation
 	 * @return the generated string from the sequence of symbols
 	 */
 	@Override
-	public String generate(Grammar grammar, Random random) {
+	public String generate(Grammar grammar, RandomGenerator random) {
 		StringBuilder sentenceBuilder = new StringBuilder();
 		for (Symbol symbol : sequence) {
 			sentenceBuilder.append(symbol.generate(grammar, random));
 		}
 		return sentenceBuilder.toString();
 	}
+
+	/**
+	 * Appends the text generated by each symbol in the sequence to the buffer.
+	 *
+	 * @param out the buffer to append to
+	 * @param grammar the {@code Grammar} context to use for generation
+	 * @param random the {@code RandomGenerator} instance to use for any randomness in generation
+	 */
+	@Override
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		for (int i = 0, n = sequence.size(); i < n; i++) {
+			sequence.get(i).generateInto(out, grammar, random);
+		}
+	}
 	/**
 	 * get sequence
 	 * @return sequence
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@code CompiledGrammar} is an immutable, pre-resolved view of a {@link Grammar}.
+ * Every rule is given an integer id and every {@link NonterminalName} reachable from the
+ * grammar's rules is bound to the id of the rule it expands to, so generation never has to
+ * search the rule list by name.
+ */
+public final class CompiledGrammar {
+
+	private static final String START = "start"; // The starting rule name for generation
+	private static final int NO_RULE = -1;
+
+	private final Grammar source;
+	private final Rule[] rules;
+	private final Map<String, Integer> ruleIds;
+	private final int startRuleId;
+
+	private CompiledGrammar(Grammar source, Rule[] rules, Map<String, Integer> ruleIds) {
+		this.source = source;
+		this.rules = rules;
+		this.ruleIds = ruleIds;
+		Integer start = ruleIds.get(START);
+		this.startRuleId = start == null ? NO_RULE : start;
+	}
+
+	/**
+	 * Compiles the given grammar. Each rule name is mapped to the index of its first
+	 * occurrence, matching {@link Grammar#findRule(int, String)}, and every nonterminal used
+	 * in an alternative is bound to that index.
+	 *
+	 * @param grammar the grammar to compile
+	 * @return the compiled grammar
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static CompiledGrammar compile(Grammar grammar) {
+		Rule[] rules = grammar.getRules().toArray(new Rule[0]);
+		Map<String, Integer> ruleIds = new HashMap<>();
+		for (int i = 0; i < rules.length; i++) {
+			ruleIds.putIfAbsent(rules[i].getRuleName(), i);
+		}
+		CompiledGrammar compiled = new CompiledGrammar(grammar, rules, Map.copyOf(ruleIds));
+
+		Set<String> undefined = new LinkedHashSet<>();
+		List<NonterminalName> nonterminals = new ArrayList<>();
+		for (Rule rule : rules) {
+			for (CollectionOfSymbol alternative : rule.sequence) {
+				for (Symbol symbol : alternative.getSequence()) {
+					if (symbol instanceof NonterminalName nonterminal) {
+						if (ruleIds.containsKey(nonterminal.getName())) {
+							nonterminals.add(nonterminal);
+						} else {
+							undefined.add(nonterminal.getName());
+						}
+					}
+				}
+			}
+		}
+		if (!undefined.isEmpty()) {
+			throw new IllegalStateException(
+					CustomException.UNDEFINED_NONTERMINAL.getDetailMessage() + " " + undefined);
+		}
+		for (NonterminalName nonterminal : nonterminals) {
+			nonterminal.bind(compiled, ruleIds.get(nonterminal.getName()));
+		}
+		return compiled;
+	}
+
+	/**
+	 * Returns the grammar this view was compiled from.
+	 *
+	 * @return the source grammar
+	 */
+	public Grammar getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of rules in the compiled grammar.
+	 *
+	 * @return the rule count
+	 */
+	public int getRuleCount() {
+		return rules.length;
+	}
+
+	/**
+	 * Retrieves a rule by its id.
+	 *
+	 * @param ruleId the id of the rule
+	 * @return the rule with that id
+	 */
+	public Rule getRule(int ruleId) {
+		return rules[ruleId];
+	}
+
+	/**
+	 * Returns the id of the rule with the given name.
+	 *
+	 * @param ruleName the name of the rule
+	 * @return the id of the rule, or -1 if there is no such rule
+	 */
+	public int getRuleId(String ruleName) {
+		Integer id = ruleIds.get(ruleName);
+		return id == null ? NO_RULE : id;
+	}
+
+	/**
+	 * Returns the id of the rule named "start".
+	 *
+	 * @return the id of the start rule, or -1 if the grammar has none
+	 */
+	public int getStartRuleId() {
+		return startRuleId;
+	}
+
+	/**
+	 * Returns the rule named "start".
+	 *
+	 * @return the start rule, or {@code null} if the grammar has none
+	 */
+	public Rule getStartRule() {
+		return startRuleId == NO_RULE ? null : rules[startRuleId];
+	}
+
+	/**
+	 * Resolves the rule a nonterminal expands to. Nonterminals bound by this compiled grammar
+	 * are resolved by id; any other nonterminal falls back to a lookup by name.
+	 *
+	 * @param nonterminal the nonterminal to resolve
+	 * @return the rule the nonterminal expands to
+	 * @throws IllegalStateException if the grammar has no rule for the nonterminal
+	 */
+	public Rule resolve(NonterminalName nonterminal) {
+		return rules[resolveId(nonterminal)];
+	}
+
+	/**
+	 * Resolves the id of the rule a nonterminal expands to, like {@link #resolve(NonterminalName)}.
+	 *
+	 * @param nonterminal the nonterminal to resolve
+	 * @return the id of the rule the nonterminal expands to
+	 * @throws IllegalStateException if the grammar has no rule for the nonterminal
+	 */
+	int resolveId(NonterminalName nonterminal) {
+		int id = nonterminal.getRuleId(this);
+		if (id != NO_RULE) {
+			return id;
+		}
+		id = getRuleId(nonterminal.getName());
+		if (id == NO_RULE) {
+			throw new IllegalStateException(
+					CustomException.UNDEFINED_NONTERMINAL.getDetailMessage() + " [" + nonterminal.getName() + "]");
+		}
+		return id;
+	}
+}
@@ -0,0 +1,432 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A {@code CorpusWriter} writes a large corpus of generated sentences to a series of files,
+ * one sentence per line.
+ *
+ * <p>Worker threads generate the sentences as UTF-8 bytes into large direct buffers, each
+ * holding a block of consecutive sentences, and hand the full buffers to the writer through a
+ * bounded queue. The calling thread is the writer: it puts the blocks back in order, writes
+ * them, optionally compresses them in gzip format with a {@link Deflater}, and starts a new file
+ * whenever the next sentence would take the current one past the size limit. Workers never
+ * touch a file; they only wait when every buffer is queued, which keeps memory bounded when the
+ * disk is slower than generation.
+ *
+ * <p>Sentence {@code i} is the one {@link BatchGenerator#sentenceAt(Grammar, long, long)}
+ * returns for {@code i}, so the corpus only depends on the grammar, the count and the seed.
+ */
+public final class CorpusWriter {
+
+	/** The number of sentences in one block. */
+	static final int BLOCK_SENTENCES = 4096;
+
+	/** The initial size of a block buffer; buffers grow when a block does not fit. */
+	static final int BLOCK_BYTES = 1 << 20;
+
+	/** The number of block buffers per worker. */
+	static final int BUFFERS_PER_WORKER = 2;
+
+	private static final byte NEWLINE = '\n';
+	private static final String TEXT_EXTENSION = ".txt";
+	private static final String GZIP_EXTENSION = ".txt.gz";
+	private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+	private static final int GZIP_TRAILER_BYTES = 8;
+	private static final int COMPRESSED_BYTES = 1 << 16;
+
+	private final Path directory;
+	private final String baseName;
+	private final long maxFileBytes;
+	private final boolean compress;
+
+	/**
+	 * Constructs a corpus writer.
+	 *
+	 * @param directory the directory the files are written to
+	 * @param baseName the start of the file names; files are named {@code baseName-00000.txt},
+	 *     {@code baseName-00001.txt} and so on, with {@code .txt.gz} when compressed
+	 * @param maxFileBytes the maximum number of uncompressed bytes in one file; a file only holds
+	 *     more when a single sentence is longer than this
+	 * @param compress whether the files are compressed in gzip format
+	 * @throws IllegalArgumentException if {@code maxFileBytes} is not positive
+	 */
+	public CorpusWriter(Path directory, String baseName, long maxFileBytes, boolean compress) {
+		if (maxFileBytes <= 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		this.directory = directory;
+		this.baseName = baseName;
+		this.maxFileBytes = maxFileBytes;
+		this.compress = compress;
+	}
+
+	/**
+	 * Generates a corpus and writes it to files.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param count the number of sentences to generate
+	 * @param seed the seed that determines the output
+	 * @param threads the number of generating threads
+	 * @return the files written and the throughput of the run
+	 * @throws IOException if a file cannot be written
+	 * @throws IllegalArgumentException if {@code count} is negative or {@code threads} is not positive
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule, or
+	 *     a sentence exceeds the depth or token limit
+	 */
+	public Report write(Grammar grammar, long count, long seed, int threads) throws IOException {
+		if (count < 0 || threads <= 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		long start = System.nanoTime();
+		FlatGrammar flat = grammar.flatten();
+		long blocks = (count + BLOCK_SENTENCES - 1) / BLOCK_SENTENCES;
+		int buffers = threads * BUFFERS_PER_WORKER;
+		BlockingQueue<Block> free = new ArrayBlockingQueue<>(buffers);
+		BlockingQueue<Block> full = new ArrayBlockingQueue<>(buffers);
+		for (int i = 0; i < buffers; i++) {
+			free.add(new Block());
+		}
+		AtomicLong nextBlock = new AtomicLong();
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		Output output = new Output();
+		try {
+			for (int i = 0; i < threads; i++) {
+				workers.execute(() -> generateBlocks(grammar, flat, count, seed, nextBlock, free, full));
+			}
+			// Blocks arrive out of order; every block not yet written holds one of the buffers, so
+			// the ones waiting for their turn fit in a ring indexed by block number
+			Block[] pending = new Block[buffers];
+			for (long written = 0; written < blocks; ) {
+				Block block = full.take();
+				if (block.failure instanceof Error) {
+					throw (Error) block.failure;
+				}
+				if (block.failure != null) {
+					throw (RuntimeException) block.failure;
+				}
+				pending[(int) (block.number % buffers)] = block;
+				for (Block next; (next = pending[(int) (written % buffers)]) != null && next.number == written; ) {
+					pending[(int) (written % buffers)] = null;
+					output.write(next.buffer.flip());
+					free.add(next);
+					written++;
+				}
+			}
+			output.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} finally {
+			workers.shutdownNow();
+			output.abort();
+		}
+		return new Report(count, output.bytes, output.diskBytes, output.files, System.nanoTime() - start);
+	}
+
+	/**
+	 * Runs on each worker: takes a free buffer, claims the next block and fills it with the
+	 * block's sentences, until every block is claimed. A buffer is taken before the block is
+	 * claimed, so the oldest unwritten block always has a buffer and the writer never waits for
+	 * a block that cannot be generated. Any failure, errors included, is handed to the writer in
+	 * the block, so the writer never waits for a block whose worker has died.
+	 */
+	private static void generateBlocks(Grammar grammar, FlatGrammar flat, long count, long seed,
+			AtomicLong nextBlock, BlockingQueue<Block> free, BlockingQueue<Block> full) {
+		IndexedRandom random = new IndexedRandom(seed);
+		try {
+			while (true) {
+				Block block = free.take();
+				long number = nextBlock.getAndIncrement();
+				long first = number * BLOCK_SENTENCES;
+				if (first >= count) {
+					return;
+				}
+				block.number = number;
+				try {
+					block.fill(grammar, flat, random, first, Math.min(count, first + BLOCK_SENTENCES));
+				} catch (Throwable e) {
+					block.failure = e;
+				}
+				full.put(block);
+				if (block.failure != null) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt(); // The writer has finished or failed
+		}
+	}
+
+	private Path fileName(int index) {
+		return directory.resolve(String.format("%s-%05d%s", baseName, index, compress ? GZIP_EXTENSION : TEXT_EXTENSION));
+	}
+
+	/** A direct buffer holding the sentences of one block, one per line. */
+	private static final class Block {
+
+		private ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_BYTES);
+		private long number;
+		private Throwable failure; // A RuntimeException or an Error
+
+		void fill(Grammar grammar, FlatGrammar flat, IndexedRandom random, long from, long to) {
+			buffer.clear();
+			for (long index = from; index < to; index++) {
+				while (true) {
+					int mark = buffer.position();
+					try {
+						flat.generateInto(buffer, grammar, random.jump(index));
+						if (buffer.hasRemaining()) {
+							buffer.put(NEWLINE);
+							break;
+						}
+						buffer.position(mark); // No room for the newline; drop the sentence
+					} catch (BufferOverflowException e) {
+						// The buffer is unchanged
+					}
+					buffer.flip();
+					buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2).put(buffer);
+				}
+			}
+		}
+	}
+
+	/** The files being written, used by the writer thread only. */
+	private final class Output {
+
+		private final List<Path> files = new ArrayList<>();
+		private final CRC32 crc = new CRC32();
+		private final ByteBuffer compressed = ByteBuffer.allocateDirect(COMPRESSED_BYTES);
+		private Deflater deflater;
+		private FileChannel channel;
+		private long fileBytes; // Uncompressed bytes in the current file
+		private long bytes;
+		private long diskBytes;
+
+		/** Writes whole lines, starting a new file before a line that would pass the limit. */
+		void write(ByteBuffer lines) throws IOException {
+			while (lines.hasRemaining()) {
+				long room = maxFileBytes - fileBytes;
+				int length = lines.remaining();
+				if (length > room) {
+					length = lastLineEnd(lines, (int) room);
+					if (length == 0) {
+						if (fileBytes > 0) {
+							close();
+							continue;
+						}
+						length = firstLineEnd(lines); // A single line longer than the limit
+					}
+				}
+				if (channel == null) {
+					open();
+				}
+				ByteBuffer slice = lines.slice(lines.position(), length);
+				lines.position(lines.position() + length);
+				fileBytes += length;
+				bytes += length;
+				if (compress) {
+					crc.update(slice.duplicate());
+					deflater.setInput(slice);
+					while (!deflater.needsInput()) {
+						deflater.deflate(compressed);
+						drain();
+					}
+				} else {
+					writeFully(slice);
+				}
+			}
+		}
+
+		private void open() throws IOException {
+			Path file = fileName(files.size());
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			files.add(file);
+			if (compress) {
+				if (deflater == null) {
+					deflater = new Deflater(Deflater.BEST_SPEED, true);
+				}
+				deflater.reset();
+				crc.reset();
+				writeFully(ByteBuffer.wrap(GZIP_HEADER));
+			}
+		}
+
+		/** Finishes the current file, if any. */
+		void close() throws IOException {
+			if (channel == null) {
+				return;
+			}
+			if (compress) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					deflater.deflate(compressed);
+					drain();
+				}
+				ByteBuffer trailer = ByteBuffer.allocate(GZIP_TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				trailer.putInt((int) crc.getValue()).putInt((int) fileBytes).flip();
+				writeFully(trailer);
+			}
+			channel.close();
+			channel = null;
+			fileBytes = 0;
+		}
+
+		/** Releases the current file, if a failure left one open, and the compressor. */
+		void abort() {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// The run has already failed with the exception being thrown
+				}
+				channel = null;
+			}
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+
+		private void drain() throws IOException {
+			writeFully(compressed.flip());
+			compressed.clear();
+		}
+
+		private void writeFully(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				diskBytes += channel.write(buffer);
+			}
+		}
+	}
+
+	/** Returns the length of the lines that end within the first {@code room} bytes. */
+	private static int lastLineEnd(ByteBuffer lines, int room) {
+		int start = lines.position();
+		for (int i = start + room - 1; i >= start; i--) {
+			if (lines.get(i) == NEWLINE) {
+				return i + 1 - start;
+			}
+		}
+		return 0;
+	}
+
+	/** Returns the length of the first line. */
+	private static int firstLineEnd(ByteBuffer lines) {
+		int start = lines.position();
+		int i = start;
+		while (lines.get(i) != NEWLINE) {
+			i++;
+		}
+		return i + 1 - start;
+	}
+
+	/**
+	 * The outcome of a run: the files written and the throughput.
+	 */
+	public static final class Report {
+
+		private static final double NANOS_PER_SECOND = 1e9;
+		private static final double BYTES_PER_MEGABYTE = 1 << 20;
+
+		private final long sentences;
+		private final long bytes;
+		private final long diskBytes;
+		private final List<Path> files;
+		private final long elapsedNanos;
+
+		Report(long sentences, long bytes, long diskBytes, List<Path> files, long elapsedNanos) {
+			this.sentences = sentences;
+			this.bytes = bytes;
+			this.diskBytes = diskBytes;
+			this.files = Collections.unmodifiableList(files);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Returns the number of sentences written.
+		 *
+		 * @return the number of sentences
+		 */
+		public long getSentences() {
+			return sentences;
+		}
+
+		/**
+		 * Returns the number of uncompressed bytes written, newlines included.
+		 *
+		 * @return the number of uncompressed bytes
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Returns the total size of the files, which is smaller than {@link #getBytes()} when
+		 * the files are compressed.
+		 *
+		 * @return the number of bytes on disk
+		 */
+		public long getDiskBytes() {
+			return diskBytes;
+		}
+
+		/**
+		 * Returns the files written, in order.
+		 *
+		 * @return the files
+		 */
+		public List<Path> getFiles() {
+			return files;
+		}
+
+		/**
+		 * Returns the wall-clock time of the run.
+		 *
+		 * @return the elapsed time in nanoseconds
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Returns the number of sentences written per second.
+		 *
+		 * @return the sentence throughput
+		 */
+		public double getSentencesPerSecond() {
+			return sentences * NANOS_PER_SECOND / Math.max(1, elapsedNanos);
+		}
+
+		/**
+		 * Returns the number of uncompressed megabytes written per second.
+		 *
+		 * @return the byte throughput
+		 */
+		public double getMegabytesPerSecond() {
+			return bytes / BYTES_PER_MEGABYTE * NANOS_PER_SECOND / Math.max(1, elapsedNanos);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Wrote %d sentences (%d bytes, %d on disk) to %d files in %.3f s:"
+					+ " %.0f sentences/s, %.1f MB/s", sentences, bytes, diskBytes, files.size(),
+					elapsedNanos / NANOS_PER_SECOND, getSentencesPerSecond(), getMegabytesPerSecond());
+		}
+	}
+}
@@ -1,3 +1,5 @@
+import java.io.PrintStream;
+
 /**
  * An enumeration of custom exceptions, each with an associated message.
  */
@@ -14,7 +16,40 @@ public enum CustomException {
 
 
   /** Error for a non-existent directory. */
-  INVALID_DICTIONARY("The path exists but is not a directory.");
+  INVALID_DICTIONARY("The path exists but is not a directory."),
+
+  /** Error when an alternative refers to a nonterminal that has no rule. */
+  UNDEFINED_NONTERMINAL("Undefined nonterminal."),
+
+  /** Error when an expansion nests deeper than the configured limit. */
+  DEPTH_LIMIT_EXCEEDED("Maximum expansion depth exceeded."),
+
+  /** Error when a sentence has more terminals than the configured limit. */
+  TOKEN_LIMIT_EXCEEDED("Maximum sentence length exceeded."),
+
+  /** Error when the requested random number generator algorithm is not available. */
+  UNKNOWN_RANDOM_ALGORITHM("Unknown random algorithm."),
+
+  /** Error for an alternative weight that is not a positive, finite number. */
+  INVALID_WEIGHT("Weights must be positive and finite."),
+
+  /** Error when a grammar file cannot be read, parsed or compiled. */
+  GRAMMAR_LOAD_FAILED("Failed to load grammar."),
+
+  /** Error when a loaded grammar fails while generating, e.g. past the depth or token limit. */
+  GENERATION_FAILED("Failed to generate sentences."),
+
+  /** Error when a binary grammar file is truncated or was not written by this program. */
+  INVALID_BINARY_GRAMMAR("Invalid binary grammar file."),
+
+  /** Error when a rule can expand to itself without producing any terminal. */
+  UNIT_CYCLE("A rule can expand to itself without producing any terminal."),
+
+  /** Error when a derivation count is too large to be represented. */
+  COUNT_OVERFLOW("Too many derivations to count."),
+
+  /** Error when a batch of changes to a watched grammar directory cannot be processed. */
+  GRAMMAR_RELOAD_FAILED("Failed to reload the grammar directory; retrying.");
 
 
 
@@ -29,12 +64,30 @@ public enum CustomException {
     this.message = message;
   }
 
+  /**
+   * Returns the detail message of the exception without printing it, for the message of a
+   * thrown exception; the code that catches it decides where to report it.
+   * @return message
+   */
+  public String getDetailMessage() {
+    return message;
+  }
+
   /**
    * Returns the detail message of the exception.
    * @return message
    */
   public String getMessage() {
-    System.out.println(message);
+    return getMessage(System.out);
+  }
+
+  /**
+   * Prints the detail message of the exception to a stream and returns it.
+   * @param stream the stream to print to, e.g. System.err where standard output carries data
+   * @return message
+   */
+  public String getMessage(PrintStream stream) {
+    stream.println(message);
     return message;
   }
 }
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * An {@code ExpansionEngine} generates sentences from a grammar's "start" rule without using
+ * Java recursion. Unfinished alternatives are kept on an explicit, array-backed work stack that
+ * is reused across calls, so recursive rules cannot overflow the thread stack. Alternatives are
+ * chosen in the same order as the recursive
+ * {@link Generable#generate(Grammar, RandomGenerator)} path, so both produce the same sentence
+ * for the same random seed.
+ *
+ * <p>Because a finished frame is dropped before its last symbol is expanded, a chain of rules
+ * that expand to one another without producing a terminal, such as {@code a -> <b>} and
+ * {@code b -> <a>}, would run forever on a single frame. The depth limit therefore also bounds
+ * the number of rules expanded in a row without a terminal, the depth the recursive path would
+ * reach, and exceeding it is reported as a {@link CustomException#UNIT_CYCLE}.
+ *
+ * <p>An engine is not thread-safe; use one engine per thread.
+ */
+public class ExpansionEngine implements Generable {
+
+	/** The default limit on the number of unfinished alternatives. */
+	public static final int DEFAULT_MAX_DEPTH = 10_000;
+
+	/** The default limit on the number of terminals in one sentence. */
+	public static final long DEFAULT_MAX_TOKENS = 1_000_000L;
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final String NONESTRING = "";
+
+	private final int maxDepth;
+	private final long maxTokens;
+	private List<Symbol>[] frames; // The alternative being expanded at each level
+	private int[] positions; // The index of the next symbol to expand at each level
+
+	/**
+	 * Constructs an engine with the default depth and token limits.
+	 */
+	public ExpansionEngine() {
+		this(DEFAULT_MAX_DEPTH, DEFAULT_MAX_TOKENS);
+	}
+
+	/**
+	 * Constructs an engine with the given limits.
+	 *
+	 * @param maxDepth the maximum number of alternatives that may be unfinished at once
+	 * @param maxTokens the maximum number of terminals in one sentence
+	 */
+	@SuppressWarnings("unchecked")
+	public ExpansionEngine(int maxDepth, long maxTokens) {
+		if (maxDepth <= 0 || maxTokens <= 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		this.maxDepth = maxDepth;
+		this.maxTokens = maxTokens;
+		int capacity = Math.min(INITIAL_CAPACITY, maxDepth);
+		this.frames = (List<Symbol>[]) new List<?>[capacity];
+		this.positions = new int[capacity];
+	}
+
+	/**
+	 * Returns the maximum number of alternatives that may be unfinished at once.
+	 *
+	 * @return the depth limit
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the maximum number of terminals in one sentence.
+	 *
+	 * @return the token limit
+	 */
+	public long getMaxTokens() {
+		return maxTokens;
+	}
+
+	/**
+	 * Generates a sentence from the grammar's "start" rule.
+	 *
+	 * @param grammar the grammar to generate from
+	 * @param random the random generator used to select alternatives
+	 * @return the generated sentence, or an empty string if the grammar has no start rule
+	 * @throws IllegalStateException if the depth or token limit is exceeded, or more rules than
+	 *     the depth limit are expanded in a row without a terminal
+	 */
+	@Override
+	public String generate(Grammar grammar, RandomGenerator random) {
+		StringBuilder out = new StringBuilder();
+		generateInto(out, grammar, random);
+		return out.length() == 0 ? NONESTRING : out.toString();
+	}
+
+	/**
+	 * Generates a sentence from the grammar's "start" rule and appends it to the buffer.
+	 * If a limit is exceeded the buffer is restored to its original length. When the grammar's
+	 * metrics are on, the choices and the sentence are recorded.
+	 *
+	 * @param out the buffer the sentence is appended to
+	 * @param grammar the grammar to generate from
+	 * @param random the random generator used to select alternatives
+	 * @throws IllegalStateException if the depth or token limit is exceeded, or more rules than
+	 *     the depth limit are expanded in a row without a terminal
+	 */
+	@Override
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		CompiledGrammar compiled = grammar.compile();
+		Rule start = compiled.getStartRule();
+		if (start == null) {
+			return;
+		}
+		int mark = out.length();
+		int top = 0;
+		long tokens = 0;
+		int idle = 0; // Rules expanded since the last terminal
+		GenerationMetrics metrics = grammar.getMetrics();
+		int peak = 1;
+		try {
+			if (metrics == null) {
+				top = push(top, start.chooseAlternative(random).getSequence());
+			} else {
+				int index = start.chooseIndex(random);
+				metrics.recordChoice(compiled.getStartRuleId(), index);
+				top = push(top, start.sequence.get(index).getSequence());
+			}
+			while (top > 0) {
+				List<Symbol> symbols = frames[top - 1];
+				int position = positions[top - 1];
+				if (position == symbols.size()) {
+					frames[--top] = null;
+					continue;
+				}
+				Symbol symbol = symbols.get(position);
+				if (position + 1 == symbols.size()) {
+					frames[--top] = null; // The frame is finished; drop it before expanding its last symbol
+				} else {
+					positions[top - 1] = position + 1;
+				}
+				if (symbol instanceof NonterminalName nonterminal) {
+					if (++idle > maxDepth) {
+						throw new IllegalStateException(CustomException.UNIT_CYCLE.getDetailMessage());
+					}
+					if (metrics == null) {
+						top = push(top, compiled.resolve(nonterminal).chooseAlternative(random).getSequence());
+					} else {
+						int id = compiled.resolveId(nonterminal);
+						Rule rule = compiled.getRule(id);
+						int index = rule.chooseIndex(random);
+						metrics.recordChoice(id, index);
+						top = push(top, rule.sequence.get(index).getSequence());
+						peak = Math.max(peak, top);
+					}
+				} else {
+					if (++tokens > maxTokens) {
+						throw new IllegalStateException(CustomException.TOKEN_LIMIT_EXCEEDED.getDetailMessage());
+					}
+					idle = 0;
+					if (out.length() > mark) {
+						symbol.generateInto(out, grammar, random);
+					} else if (symbol instanceof Terminal terminal) {
+						terminal.appendStripped(out); // Nothing visible yet: skip the leading separator
+					} else {
+						symbol.generateInto(out, grammar, random);
+						Grammar.stripFrom(out, mark);
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			Arrays.fill(frames, 0, top, null);
+			out.setLength(mark);
+			throw e;
+		}
+		Grammar.trimEnd(out, mark);
+		if (metrics != null) {
+			metrics.recordSentence(peak, out.length() - mark);
+		}
+	}
+
+	/**
+	 * Pushes an alternative onto the work stack, growing the stack up to the depth limit.
+	 *
+	 * @param top the current number of frames
+	 * @param symbols the alternative to push
+	 * @return the new number of frames
+	 */
+	private int push(int top, List<Symbol> symbols) {
+		if (top == frames.length) {
+			if (top == maxDepth) {
+				throw new IllegalStateException(CustomException.DEPTH_LIMIT_EXCEEDED.getDetailMessage());
+			}
+			int capacity = (int) Math.min((long) top * 2, maxDepth);
+			frames = Arrays.copyOf(frames, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+		}
+		frames[top] = symbols;
+		positions[top] = 0;
+		return top + 1;
+	}
+}
@@ -0,0 +1,547 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * A {@code FlatGrammar} is a compact runtime form of a {@link Grammar} held in primitive
+ * arrays. Rules and alternatives are ranges of offsets, every symbol is one {@code int} code,
+ * and the text of every distinct terminal, separator included, is stored once in a string pool.
+ * Generation walks these arrays with an explicit stack, with no pointer chasing through lists
+ * and no interface calls per symbol; the one loop hands each terminal to a sink that appends
+ * either its text or its bytes. Every terminal is also kept pre-encoded as UTF-8, so
+ * sentences can be written to a {@link ByteBuffer} or {@link OutputStream} without building a
+ * {@code String} and encoding it again.
+ *
+ * <p>A flat grammar chooses alternatives exactly like {@link Rule#chooseIndex(RandomGenerator)},
+ * sampling the same alias tables for weighted rules, so it produces the same sentence as the
+ * other generation paths for the same random seed. It is immutable and can be shared by any
+ * number of threads. Like {@link ExpansionEngine} it drops a finished alternative before
+ * expanding its last symbol, so it also bounds the number of rules expanded in a row without a
+ * terminal by the depth limit and reports a chain of rules that only expand to one another as a
+ * {@link CustomException#UNIT_CYCLE} instead of running forever. When the source grammar's
+ * {@link GenerationMetrics} are on, every choice and sentence is recorded into them.
+ */
+public final class FlatGrammar implements Generable {
+
+	static final int NONTERMINAL_BIT = 1; // Set in the codes of nonterminals
+	private static final int NO_RULE = -1;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final String NONESTRING = "";
+	private static final int INITIAL_BYTES = 256;
+	private static final int MAX_RETAINED_BYTES = 1 << 16; // Larger scratch buffers are dropped after use
+	private static final int BLANK_BYTE = ' '; // Bytes up to this one are trimmed, as by String.trim()
+
+	// Per-thread work stacks and sinks, reused across sentences and grammars
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	private final Grammar source;
+
+	// The encoding of the rules, shared with the classes that analyze the compiled rule graph,
+	// which must not modify it. Rule ids are those of the grammar's CompiledGrammar.
+	final int[] ruleAlternatives; // The first alternative of each rule, plus the end
+	final int[] alternativeSymbols; // The first symbol of each alternative, plus the end
+	final int[] symbols; // Rule id << 1 | 1 for nonterminals, pool index << 1 for terminals
+	final String[] terminals; // The text each terminal appends, separator included
+	private final byte[][] terminalBytes; // The same text encoded as UTF-8
+	private final AliasTable[] aliases; // The alias table of each weighted rule, otherwise null
+	private final int startRuleId;
+	private final int maxDepth;
+	private final long maxTokens;
+
+	private FlatGrammar(Grammar source, CompiledGrammar compiled, int maxDepth, long maxTokens) {
+		this.source = source;
+		this.maxDepth = maxDepth;
+		this.maxTokens = maxTokens;
+		this.startRuleId = compiled.getStartRuleId();
+		int ruleCount = compiled.getRuleCount();
+		int alternativeCount = 0;
+		int symbolCount = 0;
+		for (int r = 0; r < ruleCount; r++) {
+			Rule rule = compiled.getRule(r);
+			alternativeCount += rule.sequence.size();
+			for (CollectionOfSymbol alternative : rule.sequence) {
+				symbolCount += alternative.getSequence().size();
+			}
+		}
+
+		ruleAlternatives = new int[ruleCount + 1];
+		alternativeSymbols = new int[alternativeCount + 1];
+		symbols = new int[symbolCount];
+		aliases = new AliasTable[ruleCount];
+		Map<String, Integer> pool = new HashMap<>();
+		Map<String, byte[]> encoded = new HashMap<>();
+		int alternative = 0;
+		int symbol = 0;
+		for (int r = 0; r < ruleCount; r++) {
+			Rule rule = compiled.getRule(r);
+			ruleAlternatives[r] = alternative;
+			aliases[r] = rule.getAliasTable();
+			for (CollectionOfSymbol collection : rule.sequence) {
+				alternativeSymbols[alternative++] = symbol;
+				for (Symbol s : collection.getSequence()) {
+					if (s instanceof NonterminalName nonterminal) {
+						symbols[symbol++] = compiled.getRuleId(nonterminal.getName()) << 1 | NONTERMINAL_BIT;
+					} else {
+						String text = s.generate(source, null);
+						Integer id = pool.putIfAbsent(text, pool.size());
+						if (id == null) {
+							encoded.put(text, s instanceof Terminal terminal
+									? terminal.getEncoded() : text.getBytes(StandardCharsets.UTF_8));
+						}
+						symbols[symbol++] = (id == null ? pool.size() - 1 : id) << 1;
+					}
+				}
+			}
+		}
+		ruleAlternatives[ruleCount] = alternative;
+		alternativeSymbols[alternativeCount] = symbol;
+		terminals = new String[pool.size()];
+		terminalBytes = new byte[pool.size()][];
+		for (Map.Entry<String, Integer> entry : pool.entrySet()) {
+			terminals[entry.getValue()] = entry.getKey();
+			terminalBytes[entry.getValue()] = encoded.get(entry.getKey());
+		}
+	}
+
+	private FlatGrammar(Grammar source, int[] ruleAlternatives, int[] alternativeSymbols, int[] symbols,
+			String[] terminals, AliasTable[] aliases, int startRuleId, int maxDepth, long maxTokens) {
+		this.source = source;
+		this.ruleAlternatives = ruleAlternatives;
+		this.alternativeSymbols = alternativeSymbols;
+		this.symbols = symbols;
+		this.terminals = terminals;
+		this.aliases = aliases;
+		this.startRuleId = startRuleId;
+		this.maxDepth = maxDepth;
+		this.maxTokens = maxTokens;
+		terminalBytes = new byte[terminals.length][];
+		for (int i = 0; i < terminals.length; i++) {
+			terminalBytes[i] = terminals[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Creates a flat grammar, with the default limits, from arrays that are already in its
+	 * encoding, such as those read from a binary grammar file. The arrays are kept, not copied.
+	 *
+	 * @param source the grammar whose rules the arrays encode, by rule id
+	 * @param ruleAlternatives the first alternative of each rule, plus the end
+	 * @param alternativeSymbols the first symbol of each alternative, plus the end
+	 * @param symbols the code of each symbol
+	 * @param terminals the text each terminal appends, separator included
+	 * @param aliases the alias table of each weighted rule, otherwise {@code null}
+	 * @param startRuleId the id of the "start" rule, or -1 if there is none
+	 * @return the flat grammar
+	 */
+	static FlatGrammar of(Grammar source, int[] ruleAlternatives, int[] alternativeSymbols, int[] symbols,
+			String[] terminals, AliasTable[] aliases, int startRuleId) {
+		return new FlatGrammar(source, ruleAlternatives, alternativeSymbols, symbols, terminals, aliases, startRuleId,
+				ExpansionEngine.DEFAULT_MAX_DEPTH, ExpansionEngine.DEFAULT_MAX_TOKENS);
+	}
+
+	/**
+	 * Flattens a grammar, with the default depth and token limits of {@link ExpansionEngine}.
+	 *
+	 * @param grammar the grammar to flatten
+	 * @return the flat grammar
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static FlatGrammar flatten(Grammar grammar) {
+		return flatten(grammar, ExpansionEngine.DEFAULT_MAX_DEPTH, ExpansionEngine.DEFAULT_MAX_TOKENS);
+	}
+
+	/**
+	 * Flattens a grammar with the given limits. The text of every symbol other than a
+	 * nonterminal is taken once, when the grammar is flattened.
+	 *
+	 * @param grammar the grammar to flatten
+	 * @param maxDepth the maximum number of alternatives that may be unfinished at once
+	 * @param maxTokens the maximum number of terminals in one sentence
+	 * @return the flat grammar
+	 * @throws IllegalArgumentException if a limit is not positive
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static FlatGrammar flatten(Grammar grammar, int maxDepth, long maxTokens) {
+		if (maxDepth <= 0 || maxTokens <= 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return new FlatGrammar(grammar, grammar.compile(), maxDepth, maxTokens);
+	}
+
+	/**
+	 * Returns the grammar this flat grammar was built from.
+	 *
+	 * @return the source grammar
+	 */
+	public Grammar getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of rules.
+	 *
+	 * @return the number of rules
+	 */
+	public int getRuleCount() {
+		return aliases.length;
+	}
+
+	/**
+	 * Returns the number of alternatives over all rules.
+	 *
+	 * @return the number of alternatives
+	 */
+	public int getAlternativeCount() {
+		return alternativeSymbols.length - 1;
+	}
+
+	/**
+	 * Returns the number of symbols over all alternatives.
+	 *
+	 * @return the number of symbols
+	 */
+	public int getSymbolCount() {
+		return symbols.length;
+	}
+
+	/**
+	 * Returns the number of distinct terminal texts in the pool.
+	 *
+	 * @return the size of the terminal pool
+	 */
+	public int getTerminalCount() {
+		return terminals.length;
+	}
+
+	/**
+	 * Generates a sentence from the "start" rule.
+	 *
+	 * @param grammar the grammar this flat grammar was built from
+	 * @param random the random generator used to select alternatives
+	 * @return the generated sentence, or an empty string if the grammar has no start rule
+	 * @throws IllegalArgumentException if {@code grammar} is not the source grammar
+	 * @throws IllegalStateException if the depth or token limit is exceeded, or more rules than
+	 *     the depth limit are expanded in a row without a terminal
+	 */
+	@Override
+	public String generate(Grammar grammar, RandomGenerator random) {
+		StringBuilder out = new StringBuilder();
+		generateInto(out, grammar, random);
+		return out.length() == 0 ? NONESTRING : out.toString();
+	}
+
+	/**
+	 * Generates a sentence from the "start" rule and appends it to the buffer. If a limit is
+	 * exceeded the buffer is restored to its original length.
+	 *
+	 * @param out the buffer the sentence is appended to
+	 * @param grammar the grammar this flat grammar was built from
+	 * @param random the random generator used to select alternatives
+	 * @throws IllegalArgumentException if {@code grammar} is not the source grammar
+	 * @throws IllegalStateException if the depth or token limit is exceeded, or more rules than
+	 *     the depth limit are expanded in a row without a terminal
+	 */
+	@Override
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		if (grammar != source) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		if (startRuleId == NO_RULE) {
+			return;
+		}
+		int mark = out.length();
+		Scratch scratch = SCRATCH.get();
+		CharSink chars = scratch.chars;
+		chars.out = out;
+		chars.mark = mark;
+		GenerationMetrics metrics = source.getMetrics();
+		int peak;
+		try {
+			peak = expand(scratch, chars, metrics, random);
+		} catch (RuntimeException e) {
+			out.setLength(mark);
+			throw e;
+		} finally {
+			chars.out = null;
+		}
+		Grammar.trimEnd(out, mark);
+		if (metrics != null) {
+			metrics.recordSentence(peak, out.length() - mark);
+		}
+	}
+
+	/**
+	 * Generates a sentence from the "start" rule and writes its UTF-8 encoding into the buffer,
+	 * which may be a heap or a direct buffer. The bytes written are the encoding of the sentence
+	 * {@link #generate(Grammar, RandomGenerator)} returns for the same random sequence. The
+	 * buffer is left unchanged if the sentence does not fit or a limit is exceeded.
+	 *
+	 * @param out the buffer the sentence is written to
+	 * @param grammar the grammar this flat grammar was built from
+	 * @param random the random generator used to select alternatives
+	 * @return the number of bytes written
+	 * @throws java.nio.BufferOverflowException if the sentence does not fit in the buffer
+	 * @throws IllegalArgumentException if {@code grammar} is not the source grammar
+	 * @throws IllegalStateException if the depth or token limit is exceeded, or more rules than
+	 *     the depth limit are expanded in a row without a terminal
+	 */
+	public int generateInto(ByteBuffer out, Grammar grammar, RandomGenerator random) {
+		ByteSink sink = expandBytes(grammar, random);
+		int begin = trimStart(sink.bytes, sink.length);
+		try {
+			out.put(sink.bytes, begin, sink.length - begin);
+		} finally {
+			sink.release();
+		}
+		return sink.length - begin;
+	}
+
+	/**
+	 * Generates a sentence from the "start" rule and writes its UTF-8 encoding to the stream.
+	 * The bytes written are the encoding of the sentence
+	 * {@link #generate(Grammar, RandomGenerator)} returns for the same random sequence. Nothing
+	 * is written if a limit is exceeded.
+	 *
+	 * @param out the stream the sentence is written to
+	 * @param grammar the grammar this flat grammar was built from
+	 * @param random the random generator used to select alternatives
+	 * @return the number of bytes written
+	 * @throws IOException if the stream cannot be written
+	 * @throws IllegalArgumentException if {@code grammar} is not the source grammar
+	 * @throws IllegalStateException if the depth or token limit is exceeded, or more rules than
+	 *     the depth limit are expanded in a row without a terminal
+	 */
+	public int writeTo(OutputStream out, Grammar grammar, RandomGenerator random) throws IOException {
+		ByteSink sink = expandBytes(grammar, random);
+		int begin = trimStart(sink.bytes, sink.length);
+		try {
+			out.write(sink.bytes, begin, sink.length - begin);
+		} finally {
+			sink.release();
+		}
+		return sink.length - begin;
+	}
+
+	/**
+	 * Expands the "start" rule into the byte buffer of the thread's scratch.
+	 *
+	 * @return the buffer, holding the sentence without trailing white space
+	 */
+	private ByteSink expandBytes(Grammar grammar, RandomGenerator random) {
+		if (grammar != source) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		Scratch scratch = SCRATCH.get();
+		ByteSink sink = scratch.bytes;
+		sink.length = 0;
+		if (startRuleId == NO_RULE) {
+			return sink;
+		}
+		GenerationMetrics metrics = source.getMetrics();
+		int peak;
+		try {
+			peak = expand(scratch, sink, metrics, random);
+		} catch (RuntimeException e) {
+			sink.release();
+			throw e;
+		}
+		byte[] bytes = sink.bytes;
+		int length = sink.length;
+		while (length > 0 && (bytes[length - 1] & 0xff) <= BLANK_BYTE) {
+			length--;
+		}
+		sink.length = length;
+		if (metrics != null) {
+			metrics.recordSentence(peak, charCount(bytes, trimStart(bytes, length), length));
+		}
+		return sink;
+	}
+
+	/**
+	 * Expands the "start" rule, handing every terminal reached to the sink. This is the one
+	 * generation loop of the flat form; the sink decides whether the sentence becomes
+	 * characters or bytes.
+	 *
+	 * @param scratch the work stacks of this thread
+	 * @param sink where the terminals go
+	 * @param metrics the metrics to record the choices into, or {@code null}
+	 * @param random the random generator used to select alternatives
+	 * @return the peak number of unfinished alternatives, if metrics are recorded
+	 */
+	private int expand(Scratch scratch, Sink sink, GenerationMetrics metrics, RandomGenerator random) {
+		int[] next = scratch.next;
+		int[] end = scratch.end;
+		int alternative = choose(startRuleId, random);
+		if (metrics != null) {
+			metrics.recordChoice(startRuleId, alternative - ruleAlternatives[startRuleId]);
+		}
+		next[0] = alternativeSymbols[alternative];
+		end[0] = alternativeSymbols[alternative + 1];
+		int top = 1;
+		int peak = 1;
+		long tokens = 0;
+		int idle = 0; // Rules expanded since the last terminal
+		while (top > 0) {
+			int position = next[top - 1];
+			int limit = end[top - 1];
+			if (position == limit) {
+				top--;
+				continue;
+			}
+			int code = symbols[position];
+			if (position + 1 == limit) {
+				top--; // The alternative is finished; drop it before expanding its last symbol
+			} else {
+				next[top - 1] = position + 1;
+			}
+			if ((code & NONTERMINAL_BIT) != 0) {
+				if (top == maxDepth) {
+					throw new IllegalStateException(CustomException.DEPTH_LIMIT_EXCEEDED.getDetailMessage());
+				}
+				if (++idle > maxDepth) {
+					throw new IllegalStateException(CustomException.UNIT_CYCLE.getDetailMessage());
+				}
+				if (top == next.length) { // The scratch stack is shared by grammars with different limits
+					next = scratch.next = Arrays.copyOf(next, top * 2);
+					end = scratch.end = Arrays.copyOf(end, top * 2);
+				}
+				alternative = choose(code >>> 1, random);
+				next[top] = alternativeSymbols[alternative];
+				end[top] = alternativeSymbols[alternative + 1];
+				top++;
+				if (metrics != null) {
+					metrics.recordChoice(code >>> 1, alternative - ruleAlternatives[code >>> 1]);
+					peak = Math.max(peak, top);
+				}
+			} else {
+				if (++tokens > maxTokens) {
+					throw new IllegalStateException(CustomException.TOKEN_LIMIT_EXCEEDED.getDetailMessage());
+				}
+				idle = 0;
+				sink.append(this, code >>> 1);
+			}
+		}
+		return peak;
+	}
+
+	/**
+	 * Returns the number of {@code char}s the UTF-8 bytes decode to: one per byte that starts a
+	 * character, and one more for each four-byte character, which becomes a surrogate pair.
+	 */
+	private static int charCount(byte[] bytes, int from, int to) {
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			int b = bytes[i] & 0xff;
+			if ((b & 0xc0) != 0x80) {
+				count += b >= 0xf0 ? 2 : 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the index of the first byte that is not white space. In UTF-8 the characters
+	 * {@link String#trim()} removes are single bytes that never occur inside longer sequences.
+	 */
+	private static int trimStart(byte[] bytes, int length) {
+		int begin = 0;
+		while (begin < length && (bytes[begin] & 0xff) <= BLANK_BYTE) {
+			begin++;
+		}
+		return begin;
+	}
+
+	/**
+	 * Chooses an alternative of a rule the way {@link Rule#chooseIndex(RandomGenerator)} does.
+	 *
+	 * @param rule the rule id
+	 * @param random the random generator
+	 * @return the index of the chosen alternative in the alternative arrays
+	 */
+	private int choose(int rule, RandomGenerator random) {
+		int first = ruleAlternatives[rule];
+		AliasTable table = aliases[rule];
+		if (table == null) {
+			return first + random.nextInt(ruleAlternatives[rule + 1] - first);
+		}
+		return first + table.sample(random);
+	}
+
+	/**
+	 * Where {@link #expand} puts the terminals it reaches.
+	 */
+	private abstract static class Sink {
+
+		/**
+		 * Appends a terminal of a flat grammar.
+		 *
+		 * @param grammar the grammar being expanded
+		 * @param terminal the pool index of the terminal
+		 */
+		abstract void append(FlatGrammar grammar, int terminal);
+	}
+
+	/**
+	 * Appends the text of terminals to a {@code StringBuilder}, without the separator of the
+	 * first visible one.
+	 */
+	private static final class CharSink extends Sink {
+
+		private StringBuilder out; // Set for the sentence being generated
+		private int mark; // The length of out before the sentence
+
+		@Override
+		void append(FlatGrammar grammar, int terminal) {
+			if (out.length() > mark) {
+				out.append(grammar.terminals[terminal]);
+			} else {
+				Grammar.appendStripped(out, grammar.terminals[terminal]); // Nothing visible yet: skip the separator
+			}
+		}
+	}
+
+	/**
+	 * Collects the UTF-8 encoding of terminals in a growing byte array. A sentence longer than
+	 * {@link #MAX_RETAINED_BYTES} grows the array for itself only: {@link #release()} drops it
+	 * afterwards, so one long sentence does not pin a large array to the thread for good.
+	 */
+	private static final class ByteSink extends Sink {
+
+		private byte[] bytes = new byte[INITIAL_BYTES];
+		private int length;
+
+		@Override
+		void append(FlatGrammar grammar, int terminal) {
+			byte[] encoded = grammar.terminalBytes[terminal];
+			if (length + encoded.length > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + encoded.length));
+			}
+			System.arraycopy(encoded, 0, bytes, length, encoded.length);
+			length += encoded.length;
+		}
+
+		/**
+		 * Goes back to a buffer of the initial size if the last sentence made it too large.
+		 */
+		void release() {
+			if (bytes.length > MAX_RETAINED_BYTES) {
+				bytes = new byte[INITIAL_BYTES];
+			}
+		}
+	}
+
+	/**
+	 * The work stacks and the sinks of the generation paths for one thread.
+	 */
+	private static final class Scratch {
+		private final CharSink chars = new CharSink();
+		private final ByteSink bytes = new ByteSink();
+		private int[] next = new int[INITIAL_CAPACITY]; // The next symbol of each unfinished alternative
+		private int[] end = new int[INITIAL_CAPACITY]; // The end of each unfinished alternative
+	}
+}
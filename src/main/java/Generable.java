@@ -1,4 +1,4 @@
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * The {@code Generable} interface should be implemented by classes that represent grammar blocks
@@ -11,8 +11,22 @@ public interface Generable {
      * utilizing the specified grammar and randomness source.
      *
      * @param grammar the {@code Grammar} instance that provides the context for generation
-     * @param random the {@code Random} instance to use for any randomization required in generation
+     * @param random the {@code RandomGenerator} instance to use for any randomization required in generation
      * @return a {@code String} generated according to the grammar and randomness provided
      */
-    String generate(Grammar grammar, Random random);
+    String generate(Grammar grammar, RandomGenerator random);
+
+    /**
+     * Generates text in the same way as {@link #generate(Grammar, RandomGenerator)}, but appends it to
+     * a caller-supplied buffer instead of returning a new string. Implementations write every
+     * terminal directly into {@code out} so that no intermediate strings are built; the default
+     * implementation simply appends the result of {@code generate}.
+     *
+     * @param out the buffer the generated text is appended to
+     * @param grammar the {@code Grammar} instance that provides the context for generation
+     * @param random the {@code RandomGenerator} instance to use for any randomization required in generation
+     */
+    default void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+        out.append(generate(grammar, random));
+    }
 }
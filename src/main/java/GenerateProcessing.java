@@ -1,11 +1,18 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 /**
  * The {@code GenerateProcessing} class is responsible for orchestrating the generation
  * of sentences from a set of grammars. It allows users to select a grammar and
@@ -14,7 +21,9 @@ import java.util.stream.Collectors;
 public class GenerateProcessing {
 
   private String grammarFilePath;
+  private String randomAlgorithm;
   private List<Grammar> grammarList;
+  private final SymbolTable symbolTable = new SymbolTable(); // Terminals shared by every grammar
   private final int ZERO = 0;
   private final int ONE = 1;
   private final String BLANK = " ";
@@ -26,7 +35,19 @@ public class GenerateProcessing {
    * @param grammarFilePath the path to the directory containing grammar JSON files
    */
   public GenerateProcessing(String grammarFilePath) {
+    this(grammarFilePath, RandomAlgorithms.DEFAULT);
+  }
+
+  /**
+   * Constructs a {@code GenerateProcessing} instance with the specified grammar file path and
+   * random number generator algorithm.
+   *
+   * @param grammarFilePath the path to the directory containing grammar JSON files
+   * @param randomAlgorithm the name of the {@link RandomGenerator} algorithm, see {@link RandomAlgorithms}
+   */
+  public GenerateProcessing(String grammarFilePath, String randomAlgorithm) {
     this.grammarFilePath = grammarFilePath;
+    this.randomAlgorithm = randomAlgorithm;
     this.grammarList = new ArrayList<>();
   }
 
@@ -87,35 +108,85 @@ public class GenerateProcessing {
   /**
    * Parses all JSON files within the specified directory path into Grammar objects.
    * It expects JSON files to be structured in a way that is compatible with the Grammar class.
+   * Binary grammar files written by {@link BinaryGrammarFormat} are loaded alongside them.
+   * Files are parsed and compiled in parallel on a bounded pool; a file that fails is reported
+   * with its path and skipped, and the grammars are added in the sorted order of their paths.
    *
    * @param path The directory path where JSON files are located.
    */
   public void parseJsonFileToGrammar(Path path) {
-    try {
-      // Retrieve all JSON files from the directory
-      List<Path> jsonFilesPath = Files.walk(path)
+    List<Path> jsonFilesPath;
+    // Retrieve all JSON files from the directory
+    try (Stream<Path> files = Files.walk(path)) {
+      jsonFilesPath = files
           .filter(Files::isRegularFile)
-          .filter(filePath -> filePath.toString().endsWith(".json"))
+          .filter(GenerateProcessing::isGrammarFile)
+          .sorted()
           .collect(Collectors.toList());
+    } catch (IOException | UncheckedIOException e) {
+      // If the directory cannot be walked, print the custom exception message
+      CustomException.INVALID_INPUT.getMessage();
+      return;
+    }
 
-      // Check if any JSON files were found
-      if (jsonFilesPath.isEmpty()) {
-        CustomException.FILE_NOT_FOUND.getMessage();
-        return;
-      }
+    // Check if any JSON files were found
+    if (jsonFilesPath.isEmpty()) {
+      CustomException.FILE_NOT_FOUND.getMessage();
+      return;
+    }
 
-      System.out.println(grammarFilePath);
-      System.out.println("Loading grammars...");
-      // Parse each JSON file into a Grammar object and add it to the grammar list
+    System.out.println(grammarFilePath);
+    System.out.println("Loading grammars...");
+    int threads = Math.min(jsonFilesPath.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      // Parse each JSON file into a Grammar object in parallel
+      List<Future<Grammar>> loading = new ArrayList<>();
       for (Path filePath : jsonFilesPath) {
-        JsonFileParser fp = new JsonFileParser(filePath.toString());
-        Grammar grammar = fp.JsonFileParser();
-        grammarList.add(grammar);
+        loading.add(pool.submit(() -> loadGrammar(filePath, symbolTable)));
       }
-    } catch (Exception e) {
-      // If an error occurs during parsing, print the custom exception message
-      CustomException.INVALID_INPUT.getMessage();
+      // Add the grammars in path order, reporting the files that failed
+      for (int i = ZERO; i < loading.size(); i++) {
+        try {
+          grammarList.add(loading.get(i).get());
+        } catch (ExecutionException e) {
+          CustomException.GRAMMAR_LOAD_FAILED.getMessage();
+          System.out.println(jsonFilesPath.get(i) + ": " + e.getCause().getMessage());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
     }
+    System.out.println(symbolTable.report());
+  }
+
+  /**
+   * Tells whether a file name is that of a grammar file, either JSON or binary.
+   *
+   * @param filePath The path of the file.
+   * @return {@code true} if the file name ends with ".json" or the binary grammar extension.
+   */
+  static boolean isGrammarFile(Path filePath) {
+    String name = filePath.toString();
+    return name.endsWith(".json") || name.endsWith(BinaryGrammarFormat.EXTENSION);
+  }
+
+  /**
+   * Parses and compiles one grammar file, either JSON or binary.
+   *
+   * @param filePath The path of the grammar file.
+   * @param symbolTable The table to intern the grammar's symbols into.
+   * @return The compiled grammar.
+   * @throws IOException if the file cannot be read.
+   */
+  static Grammar loadGrammar(Path filePath, SymbolTable symbolTable) throws IOException {
+    Grammar grammar = filePath.toString().endsWith(BinaryGrammarFormat.EXTENSION)
+        ? BinaryGrammarFormat.read(filePath, symbolTable)
+        : new JsonFileParser(filePath.toString(), symbolTable).parse();
+    grammar.compile();
+    return grammar;
   }
 
   /**
@@ -128,7 +199,7 @@ public class GenerateProcessing {
   public void GererateSentence(String vertifyCommond, Scanner command) {
     // Convert the verified command to an integer to select the grammar
     int grammarNumber = Integer.parseInt(vertifyCommond);
-    Random random = new Random();
+    RandomGenerator random = RandomAlgorithms.create(randomAlgorithm);
 
     // Generate a sentence using the selected grammar
     String sentence = grammarList.get(grammarNumber - ONE).generate(grammarList.get(grammarNumber - ONE), random);
@@ -185,6 +256,7 @@ public class GenerateProcessing {
       return false;
     }
     return Objects.equals(grammarFilePath, that.grammarFilePath)
+        && Objects.equals(randomAlgorithm, that.randomAlgorithm)
         && Objects.equals(grammarList, that.grammarList);
   }
   /**
@@ -192,7 +264,23 @@ public class GenerateProcessing {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(grammarFilePath, grammarList);
+    return Objects.hash(grammarFilePath, randomAlgorithm, grammarList);
+  }
+
+  /**
+   * Get symbolTable
+   * @return the symbol table the grammars' symbols are interned into
+   */
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  /**
+   * Get randomAlgorithm
+   * @return the name of the random number generator algorithm
+   */
+  public String getRandomAlgorithm() {
+    return randomAlgorithm;
   }
   /**
    * Get grammarList
@@ -0,0 +1,435 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code GenerationMetrics} count what the generators do with one grammar: how often each rule
+ * is expanded and each of its alternatives chosen, how deep derivations go, how long sentences
+ * are and how many sentences are generated per second. Metrics are off by default and are
+ * switched on per grammar with {@link Grammar#enableMetrics()}; every generation path then
+ * records into them. When they are off, the flat and engine paths read one field per sentence;
+ * the recursive path of {@link NonterminalName} reads the grammar's metrics and, while they are
+ * null, its metrics flag on every expansion, next to the compiled view it reads there anyway.
+ *
+ * <p>Every count is a {@link LongAdder}, which spreads concurrent increments over striped
+ * cells, so threads generating from the same grammar do not contend on one counter. The depth
+ * of a sentence is the peak number of unfinished alternatives, the quantity the depth limits of
+ * {@link FlatGrammar} and {@link ExpansionEngine} bound; on the recursive path of
+ * {@link Grammar#generateInto(StringBuilder, Grammar, java.util.random.RandomGenerator)} it is
+ * the nesting depth of rule expansions, which is never smaller. The length of a sentence is
+ * counted in {@code char}s on every path; the byte output paths count the {@code char}s of the
+ * UTF-8 they write, so a grammar reports the same lengths however it is generated. Depths
+ * and lengths go into histograms whose bucket {@code b} holds the values from
+ * {@code 2^(b-1)} to {@code 2^b - 1}, bucket 0 holding 0.
+ *
+ * <p>A {@link Snapshot} reads the counters one by one, so counts taken while sentences are
+ * being generated may disagree by the sentences in flight.
+ */
+public final class GenerationMetrics {
+
+	/** The number of histogram buckets, enough for any {@code int}. */
+	public static final int BUCKETS = Integer.SIZE;
+
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private final String grammarName;
+	private final String[] ruleNames;
+	private final LongAdder[][] choices; // Per rule id, per alternative
+	private final LongAdder sentences = new LongAdder();
+	private final LongAdder[] depths = adders(BUCKETS);
+	private final LongAdder depthSum = new LongAdder();
+	private final LongAdder[] lengths = adders(BUCKETS);
+	private final LongAdder lengthSum = new LongAdder();
+	private final long startNanos = System.nanoTime();
+	private final ThreadLocal<int[]> nesting = ThreadLocal.withInitial(() -> new int[2]); // Current and peak depth
+
+	/**
+	 * Creates empty metrics for the rules of a grammar.
+	 *
+	 * @param grammar the grammar whose generation is measured
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	GenerationMetrics(Grammar grammar) {
+		CompiledGrammar compiled = grammar.compile();
+		this.grammarName = grammar.getGrammarName();
+		this.ruleNames = new String[compiled.getRuleCount()];
+		this.choices = new LongAdder[ruleNames.length][];
+		for (int id = 0; id < ruleNames.length; id++) {
+			Rule rule = compiled.getRule(id);
+			ruleNames[id] = rule.getRuleName();
+			choices[id] = adders(rule.sequence.size());
+		}
+	}
+
+	private static LongAdder[] adders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	/**
+	 * Returns the number of rules the metrics were created for.
+	 *
+	 * @return the rule count
+	 */
+	int getRuleCount() {
+		return ruleNames.length;
+	}
+
+	/**
+	 * Records that a rule was expanded with one of its alternatives.
+	 *
+	 * @param ruleId the id of the rule in the compiled grammar
+	 * @param alternative the index of the alternative in the rule
+	 */
+	void recordChoice(int ruleId, int alternative) {
+		choices[ruleId][alternative].increment();
+	}
+
+	/**
+	 * Records a finished sentence.
+	 *
+	 * @param depth the depth of its derivation
+	 * @param length its length
+	 */
+	void recordSentence(int depth, int length) {
+		sentences.increment();
+		depths[bucket(depth)].increment();
+		depthSum.add(depth);
+		lengths[bucket(length)].increment();
+		lengthSum.add(length);
+	}
+
+	/**
+	 * Starts measuring the nesting depth of a sentence on the recursive path.
+	 */
+	void beginNesting() {
+		int[] depth = nesting.get();
+		depth[0] = 1;
+		depth[1] = 1;
+	}
+
+	/**
+	 * Enters a nested rule expansion on the recursive path.
+	 *
+	 * @return the depth counters of this thread, to pass to {@link #exit(int[])}
+	 */
+	int[] enter() {
+		int[] depth = nesting.get();
+		if (++depth[0] > depth[1]) {
+			depth[1] = depth[0];
+		}
+		return depth;
+	}
+
+	/**
+	 * Leaves a nested rule expansion on the recursive path.
+	 *
+	 * @param depth the counters {@link #enter()} returned
+	 */
+	void exit(int[] depth) {
+		depth[0]--;
+	}
+
+	/**
+	 * Returns the peak nesting depth of the sentence begun last on this thread.
+	 *
+	 * @return the depth
+	 */
+	int peakNesting() {
+		return nesting.get()[1];
+	}
+
+	/**
+	 * Returns the histogram bucket of a value.
+	 *
+	 * @param value a non-negative value
+	 * @return the bucket, between 0 and {@link #BUCKETS} - 1
+	 */
+	static int bucket(int value) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * Reads the current counts.
+	 *
+	 * @return a snapshot of the counts
+	 */
+	public Snapshot snapshot() {
+		long[][] chosen = new long[choices.length][];
+		for (int id = 0; id < choices.length; id++) {
+			chosen[id] = new long[choices[id].length];
+			for (int i = 0; i < chosen[id].length; i++) {
+				chosen[id][i] = choices[id][i].sum();
+			}
+		}
+		return new Snapshot(grammarName, ruleNames, chosen, sentences.sum(), sums(depths), depthSum.sum(),
+				sums(lengths), lengthSum.sum(), System.nanoTime() - startNanos);
+	}
+
+	private static long[] sums(LongAdder[] adders) {
+		long[] sums = new long[adders.length];
+		for (int i = 0; i < adders.length; i++) {
+			sums[i] = adders[i].sum();
+		}
+		return sums;
+	}
+
+	/**
+	 * The counts of a {@link GenerationMetrics} at one point in time.
+	 */
+	public static final class Snapshot {
+
+		private final String grammarName;
+		private final String[] ruleNames;
+		private final long[][] choices;
+		private final long sentences;
+		private final long[] depths;
+		private final long depthSum;
+		private final long[] lengths;
+		private final long lengthSum;
+		private final long elapsedNanos;
+
+		private Snapshot(String grammarName, String[] ruleNames, long[][] choices, long sentences, long[] depths,
+				long depthSum, long[] lengths, long lengthSum, long elapsedNanos) {
+			this.grammarName = grammarName;
+			this.ruleNames = ruleNames;
+			this.choices = choices;
+			this.sentences = sentences;
+			this.depths = depths;
+			this.depthSum = depthSum;
+			this.lengths = lengths;
+			this.lengthSum = lengthSum;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Returns the title of the measured grammar.
+		 *
+		 * @return the grammar title, or {@code null} if it has none
+		 */
+		public String getGrammarName() {
+			return grammarName;
+		}
+
+		/**
+		 * Returns the names of the rules, in rule id order.
+		 *
+		 * @return the rule names
+		 */
+		public List<String> getRuleNames() {
+			return List.of(ruleNames);
+		}
+
+		/**
+		 * Returns the number of sentences generated.
+		 *
+		 * @return the sentence count
+		 */
+		public long getSentences() {
+			return sentences;
+		}
+
+		/**
+		 * Returns the number of sentences generated per second since the metrics were enabled.
+		 *
+		 * @return the sentence rate
+		 */
+		public double getSentencesPerSecond() {
+			return sentences * NANOS_PER_SECOND / Math.max(1, elapsedNanos);
+		}
+
+		/**
+		 * Returns the number of times a rule was expanded.
+		 *
+		 * @param ruleName the name of the rule
+		 * @return the expansion count, or 0 if there is no such rule
+		 */
+		public long getExpansions(String ruleName) {
+			return Arrays.stream(getChoices(ruleName)).sum();
+		}
+
+		/**
+		 * Returns the number of times each alternative of a rule was chosen.
+		 *
+		 * @param ruleName the name of the rule
+		 * @return the count of each alternative, empty if there is no such rule
+		 */
+		public long[] getChoices(String ruleName) {
+			for (int id = 0; id < ruleNames.length; id++) {
+				if (ruleNames[id].equals(ruleName)) {
+					return choices[id].clone();
+				}
+			}
+			return new long[0];
+		}
+
+		/**
+		 * Returns the depth histogram, one count per bucket.
+		 *
+		 * @return the counts of the {@link #BUCKETS} buckets
+		 */
+		public long[] getDepthHistogram() {
+			return depths.clone();
+		}
+
+		/**
+		 * Returns the sum of the depths of all sentences.
+		 *
+		 * @return the depth sum
+		 */
+		public long getDepthSum() {
+			return depthSum;
+		}
+
+		/**
+		 * Returns the length histogram, one count per bucket.
+		 *
+		 * @return the counts of the {@link #BUCKETS} buckets
+		 */
+		public long[] getLengthHistogram() {
+			return lengths.clone();
+		}
+
+		/**
+		 * Returns the sum of the lengths of all sentences.
+		 *
+		 * @return the length sum
+		 */
+		public long getLengthSum() {
+			return lengthSum;
+		}
+	}
+
+	/**
+	 * Writes snapshots in the Prometheus text exposition format, with one family per metric.
+	 * Each snapshot is labelled with its key as {@code grammar}, which keeps the series of
+	 * grammars with the same title apart, and with the grammar title as {@code title}. A rule
+	 * that repeats the name of an earlier rule is never expanded and has no series.
+	 * <pre>
+	 *   grammar_sentences_total              counter
+	 *   grammar_sentences_per_second         gauge
+	 *   grammar_rule_expansions_total        counter, labelled by rule
+	 *   grammar_alternative_choices_total    counter, labelled by rule and alternative index
+	 *   grammar_derivation_depth             histogram
+	 *   grammar_sentence_length              histogram
+	 * </pre>
+	 *
+	 * @param snapshots the snapshots to write, by a key unique to their grammar such as its
+	 *     number in {@code /grammars}, in the order to write them
+	 * @return the metrics text
+	 */
+	public static String toText(Map<Integer, Snapshot> snapshots) {
+		StringBuilder out = new StringBuilder();
+		family(out, "grammar_sentences_total", "counter", "Sentences generated.");
+		for (Map.Entry<Integer, Snapshot> e : snapshots.entrySet()) {
+			sample(out, "grammar_sentences_total", grammarLabel(e), Long.toString(e.getValue().sentences));
+		}
+		family(out, "grammar_sentences_per_second", "gauge", "Sentences generated per second since metrics were enabled.");
+		for (Map.Entry<Integer, Snapshot> e : snapshots.entrySet()) {
+			sample(out, "grammar_sentences_per_second", grammarLabel(e),
+					String.format(Locale.ROOT, "%.3f", e.getValue().getSentencesPerSecond()));
+		}
+		family(out, "grammar_rule_expansions_total", "counter", "Expansions of each rule.");
+		for (Map.Entry<Integer, Snapshot> e : snapshots.entrySet()) {
+			Snapshot s = e.getValue();
+			for (int id : reachableRuleIds(s)) {
+				sample(out, "grammar_rule_expansions_total", ruleLabel(e, id),
+						Long.toString(Arrays.stream(s.choices[id]).sum()));
+			}
+		}
+		family(out, "grammar_alternative_choices_total", "counter", "Choices of each alternative of each rule.");
+		for (Map.Entry<Integer, Snapshot> e : snapshots.entrySet()) {
+			Snapshot s = e.getValue();
+			for (int id : reachableRuleIds(s)) {
+				for (int i = 0; i < s.choices[id].length; i++) {
+					sample(out, "grammar_alternative_choices_total", ruleLabel(e, id) + ",alternative=\"" + i + "\"",
+							Long.toString(s.choices[id][i]));
+				}
+			}
+		}
+		histogram(out, "grammar_derivation_depth", "Peak number of unfinished alternatives per sentence.", snapshots,
+				true);
+		histogram(out, "grammar_sentence_length", "Length of each sentence in chars.", snapshots, false);
+		return out.toString();
+	}
+
+	private static void histogram(StringBuilder out, String name, String help, Map<Integer, Snapshot> snapshots,
+			boolean depth) {
+		family(out, name, "histogram", help);
+		for (Map.Entry<Integer, Snapshot> e : snapshots.entrySet()) {
+			Snapshot s = e.getValue();
+			long[] buckets = depth ? s.depths : s.lengths;
+			int last = buckets.length - 1;
+			while (last > 0 && buckets[last] == 0) {
+				last--;
+			}
+			long cumulative = 0;
+			for (int b = 0; b <= last; b++) {
+				cumulative += buckets[b];
+				long upper = (1L << b) - 1;
+				sample(out, name + "_bucket", grammarLabel(e) + ",le=\"" + upper + "\"", Long.toString(cumulative));
+			}
+			sample(out, name + "_bucket", grammarLabel(e) + ",le=\"+Inf\"", Long.toString(s.sentences));
+			sample(out, name + "_sum", grammarLabel(e), Long.toString(depth ? s.depthSum : s.lengthSum));
+			sample(out, name + "_count", grammarLabel(e), Long.toString(s.sentences));
+		}
+	}
+
+	private static void family(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder out, String name, String labels, String value) {
+		out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static String grammarLabel(Map.Entry<Integer, Snapshot> e) {
+		String title = e.getValue().grammarName;
+		return "grammar=\"" + e.getKey() + "\",title=\"" + escape(title == null ? "" : title) + "\"";
+	}
+
+	private static String ruleLabel(Map.Entry<Integer, Snapshot> e, int id) {
+		return grammarLabel(e) + ",rule=\"" + escape(e.getValue().ruleNames[id]) + "\"";
+	}
+
+	/**
+	 * Returns the ids of the rules nonterminals can refer to: the first rule of each name.
+	 */
+	private static List<Integer> reachableRuleIds(Snapshot s) {
+		Set<String> seen = new HashSet<>();
+		List<Integer> ids = new ArrayList<>();
+		for (int id = 0; id < s.ruleNames.length; id++) {
+			if (seen.add(s.ruleNames[id])) {
+				ids.add(id);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Escapes a label value: backslashes, double quotes and line feeds.
+	 */
+	static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				escaped.append('\\').append(c);
+			} else if (c == '\n') {
+				escaped.append("\\n");
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
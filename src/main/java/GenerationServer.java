@@ -0,0 +1,462 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A {@code GenerationServer} serves sentences over HTTP from grammars that are loaded at
+ * start-up and, when it is created with {@link #load(Path, int)}, reloaded when their files
+ * change. It answers three requests:
+ * <pre>
+ *   GET /grammars                                the grammars, as a JSON array
+ *   GET /generate?grammar=G&amp;count=N&amp;seed=S    N sentences of grammar G, one per line
+ *   GET /metrics                                 the generation metrics, as Prometheus text
+ * </pre>
+ * The grammar is selected by its 1-based number in {@code /grammars}, as in the interactive
+ * menu, or by its title, ignoring case. {@code count} defaults to 1 and may be at most
+ * {@link #MAX_COUNT}. Sentence {@code i} of a response is the one
+ * {@link BatchGenerator#sentenceAt(Grammar, long, long)} returns for the seed and {@code i}, so
+ * a seed reproduces a response; without a seed a new one is drawn, and it is always returned
+ * in the {@value #SEED_HEADER} header.
+ *
+ * <p>Sentences are written straight from the flat form of the grammar into a buffered,
+ * chunked response body, so no string is built per sentence and a large response is sent while
+ * it is generated. A sentence that exceeds the generation limits aborts the response: the
+ * connection is closed before the chunked body is terminated, so the client gets an incomplete
+ * body rather than a short one that looks complete. After {@link #setMetricsEnabled(boolean)} every served grammar records
+ * {@link GenerationMetrics}, which {@code /metrics} reports with
+ * {@link GenerationMetrics#toText(Map)}, labelling each grammar by its number in
+ * {@code /grammars}; until then {@code /metrics} has no samples and generation
+ * pays nothing for it. A grammar's counts start over when it is reloaded or a rule is added to it.
+ * Each request runs on its own virtual thread when the runtime provides them
+ * (Java 21 and later) and on a fixed pool of platform threads otherwise.
+ *
+ * <p>Small responses need Nagle's algorithm off, see {@link #NO_DELAY_PROPERTY}. The
+ * {@code --serve} entry point turns it off; other programs that start a server should run with
+ * {@code -Dsun.net.httpserver.nodelay=true}.
+ *
+ * <p>Load test: {@code gradle loadTestServer} runs {@code ServerLoadTest} from the
+ * {@code src/loadTest} source set, which starts a server on a free port and sends
+ * {@code /generate?grammar=1&count=1} requests from keep-alive client threads, then prints the
+ * requests per second; pass {@code -PloadTestArgs="URL threads seconds"} to load a server that
+ * is already running, e.g. one started with {@code --serve grammar --port 8080}.
+ */
+public class GenerationServer {
+
+	/** The largest number of sentences one request may ask for. */
+	public static final int MAX_COUNT = 1_000_000;
+
+	/** The response header that carries the seed of a {@code /generate} response. */
+	public static final String SEED_HEADER = "X-Seed";
+
+	private static final String GET = "GET";
+	private static final String TEXT = "text/plain; charset=utf-8";
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final String METRICS = "text/plain; version=0.0.4; charset=utf-8";
+	private static final int OK = 200;
+	private static final int BAD_REQUEST = 400;
+	private static final int NOT_FOUND = 404;
+	private static final int BAD_METHOD = 405;
+	private static final int CHUNKED = 0;
+	private static final int BACKLOG = 1024;
+	private static final int BUFFER_SIZE = 1 << 14;
+	private static final int THREADS_PER_CORE = 4;
+	private static final int NEWLINE = '\n';
+
+	/**
+	 * The JDK server property that turns Nagle's algorithm off on accepted connections when it
+	 * is {@code true}. Without it a small response waits for the client's delayed ACK of the
+	 * headers, about 40 ms, which caps a keep-alive connection at a few dozen requests per
+	 * second. The JDK reads it once, when the first server of the process is created.
+	 */
+	public static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+	/**
+	 * A set of grammars together with its {@code /grammars} response.
+	 */
+	private static final class Listing {
+
+		private final List<Grammar> grammars;
+		private final byte[] json;
+
+		private Listing(List<Grammar> grammars) {
+			this.grammars = grammars;
+			this.json = describe(grammars).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private final Supplier<List<Grammar>> grammars;
+	private final GrammarReloader reloader;
+	private volatile Listing listing;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private volatile boolean metricsEnabled;
+
+	/**
+	 * Creates a server for a fixed set of grammars, bound to the address but not yet started.
+	 * The grammars are flattened here and must not be changed afterwards.
+	 *
+	 * @param grammars the grammars to serve
+	 * @param address the address to listen on; port 0 picks a free port
+	 * @throws IOException if the address cannot be bound
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public GenerationServer(List<Grammar> grammars, InetSocketAddress address) throws IOException {
+		this(List.copyOf(grammars), null, address);
+	}
+
+	/**
+	 * Creates a server for the grammars of a reloader, bound to the address but not yet
+	 * started. Each request reads the reloader's snapshot once and uses it to the end, so a
+	 * reload never changes a response that is being sent. The reloader is closed when the
+	 * server stops.
+	 *
+	 * @param reloader the reloader whose grammars are served
+	 * @param address the address to listen on; port 0 picks a free port
+	 * @throws IOException if the address cannot be bound
+	 */
+	public GenerationServer(GrammarReloader reloader, InetSocketAddress address) throws IOException {
+		this(null, reloader, address);
+	}
+
+	private GenerationServer(List<Grammar> fixed, GrammarReloader reloader, InetSocketAddress address)
+			throws IOException {
+		if (fixed != null) {
+			for (Grammar grammar : fixed) {
+				grammar.flatten(); // Build the flat form once, before requests share the grammar
+			}
+		}
+		this.grammars = reloader == null ? () -> fixed : reloader::getGrammars;
+		this.reloader = reloader;
+		this.listing = new Listing(grammars.get());
+		this.executor = newExecutor();
+		this.server = HttpServer.create(address, BACKLOG);
+		server.createContext("/grammars", this::grammars);
+		server.createContext("/generate", this::generate);
+		server.createContext("/metrics", this::metrics);
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Loads every grammar of a directory and creates a server for them that picks up changes
+	 * to the grammar files with a {@link GrammarReloader}.
+	 *
+	 * @param directory the directory of JSON and binary grammar files
+	 * @param port the port to listen on; 0 picks a free port
+	 * @return the server, not yet started
+	 * @throws IOException if the directory cannot be read or watched, or the port cannot be bound
+	 * @throws IllegalArgumentException if no grammar could be loaded
+	 */
+	public static GenerationServer load(Path directory, int port) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			throw new IllegalArgumentException(CustomException.FILE_NOT_FOUND.getDetailMessage());
+		}
+		GrammarReloader reloader = new GrammarReloader(directory);
+		if (reloader.getGrammars().isEmpty()) {
+			throw new IllegalArgumentException(CustomException.FILE_NOT_FOUND.getDetailMessage());
+		}
+		GenerationServer server = new GenerationServer(reloader, new InetSocketAddress(port));
+		reloader.start();
+		return server;
+	}
+
+	/**
+	 * Returns a virtual-thread-per-task executor when the runtime has one, and a fixed pool of
+	 * platform threads otherwise. The method is looked up by name so the class still compiles
+	 * and runs on Java 17.
+	 */
+	static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * THREADS_PER_CORE);
+		}
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waits up to the delay for the current ones to finish and
+	 * shuts the request threads down, then stops watching the grammar files.
+	 *
+	 * @param delaySeconds the longest time to wait for the current requests
+	 * @throws IOException if the watch service of the grammar files cannot be closed
+	 */
+	public void stop(int delaySeconds) throws IOException {
+		server.stop(delaySeconds);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor.shutdownNow();
+		if (reloader != null) {
+			reloader.close();
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Turns the generation metrics of the served grammars on or off. Grammars that are loaded
+	 * later record metrics too while they are on.
+	 *
+	 * @param enabled whether the grammars record metrics
+	 */
+	public void setMetricsEnabled(boolean enabled) {
+		metricsEnabled = enabled;
+		for (Grammar grammar : grammars.get()) {
+			measure(grammar);
+		}
+	}
+
+	/**
+	 * Tells whether the served grammars record generation metrics.
+	 *
+	 * @return whether metrics are on
+	 */
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+
+	/**
+	 * Returns the grammars the server currently serves, in the order of {@code /grammars}.
+	 *
+	 * @return the grammars, unmodifiable
+	 */
+	public List<Grammar> getGrammars() {
+		return grammars.get();
+	}
+
+	/**
+	 * Finds a grammar by its 1-based number or, failing that, by its title, ignoring case.
+	 *
+	 * @param grammars the grammars to search
+	 * @param key the number or title
+	 * @return the grammar, or {@code null} if there is none
+	 */
+	static Grammar findGrammar(List<Grammar> grammars, String key) {
+		if (key.chars().allMatch(Character::isDigit) && !key.isEmpty() && key.length() < 10) {
+			int number = Integer.parseInt(key);
+			return number >= 1 && number <= grammars.size() ? grammars.get(number - 1) : null;
+		}
+		for (Grammar grammar : grammars) {
+			if (key.equalsIgnoreCase(grammar.getGrammarName())) {
+				return grammar;
+			}
+		}
+		return null;
+	}
+
+	private void grammars(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (allowGet(exchange)) {
+				List<Grammar> current = grammars.get();
+				Listing cached = listing;
+				if (cached.grammars != current) {
+					cached = new Listing(current); // The grammars were reloaded
+					listing = cached;
+				}
+				exchange.getResponseHeaders().set("Content-Type", JSON);
+				exchange.sendResponseHeaders(OK, cached.json.length);
+				exchange.getResponseBody().write(cached.json);
+			}
+		}
+	}
+
+	/**
+	 * Answers {@code /generate}. Once the 200 status is sent a failing sentence can only abort
+	 * the response: the exchange is left open, since closing it would terminate the chunked
+	 * body normally, and the exception is rethrown, on which the JDK server drops the connection.
+	 */
+	private void generate(HttpExchange exchange) throws IOException {
+		boolean aborted = false;
+		try {
+			if (!allowGet(exchange)) {
+				return;
+			}
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			String key = query.get("grammar");
+			Grammar grammar = key == null ? null : findGrammar(grammars.get(), key);
+			if (grammar == null) {
+				error(exchange, NOT_FOUND, "Unknown grammar: " + key);
+				return;
+			}
+			long count;
+			long seed;
+			try {
+				count = Long.parseLong(query.getOrDefault("count", "1"));
+				seed = query.containsKey("seed") ? Long.parseLong(query.get("seed")) : new SplittableRandom().nextLong();
+			} catch (NumberFormatException e) {
+				error(exchange, BAD_REQUEST, "Invalid count or seed");
+				return;
+			}
+			if (count < 0 || count > MAX_COUNT) {
+				error(exchange, BAD_REQUEST, "count must be between 0 and " + MAX_COUNT);
+				return;
+			}
+			Headers headers = exchange.getResponseHeaders();
+			headers.set("Content-Type", TEXT);
+			headers.set(SEED_HEADER, Long.toString(seed));
+			exchange.sendResponseHeaders(OK, CHUNKED);
+			measure(grammar);
+			FlatGrammar flat = grammar.flatten();
+			IndexedRandom random = new IndexedRandom(seed);
+			OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), BUFFER_SIZE);
+			try {
+				for (long i = 0; i < count; i++) {
+					flat.writeTo(out, grammar, random.jump(i));
+					out.write(NEWLINE);
+				}
+			} catch (RuntimeException e) {
+				aborted = true;
+				CustomException.GENERATION_FAILED.getMessage(System.err);
+				System.err.println(grammar.getGrammarName() + ": " + e.getMessage());
+				throw e;
+			}
+			out.flush();
+		} finally {
+			if (!aborted) {
+				exchange.close();
+			}
+		}
+	}
+
+	private void metrics(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (allowGet(exchange)) {
+				Map<Integer, GenerationMetrics.Snapshot> snapshots = new LinkedHashMap<>();
+				List<Grammar> served = grammars.get();
+				for (int i = 0; i < served.size(); i++) {
+					GenerationMetrics metrics = measure(served.get(i));
+					if (metrics != null) {
+						snapshots.put(i + 1, metrics.snapshot());
+					}
+				}
+				byte[] body = GenerationMetrics.toText(snapshots).getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", METRICS);
+				exchange.sendResponseHeaders(OK, body.length);
+				exchange.getResponseBody().write(body);
+			}
+		}
+	}
+
+	/**
+	 * Brings a grammar's metrics in line with {@link #metricsEnabled}, which a reloaded grammar
+	 * does not know about.
+	 *
+	 * @return the grammar's metrics, or {@code null} if they are off
+	 */
+	private GenerationMetrics measure(Grammar grammar) {
+		GenerationMetrics metrics = grammar.getMetrics();
+		if (metricsEnabled) {
+			return metrics != null ? metrics : grammar.enableMetrics();
+		}
+		if (metrics != null) {
+			grammar.disableMetrics();
+		}
+		return null;
+	}
+
+	/**
+	 * Answers anything but {@code GET} with 405.
+	 */
+	private static boolean allowGet(HttpExchange exchange) throws IOException {
+		if (GET.equals(exchange.getRequestMethod())) {
+			return true;
+		}
+		exchange.getResponseHeaders().set("Allow", GET);
+		error(exchange, BAD_METHOD, "Only GET is supported");
+		return false;
+	}
+
+	private static void error(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", TEXT);
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * Splits a raw query string into its decoded parameters; the first of repeated parameters wins.
+	 */
+	static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> parameters = new HashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return parameters;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Describes the grammars as a JSON array of their numbers, titles, descriptions and rule counts.
+	 */
+	private static String describe(List<Grammar> grammars) {
+		StringWriter json = new StringWriter();
+		json.write('[');
+		try {
+			for (int i = 0; i < grammars.size(); i++) {
+				Grammar grammar = grammars.get(i);
+				json.write(i == 0 ? "{" : ",{");
+				json.write(String.format(Locale.ROOT, "\"id\":%d,\"title\":", i + 1));
+				writeJsonString(json, grammar.getGrammarName());
+				json.write(",\"description\":");
+				writeJsonString(json, grammar.getGrammarDesc());
+				json.write(",\"rules\":" + grammar.compile().getRuleCount() + "}");
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // A StringWriter does not throw
+		}
+		json.write(']');
+		return json.toString();
+	}
+
+	private static void writeJsonString(StringWriter json, String s) throws IOException {
+		if (s == null) {
+			json.write("null");
+			return;
+		}
+		json.write('"');
+		BulkCommand.writeJsonEscaped(json, s);
+		json.write('"');
+	}
+}
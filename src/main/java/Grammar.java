@@ -1,6 +1,9 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
-import java.util.Random;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 /**
  * Represents a Grammar which is a collection of production rules.
@@ -9,9 +12,10 @@ import java.util.Random;
 public class Grammar implements Generable {
 
 	/**
-	 *List of production rules that define the grammar
+	 *List of production rules that define the grammar. It only changes through
+	 * {@link #addToRuleArray(Rule)}, which drops the views built from it.
 	 */
-	public ArrayList<Rule> rules;
+	private final ArrayList<Rule> rules;
 
 	/**
 	 *A human-readable name for the grammar
@@ -29,6 +33,21 @@ public class Grammar implements Generable {
 	private final String NONESTRING = "";
 	private final String START = "start"; // The starting rule name for generation
 	private final int ONE = 1;
+
+	// Builds the rules of a grammar loaded in flat form the first time they are needed, otherwise null
+	private volatile Supplier<List<Rule>> loader;
+
+	// The compiled view of the rules, rebuilt when the rules change
+	private volatile CompiledGrammar compiled;
+	// The flattened form of the rules, rebuilt when the rules change
+	private volatile FlatGrammar flat;
+	// The count tables of uniform sampling, rebuilt when the rules change or longer samples are needed
+	private volatile UniformSampler uniform;
+
+	// Whether generation metrics are on; they survive added rules
+	private volatile boolean measuring;
+	// The generation metrics, or null while they are disabled or until rules were added
+	private volatile GenerationMetrics metrics;
 	/**
 	 * Retrieves the name of the grammar.
 	 *
@@ -47,6 +66,15 @@ public class Grammar implements Generable {
 		return grammarDesc;
 	}
 
+	/**
+	 * Retrieves the production rules of the grammar, in the order they were added.
+	 *
+	 * @return A read-only view of the rules.
+	 */
+	public List<Rule> getRules() {
+		return Collections.unmodifiableList(rules());
+	}
+
 	/**
 	 * Constructs a new, empty Grammar.
 	 */
@@ -55,12 +83,149 @@ public class Grammar implements Generable {
 	}
 
 	/**
-	 * Adds a new production rule to the grammar.
+	 * Adds a new production rule to the grammar. If metrics are on, they start over: the next
+	 * generation records into new metrics that cover the new rule, and those counted so far are
+	 * dropped.
 	 *
 	 * @param rule The production rule to add.
 	 */
 	public void addToRuleArray(Rule rule) {
-		rules.add(rule);
+		rules().add(rule);
+		compiled = null;
+		flat = null;
+		uniform = null;
+		metrics = null;
+	}
+
+	/**
+	 * Gives this empty grammar a flat form to generate from and a loader for its rules, which
+	 * runs the first time the rules themselves are needed. A grammar loaded this way generates
+	 * through {@link #flatten()} without building any rule, alternative or symbol object.
+	 *
+	 * @param flat The flat form of the rules the loader builds, or {@code null} to flatten them.
+	 * @param loader Builds the rules, in order.
+	 */
+	void defer(FlatGrammar flat, Supplier<List<Rule>> loader) {
+		this.flat = flat;
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns the rule list, building it first if the grammar was loaded in flat form.
+	 */
+	private List<Rule> rules() {
+		if (loader != null) {
+			load();
+		}
+		return rules;
+	}
+
+	private synchronized void load() {
+		Supplier<List<Rule>> current = loader;
+		if (current != null) {
+			rules.addAll(current.get());
+			loader = null;
+		}
+	}
+
+	/**
+	 * Compiles the grammar so that every nonterminal is resolved to a rule id.
+	 * The result is cached and reused until a rule is added.
+	 *
+	 * @return The compiled view of this grammar.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
+	 */
+	public CompiledGrammar compile() {
+		CompiledGrammar current = compiled;
+		if (current == null) {
+			current = CompiledGrammar.compile(this);
+			compiled = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Flattens the grammar into primitive arrays for faster generation. The result is cached
+	 * and reused until a rule is added; generate from it with this grammar as the argument.
+	 *
+	 * @return The flat form of this grammar.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
+	 */
+	public FlatGrammar flatten() {
+		FlatGrammar current = flat;
+		if (current == null) {
+			current = FlatGrammar.flatten(this);
+			flat = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Returns a sampler that draws sentences uniformly among the derivations of a given length.
+	 * The count tables are cached and shared until a rule is added or longer sentences are
+	 * asked for.
+	 *
+	 * @param maxTokens The largest number of terminals the samples will have.
+	 * @return A sampler covering at least {@code maxTokens} terminals.
+	 * @throws IllegalArgumentException if {@code maxTokens} is negative, a rule can expand to
+	 *     itself without producing a terminal, or a count overflows.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
+	 */
+	public UniformSampler uniformSampler(int maxTokens) {
+		UniformSampler current = uniform;
+		if (current == null || current.getMaxTokens() < maxTokens) {
+			current = UniformSampler.build(this, maxTokens);
+			uniform = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Turns on the generation metrics of this grammar, which every generation path then
+	 * records into. They stay on until they are disabled; adding a rule replaces them with
+	 * empty metrics for the new rules, see {@link #addToRuleArray(Rule)}.
+	 *
+	 * @return The metrics, new if they were off or a rule was added since.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
+	 */
+	public synchronized GenerationMetrics enableMetrics() {
+		measuring = true;
+		GenerationMetrics current = metrics;
+		if (current == null) {
+			current = new GenerationMetrics(this);
+			metrics = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Turns off the generation metrics of this grammar.
+	 */
+	public synchronized void disableMetrics() {
+		measuring = false;
+		metrics = null;
+	}
+
+	/**
+	 * Returns the generation metrics of this grammar, creating new ones if they are on and a
+	 * rule was added since they were last returned.
+	 *
+	 * @return The metrics, or {@code null} if they are off.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
+	 */
+	public GenerationMetrics getMetrics() {
+		GenerationMetrics current = metrics;
+		if (current == null && measuring) {
+			current = remeasure();
+		}
+		return current;
+	}
+
+	/**
+	 * Creates the metrics again after a rule was added, unless they were disabled meanwhile.
+	 */
+	private synchronized GenerationMetrics remeasure() {
+		return measuring ? enableMetrics() : null;
 	}
 
 	/**
@@ -72,6 +237,7 @@ public class Grammar implements Generable {
 	 * @return The index in the rules list where the named rule is found.
 	 */
 	public int findRule(int i, String ruleName) {
+		List<Rule> rules = rules();
 		while (i < rules.size() && !rules.get(i).getRuleName().equals(ruleName)) {
 			i++;
 		}
@@ -85,26 +251,152 @@ public class Grammar implements Generable {
 	 * @return The Rule object at the given index.
 	 */
 	public Rule getRule(int rulePosition) {
-		return rules.get(rulePosition);
+		return rules().get(rulePosition);
 	}
 
 	/**
 	 * Generates a string using the grammar rules starting from the rule named "start".
 	 *
 	 * @param grammar The Grammar object (itself) to be used for generation.
-	 * @param random A Random object to introduce randomness into the generation process.
+	 * @param random A RandomGenerator to introduce randomness into the generation process.
 	 * @return The generated string following the grammar rules.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
+	 */
+	@Override
+	public String generate(Grammar grammar, RandomGenerator random) {
+		Rule start = compile().getStartRule();
+		if (start == null) {
+			return NONESTRING;
+		}
+		if (getMetrics() != null) {
+			StringBuilder out = new StringBuilder();
+			generateInto(out, grammar, random); // The measured path appends the same text
+			return out.toString();
+		}
+		return start.generate(grammar, random).trim(); // Trim in case extra whitespace was added during generation
+	}
+
+	/**
+	 * Generates a sentence from the rule named "start" directly into the buffer.
+	 * The text appended is the same as {@link #generate(Grammar, RandomGenerator)} returns: the
+	 * whitespace before the first visible character is skipped while the first terminals are
+	 * appended, and trailing whitespace is cut off at the end, so no intermediate or trimmed
+	 * copy of the sentence is created.
+	 *
+	 * @param out The buffer the sentence is appended to.
+	 * @param grammar The Grammar object (itself) to be used for generation.
+	 * @param random A RandomGenerator to introduce randomness into the generation process.
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule.
 	 */
 	@Override
-	public String generate(Grammar grammar, Random random) {
-		String s = NONESTRING;
-		for (Rule rule : rules) {
-			if (rule.getRuleName().equals(START)) {
-				s += rule.generate(grammar, random);
-				break; // Stop after finding and using the start rule
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		Rule start = compile().getStartRule();
+		if (start == null) {
+			return;
+		}
+		int mark = out.length();
+		GenerationMetrics measured = getMetrics();
+		if (measured != null) {
+			measured.beginNesting();
+		}
+		int index = start.chooseIndex(random);
+		if (measured != null) {
+			measured.recordChoice(compile().getStartRuleId(), index);
+		}
+		appendLeading(out, mark, start.sequence.get(index), grammar, random);
+		trimEnd(out, mark);
+		if (measured != null) {
+			measured.recordSentence(measured.peakNesting(), out.length() - mark);
+		}
+	}
+
+	/**
+	 * Appends an alternative like {@link CollectionOfSymbol#generateInto}, except that as long
+	 * as nothing but whitespace follows {@code mark}, terminals are appended without their
+	 * leading whitespace and nonterminals are expanded the same way. Once a visible character
+	 * is written the remaining symbols are appended as they are.
+	 */
+	private void appendLeading(StringBuilder out, int mark, CollectionOfSymbol alternative, Grammar grammar,
+			RandomGenerator random) {
+		List<Symbol> symbols = alternative.getSequence();
+		for (int i = 0, n = symbols.size(); i < n; i++) {
+			Symbol symbol = symbols.get(i);
+			if (out.length() > mark) {
+				symbol.generateInto(out, grammar, random);
+			} else if (symbol instanceof Terminal terminal) {
+				terminal.appendStripped(out);
+			} else if (symbol instanceof NonterminalName nonterminal) {
+				CompiledGrammar compiled = compile();
+				int id = compiled.resolveId(nonterminal);
+				Rule rule = compiled.getRule(id);
+				int index = rule.chooseIndex(random);
+				GenerationMetrics measured = getMetrics();
+				if (measured == null) {
+					appendLeading(out, mark, rule.sequence.get(index), grammar, random);
+					continue;
+				}
+				measured.recordChoice(id, index);
+				int[] depth = measured.enter();
+				try {
+					appendLeading(out, mark, rule.sequence.get(index), grammar, random);
+				} finally {
+					measured.exit(depth);
+				}
+			} else {
+				symbol.generateInto(out, grammar, random);
+				stripFrom(out, mark); // Only this symbol's text follows the mark, so the shift is short
 			}
 		}
-		return s.trim(); // Trim in case extra whitespace was added during generation
+	}
+
+	/**
+	 * Appends text without its leading whitespace, with the same definition of whitespace as
+	 * {@link String#trim()}. Generators use it for the first terminals of a sentence, so the
+	 * separator written before the first word is never appended and never has to be deleted.
+	 *
+	 * @param out The buffer to append to.
+	 * @param text The text to append.
+	 */
+	static void appendStripped(StringBuilder out, CharSequence text) {
+		int begin = 0;
+		int length = text.length();
+		while (begin < length && text.charAt(begin) <= ' ') {
+			begin++;
+		}
+		out.append(text, begin, length);
+	}
+
+	/**
+	 * Removes the whitespace that directly follows {@code mark}.
+	 *
+	 * @param out The buffer to strip.
+	 * @param mark The index where the generated text starts.
+	 */
+	static void stripFrom(StringBuilder out, int mark) {
+		int begin = mark;
+		while (begin < out.length() && out.charAt(begin) <= ' ') {
+			begin++;
+		}
+		if (begin > mark) {
+			out.delete(mark, begin);
+		}
+	}
+
+	/**
+	 * Removes trailing whitespace from the part of the buffer that starts at {@code mark},
+	 * with the same definition of whitespace as {@link String#trim()}. Together with
+	 * {@link #appendStripped(StringBuilder, CharSequence)} for the first terminals it trims a
+	 * sentence without moving it.
+	 *
+	 * @param out The buffer to trim.
+	 * @param mark The index where the generated text starts.
+	 */
+	static void trimEnd(StringBuilder out, int mark) {
+		int end = out.length();
+		while (end > mark && out.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		out.setLength(end);
 	}
 
 	/**
@@ -122,7 +414,7 @@ public class Grammar implements Generable {
 		if (!(o instanceof Grammar grammar)) {
 			return false;
 		}
-		return Objects.equals(rules, grammar.rules) &&
+		return Objects.equals(rules(), grammar.rules()) &&
 				Objects.equals(grammarName, grammar.grammarName) &&
 				Objects.equals(grammarDesc, grammar.grammarDesc);
 	}
@@ -135,7 +427,7 @@ public class Grammar implements Generable {
 	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(rules, grammarName, grammarDesc);
+		return Objects.hash(rules(), grammarName, grammarDesc);
 	}
 
 	/**
@@ -144,7 +436,7 @@ public class Grammar implements Generable {
 	@Override
 	public String toString() {
 		return "Grammar{" +
-				"rules=" + rules +
+				"rules=" + rules() +
 				", grammarName='" + grammarName + '\'' +
 				", grammarDesc='" + grammarDesc + '\'' +
 				", NONESTRING='" + NONESTRING + '\'' +
@@ -0,0 +1,580 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@code GrammarAnalyzer} computes exact properties of the rules of a grammar from the
+ * compiled rule graph, without sampling:
+ * <ul>
+ *   <li>the number of derivations of a rule up to a derivation depth, and whether it is finite;</li>
+ *   <li>the minimum, maximum and expected length of the text a rule expands to;</li>
+ *   <li>whether a rule is recursive, that is, can expand to itself.</li>
+ * </ul>
+ *
+ * <p>The depth of a derivation is the one {@link LanguageEnumerator} orders sentences by: an
+ * alternative with only terminals has depth 1, and an alternative has depth one more than its
+ * deepest nonterminal. Lengths are counted in characters of the text the rule appends,
+ * separators included, before the sentence is trimmed, and expected lengths follow the
+ * probabilities the generator picks alternatives with, weights included.
+ *
+ * <p>Derivation counts are memoized in a table with one row per depth bound, each row computed
+ * from the one before it in one pass over the grammar, and extended when deeper counts are
+ * asked for. Minimum and maximum lengths are found by the same kind of pass, repeated until
+ * nothing changes, which takes at most one pass per rule on a chain of expansions. Recursion,
+ * productivity and unbounded lengths come from the strongly connected components of the rule
+ * graph. The expected length of a group of mutually recursive rules is the solution of a linear
+ * system, solved by Gaussian elimination in time cubic in the size of the group.
+ *
+ * <p>An analyzer is not safe for use by several threads.
+ */
+public final class GrammarAnalyzer {
+
+	/** The length reported for a rule that cannot finish expanding. */
+	public static final long NO_LENGTH = -1;
+
+	/** The maximum length reported for a rule whose expansions can be arbitrarily long. */
+	public static final long UNBOUNDED = Long.MAX_VALUE;
+
+	private static final int NONTERMINAL_BIT = FlatGrammar.NONTERMINAL_BIT;
+	private static final double EPSILON = 1e-12;
+
+	private final CompiledGrammar compiled;
+	private final int[] ruleAlternatives; // The first alternative of each rule, plus the end
+	private final int[] alternativeSymbols; // The first symbol of each alternative, plus the end
+	private final int[] symbols; // Rule id << 1 | 1 for nonterminals, pool index << 1 for terminals
+	private final int[] terminalLengths; // The length of the text of each terminal in the pool
+	private final double[] probabilities; // The chance the generator picks each alternative
+	private final List<BigInteger[]> atMost = new ArrayList<>(); // Derivations per rule, by depth bound
+
+	private final boolean[] recursive;
+	private final boolean[] finiteDerivations;
+	private final long[] minLength;
+	private final long[] maxLength;
+	private final double[] expectedLength;
+
+	/**
+	 * Analyzes a grammar.
+	 *
+	 * @param grammar the grammar to analyze
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public GrammarAnalyzer(Grammar grammar) {
+		compiled = grammar.compile();
+		FlatGrammar flat = grammar.flatten();
+		ruleAlternatives = flat.ruleAlternatives;
+		alternativeSymbols = flat.alternativeSymbols;
+		symbols = flat.symbols;
+		terminalLengths = new int[flat.terminals.length];
+		for (int t = 0; t < terminalLengths.length; t++) {
+			terminalLengths[t] = flat.terminals[t].length();
+		}
+		int ruleCount = compiled.getRuleCount();
+		probabilities = new double[alternativeSymbols.length - 1];
+		for (int r = 0; r < ruleCount; r++) {
+			Rule rule = compiled.getRule(r);
+			double total = 0;
+			for (int i = 0; i < rule.sequence.size(); i++) {
+				total += rule.getWeight(i);
+			}
+			for (int i = 0; i < rule.sequence.size(); i++) {
+				probabilities[ruleAlternatives[r] + i] = rule.getWeight(i) / total;
+			}
+		}
+		BigInteger[] none = new BigInteger[ruleCount];
+		Arrays.fill(none, BigInteger.ZERO);
+		atMost.add(none);
+
+		minLength = computeMinLength();
+		recursive = new boolean[ruleCount];
+		for (int[] component : components(false)) {
+			for (int r : component) {
+				recursive[r] = component.length > 1 || hasEdge(r, r);
+			}
+		}
+		finiteDerivations = new boolean[ruleCount];
+		maxLength = computeMaxLength();
+		expectedLength = computeExpectedLength();
+	}
+
+	/**
+	 * Returns the number of rules, including rules that repeat the name of an earlier rule and
+	 * can therefore never be reached.
+	 *
+	 * @return the rule count
+	 */
+	public int getRuleCount() {
+		return ruleAlternatives.length - 1;
+	}
+
+	/**
+	 * Returns the number of derivations of a rule whose depth is at most the bound.
+	 *
+	 * @param ruleName the name of the rule
+	 * @param depth the depth bound
+	 * @return the number of derivations
+	 * @throws IllegalArgumentException if there is no such rule or {@code depth} is negative
+	 */
+	public BigInteger getDerivationCount(String ruleName, int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return countAtMost(ruleId(ruleName), depth);
+	}
+
+	/**
+	 * Tells whether a rule has finitely many derivations.
+	 *
+	 * @param ruleName the name of the rule
+	 * @return {@code true} if the rule has finitely many derivations
+	 * @throws IllegalArgumentException if there is no such rule
+	 */
+	public boolean hasFiniteDerivations(String ruleName) {
+		return finiteDerivations[ruleId(ruleName)];
+	}
+
+	/**
+	 * Tells whether a rule can expand to text containing itself, directly or through other rules.
+	 *
+	 * @param ruleName the name of the rule
+	 * @return {@code true} if the rule is recursive
+	 * @throws IllegalArgumentException if there is no such rule
+	 */
+	public boolean isRecursive(String ruleName) {
+		return recursive[ruleId(ruleName)];
+	}
+
+	/**
+	 * Returns the length of the shortest text a rule expands to.
+	 *
+	 * @param ruleName the name of the rule
+	 * @return the minimum length, or {@link #NO_LENGTH} if every expansion of the rule recurses
+	 *     forever
+	 * @throws IllegalArgumentException if there is no such rule
+	 */
+	public long getMinLength(String ruleName) {
+		long length = minLength[ruleId(ruleName)];
+		return length == UNBOUNDED ? NO_LENGTH : length;
+	}
+
+	/**
+	 * Returns the length of the longest text a rule expands to.
+	 *
+	 * @param ruleName the name of the rule
+	 * @return the maximum length, {@link #UNBOUNDED} if there is no maximum, or
+	 *     {@link #NO_LENGTH} if every expansion of the rule recurses forever
+	 * @throws IllegalArgumentException if there is no such rule
+	 */
+	public long getMaxLength(String ruleName) {
+		return maxLength[ruleId(ruleName)];
+	}
+
+	/**
+	 * Returns the expected length of the text a rule expands to when the generator picks its
+	 * alternatives at random.
+	 *
+	 * @param ruleName the name of the rule
+	 * @return the expected length, or {@link Double#POSITIVE_INFINITY} if the expansion may
+	 *     never finish or its expected length is infinite
+	 * @throws IllegalArgumentException if there is no such rule
+	 */
+	public double getExpectedLength(String ruleName) {
+		return expectedLength[ruleId(ruleName)];
+	}
+
+	/**
+	 * Describes every rule, one per line, in the order of the grammar.
+	 *
+	 * @param depth the depth bound of the derivation counts
+	 * @return the description
+	 */
+	public String summary(int depth) {
+		StringBuilder out = new StringBuilder(String.format("%-20s %25s %8s %8s %12s %s%n",
+				"rule", "derivations<=" + depth, "min", "max", "expected", "recursive"));
+		for (int r = 0; r < getRuleCount(); r++) {
+			long min = minLength[r] == UNBOUNDED ? NO_LENGTH : minLength[r];
+			out.append(String.format("%-20s %25s %8d %8s %12.2f %s%n", compiled.getRule(r).getRuleName(),
+					countAtMost(r, depth), min, maxLength[r] == UNBOUNDED ? "inf" : Long.toString(maxLength[r]),
+					expectedLength[r], recursive[r]));
+		}
+		return out.toString();
+	}
+
+	/** Returns the number of derivations of a rule with depth at most {@code depth}. */
+	BigInteger countAtMost(int rule, int depth) {
+		while (atMost.size() <= depth) {
+			BigInteger[] below = atMost.get(atMost.size() - 1);
+			BigInteger[] counts = new BigInteger[below.length];
+			for (int r = 0; r < counts.length; r++) {
+				BigInteger sum = BigInteger.ZERO;
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					BigInteger product = BigInteger.ONE;
+					for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1] && product.signum() > 0; s++) {
+						if ((symbols[s] & NONTERMINAL_BIT) != 0) {
+							product = product.multiply(below[symbols[s] >>> 1]);
+						}
+					}
+					sum = sum.add(product);
+				}
+				counts[r] = sum;
+			}
+			atMost.add(counts);
+		}
+		return atMost.get(depth)[rule];
+	}
+
+	/** Tells whether a rule has finitely many derivations. */
+	boolean hasFiniteDerivations(int rule) {
+		return finiteDerivations[rule];
+	}
+
+	private int ruleId(String ruleName) {
+		int id = compiled.getRuleId(ruleName);
+		if (id < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return id;
+	}
+
+	/**
+	 * Finds the shortest expansion of every rule. Each pass lets the expansions be one level
+	 * deeper; a shortest expansion never repeats a rule on a chain, so the passes stop after at
+	 * most one per rule. Rules that cannot finish keep {@link #UNBOUNDED}.
+	 */
+	private long[] computeMinLength() {
+		long[] min = new long[getRuleCount()];
+		Arrays.fill(min, UNBOUNDED);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < min.length; r++) {
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					long length = 0;
+					for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1]; s++) {
+						length = add(length, length(symbols[s], min));
+					}
+					if (length < min[r]) {
+						min[r] = length;
+						changed = true;
+					}
+				}
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Finds the longest expansion of every rule, and which rules have finitely many
+	 * derivations. Only alternatives whose symbols can all finish are used. A group of mutually
+	 * recursive rules has infinitely many derivations, and unbounded lengths if going once round
+	 * one of its cycles can add text; so does every rule that reaches such a group. The lengths
+	 * of the other rules are bounded, and are found by passes like those of the minimum.
+	 */
+	private long[] computeMaxLength() {
+		int ruleCount = getRuleCount();
+		boolean[] nonEmpty = new boolean[ruleCount];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < ruleCount; r++) {
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1] && !nonEmpty[r]; a++) {
+					if (isUsable(a) && canAddText(a, -1, nonEmpty)) {
+						nonEmpty[r] = changed = true;
+					}
+				}
+			}
+		}
+
+		long[] max = new long[ruleCount];
+		Arrays.fill(max, NO_LENGTH);
+		boolean[] unbounded = new boolean[ruleCount];
+		int[] componentOf = new int[ruleCount];
+		List<int[]> components = components(true);
+		for (int c = 0; c < components.size(); c++) {
+			for (int r : components.get(c)) {
+				componentOf[r] = c;
+			}
+		}
+		// Components come callees first, so every component reached from this one is done
+		for (int c = 0; c < components.size(); c++) {
+			int[] component = components.get(c);
+			boolean cyclic = false;
+			boolean pumps = false;
+			boolean reachesInfinite = false;
+			boolean reachesUnbounded = false;
+			for (int r : component) {
+				if (minLength[r] == UNBOUNDED) {
+					continue;
+				}
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					if (!isUsable(a)) {
+						continue;
+					}
+					for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1]; s++) {
+						if ((symbols[s] & NONTERMINAL_BIT) == 0) {
+							continue;
+						}
+						int callee = symbols[s] >>> 1;
+						if (componentOf[callee] == c) {
+							cyclic = true;
+							pumps |= canAddText(a, s, nonEmpty);
+						} else {
+							reachesInfinite |= !finiteDerivations[callee];
+							reachesUnbounded |= unbounded[callee];
+						}
+					}
+				}
+			}
+			for (int r : component) {
+				if (minLength[r] != UNBOUNDED) {
+					finiteDerivations[r] = !cyclic && !reachesInfinite;
+					unbounded[r] = pumps || reachesUnbounded;
+					max[r] = unbounded[r] ? UNBOUNDED : 0;
+				} else {
+					finiteDerivations[r] = true; // No derivation at all
+				}
+			}
+		}
+
+		changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < ruleCount; r++) {
+				if (max[r] == NO_LENGTH || unbounded[r]) {
+					continue;
+				}
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					if (!isUsable(a)) {
+						continue;
+					}
+					long length = 0;
+					for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1]; s++) {
+						length = add(length, length(symbols[s], max));
+					}
+					if (length > max[r]) {
+						max[r] = length;
+						changed = true;
+					}
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Finds the expected length of every rule. Rules are taken a group of mutually recursive
+	 * rules at a time, callees first. A rule that is not recursive averages its alternatives
+	 * directly; a recursive group solves {@code E = c + M E}, where {@code M} holds how many
+	 * times each rule of the group is expected to expand each other one. The solution is only
+	 * valid when it is non-negative; otherwise the expansion does not finish in expectation.
+	 */
+	private double[] computeExpectedLength() {
+		int ruleCount = getRuleCount();
+		double[] expected = new double[ruleCount];
+		int[] indexInComponent = new int[ruleCount];
+		Arrays.fill(indexInComponent, -1);
+		for (int[] component : components(false)) {
+			int k = component.length;
+			for (int i = 0; i < k; i++) {
+				indexInComponent[component[i]] = i;
+			}
+			double[][] system = new double[k][k + 1]; // (I - M) | c
+			boolean infinite = false;
+			for (int i = 0; i < k && !infinite; i++) {
+				int r = component[i];
+				system[i][i] = 1;
+				infinite = ruleAlternatives[r] == ruleAlternatives[r + 1]; // No alternative to pick
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1]; s++) {
+						int code = symbols[s];
+						if ((code & NONTERMINAL_BIT) == 0) {
+							system[i][k] += probabilities[a] * terminalLengths[code >>> 1];
+						} else if (indexInComponent[code >>> 1] >= 0) {
+							system[i][indexInComponent[code >>> 1]] -= probabilities[a];
+						} else {
+							system[i][k] += probabilities[a] * expected[code >>> 1];
+						}
+					}
+				}
+				infinite |= Double.isInfinite(system[i][k]);
+			}
+			double[] solution = infinite ? null : solve(system);
+			for (int i = 0; i < k; i++) {
+				expected[component[i]] = solution == null ? Double.POSITIVE_INFINITY : solution[i];
+				indexInComponent[component[i]] = -1;
+			}
+		}
+		return expected;
+	}
+
+	/**
+	 * Solves a linear system by Gaussian elimination with partial pivoting.
+	 *
+	 * @return the non-negative solution, or {@code null} if the system is singular or the
+	 *     solution has a negative component
+	 */
+	private static double[] solve(double[][] system) {
+		int k = system.length;
+		for (int col = 0; col < k; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < k; row++) {
+				if (Math.abs(system[row][col]) > Math.abs(system[pivot][col])) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(system[pivot][col]) < EPSILON) {
+				return null;
+			}
+			double[] swap = system[col];
+			system[col] = system[pivot];
+			system[pivot] = swap;
+			for (int row = 0; row < k; row++) {
+				if (row != col && system[row][col] != 0) {
+					double factor = system[row][col] / system[col][col];
+					for (int j = col; j <= k; j++) {
+						system[row][j] -= factor * system[col][j];
+					}
+				}
+			}
+		}
+		double[] solution = new double[k];
+		for (int i = 0; i < k; i++) {
+			solution[i] = system[i][k] / system[i][i];
+			if (solution[i] < -EPSILON || Double.isNaN(solution[i])) {
+				return null;
+			}
+			solution[i] = Math.max(0, solution[i]);
+		}
+		return solution;
+	}
+
+	/** Tells whether every nonterminal of an alternative can finish expanding. */
+	private boolean isUsable(int alternative) {
+		for (int s = alternativeSymbols[alternative]; s < alternativeSymbols[alternative + 1]; s++) {
+			if ((symbols[s] & NONTERMINAL_BIT) != 0 && minLength[symbols[s] >>> 1] == UNBOUNDED) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Tells whether a symbol of an alternative other than {@code skip} can produce text. */
+	private boolean canAddText(int alternative, int skip, boolean[] nonEmpty) {
+		for (int s = alternativeSymbols[alternative]; s < alternativeSymbols[alternative + 1]; s++) {
+			int code = symbols[s];
+			if (s != skip && ((code & NONTERMINAL_BIT) == 0 ? terminalLengths[code >>> 1] > 0 : nonEmpty[code >>> 1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Tells whether some alternative of {@code from} refers to {@code to}. */
+	private boolean hasEdge(int from, int to) {
+		for (int a = ruleAlternatives[from]; a < ruleAlternatives[from + 1]; a++) {
+			for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1]; s++) {
+				if (symbols[s] == (to << 1 | NONTERMINAL_BIT)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Returns the length a symbol adds, given the lengths of the rules. */
+	private long length(int code, long[] ruleLengths) {
+		return (code & NONTERMINAL_BIT) == 0 ? terminalLengths[code >>> 1] : ruleLengths[code >>> 1];
+	}
+
+	/** Adds two lengths, saturating at {@link #UNBOUNDED}. {@link #NO_LENGTH} absorbs both. */
+	private static long add(long a, long b) {
+		if (a == NO_LENGTH || b == NO_LENGTH) {
+			return NO_LENGTH;
+		}
+		long sum = a + b;
+		return sum < 0 ? UNBOUNDED : sum;
+	}
+
+	/**
+	 * Finds the strongly connected components of the rule graph with Tarjan's algorithm,
+	 * iteratively so that long chains of rules cannot overflow the call stack.
+	 *
+	 * @param usableOnly whether to follow only alternatives whose symbols can all finish
+	 * @return the components, each component after every component it refers to
+	 */
+	private List<int[]> components(boolean usableOnly) {
+		int ruleCount = getRuleCount();
+		int[] index = new int[ruleCount];
+		int[] low = new int[ruleCount];
+		boolean[] onStack = new boolean[ruleCount];
+		Arrays.fill(index, -1);
+		int[] stack = new int[ruleCount];
+		int stackSize = 0;
+		int[] callRule = new int[ruleCount];
+		int[] callSymbol = new int[ruleCount]; // The next symbol of the rule to look at
+		boolean[] skip = new boolean[symbols.length]; // Symbols whose alternative is not followed
+		for (int a = 0; a < probabilities.length && usableOnly; a++) {
+			if (!isUsable(a)) {
+				Arrays.fill(skip, alternativeSymbols[a], alternativeSymbols[a + 1], true);
+			}
+		}
+		List<int[]> components = new ArrayList<>();
+		int counter = 0;
+		for (int root = 0; root < ruleCount; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callRule[0] = root;
+			callSymbol[0] = alternativeSymbols[ruleAlternatives[root]];
+			index[root] = low[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				int r = callRule[depth];
+				int end = alternativeSymbols[ruleAlternatives[r + 1]];
+				boolean descended = false;
+				while (callSymbol[depth] < end && !descended) {
+					int s = callSymbol[depth]++;
+					int code = symbols[s];
+					if ((code & NONTERMINAL_BIT) == 0 || skip[s]) {
+						continue;
+					}
+					int callee = code >>> 1;
+					if (index[callee] < 0) {
+						index[callee] = low[callee] = counter++;
+						stack[stackSize++] = callee;
+						onStack[callee] = true;
+						depth++;
+						callRule[depth] = callee;
+						callSymbol[depth] = alternativeSymbols[ruleAlternatives[callee]];
+						descended = true;
+					} else if (onStack[callee]) {
+						low[r] = Math.min(low[r], index[callee]);
+					}
+				}
+				if (descended) {
+					continue;
+				}
+				if (low[r] == index[r]) {
+					int size = 0;
+					while (stack[stackSize - 1 - size] != r) {
+						size++;
+					}
+					int[] component = Arrays.copyOfRange(stack, stackSize - size - 1, stackSize);
+					stackSize -= component.length;
+					for (int member : component) {
+						onStack[member] = false;
+					}
+					components.add(component);
+				}
+				depth--;
+				if (depth >= 0) {
+					int caller = callRule[depth];
+					low[caller] = Math.min(low[caller], low[r]);
+				}
+			}
+		}
+		return components;
+	}
+}
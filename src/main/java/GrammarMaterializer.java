@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code GrammarMaterializer} replaces the non-recursive rules of a grammar that have few
+ * enough expansions by tables of their expansions. A rule {@code adj3 -> <adj1> | <adj2>}
+ * whose rules {@code adj1} and {@code adj2} have five words each becomes a rule with one
+ * alternative per word, so generating it takes one indexed lookup instead of a walk down the
+ * rules below it.
+ *
+ * <p>A rule is materialized when no rule it can expand to is recursive or has no alternatives,
+ * it has at most the given number of derivations, and at least one of its alternatives has a
+ * nonterminal or more than one symbol. Each distinct expansion becomes an alternative with a single glued
+ * {@link Terminal} whose text is the expansion, separators included, and whose weight is the
+ * probability that {@link Rule#generate} produces that text, summed over the derivations that
+ * produce it. The sentences of the result therefore have the same distribution as those of the
+ * source grammar, although a given random sequence selects different ones, and the token limit
+ * of {@link FlatGrammar} counts a whole expansion as one token.
+ *
+ * <p>The source grammar is not changed: the result has copies of the other rules, with their
+ * own nonterminals, so both grammars can be used at the same time. Rules are counted and
+ * expanded with an explicit stack over the flat form of the grammar, so a long chain of rules
+ * cannot overflow the Java stack.
+ */
+public final class GrammarMaterializer {
+
+	/** The largest number of derivations of a rule that {@link #materialize(Grammar)} expands. */
+	public static final int DEFAULT_MAX_EXPANSIONS = 1024;
+
+	private static final int ONE_SYMBOL = 1; // An alternative with more symbols is worth joining
+	private static final double EQUAL = 1e-12; // Relative difference under which probabilities are equal
+	private static final int NONTERMINAL_BIT = FlatGrammar.NONTERMINAL_BIT;
+	private static final byte UNVISITED = 0;
+	private static final byte COUNTING = 1; // On the stack: a rule that reaches it is on a cycle
+	private static final byte COUNTED = 2;
+
+	private final CompiledGrammar compiled;
+	private final FlatGrammar flat;
+	private final long limit; // Counts are saturated at this value, one more than the maximum
+	private final long[] derivations;
+	private final byte[] state;
+	private final int[] order; // The counted rules, each after the rules it expands to
+	private int ordered;
+	private final List<Map<String, Double>> expansions;
+
+	private GrammarMaterializer(Grammar grammar, int maxExpansions) {
+		this.compiled = grammar.compile();
+		this.flat = grammar.flatten();
+		this.limit = (long) maxExpansions + 1;
+		int rules = compiled.getRuleCount();
+		this.derivations = new long[rules];
+		this.state = new byte[rules];
+		this.order = new int[rules];
+		this.expansions = new ArrayList<>(rules);
+		for (int i = 0; i < rules; i++) {
+			expansions.add(null);
+		}
+	}
+
+	/**
+	 * Materializes the rules with at most {@link #DEFAULT_MAX_EXPANSIONS} derivations.
+	 *
+	 * @param grammar the grammar to optimize
+	 * @return a new grammar with the materialized rules
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static Grammar materialize(Grammar grammar) {
+		return materialize(grammar, DEFAULT_MAX_EXPANSIONS);
+	}
+
+	/**
+	 * Materializes the rules with at most {@code maxExpansions} derivations.
+	 *
+	 * @param grammar the grammar to optimize
+	 * @param maxExpansions the largest number of derivations of a materialized rule
+	 * @return a new grammar with the materialized rules
+	 * @throws IllegalArgumentException if {@code maxExpansions} is negative
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static Grammar materialize(Grammar grammar, int maxExpansions) {
+		if (maxExpansions < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return new GrammarMaterializer(grammar, maxExpansions).build();
+	}
+
+	private Grammar build() {
+		Grammar source = compiled.getSource();
+		Grammar result = new Grammar();
+		result.grammarName = source.grammarName;
+		result.grammarDesc = source.grammarDesc;
+		Map<String, NonterminalName> nonterminals = new HashMap<>();
+		count();
+		for (int i = 0; i < ordered; i++) {
+			if (derivations[order[i]] < limit && hasExpandedCallees(order[i])) {
+				expansions.set(order[i], expand(order[i]));
+			}
+		}
+		for (Rule rule : source.getRules()) {
+			int id = compiled.getRuleId(rule.getRuleName());
+			boolean first = compiled.getRule(id) == rule; // Later rules with the same name are never used
+			Map<String, Double> texts = expansions.get(id);
+			if (first && texts != null && !texts.isEmpty() && isWorthMaterializing(rule)) {
+				result.addToRuleArray(table(rule.getRuleName(), expansions.get(id)));
+			} else {
+				result.addToRuleArray(copy(rule, nonterminals));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the derivations of every rule, saturating at {@link #limit} for a rule that has at
+	 * least that many or can expand to a recursive rule, and appends each rule to {@link #order}
+	 * once the rules it expands to are counted. The depth-first walk keeps its path in
+	 * {@code stack}, with the next symbol of each rule on it in {@code next}.
+	 */
+	private void count() {
+		int[] stack = new int[derivations.length];
+		int[] next = new int[derivations.length];
+		for (int root = 0; root < derivations.length; root++) {
+			if (state[root] == UNVISITED) {
+				state[root] = COUNTING;
+				stack[0] = root;
+				next[0] = flat.alternativeSymbols[flat.ruleAlternatives[root]];
+				count(stack, next);
+			}
+		}
+	}
+
+	/** Runs the depth-first walk from the rule at the bottom of the stack. */
+	private void count(int[] stack, int[] next) {
+		int depth = 0;
+		while (depth >= 0) {
+			int rule = stack[depth];
+			int end = flat.alternativeSymbols[flat.ruleAlternatives[rule + 1]];
+			while (next[depth] < end && (flat.symbols[next[depth]] & NONTERMINAL_BIT) == 0) {
+				next[depth]++;
+			}
+			if (next[depth] < end) {
+				int callee = flat.symbols[next[depth]++] >>> 1;
+				if (state[callee] == UNVISITED) {
+					state[callee] = COUNTING;
+					stack[++depth] = callee;
+					next[depth] = flat.alternativeSymbols[flat.ruleAlternatives[callee]];
+				}
+				continue;
+			}
+			long total = 0;
+			for (int a = flat.ruleAlternatives[rule]; a < flat.ruleAlternatives[rule + 1]; a++) {
+				long product = 1;
+				for (int s = flat.alternativeSymbols[a]; s < flat.alternativeSymbols[a + 1]; s++) {
+					int code = flat.symbols[s];
+					if ((code & NONTERMINAL_BIT) != 0) {
+						// A rule still being counted is on a cycle: it has infinitely many derivations
+						long child = state[code >>> 1] == COUNTED ? derivations[code >>> 1] : limit;
+						product = Math.min(limit, product * child); // Both are at most limit, so this cannot overflow
+					}
+				}
+				total = Math.min(limit, total + product);
+			}
+			derivations[rule] = total;
+			state[rule] = COUNTED;
+			order[ordered++] = rule;
+			depth--;
+		}
+	}
+
+	/**
+	 * Tells whether every rule a rule refers to has a table with at least one text. A rule with
+	 * few derivations can still refer to a recursive rule, through an alternative that also
+	 * refers to a rule without alternatives and so has no derivations.
+	 */
+	private boolean hasExpandedCallees(int rule) {
+		int end = flat.alternativeSymbols[flat.ruleAlternatives[rule + 1]];
+		for (int s = flat.alternativeSymbols[flat.ruleAlternatives[rule]]; s < end; s++) {
+			int code = flat.symbols[s];
+			if ((code & NONTERMINAL_BIT) != 0) {
+				Map<String, Double> child = expansions.get(code >>> 1);
+				if (child == null || child.isEmpty()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the distinct texts a rule expands to, with the probability of each. The rules it
+	 * expands to must already be expanded.
+	 */
+	private Map<String, Double> expand(int rule) {
+		Rule source = compiled.getRule(rule);
+		double total = 0;
+		for (int i = 0; i < source.sequence.size(); i++) {
+			total += source.getWeight(i);
+		}
+		Map<String, Double> texts = new LinkedHashMap<>();
+		int first = flat.ruleAlternatives[rule];
+		for (int a = first; a < flat.ruleAlternatives[rule + 1]; a++) {
+			Map<String, Double> partial = new LinkedHashMap<>();
+			partial.put("", source.getWeight(a - first) / total);
+			for (int s = flat.alternativeSymbols[a]; s < flat.alternativeSymbols[a + 1]; s++) {
+				int code = flat.symbols[s];
+				Map<String, Double> next = new LinkedHashMap<>();
+				if ((code & NONTERMINAL_BIT) != 0) {
+					Map<String, Double> child = expansions.get(code >>> 1);
+					for (Map.Entry<String, Double> prefix : partial.entrySet()) {
+						for (Map.Entry<String, Double> suffix : child.entrySet()) {
+							next.merge(prefix.getKey() + suffix.getKey(), prefix.getValue() * suffix.getValue(), Double::sum);
+						}
+					}
+				} else {
+					String text = flat.terminals[code >>> 1];
+					for (Map.Entry<String, Double> prefix : partial.entrySet()) {
+						next.merge(prefix.getKey() + text, prefix.getValue(), Double::sum);
+					}
+				}
+				partial = next;
+			}
+			partial.forEach((text, probability) -> texts.merge(text, probability, Double::sum));
+		}
+		return texts;
+	}
+
+	/**
+	 * Tells whether a rule has an alternative that is more than a lone terminal.
+	 */
+	private static boolean isWorthMaterializing(Rule rule) {
+		for (CollectionOfSymbol alternative : rule.sequence) {
+			List<Symbol> symbols = alternative.getSequence();
+			if (symbols.size() > ONE_SYMBOL
+					|| symbols.size() == ONE_SYMBOL && symbols.get(0) instanceof NonterminalName) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the rule that picks one of the texts with its probability. The rule is unweighted
+	 * when every text is equally likely, so it picks with a single bounded random number.
+	 */
+	private static Rule table(String name, Map<String, Double> texts) {
+		double first = texts.values().iterator().next();
+		boolean uniform = texts.values().stream().allMatch(p -> Math.abs(p - first) <= EQUAL * first);
+		Rule rule = new Rule(name);
+		for (Map.Entry<String, Double> text : texts.entrySet()) {
+			CollectionOfSymbol alternative = new CollectionOfSymbol();
+			alternative.addToSequence(new Terminal(text.getKey(), true));
+			if (uniform) {
+				rule.addToArrayList(alternative);
+			} else {
+				rule.addToArrayList(alternative, Math.max(text.getValue(), Double.MIN_NORMAL));
+			}
+		}
+		return rule;
+	}
+
+	/**
+	 * Copies a rule with nonterminals of the new grammar, keeping its terminals and weights.
+	 */
+	private static Rule copy(Rule rule, Map<String, NonterminalName> nonterminals) {
+		Rule copy = new Rule(rule.getRuleName());
+		for (int i = 0; i < rule.sequence.size(); i++) {
+			CollectionOfSymbol alternative = new CollectionOfSymbol();
+			for (Symbol symbol : rule.sequence.get(i).getSequence()) {
+				alternative.addToSequence(symbol instanceof NonterminalName
+						? nonterminals.computeIfAbsent(symbol.getName(), NonterminalName::new)
+						: symbol);
+			}
+			copy.addToArrayList(alternative, rule.getWeight(i));
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,366 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@code GrammarOptimizer} rewrites a grammar into a smaller one that generates the same
+ * bytes for the same random sequence:
+ * <ul>
+ *   <li>an unweighted rule with a single alternative is inlined into the alternatives that refer
+ *   to it, unless it can expand to itself through other single-alternative rules;</li>
+ *   <li>runs of adjacent terminals are fused into one glued {@link Terminal} whose text is the
+ *   run's text, separators included, so {@code "You are so <adj1> that even a <noun>"} has four
+ *   symbols instead of eight;</li>
+ *   <li>rules that can no longer be reached from the "start" rule are removed, including the
+ *   inlined ones and those hidden by an earlier rule with the same name.</li>
+ * </ul>
+ * Output stays identical for the same random sequence. Choosing the alternative of a rule with
+ * one alternative still draws a random number, see
+ * {@link Rule#chooseIndex(java.util.random.RandomGenerator)}, so an inlined rule leaves in its
+ * place a reference to {@value #DRAW}, an added rule with one empty alternative that draws the
+ * same number and appends nothing. Terminals are fused across these references, since moving
+ * text past a draw does not change the text or the draws. A fused terminal appends exactly the
+ * text of the terminals it replaces. Only the depth and token limits of {@link FlatGrammar} see
+ * the difference, since the optimized grammar derives each sentence from fewer terminals.
+ *
+ * <p>The source grammar is not changed: the result has its own rules and nonterminals, so both
+ * grammars can be used at the same time.
+ */
+public final class GrammarOptimizer {
+
+	/**
+	 * The number of rules, alternatives and symbols of a grammar.
+	 */
+	public static final class SymbolCounts {
+
+		private final int rules;
+		private final int alternatives;
+		private final int terminals;
+		private final int nonterminals;
+
+		private SymbolCounts(Grammar grammar) {
+			int alternatives = 0;
+			int terminals = 0;
+			int nonterminals = 0;
+			for (Rule rule : grammar.getRules()) {
+				alternatives += rule.sequence.size();
+				for (CollectionOfSymbol alternative : rule.sequence) {
+					for (Symbol symbol : alternative.getSequence()) {
+						if (symbol instanceof NonterminalName) {
+							nonterminals++;
+						} else {
+							terminals++;
+						}
+					}
+				}
+			}
+			this.rules = grammar.getRules().size();
+			this.alternatives = alternatives;
+			this.terminals = terminals;
+			this.nonterminals = nonterminals;
+		}
+
+		/**
+		 * Counts the rules, alternatives and symbols of a grammar.
+		 *
+		 * @param grammar the grammar to count
+		 * @return the counts
+		 */
+		public static SymbolCounts of(Grammar grammar) {
+			return new SymbolCounts(grammar);
+		}
+
+		/**
+		 * Returns the number of rules.
+		 *
+		 * @return the rule count
+		 */
+		public int getRules() {
+			return rules;
+		}
+
+		/**
+		 * Returns the number of alternatives over all rules.
+		 *
+		 * @return the alternative count
+		 */
+		public int getAlternatives() {
+			return alternatives;
+		}
+
+		/**
+		 * Returns the number of terminal occurrences over all alternatives.
+		 *
+		 * @return the terminal count
+		 */
+		public int getTerminals() {
+			return terminals;
+		}
+
+		/**
+		 * Returns the number of nonterminal occurrences over all alternatives.
+		 *
+		 * @return the nonterminal count
+		 */
+		public int getNonterminals() {
+			return nonterminals;
+		}
+
+		/**
+		 * Returns the number of symbol occurrences over all alternatives.
+		 *
+		 * @return the symbol count
+		 */
+		public int getSymbols() {
+			return terminals + nonterminals;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d rules, %d alternatives, %d symbols (%d terminals, %d nonterminals)",
+					rules, alternatives, getSymbols(), terminals, nonterminals);
+		}
+	}
+
+	/**
+	 * An optimized grammar with the symbol counts of the grammar before and after.
+	 */
+	public static final class Result {
+
+		private final Grammar grammar;
+		private final SymbolCounts before;
+		private final SymbolCounts after;
+
+		private Result(Grammar grammar, SymbolCounts before, SymbolCounts after) {
+			this.grammar = grammar;
+			this.before = before;
+			this.after = after;
+		}
+
+		/**
+		 * Returns the optimized grammar.
+		 *
+		 * @return the grammar
+		 */
+		public Grammar getGrammar() {
+			return grammar;
+		}
+
+		/**
+		 * Returns the counts of the source grammar.
+		 *
+		 * @return the counts before optimizing
+		 */
+		public SymbolCounts getBefore() {
+			return before;
+		}
+
+		/**
+		 * Returns the counts of the optimized grammar.
+		 *
+		 * @return the counts after optimizing
+		 */
+		public SymbolCounts getAfter() {
+			return after;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return "Before: " + before + System.lineSeparator() + "After:  " + after;
+		}
+	}
+
+	/**
+	 * The name of the rule that stands in for the random draw of an inlined rule, with a prime
+	 * appended for each rule of the source grammar that already has the name. Tokenized grammar
+	 * files cannot refer to it, since {@code >} ends a nonterminal.
+	 */
+	public static final String DRAW = "<draw>";
+
+	private static final String PRIME = "'";
+	private static final byte UNVISITED = 0;
+	private static final byte INLINING = 1; // Its body is being built: a rule that reaches it is on a cycle
+	private static final byte INLINED = 2;
+	private static final byte KEPT = 3; // Stays a rule that nonterminals refer to
+
+	private final CompiledGrammar compiled;
+	private final List<Symbol>[] bodies; // The inlined, fused alternative of each inlinable rule
+	private final byte[] state; // UNVISITED, INLINING, INLINED or KEPT, per rule id
+	private final Map<String, NonterminalName> nonterminals = new HashMap<>();
+	private final NonterminalName draw; // Refers to the rule that draws for an inlined rule
+	private boolean drawn; // Whether any rule was inlined
+
+	@SuppressWarnings("unchecked")
+	private GrammarOptimizer(Grammar grammar) {
+		this.compiled = grammar.compile();
+		this.bodies = (List<Symbol>[]) new List<?>[compiled.getRuleCount()];
+		this.state = new byte[compiled.getRuleCount()];
+		String name = DRAW;
+		while (compiled.getRuleId(name) >= 0) {
+			name += PRIME;
+		}
+		this.draw = new NonterminalName(name);
+	}
+
+	/**
+	 * Optimizes a grammar.
+	 *
+	 * @param grammar the grammar to optimize
+	 * @return the optimized grammar and the symbol counts before and after
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static Result optimize(Grammar grammar) {
+		Grammar optimized = new GrammarOptimizer(grammar).build();
+		return new Result(optimized, SymbolCounts.of(grammar), SymbolCounts.of(optimized));
+	}
+
+	private Grammar build() {
+		Grammar source = compiled.getSource();
+		int ruleCount = compiled.getRuleCount();
+		Rule[] rewritten = new Rule[ruleCount];
+		for (int id = 0; id < ruleCount; id++) {
+			Rule rule = compiled.getRule(id);
+			if (compiled.getRuleId(rule.getRuleName()) == id) { // Later rules with the same name are never used
+				rewritten[id] = rewrite(rule);
+			}
+		}
+		boolean[] live = reachable(rewritten);
+		Grammar result = new Grammar();
+		result.grammarName = source.grammarName;
+		result.grammarDesc = source.grammarDesc;
+		for (int id = 0; id < ruleCount; id++) {
+			if (rewritten[id] != null && live[id]) {
+				result.addToRuleArray(rewritten[id]);
+			}
+		}
+		if (drawn) {
+			Rule rule = new Rule(draw.getName());
+			rule.addToArrayList(new CollectionOfSymbol());
+			result.addToRuleArray(rule);
+		}
+		return result;
+	}
+
+	/**
+	 * Copies a rule with its alternatives inlined and fused.
+	 */
+	private Rule rewrite(Rule rule) {
+		Rule copy = new Rule(rule.getRuleName());
+		for (int i = 0; i < rule.sequence.size(); i++) {
+			CollectionOfSymbol alternative = new CollectionOfSymbol();
+			for (Symbol symbol : inline(rule.sequence.get(i).getSequence())) {
+				alternative.addToSequence(symbol);
+			}
+			copy.addToArrayList(alternative, rule.getWeight(i));
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the symbols of an alternative with its inlinable nonterminals replaced by their
+	 * bodies, nonterminals of the new grammar for the others, and runs of terminals fused.
+	 */
+	private List<Symbol> inline(List<Symbol> symbols) {
+		List<Symbol> out = new ArrayList<>();
+		for (Symbol symbol : symbols) {
+			if (symbol instanceof NonterminalName) {
+				int id = compiled.getRuleId(symbol.getName());
+				List<Symbol> body = body(id);
+				if (body != null) {
+					out.add(draw); // Choosing the inlined rule's only alternative drew a number
+					drawn = true;
+					for (Symbol inlined : body) {
+						append(out, inlined);
+					}
+					continue;
+				}
+				symbol = nonterminals.computeIfAbsent(symbol.getName(), NonterminalName::new);
+			}
+			append(out, symbol);
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the inlined body of a rule, or {@code null} if the rule is kept as a rule: it has
+	 * more or fewer than one alternative, it is weighted, and so draws more than one number, or
+	 * it is on a cycle of single-alternative rules. A rule found while its own body is being
+	 * built is on such a cycle; the rules between it and the cycle's end refer to it by name and
+	 * can still be inlined.
+	 */
+	private List<Symbol> body(int id) {
+		if (state[id] == INLINED) {
+			return bodies[id];
+		}
+		Rule rule = compiled.getRule(id);
+		if (state[id] != UNVISITED || rule.sequence.size() != 1 || rule.getAliasTable() != null) {
+			state[id] = KEPT; // On a cycle, not a single alternative or weighted: keep the rule
+			return null;
+		}
+		state[id] = INLINING;
+		List<Symbol> body = inline(rule.sequence.get(0).getSequence());
+		if (state[id] == KEPT) {
+			return null; // Found on a cycle while its body was built
+		}
+		bodies[id] = body;
+		state[id] = INLINED;
+		return body;
+	}
+
+	/**
+	 * Appends a symbol, fusing a terminal with the terminal before it and any draws after that.
+	 */
+	private void append(List<Symbol> out, Symbol symbol) {
+		int last = out.size() - 1;
+		while (symbol instanceof Terminal && last >= 0 && out.get(last) == draw) {
+			last--;
+		}
+		if (symbol instanceof Terminal && last >= 0 && out.get(last) instanceof Terminal previous) {
+			Grammar source = compiled.getSource();
+			out.set(last, new Terminal(previous.generate(source, null) + symbol.generate(source, null), true));
+		} else {
+			out.add(symbol);
+		}
+	}
+
+	/**
+	 * Marks the rewritten rules that the "start" rule can reach; every rule is live when there
+	 * is no start rule.
+	 */
+	private boolean[] reachable(Rule[] rewritten) {
+		boolean[] live = new boolean[rewritten.length];
+		int start = compiled.getStartRuleId();
+		if (start < 0) {
+			Arrays.fill(live, true);
+			return live;
+		}
+		Deque<Integer> pending = new ArrayDeque<>();
+		live[start] = true;
+		pending.push(start);
+		while (!pending.isEmpty()) {
+			for (CollectionOfSymbol alternative : rewritten[pending.pop()].sequence) {
+				for (Symbol symbol : alternative.getSequence()) {
+					if (symbol instanceof NonterminalName && symbol != draw) {
+						int id = compiled.getRuleId(symbol.getName());
+						if (!live[id]) {
+							live[id] = true;
+							pending.push(id);
+						}
+					}
+				}
+			}
+		}
+		return live;
+	}
+}
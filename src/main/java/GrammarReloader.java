@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@code GrammarReloader} keeps the grammars of a directory up to date while they are in use.
+ * A background thread watches the directory tree with a {@link WatchService} and re-parses only
+ * the grammar files that were created or modified, dropping the ones that were deleted.
+ *
+ * <p>The grammars are published as an immutable {@link Snapshot} through a single
+ * {@link AtomicReference}. Readers take the current snapshot with one volatile read and never
+ * lock, and a generation that started on a snapshot keeps using it even if a newer one is
+ * published meanwhile. The files of each reload are parsed into a {@link SymbolTable} of their
+ * own, so the symbols of a replaced version are dropped with the last snapshot that uses it
+ * instead of piling up in one table for the life of the reloader.
+ *
+ * <p>A file that fails to parse is reported on standard error, and the last version of it that
+ * loaded stays in the snapshot. A batch of changes that cannot be processed, e.g. because the
+ * directory was removed, is reported there as {@link CustomException#GRAMMAR_RELOAD_FAILED} and
+ * retried as a full rescan; watching only ends when the reloader is closed or its thread is
+ * interrupted.
+ */
+public class GrammarReloader implements AutoCloseable {
+
+	/** How long the directory must stay quiet before the changed files are reloaded. */
+	static final long QUIET_MILLIS = 100;
+
+	/** How long to wait before retrying a batch of changes that failed. */
+	static final long RETRY_MILLIS = 1000;
+
+	/**
+	 * An immutable set of grammars, in the sorted order of their paths.
+	 */
+	public static final class Snapshot {
+
+		private final long version;
+		private final Map<Path, Grammar> grammars;
+		private final List<Grammar> grammarList;
+		private final Map<Path, String> failures;
+
+		private Snapshot(long version, Map<Path, Grammar> grammars, Map<Path, String> failures) {
+			this.version = version;
+			this.grammars = Collections.unmodifiableMap(new TreeMap<>(grammars));
+			this.grammarList = List.copyOf(this.grammars.values());
+			this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+		}
+
+		/**
+		 * Returns the number of times the grammars have been published, starting at 1 for the
+		 * first load.
+		 *
+		 * @return the version
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * Returns the grammars by the path of their file.
+		 *
+		 * @return the grammars, sorted by path
+		 */
+		public Map<Path, Grammar> getGrammarsByPath() {
+			return grammars;
+		}
+
+		/**
+		 * Returns the grammars in the sorted order of their paths.
+		 *
+		 * @return the grammars
+		 */
+		public List<Grammar> getGrammars() {
+			return grammarList;
+		}
+
+		/**
+		 * Returns the files whose last parse failed, with the reason. A failed file that loaded
+		 * before is still in {@link #getGrammars()} with its last good version.
+		 *
+		 * @return the failures, sorted by path
+		 */
+		public Map<Path, String> getFailures() {
+			return failures;
+		}
+	}
+
+	private final Path directory;
+	private final AtomicReference<Snapshot> current;
+	private final Map<Path, FileTime> loadedTimes = new HashMap<>(); // Guarded by this
+	private WatchService watcher;
+	private Thread thread;
+
+	/**
+	 * Loads every grammar file of the directory tree. Watching starts with {@link #start()}.
+	 *
+	 * @param directory the directory of JSON and binary grammar files
+	 * @throws IOException if the directory cannot be read
+	 */
+	public GrammarReloader(Path directory) throws IOException {
+		this.directory = directory;
+		this.current = new AtomicReference<>(new Snapshot(0, Map.of(), Map.of()));
+		reload(scan());
+	}
+
+	/**
+	 * Returns the current grammars.
+	 *
+	 * @return the snapshot published last
+	 */
+	public Snapshot getSnapshot() {
+		return current.get();
+	}
+
+	/**
+	 * Returns the current grammars in the sorted order of their paths.
+	 *
+	 * @return the grammars of the snapshot published last
+	 */
+	public List<Grammar> getGrammars() {
+		return current.get().getGrammars();
+	}
+
+	/**
+	 * Starts watching the directory tree on a daemon thread.
+	 *
+	 * @throws IOException if the directory cannot be watched
+	 * @throws IllegalStateException if the reloader was already started
+	 */
+	public synchronized void start() throws IOException {
+		if (watcher != null) {
+			throw new IllegalStateException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		watcher = FileSystems.getDefault().newWatchService();
+		registerTree(directory);
+		thread = new Thread(this::watch, "grammar-reloader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching. The current snapshot stays readable.
+	 *
+	 * @throws IOException if the watch service cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (watcher != null) {
+			watcher.close(); // Wakes the watching thread, which then ends
+		}
+	}
+
+	/**
+	 * Re-parses the given files and publishes a new snapshot if any of them changed. A file that
+	 * no longer exists, or is not a grammar file, is removed; a file that fails to parse keeps
+	 * its last good version and is recorded as a failure. The files are parsed into a new
+	 * symbol table.
+	 *
+	 * @param paths the files that may have changed
+	 * @return the snapshot published last
+	 */
+	synchronized Snapshot reload(Collection<Path> paths) {
+		Snapshot old = current.get();
+		Map<Path, Grammar> grammars = new HashMap<>(old.getGrammarsByPath());
+		Map<Path, String> failures = new HashMap<>(old.getFailures());
+		boolean changed = false;
+		SymbolTable symbolTable = new SymbolTable();
+		for (Path path : paths) {
+			if (!Files.isRegularFile(path) || !GenerateProcessing.isGrammarFile(path)) {
+				loadedTimes.remove(path);
+				changed |= grammars.remove(path) != null | failures.remove(path) != null;
+				continue;
+			}
+			try {
+				FileTime time = Files.getLastModifiedTime(path);
+				Grammar grammar = GenerateProcessing.loadGrammar(path, symbolTable);
+				grammar.flatten(); // Resolve every rule before the grammar is published
+				grammars.put(path, grammar);
+				failures.remove(path);
+				loadedTimes.put(path, time);
+			} catch (IOException | RuntimeException e) {
+				CustomException.GRAMMAR_LOAD_FAILED.getMessage(System.err);
+				System.err.println(path + ": " + e.getMessage());
+				failures.put(path, String.valueOf(e.getMessage()));
+			}
+			changed = true;
+		}
+		if (!changed && old.getVersion() > 0) {
+			return old;
+		}
+		Snapshot next = new Snapshot(old.getVersion() + 1, grammars, failures);
+		current.set(next);
+		return next;
+	}
+
+	/**
+	 * Lists the grammar files under the directory.
+	 */
+	private List<Path> scan() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(Files::isRegularFile)
+					.filter(GenerateProcessing::isGrammarFile)
+					.sorted()
+					.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Returns the files to reload after events were lost or a directory changed: every known
+	 * file, so deleted ones are dropped, and every file on disk whose modification time is not
+	 * the one it had when it was loaded.
+	 */
+	private synchronized Set<Path> rescan() throws IOException {
+		Set<Path> paths = new TreeSet<>(current.get().getGrammarsByPath().keySet());
+		paths.removeIf(Files::isRegularFile);
+		for (Path path : scan()) {
+			FileTime time;
+			try {
+				time = Files.getLastModifiedTime(path);
+			} catch (IOException e) {
+				time = null; // Deleted since the scan; reloading it drops it
+			}
+			if (time == null || !time.equals(loadedTimes.get(path))) {
+				paths.add(path);
+			}
+		}
+		paths.addAll(current.get().getFailures().keySet());
+		return paths;
+	}
+
+	private void registerTree(Path root) throws IOException {
+		try (Stream<Path> directories = Files.walk(root)) {
+			for (Path path : directories.filter(Files::isDirectory).collect(Collectors.toList())) {
+				path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+						StandardWatchEventKinds.ENTRY_DELETE);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Collects events until the directory has been quiet for {@link #QUIET_MILLIS}, so a file
+	 * that is written in several steps is parsed once, then reloads the files they name. When a
+	 * batch fails it is reported, and a rescan is retried after {@link #RETRY_MILLIS} or the next
+	 * event, whichever comes first.
+	 */
+	private void watch() {
+		boolean retry = false;
+		try {
+			while (true) {
+				WatchKey key = retry ? watcher.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS) : watcher.take();
+				Set<Path> paths = new TreeSet<>();
+				boolean rescan = retry;
+				while (key != null) {
+					Path parent = (Path) key.watchable();
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							rescan = true;
+							continue;
+						}
+						Path path = parent.resolve((Path) event.context());
+						if (GenerateProcessing.isGrammarFile(path) && !Files.isDirectory(path)) {
+							paths.add(path);
+						} else {
+							rescan = true; // A directory was added, removed or renamed
+						}
+					}
+					key.reset();
+					key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				try {
+					if (rescan) {
+						registerTree(directory);
+						paths.addAll(rescan());
+					}
+					reload(new ArrayList<>(paths));
+					retry = false;
+				} catch (ClosedWatchServiceException e) {
+					throw e;
+				} catch (IOException | RuntimeException e) {
+					CustomException.GRAMMAR_RELOAD_FAILED.getMessage(System.err);
+					System.err.println(directory + ": " + e.getMessage());
+					retry = true; // The rescan picks up the files of this batch
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Closed: stop watching
+		}
+	}
+}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+
+/**
+ * Signals that a grammar file is not well-formed, giving the line and column at which reading
+ * stopped.
+ */
+public class GrammarSyntaxException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The line of the error, starting at 1. */
+	private final int line;
+	/** The column of the error, starting at 1. */
+	private final int column;
+
+	/**
+	 * Constructs an exception for a syntax error at the given position.
+	 *
+	 * @param message what was wrong.
+	 * @param line the line of the error, starting at 1.
+	 * @param column the column of the error, starting at 1.
+	 */
+	public GrammarSyntaxException(String message, int line, int column) {
+		super(message + " at line " + line + ", column " + column);
+		this.line = line;
+		this.column = column;
+	}
+
+	/**
+	 * Returns the line of the error.
+	 *
+	 * @return the line, starting at 1.
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns the column of the error.
+	 *
+	 * @return the column, starting at 1.
+	 */
+	public int getColumn() {
+		return column;
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.Random;
+
+/**
+ * An {@code IndexedRandom} is a counter-based random source in which the random stream used for
+ * sentence {@code i} is derived only from a grammar seed and {@code i}. Jumping to any sentence
+ * index takes constant time, so a sentence can be regenerated without regenerating the ones
+ * before it, and two workers given the same seed and index produce the same sentence.
+ *
+ * <p>The stream of each index is a SplitMix64 sequence. {@link Generable} only needs a
+ * {@link java.util.random.RandomGenerator}; the class extends {@link Random} for the way
+ * {@code Random} turns raw bits into bounded ints and doubles. The default methods of
+ * {@code RandomGenerator} use other algorithms, so dropping the superclass would change which
+ * alternatives every seed chooses and break the corpora already generated from a seed. The
+ * atomic seed of the superclass is allocated once per instance and never touched; the stream
+ * keeps its own plain {@code long} state. Instances are not thread-safe; use one per thread.
+ */
+public class IndexedRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/** The seed shared by every sentence of a run. */
+	private long grammarSeed;
+	/** The sentence index the stream is positioned at. */
+	private long index;
+	/** The SplitMix64 state of the stream, advanced by every draw. */
+	private long state;
+
+	/**
+	 * Constructs a random source positioned at sentence index 0.
+	 *
+	 * @param grammarSeed the seed shared by every sentence of a run
+	 */
+	public IndexedRandom(long grammarSeed) {
+		super(grammarSeed); // Calls setSeed, which positions the stream at index 0
+	}
+
+	/**
+	 * Constructs a random source positioned at the given sentence index.
+	 *
+	 * @param grammarSeed the seed shared by every sentence of a run
+	 * @param index the sentence index
+	 */
+	public IndexedRandom(long grammarSeed, long index) {
+		this(grammarSeed);
+		jump(index);
+	}
+
+	/**
+	 * Repositions this source at the start of the stream for the given sentence index.
+	 *
+	 * @param index the sentence index
+	 * @return this random source, for chaining
+	 */
+	public IndexedRandom jump(long index) {
+		this.index = index;
+		this.state = mix64(grammarSeed ^ mix64((index + 1) * GOLDEN_GAMMA));
+		return this;
+	}
+
+	/**
+	 * Returns the seed shared by every sentence of a run.
+	 *
+	 * @return the grammar seed
+	 */
+	public long getGrammarSeed() {
+		return grammarSeed;
+	}
+
+	/**
+	 * Returns the sentence index this source was last positioned at.
+	 *
+	 * @return the sentence index
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * Replaces the grammar seed and repositions the stream at sentence index 0.
+	 *
+	 * @param seed the new grammar seed
+	 */
+	@Override
+	public void setSeed(long seed) {
+		this.grammarSeed = seed;
+		jump(0);
+	}
+
+	/**
+	 * Returns the top {@code bits} bits of the next {@link #nextLong()} value, so every
+	 * inherited method of {@link Random} draws from the indexed stream.
+	 *
+	 * @param bits the number of random bits to return
+	 * @return the random bits
+	 */
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (Long.SIZE - bits));
+	}
+
+	/**
+	 * Advances the stream by one SplitMix64 step.
+	 *
+	 * @return the next value of the stream
+	 */
+	@Override
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	/**
+	 * The SplitMix64 finalizer (Stafford's variant 13).
+	 *
+	 * @param z the value to mix
+	 * @return the mixed value
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
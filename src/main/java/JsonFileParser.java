@@ -1,11 +1,11 @@
-import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import java.util.Set;
 
 /**
  * This class provides functionality to parse a JSON file and convert its contents into
@@ -14,10 +14,17 @@ import org.json.JSONTokener;
 public class JsonFileParser {
 
 	private String fileName;
+	private final SymbolTable symbols; // Shared across the grammars parsed with it
+	private SymbolTable grammarSymbols; // The symbols of the grammar being parsed
+	private AlternativeTokenizer tokenizer; // Splits alternatives into the grammar's symbols
 	private final int ZERO = 0;
 	private final int ONE = 1;
-	private final String BLANK = " ";
-	private final String BRACKET_PATTERN = "<.*?>";
+	private final char OPEN = '<';
+	private final char CLOSE = '>';
+	private final String TEXT = "text";
+	private final String WEIGHT = "weight";
+	private final String TITLE = "grammarTitle";
+	private final String DESCRIPTION = "grammarDesc";
 
 	/**
 	 * Constructor for creating a JsonFileParser.
@@ -25,62 +32,156 @@ public class JsonFileParser {
 	 * @param fileName the name of the JSON file to be parsed.
 	 */
 	public JsonFileParser(String fileName) {
+		this(fileName, new SymbolTable());
+	}
+
+	/**
+	 * Constructor for creating a JsonFileParser that interns its symbols into a shared table.
+	 * Terminals are shared with every other grammar parsed with the same table; nonterminals
+	 * are interned per grammar.
+	 *
+	 * @param fileName the name of the JSON file to be parsed.
+	 * @param symbols the symbol table to intern terminals into.
+	 */
+	public JsonFileParser(String fileName, SymbolTable symbols) {
 		this.fileName = fileName;
+		this.symbols = symbols;
+		this.grammarSymbols = symbols.forGrammar();
+		this.tokenizer = new AlternativeTokenizer(grammarSymbols);
 	}
 
 	/**
 	 * Parses the JSON file and constructs a Grammar object from its contents.
 	 *
-	 * @return a Grammar object representing the structure defined in the JSON file.
+	 * @return a Grammar object representing the structure defined in the JSON file,
+	 *     or {@code null} if the file cannot be read or is not a valid grammar.
 	 */
 	public Grammar JsonFileParser() {
-		Grammar gram = null;
 		try {
-			File jsonFile = new File(this.fileName);
-			FileReader fileReader = new FileReader(jsonFile);
-			JSONTokener jsonTokener = new JSONTokener(fileReader);
-			gram = new Grammar();
-
-			JSONObject jsonObject = new JSONObject(jsonTokener);
-
-			for (String key : jsonObject.keySet()) {
-				if (key.equals("grammarDesc")) {
-					gram.grammarDesc = jsonObject.getString(key);
-				} else if (key.equals("grammarTitle")) {
-					gram.grammarName = jsonObject.getString(key);
-				} else {
-					JSONArray arr = jsonObject.getJSONArray(key);
-					gram.addToRuleArray(parseRule(key, arr));
-				}
-			}
-			return gram;
+			return parse();
 		} catch (Exception e) {
 			CustomException.INVALID_INPUT.getMessage();
 		}
+		return null;
+	}
+
+	/**
+	 * Parses the JSON file and constructs a Grammar object from its contents, reporting
+	 * failures to the caller instead of the console. The file is read as UTF-8 through a
+	 * buffered reader that is always closed.
+	 *
+	 * <p>The file is read token by token with a {@link JsonGrammarReader} and each rule is
+	 * built as soon as its array has been read, so no document tree is kept alongside the
+	 * grammar. Rules are added in the order they appear in the file.
+	 *
+	 * @return a Grammar object representing the structure defined in the JSON file.
+	 * @throws GrammarSyntaxException if the file is not a valid grammar, with the line and column.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public Grammar parse() throws IOException {
+		grammarSymbols = symbols.forGrammar();
+		tokenizer = new AlternativeTokenizer(grammarSymbols);
+		try (Reader reader = Files.newBufferedReader(Path.of(this.fileName), StandardCharsets.UTF_8)) {
+			return parse(new JsonGrammarReader(reader));
+		}
+	}
+
+	/**
+	 * Reads a grammar object: a title, a description and one array of alternatives per rule.
+	 *
+	 * @param json the reader positioned at the start of the document.
+	 * @return the grammar.
+	 * @throws IOException if the document is not a valid grammar.
+	 */
+	private Grammar parse(JsonGrammarReader json) throws IOException {
+		Grammar gram = new Grammar();
+		Set<String> keys = new HashSet<>();
+		json.beginObject();
+		while (json.hasNext()) {
+			String key = json.nextName();
+			if (!keys.add(key)) {
+				throw json.error("Duplicate key \"" + key + "\"");
+			}
+			if (key.equals(DESCRIPTION)) {
+				gram.grammarDesc = json.nextString();
+			} else if (key.equals(TITLE)) {
+				gram.grammarName = json.nextString();
+			} else {
+				gram.addToRuleArray(parseRule(key, json));
+			}
+		}
+		json.endObject();
+		json.endDocument();
 		return gram;
 	}
 
 	/**
-	 * Parses a JSON array corresponding to a rule and constructs a Rule object.
+	 * Reads the JSON array of a rule and constructs a Rule object.
+	 * Each alternative is either a string, or an object such as
+	 * {@code {"text": "<adj1> day", "weight": 3}} that gives the alternative a relative weight.
 	 *
 	 * @param key the name of the rule.
-	 * @param arr the JSON array containing the rule definitions.
+	 * @param json the reader positioned at the rule's array.
 	 * @return a new Rule object representing the parsed rule.
+	 * @throws IOException if the array is not a valid list of alternatives.
 	 */
-	private Rule parseRule(String key, JSONArray arr) {
+	private Rule parseRule(String key, JsonGrammarReader json) throws IOException {
 		Rule rule = new Rule(key);
-		for (int i = ZERO; i < arr.length(); i++) {
-			String s = arr.optString(i);
-			String[] arr1 = s.split(BLANK);
-			CollectionOfSymbol collection = new CollectionOfSymbol();
-			for (int j = ZERO; j < arr1.length; j++) {
-				collection.addToSequence(sortNoTermOrTerm(arr1[j]));
+		json.beginArray();
+		while (json.hasNext()) {
+			if (json.peek() == JsonGrammarReader.Token.BEGIN_OBJECT) {
+				parseWeightedAlternative(rule, json);
+			} else {
+				rule.addToArrayList(parseAlternative(json.nextString()));
 			}
-			rule.addToArrayList(collection);
 		}
+		json.endArray();
 		return rule;
 	}
 
+	/**
+	 * Reads a weighted alternative and adds it to a rule. Members other than the text and the
+	 * weight are ignored.
+	 *
+	 * @param rule the rule to add the alternative to.
+	 * @param json the reader positioned at the alternative's object.
+	 * @throws IOException if the text or the weight is missing or invalid.
+	 */
+	private void parseWeightedAlternative(Rule rule, JsonGrammarReader json) throws IOException {
+		String text = null;
+		double weight = Double.NaN;
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if (name.equals(TEXT)) {
+				text = json.nextString();
+			} else if (name.equals(WEIGHT)) {
+				weight = json.nextDouble();
+			} else {
+				json.skipValue();
+			}
+		}
+		if (text == null || Double.isNaN(weight)) {
+			throw json.error("A weighted alternative needs a \"" + TEXT + "\" and a \"" + WEIGHT + "\"");
+		}
+		json.endObject();
+		try {
+			rule.addToArrayList(parseAlternative(text), weight);
+		} catch (IllegalArgumentException e) {
+			throw json.error(e.getMessage());
+		}
+	}
+
+	/**
+	 * Splits the text of an alternative into its symbols with the {@link AlternativeTokenizer}.
+	 *
+	 * @param s the text of the alternative.
+	 * @return the collection of symbols of the alternative.
+	 */
+	private CollectionOfSymbol parseAlternative(String s) {
+		return tokenizer.tokenize(s);
+	}
+
 	/**
 	 * Trims a string by removing the first and last character.
 	 *
@@ -94,21 +195,22 @@ public class JsonFileParser {
 	}
 
 	/**
-	 * Determines whether a string represents a terminal or a nonterminal symbol and creates the appropriate Symbol object.
+	 * Determines whether a string represents a terminal or a nonterminal symbol and returns the appropriate Symbol object.
+	 * A string of the form {@code <name>} is a nonterminal; anything else is a terminal.
+	 * Symbols are interned, so every occurrence of the same symbol in a grammar returns the same object.
 	 *
 	 * @param nextPattern the string to analyze.
 	 * @return a Symbol object representing either a terminal or nonterminal.
 	 */
 	public Symbol sortNoTermOrTerm(String nextPattern) {
-		Pattern regex = Pattern.compile(BRACKET_PATTERN);
-		Matcher matcher = regex.matcher(nextPattern);
+		int last = nextPattern.length() - ONE;
 		Symbol name = null;
-		if (matcher.find()) {
+		if (last > ONE && nextPattern.charAt(ZERO) == OPEN && nextPattern.charAt(last) == CLOSE) {
 			String nonTerminalName = trimString(nextPattern);
-			name = new NonterminalName(nonTerminalName);
+			name = grammarSymbols.nonterminal(nonTerminalName);
 		} else {
 			String terminalName = nextPattern;
-			name = new Terminal(terminalName);
+			name = grammarSymbols.terminal(terminalName);
 		}
 		return name;
 	}
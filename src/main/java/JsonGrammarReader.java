@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A {@code JsonGrammarReader} reads a JSON document one token at a time, so a grammar can be
+ * built while the file is read instead of from a complete document tree. Only the current
+ * token is held in memory.
+ *
+ * <p>Values are read in document order: {@link #beginObject()} and {@link #beginArray()}
+ * open a container, {@link #hasNext()} tells whether it has another element and consumes the
+ * comma before it, and {@link #endObject()} and {@link #endArray()} close it. Every syntax
+ * error is reported as a {@link GrammarSyntaxException} with the line and column at which it
+ * was found.
+ */
+public class JsonGrammarReader {
+
+	/** The kinds of token that can start a value. */
+	public enum Token {
+		/** An opening brace. */
+		BEGIN_OBJECT,
+		/** A closing brace. */
+		END_OBJECT,
+		/** An opening bracket. */
+		BEGIN_ARRAY,
+		/** A closing bracket. */
+		END_ARRAY,
+		/** A quoted string, either a value or a member name. */
+		STRING,
+		/** A number. */
+		NUMBER,
+		/** One of {@code true}, {@code false} or {@code null}. */
+		LITERAL,
+		/** The end of the input. */
+		END_DOCUMENT
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int EOF = -1;
+	private static final int NONE = -2;
+	private static final int HEX = 16;
+	private static final int UNICODE_DIGITS = 4;
+	private static final int INITIAL_DEPTH = 8;
+
+	private final Reader in;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private int peeked = NONE; // A character looked at but not yet consumed
+	private int line = 1;
+	private int column;
+	private final StringBuilder text = new StringBuilder(); // Reused for every string and number
+
+	// For each open container, whether an element may follow without a comma
+	private boolean[] expectingElement = new boolean[INITIAL_DEPTH];
+	private int depth;
+
+	/**
+	 * Constructs a reader over a character stream. The stream is not closed by this reader.
+	 *
+	 * @param in the characters of a JSON document.
+	 */
+	public JsonGrammarReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Returns the kind of the next token without consuming it.
+	 *
+	 * @return the kind of the next token.
+	 * @throws IOException if the document cannot be read or the next character starts no token.
+	 */
+	public Token peek() throws IOException {
+		int c = peekChar();
+		switch (c) {
+			case '{':
+				return Token.BEGIN_OBJECT;
+			case '}':
+				return Token.END_OBJECT;
+			case '[':
+				return Token.BEGIN_ARRAY;
+			case ']':
+				return Token.END_ARRAY;
+			case '"':
+				return Token.STRING;
+			case 't':
+			case 'f':
+			case 'n':
+				return Token.LITERAL;
+			case EOF:
+				return Token.END_DOCUMENT;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					return Token.NUMBER;
+				}
+				throw error("Unexpected character '" + (char) c + "'");
+		}
+	}
+
+	/**
+	 * Consumes the start of an object.
+	 *
+	 * @throws IOException if the next value is not an object.
+	 */
+	public void beginObject() throws IOException {
+		open('{', "an object");
+	}
+
+	/**
+	 * Consumes the end of an object.
+	 *
+	 * @throws IOException if the object has more members.
+	 */
+	public void endObject() throws IOException {
+		close('}', "'}'");
+	}
+
+	/**
+	 * Consumes the start of an array.
+	 *
+	 * @throws IOException if the next value is not an array.
+	 */
+	public void beginArray() throws IOException {
+		open('[', "an array");
+	}
+
+	/**
+	 * Consumes the end of an array.
+	 *
+	 * @throws IOException if the array has more elements.
+	 */
+	public void endArray() throws IOException {
+		close(']', "']'");
+	}
+
+	/**
+	 * Tells whether the current object or array has another element, consuming the comma that
+	 * separates it from the previous one.
+	 *
+	 * @return {@code true} if another element follows.
+	 * @throws IOException if the elements are not separated by commas.
+	 */
+	public boolean hasNext() throws IOException {
+		int c = peekChar();
+		if (c == '}' || c == ']') {
+			return false;
+		}
+		if (!expectingElement[depth - 1]) {
+			if (c != ',') {
+				throw error("Expected ','");
+			}
+			consume();
+			expectingElement[depth - 1] = true;
+			c = peekChar();
+			if (c == '}' || c == ']') {
+				throw error("Trailing comma");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Consumes the name of an object member and the colon after it.
+	 *
+	 * @return the name.
+	 * @throws IOException if the next token is not a member name.
+	 */
+	public String nextName() throws IOException {
+		if (peekChar() != '"') {
+			throw error("Expected a member name");
+		}
+		String name = readString();
+		if (peekChar() != ':') {
+			throw error("Expected ':'");
+		}
+		consume();
+		return name;
+	}
+
+	/**
+	 * Consumes a string value.
+	 *
+	 * @return the string, with its escapes decoded.
+	 * @throws IOException if the next value is not a string.
+	 */
+	public String nextString() throws IOException {
+		if (peekChar() != '"') {
+			throw error("Expected a string");
+		}
+		String s = readString();
+		completeValue();
+		return s;
+	}
+
+	/**
+	 * Consumes a number value.
+	 *
+	 * @return the number.
+	 * @throws IOException if the next value is not a number.
+	 */
+	public double nextDouble() throws IOException {
+		if (peek() != Token.NUMBER) {
+			throw error("Expected a number");
+		}
+		int startColumn = column + 1;
+		text.setLength(0);
+		for (int c = peekChar(); isNumberChar(c); c = peekRaw()) {
+			text.append((char) consume());
+		}
+		try {
+			double value = Double.parseDouble(text.toString());
+			completeValue();
+			return value;
+		} catch (NumberFormatException e) {
+			throw new GrammarSyntaxException("Invalid number '" + text + "'", line, startColumn);
+		}
+	}
+
+	/**
+	 * Consumes and discards the next value, including everything nested in it.
+	 *
+	 * @throws IOException if the value is not well-formed.
+	 */
+	public void skipValue() throws IOException {
+		switch (peek()) {
+			case BEGIN_OBJECT:
+				beginObject();
+				while (hasNext()) {
+					nextName();
+					skipValue();
+				}
+				endObject();
+				break;
+			case BEGIN_ARRAY:
+				beginArray();
+				while (hasNext()) {
+					skipValue();
+				}
+				endArray();
+				break;
+			case STRING:
+				nextString();
+				break;
+			case NUMBER:
+				nextDouble();
+				break;
+			case LITERAL:
+				nextLiteral();
+				break;
+			default:
+				throw error("Expected a value");
+		}
+	}
+
+	/**
+	 * Checks that nothing but white space follows the value just read.
+	 *
+	 * @throws IOException if the document continues.
+	 */
+	public void endDocument() throws IOException {
+		if (peekChar() != EOF) {
+			throw error("Expected the end of the document");
+		}
+	}
+
+	/**
+	 * Creates an exception for a syntax error at the current position.
+	 *
+	 * @param message what was wrong.
+	 * @return the exception, to be thrown by the caller.
+	 */
+	public GrammarSyntaxException error(String message) {
+		return new GrammarSyntaxException(message, line, peeked == NONE ? column : column + 1);
+	}
+
+	private void open(char bracket, String what) throws IOException {
+		if (peekChar() != bracket) {
+			throw error("Expected " + what);
+		}
+		consume();
+		if (depth == expectingElement.length) {
+			boolean[] grown = new boolean[depth * 2];
+			System.arraycopy(expectingElement, 0, grown, 0, depth);
+			expectingElement = grown;
+		}
+		expectingElement[depth++] = true;
+	}
+
+	private void close(char bracket, String what) throws IOException {
+		if (depth == 0 || peekChar() != bracket) {
+			throw error("Expected " + what);
+		}
+		consume();
+		depth--;
+		completeValue();
+	}
+
+	private void completeValue() {
+		if (depth > 0) {
+			expectingElement[depth - 1] = false;
+		}
+	}
+
+	private void nextLiteral() throws IOException {
+		int startColumn = column + 1;
+		text.setLength(0);
+		for (int c = peekChar(); c >= 'a' && c <= 'z'; c = peekRaw()) {
+			text.append((char) consume());
+		}
+		String literal = text.toString();
+		if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")) {
+			throw new GrammarSyntaxException("Invalid literal '" + literal + "'", line, startColumn);
+		}
+		completeValue();
+	}
+
+	private String readString() throws IOException {
+		consume(); // The opening quote
+		text.setLength(0);
+		while (true) {
+			int c = consume();
+			if (c == '"') {
+				return text.toString();
+			}
+			if (c == EOF) {
+				throw error("Unterminated string");
+			}
+			if (c < ' ') {
+				throw error("Control character in string");
+			}
+			if (c == '\\') {
+				text.append(readEscape());
+			} else {
+				text.append((char) c);
+			}
+		}
+	}
+
+	private char readEscape() throws IOException {
+		int c = consume();
+		switch (c) {
+			case '"':
+			case '\\':
+			case '/':
+				return (char) c;
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case 'u':
+				int value = 0;
+				for (int i = 0; i < UNICODE_DIGITS; i++) {
+					int digit = Character.digit(consume(), HEX);
+					if (digit < 0) {
+						throw error("Invalid unicode escape");
+					}
+					value = value * HEX + digit;
+				}
+				return (char) value;
+			default:
+				throw error("Invalid escape");
+		}
+	}
+
+	private static boolean isNumberChar(int c) {
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+	}
+
+	/** Returns the next character that is not white space, without consuming it. */
+	private int peekChar() throws IOException {
+		int c = peekRaw();
+		while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+			consume();
+			c = peekRaw();
+		}
+		return c;
+	}
+
+	/** Returns the next character without consuming it. */
+	private int peekRaw() throws IOException {
+		if (peeked == NONE) {
+			peeked = read();
+		}
+		return peeked;
+	}
+
+	/** Consumes the next character, keeping track of its line and column. */
+	private int consume() throws IOException {
+		int c = peekRaw();
+		peeked = NONE;
+		if (c == '\n') {
+			line++;
+			column = 0;
+		} else if (c != EOF) {
+			column++;
+		}
+		return c;
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return EOF;
+			}
+		}
+		return buffer[position++];
+	}
+}
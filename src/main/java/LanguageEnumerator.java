@@ -0,0 +1,343 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code LanguageEnumerator} lists every sentence a grammar can derive from its "start" rule,
+ * instead of sampling them at random.
+ *
+ * <p>The depth of a derivation is the number of rules on its longest chain of nested
+ * expansions: an alternative with only terminals has depth 1, and an alternative has depth one
+ * more than its deepest nonterminal. Sentences are produced breadth-first by depth, all the
+ * derivations of depth 1 first, then those of depth 2 and so on, so recursive rules never
+ * keep the enumeration from moving on. Each sentence is built when it is asked for; only the
+ * chain of partial expansions leading to it is kept.
+ *
+ * <p>The enumerator lists derivations, with weights ignored. A sentence that an ambiguous
+ * grammar can derive in several ways is listed once per derivation, so the counts are an upper
+ * bound on the number of distinct sentences, and exact for unambiguous grammars such as the
+ * bundled ones.
+ *
+ * <p>Counts come from the derivation table of a {@link GrammarAnalyzer}, which also prunes
+ * the enumeration: no iterator is opened for a part of a derivation that has none. The table is
+ * extended as deeper counts are needed and is not safe for use by several threads; iterators of
+ * one enumerator must be used by one thread at a time.
+ */
+public final class LanguageEnumerator implements Iterable<String> {
+
+	private static final int NONTERMINAL_BIT = FlatGrammar.NONTERMINAL_BIT;
+	private static final int NO_RULE = -1;
+
+	private final int[] ruleAlternatives; // The first alternative of each rule, plus the end
+	private final int[] alternativeSymbols; // The first symbol of each alternative, plus the end
+	private final int[] symbols; // Rule id << 1 | 1 for nonterminals, pool index << 1 for terminals
+	private final String[] terminals; // The text each terminal appends, separator included
+	private final int startRuleId;
+	private final int maxDepth;
+	private final GrammarAnalyzer analyzer;
+
+	/**
+	 * Constructs an enumerator over every derivation of the grammar. The enumeration ends if the
+	 * language is finite and otherwise goes on forever; use {@link #stream()} with
+	 * {@code limit} to take the first sentences.
+	 *
+	 * @param grammar the grammar to enumerate
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public LanguageEnumerator(Grammar grammar) {
+		this(grammar, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs an enumerator over the derivations of the grammar up to a depth.
+	 *
+	 * @param grammar the grammar to enumerate
+	 * @param maxDepth the maximum depth of the derivations listed
+	 * @throws IllegalArgumentException if {@code maxDepth} is not positive
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public LanguageEnumerator(Grammar grammar, int maxDepth) {
+		if (maxDepth <= 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		FlatGrammar flat = grammar.flatten();
+		this.maxDepth = maxDepth;
+		this.startRuleId = grammar.compile().getStartRuleId();
+		ruleAlternatives = flat.ruleAlternatives;
+		alternativeSymbols = flat.alternativeSymbols;
+		symbols = flat.symbols;
+		terminals = flat.terminals;
+		analyzer = new GrammarAnalyzer(grammar);
+	}
+
+	/**
+	 * Returns the number of derivations of the start rule whose depth is at most the bound.
+	 *
+	 * @param depth the depth bound
+	 * @return the number of derivations, or zero if the grammar has no start rule
+	 * @throws IllegalArgumentException if {@code depth} is negative
+	 */
+	public BigInteger count(int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return startRuleId == NO_RULE ? BigInteger.ZERO : countAtMost(startRuleId, depth);
+	}
+
+	/**
+	 * Returns the number of derivations of the start rule whose depth is exactly the given one.
+	 *
+	 * @param depth the depth
+	 * @return the number of derivations, or zero if the grammar has no start rule
+	 * @throws IllegalArgumentException if {@code depth} is not positive
+	 */
+	public BigInteger countAtDepth(int depth) {
+		if (depth <= 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return startRuleId == NO_RULE ? BigInteger.ZERO : countExactly(startRuleId, depth);
+	}
+
+	/**
+	 * Tells whether the start rule has finitely many derivations.
+	 *
+	 * @return {@code true} if the enumeration without a depth bound ends
+	 */
+	public boolean isFinite() {
+		return startRuleId == NO_RULE || analyzer.hasFiniteDerivations(startRuleId);
+	}
+
+	/**
+	 * Returns the number of derivations listed by this enumerator.
+	 *
+	 * @return the size of the language up to the depth bound, or {@code null} if it is infinite
+	 */
+	public BigInteger size() {
+		if (maxDepth == Integer.MAX_VALUE) {
+			return isFinite() ? count(ruleAlternatives.length - 1) : null;
+		}
+		return count(maxDepth);
+	}
+
+	/**
+	 * Returns a lazy iterator over the sentences, by increasing depth. Sentences are trimmed
+	 * like those of {@link Grammar#generate(Grammar, java.util.random.RandomGenerator)}.
+	 *
+	 * @return an iterator over the sentences
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		if (startRuleId == NO_RULE) {
+			return new Concat(new ArrayList<Supplier<Iterator<String>>>().iterator());
+		}
+		int last = maxDepth == Integer.MAX_VALUE && isFinite() ? ruleAlternatives.length - 1 : maxDepth;
+		Iterator<Supplier<Iterator<String>>> depths = new Iterator<>() {
+			private int depth = 1;
+
+			@Override
+			public boolean hasNext() {
+				return depth <= last;
+			}
+
+			@Override
+			public Supplier<Iterator<String>> next() {
+				int d = depth++;
+				return () -> exactly(startRuleId, d);
+			}
+		};
+		Iterator<String> sentences = new Concat(depths);
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return sentences.hasNext();
+			}
+
+			@Override
+			public String next() {
+				return sentences.next().trim();
+			}
+		};
+	}
+
+	/**
+	 * Returns a lazy, ordered stream of the sentences, by increasing depth.
+	 *
+	 * @return a stream of the sentences
+	 */
+	public Stream<String> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	private BigInteger countAtMost(int rule, int depth) {
+		return analyzer.countAtMost(rule, depth);
+	}
+
+	private BigInteger countExactly(int rule, int depth) {
+		return countAtMost(rule, depth).subtract(countAtMost(rule, depth - 1));
+	}
+
+	/**
+	 * Returns the fragments of the derivations of a rule with exactly the given depth. For an
+	 * alternative with nonterminals, each derivation is listed under the first nonterminal
+	 * whose depth is exactly {@code depth - 1}: the nonterminals before it are at most
+	 * {@code depth - 2} deep and those after it at most {@code depth - 1}.
+	 */
+	private Iterator<String> exactly(int rule, int depth) {
+		List<Supplier<Iterator<String>>> parts = new ArrayList<>();
+		if (countExactly(rule, depth).signum() == 0) {
+			return new Concat(parts.iterator());
+		}
+		for (int a = ruleAlternatives[rule]; a < ruleAlternatives[rule + 1]; a++) {
+			int from = alternativeSymbols[a];
+			int to = alternativeSymbols[a + 1];
+			if (depth == 1) {
+				if (!hasNonterminal(from, to)) {
+					List<Supplier<Iterator<String>>> factors = new ArrayList<>();
+					for (int s = from; s < to; s++) {
+						String text = terminals[symbols[s] >>> 1];
+						factors.add(() -> List.of(text).iterator());
+					}
+					parts.add(() -> new Product(factors));
+				}
+				continue;
+			}
+			for (int pivot = from; pivot < to; pivot++) {
+				if ((symbols[pivot] & NONTERMINAL_BIT) == 0) {
+					continue;
+				}
+				List<Supplier<Iterator<String>>> factors = new ArrayList<>();
+				boolean empty = false;
+				for (int s = from; s < to && !empty; s++) {
+					int code = symbols[s];
+					if ((code & NONTERMINAL_BIT) == 0) {
+						String text = terminals[code >>> 1];
+						factors.add(() -> List.of(text).iterator());
+						continue;
+					}
+					int child = code >>> 1;
+					if (s == pivot) {
+						empty = countExactly(child, depth - 1).signum() == 0;
+						factors.add(() -> exactly(child, depth - 1));
+					} else {
+						int bound = s < pivot ? depth - 2 : depth - 1;
+						empty = countAtMost(child, bound).signum() == 0;
+						factors.add(() -> atMost(child, bound));
+					}
+				}
+				if (!empty) {
+					parts.add(() -> new Product(factors));
+				}
+			}
+		}
+		return new Concat(parts.iterator());
+	}
+
+	private boolean hasNonterminal(int from, int to) {
+		for (int s = from; s < to; s++) {
+			if ((symbols[s] & NONTERMINAL_BIT) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns the fragments of the derivations of a rule with depth at most {@code depth}. */
+	private Iterator<String> atMost(int rule, int depth) {
+		List<Supplier<Iterator<String>>> parts = new ArrayList<>();
+		for (int d = 1; d <= depth; d++) {
+			int exact = d;
+			parts.add(() -> exactly(rule, exact));
+		}
+		return new Concat(parts.iterator());
+	}
+
+	/** Lists the elements of several iterators one after the other, opening each when reached. */
+	private static final class Concat implements Iterator<String> {
+
+		private final Iterator<Supplier<Iterator<String>>> parts;
+		private Iterator<String> current = Collections.emptyIterator();
+
+		Concat(Iterator<Supplier<Iterator<String>>> parts) {
+			this.parts = parts;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!current.hasNext()) {
+				if (!parts.hasNext()) {
+					return false;
+				}
+				current = parts.next().get();
+			}
+			return true;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current.next();
+		}
+	}
+
+	/**
+	 * Lists the concatenations of one fragment of each factor, varying the last factor fastest.
+	 * Every factor must have at least one fragment.
+	 */
+	private static final class Product implements Iterator<String> {
+
+		private final List<Supplier<Iterator<String>>> factors;
+		private final List<Iterator<String>> iterators = new ArrayList<>();
+		private final String[] values;
+		private boolean hasNext = true;
+
+		Product(List<Supplier<Iterator<String>>> factors) {
+			this.factors = factors;
+			this.values = new String[factors.size()];
+			for (int i = 0; i < values.length; i++) {
+				iterators.add(factors.get(i).get());
+				values[i] = iterators.get(i).next();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext) {
+				throw new NoSuchElementException();
+			}
+			StringBuilder out = new StringBuilder();
+			for (String value : values) {
+				out.append(value);
+			}
+			int i = values.length - 1;
+			while (i >= 0 && !iterators.get(i).hasNext()) {
+				i--;
+			}
+			if (i < 0) {
+				hasNext = false;
+			} else {
+				values[i] = iterators.get(i).next();
+				for (int j = i + 1; j < values.length; j++) {
+					iterators.set(j, factors.get(j).get());
+					values[j] = iterators.get(j).next();
+				}
+			}
+			return out.toString();
+		}
+	}
+}
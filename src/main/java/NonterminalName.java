@@ -1,5 +1,5 @@
 import java.util.Objects;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * This class represents a non-terminal symbol in a context-free grammar.
@@ -9,7 +9,9 @@ import java.util.Random;
 public class NonterminalName implements Symbol {
 
 	private String nonTerminalName;
-	private final int ZERO = 0;
+	private static final int ZERO = 0;
+	private static final int NO_RULE = -1;
+	private volatile Binding binding; // The last compiled grammar that resolved this symbol, with the rule id
 
 	/**
 	 * Constructs a NonterminalName object with the specified name.
@@ -30,18 +32,75 @@ public class NonterminalName implements Symbol {
 		return this.nonTerminalName;
 	}
 
+	/**
+	 * Binds this non-terminal symbol to a rule of a compiled grammar. The grammar and the rule
+	 * id are published together, so a symbol shared by grammars that compile at the same time
+	 * never pairs one grammar with the other's id; the last binding wins, and the other grammar
+	 * resolves the symbol by name.
+	 *
+	 * @param compiled The compiled grammar that resolved this symbol.
+	 * @param ruleId   The id of the rule this symbol expands to.
+	 */
+	void bind(CompiledGrammar compiled, int ruleId) {
+		this.binding = new Binding(compiled, ruleId);
+	}
+
+	/**
+	 * Retrieves the id of the rule this symbol was bound to by the given compiled grammar.
+	 *
+	 * @param compiled The compiled grammar to look the symbol up in.
+	 * @return The rule id, or -1 if the symbol is not bound to {@code compiled}.
+	 */
+	int getRuleId(CompiledGrammar compiled) {
+		Binding current = binding;
+		return current != null && current.compiled == compiled ? current.ruleId : NO_RULE;
+	}
+
 	/**
 	 * Generates a string representation for this non-terminal symbol by recursively
-	 * expanding it according to the grammar's rules.
+	 * expanding it according to the grammar's rules. The rule is resolved through the
+	 * grammar's compiled view rather than by searching the rule list.
 	 *
 	 * @param grammar The grammar which contains the rules for expansion.
 	 * @param random  The random number generator used to select amongst multiple rules.
 	 * @return The generated string after expansion.
 	 */
 	@Override
-	public String generate(Grammar grammar, Random random) {
-		int ruleIndex = grammar.findRule(ZERO, getName());
-		return grammar.getRule(ruleIndex).generate(grammar, random);
+	public String generate(Grammar grammar, RandomGenerator random) {
+		if (grammar.getMetrics() != null) {
+			StringBuilder out = new StringBuilder();
+			generateInto(out, grammar, random); // The measured path appends the same text
+			return out.toString();
+		}
+		return grammar.compile().resolve(this).generate(grammar, random);
+	}
+
+	/**
+	 * Expands this non-terminal symbol according to the grammar's rules, appending the
+	 * result to the buffer. When the grammar's metrics are on, the expansion is recorded.
+	 *
+	 * @param out     The buffer to append to.
+	 * @param grammar The grammar which contains the rules for expansion.
+	 * @param random  The random number generator used to select amongst multiple rules.
+	 */
+	@Override
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		GenerationMetrics metrics = grammar.getMetrics();
+		if (metrics == null) {
+			grammar.compile().resolve(this).generateInto(out, grammar, random);
+			return;
+		}
+		CompiledGrammar compiled = grammar.compile();
+		int id = compiled.resolveId(this);
+		Rule rule = compiled.getRule(id);
+		int index = rule.chooseIndex(random);
+		metrics.recordChoice(id, index);
+		int[] depth = metrics.enter();
+		try {
+			rule.sequence.get(index).generateInto(out, grammar, random);
+		} finally {
+			metrics.exit(depth);
+		}
 	}
 
 	/**
@@ -76,4 +135,18 @@ public class NonterminalName implements Symbol {
 				", ZERO=" + ZERO +
 				'}';
 	}
+
+	/**
+	 * A compiled grammar together with the id of the rule it resolved this symbol to.
+	 */
+	private static final class Binding {
+
+		private final CompiledGrammar compiled;
+		private final int ruleId;
+
+		private Binding(CompiledGrammar compiled, int ruleId) {
+			this.compiled = compiled;
+			this.ruleId = ruleId;
+		}
+	}
 }
@@ -0,0 +1,73 @@
+import java.util.List;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * The {@code RandomAlgorithms} class selects the random number generator used for generation
+ * by its algorithm name, as understood by {@link RandomGeneratorFactory}. Unlike
+ * {@link java.util.Random}, whose every call updates a shared atomic seed, the generators
+ * listed here keep plain fields and are meant to be used by one thread each.
+ */
+public final class RandomAlgorithms {
+
+	/** The algorithm used when none is given. */
+	public static final String DEFAULT = "L64X128MixRandom";
+
+	/** The algorithms offered on the command line, fastest first. */
+	public static final List<String> NAMES = List.of(
+			"L64X128MixRandom", "Xoroshiro128PlusPlus", "SplittableRandom", "Random");
+
+	private RandomAlgorithms() {
+	}
+
+	/**
+	 * Checks whether the running JDK provides the named algorithm.
+	 *
+	 * @param name the algorithm name
+	 * @return {@code true} if a generator can be created for the name
+	 */
+	public static boolean isSupported(String name) {
+		try {
+			RandomGeneratorFactory.of(name);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a randomly seeded generator of the named algorithm.
+	 *
+	 * @param name the algorithm name
+	 * @return a new generator
+	 * @throws IllegalArgumentException if the algorithm is not supported
+	 */
+	public static RandomGenerator create(String name) {
+		return RandomGeneratorFactory.of(name).create();
+	}
+
+	/**
+	 * Creates a generator of the named algorithm with a fixed seed.
+	 *
+	 * @param name the algorithm name
+	 * @param seed the seed
+	 * @return a new generator
+	 * @throws IllegalArgumentException if the algorithm is not supported
+	 */
+	public static RandomGenerator create(String name, long seed) {
+		return RandomGeneratorFactory.of(name).create(seed);
+	}
+
+	/**
+	 * Returns a thread-local holder that lazily gives each thread its own randomly seeded
+	 * generator of the named algorithm.
+	 *
+	 * @param name the algorithm name
+	 * @return the thread-local holder
+	 * @throws IllegalArgumentException if the algorithm is not supported
+	 */
+	public static ThreadLocal<RandomGenerator> threadLocal(String name) {
+		RandomGeneratorFactory<RandomGenerator> factory = RandomGeneratorFactory.of(name);
+		return ThreadLocal.withInitial(factory::create);
+	}
+}
@@ -1,3 +1,7 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
 
 /**
  * This class contains the main entry point for the Random Sentence Generation System.
@@ -9,18 +13,164 @@ public class RodomSentenceGenerateSystem {
 	private static final String path = "src/main/resources/";
 
 	private static final int ONE = 1;
+	private static final int TWO = 2;
+	private static final int THREE = 3;
+
+	// The command that converts a JSON grammar file into a binary grammar file.
+	private static final String COMPILE = "--compile";
+
+	// The command that serves sentences over HTTP, and its port and metrics options.
+	private static final String SERVE = "--serve";
+	private static final String PORT = "--port";
+	private static final String METRICS = "--metrics";
+	private static final int DEFAULT_PORT = 8080;
+
 	/**
 	 * The main method to start the Random Sentence Generation System.
+	 * The first argument is the grammar directory; an optional second argument names the
+	 * random number generator algorithm, e.g. L64X128MixRandom, Xoroshiro128PlusPlus or
+	 * SplittableRandom.
+	 * With {@code --compile <grammar.json> <grammar.gbin>} the program instead converts a JSON
+	 * grammar file into a binary grammar file, which later runs load without parsing JSON.
+	 * With {@code --serve <grammar directory> [--port N] [--metrics]} it loads the grammars of the
+	 * directory under the resources folder and serves them over HTTP with a
+	 * {@link GenerationServer}, reloading a grammar when its file changes; {@code --metrics}
+	 * records generation metrics and reports them at {@code /metrics}.
+	 * Any other first argument starting with {@code --} runs a {@link BulkCommand}, which
+	 * generates sentences without interaction, e.g.
+	 * {@code --grammar poem.json --count 100000 --seed 7 --threads 4 --out poems.txt}.
+	 * Bulk mode keeps standard output for the sentences: it reports errors, and the seed when
+	 * none is given, on standard error and exits with status 1 when it fails.
 	 *
 	 * @param args The command-line arguments provided to the program.
 	 */
 	public static void main(String[] args)  {
+		if(args.length > 0 && args[0].equals(COMPILE)){
+			compile(args);
+			return;
+		}
+		if(args.length > 0 && args[0].equals(SERVE)){
+			serve(args);
+			return;
+		}
+		if(BulkCommand.isBulk(args)){
+			if(bulk(args, System.out, System.err) != 0){
+				System.exit(ONE);
+			}
+			return;
+		}
 		//sending the path + directory name
-		if(args.length != ONE){
+		if(args.length != ONE && args.length != TWO){
 			CustomException.INVALID_INPUT.getMessage();
+		}else if(args.length == TWO && !RandomAlgorithms.isSupported(args[ONE])){
+			CustomException.UNKNOWN_RANDOM_ALGORITHM.getMessage();
 		}else{
-			new GenerateProcessing(path+args[0]).GenerateProcess();
+			String algorithm = args.length == TWO ? args[ONE] : RandomAlgorithms.DEFAULT;
+			new GenerateProcessing(path+args[0], algorithm).GenerateProcess();
 		}
 
 	}
+
+	/**
+	 * Converts a JSON grammar file into a binary grammar file.
+	 *
+	 * @param args {@code --compile}, the JSON file and the binary file to write.
+	 */
+	private static void compile(String[] args) {
+		if(args.length != THREE){
+			CustomException.INVALID_INPUT.getMessage();
+			return;
+		}
+		try {
+			Grammar grammar = new JsonFileParser(args[ONE]).parse();
+			grammar.compile();
+			BinaryGrammarFormat.write(grammar, Paths.get(args[TWO]));
+			System.out.println("Wrote " + args[TWO]);
+		} catch (IOException | RuntimeException e) {
+			CustomException.GRAMMAR_LOAD_FAILED.getMessage();
+			System.out.println(args[ONE] + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Loads the grammars of a directory and serves them over HTTP until the process is stopped.
+	 * Nagle's algorithm is turned off unless {@link GenerationServer#NO_DELAY_PROPERTY} is set.
+	 *
+	 * @param args {@code --serve}, the grammar directory and optionally {@code --port} with the
+	 *             port and {@code --metrics}.
+	 */
+	private static void serve(String[] args) {
+		int port = DEFAULT_PORT;
+		boolean metrics = false;
+		int i = TWO;
+		while(args.length >= TWO && i < args.length){
+			if(args[i].equals(PORT) && i + ONE < args.length && args[i + ONE].matches("\\d{1,5}")){
+				port = Integer.parseInt(args[i + ONE]);
+				i += TWO;
+			}else if(args[i].equals(METRICS)){
+				metrics = true;
+				i++;
+			}else{
+				break;
+			}
+		}
+		if(args.length < TWO || i != args.length){
+			CustomException.INVALID_INPUT.getMessage();
+			return;
+		}
+		if(System.getProperty(GenerationServer.NO_DELAY_PROPERTY) == null){
+			System.setProperty(GenerationServer.NO_DELAY_PROPERTY, "true");
+		}
+		try {
+			GenerationServer server = GenerationServer.load(Paths.get(path + args[ONE]), port);
+			server.setMetricsEnabled(metrics);
+			server.start();
+			System.out.println("Serving " + server.getGrammars().size() + " grammars on port " + server.getPort());
+		} catch (IOException | RuntimeException e) {
+			CustomException.GRAMMAR_LOAD_FAILED.getMessage();
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Generates sentences in bulk, without interaction.
+	 *
+	 * @param args the bulk options, see {@link BulkCommand}.
+	 * @param out the stream the sentences are written to when no output file is given.
+	 * @param err the stream errors, the chosen seed and the report of a split run are written to.
+	 * @return the exit status: 0 on success and 1 on failure.
+	 */
+	static int bulk(String[] args, OutputStream out, PrintStream err) {
+		BulkCommand command;
+		try {
+			command = BulkCommand.parse(args);
+		} catch (IllegalArgumentException e) {
+			CustomException.INVALID_INPUT.getMessage(err);
+			err.println(e.getMessage());
+			err.println(BulkCommand.USAGE);
+			return ONE;
+		}
+		if(command.isSeedChosen()){
+			err.println("Seed: " + command.getSeed());
+		}
+		Grammar grammar;
+		try {
+			grammar = command.load();
+		} catch (IOException | RuntimeException e) {
+			CustomException.GRAMMAR_LOAD_FAILED.getMessage(err);
+			err.println(e.getMessage());
+			return ONE;
+		}
+		try {
+			CorpusWriter.Report report = command.run(grammar, out);
+			if (report != null) {
+				err.println(report);
+			}
+		} catch (IOException | RuntimeException e) {
+			CustomException.GENERATION_FAILED.getMessage(err);
+			err.println(e.getMessage());
+			return ONE;
+		}
+		return 0;
+	}
 }
@@ -1,6 +1,7 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * This class represents a rule in a grammar.
@@ -19,6 +20,11 @@ public class Rule implements Generable {
 	 */
 	public ArrayList<CollectionOfSymbol> sequence;
 
+	private static final double DEFAULT_WEIGHT = 1.0;
+
+	private double[] weights; // The weight of each collection, or null while every weight is 1
+	private AliasTable aliasTable; // Built from the weights on first use
+
 	/**
 	 * Constructs a new Rule with a given name.
 	 *
@@ -35,9 +41,53 @@ public class Rule implements Generable {
 	 * @param collection The collection of symbols to be added to the rule's sequence.
 	 */
 	public void addToArrayList(CollectionOfSymbol collection) {
+		addToArrayList(collection, DEFAULT_WEIGHT);
+	}
+
+	/**
+	 * Adds a collection of symbols with a relative weight. A collection with weight 2 is chosen
+	 * twice as often as one with weight 1.
+	 *
+	 * @param collection The collection of symbols to be added to the rule's sequence.
+	 * @param weight     The relative weight of the collection; must be positive and finite.
+	 * @throws IllegalArgumentException if the weight is not positive and finite.
+	 */
+	public void addToArrayList(CollectionOfSymbol collection, double weight) {
+		if (!(weight > 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException(CustomException.INVALID_WEIGHT.getDetailMessage());
+		}
+		if (weights != null || weight != DEFAULT_WEIGHT) {
+			int size = sequence.size();
+			double[] grown = weights == null ? new double[size + 1] : Arrays.copyOf(weights, size + 1);
+			if (weights == null) {
+				Arrays.fill(grown, DEFAULT_WEIGHT);
+			}
+			grown[size] = weight;
+			weights = grown;
+			aliasTable = null;
+		}
 		sequence.add(collection);
 	}
 
+	/**
+	 * Checks whether any collection of this rule has a weight other than 1.
+	 *
+	 * @return {@code true} if the rule samples its collections by weight.
+	 */
+	public boolean isWeighted() {
+		return weights != null;
+	}
+
+	/**
+	 * Retrieves the relative weight of a collection.
+	 *
+	 * @param index The index of the collection in the rule's sequence.
+	 * @return The weight of the collection.
+	 */
+	public double getWeight(int index) {
+		return weights == null ? DEFAULT_WEIGHT : weights[index];
+	}
+
 	/**
 	 * Retrieves the name of the rule.
 	 *
@@ -47,6 +97,50 @@ public class Rule implements Generable {
 		return ruleName;
 	}
 
+	/**
+	 * Randomly selects one of the symbol collections in the sequence.
+	 *
+	 * @param random The random generator to select a random collection of symbols.
+	 * @return The selected collection of symbols.
+	 */
+	public CollectionOfSymbol chooseAlternative(RandomGenerator random) {
+		return sequence.get(chooseIndex(random));
+	}
+
+	/**
+	 * Randomly selects the index of one of the symbol collections in the sequence. Unweighted
+	 * rules pick uniformly; weighted rules sample a precomputed alias table, which also takes
+	 * constant time whatever the number of collections.
+	 *
+	 * @param random The random generator to select a random collection of symbols.
+	 * @return The index of the selected collection.
+	 */
+	public int chooseIndex(RandomGenerator random) {
+		if (weights == null) {
+			return random.nextInt(sequence.size());
+		}
+		return getAliasTable().sample(random);
+	}
+
+	/**
+	 * Returns the alias table that weighted selection samples, building it on first use.
+	 * Other representations of the rule sample the same table so that they choose the same
+	 * alternatives for the same random sequence.
+	 *
+	 * @return The alias table, or {@code null} if the rule is unweighted.
+	 */
+	AliasTable getAliasTable() {
+		if (weights == null) {
+			return null;
+		}
+		AliasTable table = aliasTable;
+		if (table == null) {
+			table = new AliasTable(weights);
+			aliasTable = table;
+		}
+		return table;
+	}
+
 	/**
 	 * Generates a string representation by randomly selecting one of the symbol collections
 	 * in the sequence and then generating a string from it.
@@ -56,9 +150,21 @@ public class Rule implements Generable {
 	 * @return The generated string from the selected collection of symbols.
 	 */
 	@Override
-	public String generate(Grammar grammar, Random random) {
-		int randomIndex = random.nextInt(sequence.size());
-		return sequence.get(randomIndex).generate(grammar, random);
+	public String generate(Grammar grammar, RandomGenerator random) {
+		return chooseAlternative(random).generate(grammar, random);
+	}
+
+	/**
+	 * Randomly selects one of the symbol collections in the sequence and appends the text
+	 * generated from it to the buffer.
+	 *
+	 * @param out     The buffer to append to.
+	 * @param grammar The context of the grammar to which this rule belongs.
+	 * @param random  The random generator to select a random collection of symbols.
+	 */
+	@Override
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		chooseAlternative(random).generateInto(out, grammar, random);
 	}
 
 	/**
@@ -72,7 +178,8 @@ public class Rule implements Generable {
 		if (!(o instanceof Rule rule)) {
 			return false;
 		}
-		return Objects.equals(getRuleName(), rule.getRuleName()) && Objects.equals(sequence, rule.sequence);
+		return Objects.equals(getRuleName(), rule.getRuleName()) && Objects.equals(sequence, rule.sequence)
+				&& Arrays.equals(weights, rule.weights);
 	}
 
 	/**
@@ -80,7 +187,7 @@ public class Rule implements Generable {
 	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(getRuleName(), sequence);
+		return Objects.hash(getRuleName(), sequence, Arrays.hashCode(weights));
 	}
 
 	/**
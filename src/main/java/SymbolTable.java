@@ -0,0 +1,166 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@code SymbolTable} interns grammar symbols so that every distinct terminal and nonterminal
+ * is represented by one shared object, however many times it occurs in the grammar's
+ * alternatives.
+ *
+ * <p>Terminals carry no per-grammar state, so tables created with {@link #forGrammar()} share
+ * their terminals with the table they were created from, which lets several grammars loaded
+ * into one JVM share their words. Nonterminals are bound to the rules of the grammar that
+ * compiles them, so every table keeps its own nonterminals. Tables are safe to use from several
+ * threads.
+ */
+public class SymbolTable {
+
+	// Estimated heap sizes, in bytes, for a 64-bit JVM with compressed references and compact strings
+	private static final long SYMBOL_BYTES = 16;
+	private static final long STRING_BYTES = 24;
+	private static final long ARRAY_HEADER_BYTES = 16;
+	private static final long ALIGNMENT = 8;
+	private static final double BYTES_PER_KB = 1024.0;
+
+	private final ConcurrentMap<String, Terminal> terminals;
+	private final ConcurrentMap<String, Terminal> gluedTerminals;
+	private final ConcurrentMap<String, NonterminalName> nonterminals;
+	private final Statistics statistics;
+
+	/**
+	 * Constructs an empty symbol table.
+	 */
+	public SymbolTable() {
+		this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new Statistics());
+	}
+
+	private SymbolTable(ConcurrentMap<String, Terminal> terminals, ConcurrentMap<String, Terminal> gluedTerminals,
+			Statistics statistics) {
+		this.terminals = terminals;
+		this.gluedTerminals = gluedTerminals;
+		this.nonterminals = new ConcurrentHashMap<>();
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Creates a table for one more grammar. The new table shares this table's terminals and
+	 * statistics but has its own nonterminals.
+	 *
+	 * @return a symbol table for another grammar
+	 */
+	public SymbolTable forGrammar() {
+		return new SymbolTable(terminals, gluedTerminals, statistics);
+	}
+
+	/**
+	 * Returns the terminal with the given name, creating it on first use.
+	 *
+	 * @param name the name of the terminal
+	 * @return the shared terminal
+	 */
+	public Terminal terminal(String name) {
+		return terminal(name, false);
+	}
+
+	/**
+	 * Returns the terminal with the given name and separator, creating it on first use.
+	 *
+	 * @param name the name of the terminal
+	 * @param glued whether the terminal follows the previous text without a blank
+	 * @return the shared terminal
+	 */
+	public Terminal terminal(String name, boolean glued) {
+		ConcurrentMap<String, Terminal> table = glued ? gluedTerminals : terminals;
+		Terminal terminal = table.get(name);
+		if (terminal == null) {
+			Terminal created = new Terminal(name, glued);
+			terminal = table.putIfAbsent(name, created);
+			if (terminal == null) {
+				statistics.record(name, true);
+				return created;
+			}
+		}
+		statistics.record(name, false);
+		return terminal;
+	}
+
+	/**
+	 * Returns the nonterminal with the given name, creating it on first use.
+	 *
+	 * @param name the name of the nonterminal
+	 * @return the shared nonterminal
+	 */
+	public NonterminalName nonterminal(String name) {
+		NonterminalName nonterminal = nonterminals.get(name);
+		if (nonterminal == null) {
+			NonterminalName created = new NonterminalName(name);
+			nonterminal = nonterminals.putIfAbsent(name, created);
+			if (nonterminal == null) {
+				statistics.record(name, true);
+				return created;
+			}
+		}
+		statistics.record(name, false);
+		return nonterminal;
+	}
+
+	/**
+	 * Returns the number of symbols looked up through this table and the tables that share its
+	 * statistics, i.e. the number of symbol occurrences parsed.
+	 *
+	 * @return the number of symbol occurrences
+	 */
+	public long getSymbolCount() {
+		return statistics.occurrences.sum();
+	}
+
+	/**
+	 * Returns the number of symbol objects actually created.
+	 *
+	 * @return the number of distinct symbols
+	 */
+	public long getDistinctSymbolCount() {
+		return statistics.distinct.sum();
+	}
+
+	/**
+	 * Returns an estimate of the heap saved by interning: the symbol object and name string
+	 * that each repeated occurrence would otherwise have kept alive.
+	 *
+	 * @return the estimated number of bytes saved
+	 */
+	public long getEstimatedBytesSaved() {
+		return statistics.bytesSaved.sum();
+	}
+
+	/**
+	 * Describes how much interning saved.
+	 *
+	 * @return a one-line report
+	 */
+	public String report() {
+		return String.format("Interned %,d symbols into %,d distinct objects (about %,.1f KB saved)",
+				getSymbolCount(), getDistinctSymbolCount(), getEstimatedBytesSaved() / BYTES_PER_KB);
+	}
+
+	/**
+	 * Counters shared by the tables created from one root table.
+	 */
+	private static final class Statistics {
+
+		private final LongAdder occurrences = new LongAdder();
+		private final LongAdder distinct = new LongAdder();
+		private final LongAdder bytesSaved = new LongAdder();
+
+		void record(String name, boolean created) {
+			occurrences.increment();
+			if (created) {
+				distinct.increment();
+			} else {
+				long characters = ARRAY_HEADER_BYTES + name.length();
+				long array = (characters + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+				bytesSaved.add(SYMBOL_BYTES + STRING_BYTES + array);
+			}
+		}
+	}
+}
@@ -1,13 +1,19 @@
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
- * A {@code Terminal} represents a terminal symbol in a grammar.
+ * A {@code Terminal} represents a terminal symbol in a grammar. A terminal is normally
+ * separated from the text before it by a blank; a glued terminal, such as the comma in
+ * {@code <adj>,}, is appended directly.
  */
 public class Terminal implements Symbol {
 
 	private final String variableName; // Name representing the terminal
-	private final String BLANK = " ";
+	private final String separator; // Written before the name: a blank, or nothing when glued
+	private final byte[] encoded; // The separator and the name, encoded once as UTF-8
+	private static final String BLANK = " ";
+	private static final String GLUED = "";
 
 	/**
 	 * Constructs a new {@code Terminal} with the given name.
@@ -15,7 +21,19 @@ public class Terminal implements Symbol {
 	 * @param name the name representing the terminal
 	 */
 	public Terminal(String name) {
+		this(name, false);
+	}
+
+	/**
+	 * Constructs a new {@code Terminal} with the given name, optionally glued to the text before it.
+	 *
+	 * @param name the name representing the terminal
+	 * @param glued whether the terminal follows the previous text without a blank
+	 */
+	public Terminal(String name, boolean glued) {
 		this.variableName = name;
+		this.separator = glued ? GLUED : BLANK;
+		this.encoded = (separator + name).getBytes(StandardCharsets.UTF_8);
 	}
 
 	/**
@@ -28,6 +46,25 @@ public class Terminal implements Symbol {
 		return variableName;
 	}
 
+	/**
+	 * Tells whether this terminal follows the previous text without a blank.
+	 *
+	 * @return {@code true} if the terminal is glued
+	 */
+	public boolean isGlued() {
+		return separator.isEmpty();
+	}
+
+	/**
+	 * Returns the UTF-8 encoding of the text this terminal appends, separator included. The
+	 * array is shared and must not be modified.
+	 *
+	 * @return the encoded separator and name
+	 */
+	byte[] getEncoded() {
+		return encoded;
+	}
+
 	/**
 	 * Generates a string representation of this terminal.
 	 *
@@ -36,8 +73,30 @@ public class Terminal implements Symbol {
 	 * @return a string representation of the terminal
 	 */
 	@Override
-	public String generate(Grammar grammar, Random random) {
-		return BLANK + getName();
+	public String generate(Grammar grammar, RandomGenerator random) {
+		return separator + getName();
+	}
+
+	/**
+	 * Appends this terminal, preceded by its separator, to the buffer.
+	 *
+	 * @param out the buffer to append to
+	 * @param grammar the grammar context to use during generation
+	 * @param random the random number generator to use for selection
+	 */
+	@Override
+	public void generateInto(StringBuilder out, Grammar grammar, RandomGenerator random) {
+		out.append(separator).append(variableName);
+	}
+
+	/**
+	 * Appends the terminal as the first word of a sentence: without the separator and without
+	 * any leading whitespace of its name.
+	 *
+	 * @param out The buffer to append to.
+	 */
+	void appendStripped(StringBuilder out) {
+		Grammar.appendStripped(out, variableName);
 	}
 
 	/**
@@ -52,7 +111,8 @@ public class Terminal implements Symbol {
 			return false;
 		}
 		Terminal terminal = (Terminal) o;
-		return Objects.equals(variableName, terminal.variableName);
+		return Objects.equals(variableName, terminal.variableName)
+				&& Objects.equals(separator, terminal.separator);
 	}
 
 	/**
@@ -60,7 +120,7 @@ public class Terminal implements Symbol {
 	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(variableName);
+		return Objects.hash(variableName, separator);
 	}
 
 	/**
@@ -70,7 +130,7 @@ public class Terminal implements Symbol {
 	public String toString() {
 		return "Terminal{" +
 				"variableName='" + variableName + '\'' +
-				", BLANK='" + BLANK + '\'' +
+				", BLANK='" + separator + '\'' +
 				'}';
 	}
 }
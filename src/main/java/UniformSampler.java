@@ -0,0 +1,378 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A {@code UniformSampler} draws sentences uniformly among all derivations of the "start" rule
+ * that have a given number of terminals, rather than picking each alternative uniformly as
+ * {@link Rule#chooseIndex(RandomGenerator)} does, which favours short alternatives and shallow
+ * recursion. Weights are ignored: every derivation of the requested length is equally likely.
+ *
+ * <p>Sampling uses the recursive method. When the sampler is built it counts, for every rule,
+ * the derivations producing exactly {@code n} terminals for each {@code n} up to the maximum,
+ * and for every position in every alternative, the ways the rest of the alternative can
+ * produce {@code n} terminals. A sample then picks each alternative, and the number of
+ * terminals each nonterminal gets, with probability proportional to those counts. The split
+ * points are tried alternately from both ends, which keeps a sample close to linear in its
+ * length. Counts are doubles, so they are approximate beyond 2<sup>53</sup>, and the sampler
+ * refuses lengths whose counts overflow.
+ *
+ * <p>A grammar in which a rule can expand back to itself without producing a terminal has
+ * infinitely many derivations of some lengths, and is rejected. The tables are built once and
+ * never change, so one sampler can be shared by any number of threads.
+ */
+public final class UniformSampler {
+
+	private static final int NONTERMINAL_BIT = FlatGrammar.NONTERMINAL_BIT;
+	private static final int NO_RULE = -1;
+
+	private final Grammar source;
+	private final int maxTokens;
+	private final int startRuleId;
+	private final int[] ruleAlternatives; // The first alternative of each rule, plus the end
+	private final int[] alternativeSymbols; // The first symbol of each alternative, plus the end
+	private final int[] symbols; // Rule id << 1 | 1 for nonterminals, pool index << 1 for terminals
+	private final String[] terminals; // The text each terminal appends, separator included
+	private final double[][] ruleCounts; // Derivations of each rule, by number of terminals
+	private final double[][] suffixCounts; // Derivations of each alternative from each position on
+
+	private UniformSampler(Grammar source, CompiledGrammar compiled, FlatGrammar flat, int maxTokens) {
+		this.source = source;
+		this.maxTokens = maxTokens;
+		this.startRuleId = compiled.getStartRuleId();
+		ruleAlternatives = flat.ruleAlternatives;
+		alternativeSymbols = flat.alternativeSymbols;
+		symbols = flat.symbols;
+		terminals = flat.terminals;
+		ruleCounts = new double[compiled.getRuleCount()][maxTokens + 1];
+		suffixCounts = new double[symbols.length][maxTokens + 1];
+		count();
+	}
+
+	/**
+	 * Builds the count tables of a grammar up to a sentence length.
+	 *
+	 * @param grammar the grammar to sample from
+	 * @param maxTokens the largest number of terminals a sample can be asked to have
+	 * @return the sampler
+	 * @throws IllegalArgumentException if {@code maxTokens} is negative, a rule can expand to
+	 *     itself without producing a terminal, or a count overflows
+	 * @throws IllegalStateException if an alternative refers to a nonterminal that has no rule
+	 */
+	public static UniformSampler build(Grammar grammar, int maxTokens) {
+		if (maxTokens < 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		return new UniformSampler(grammar, grammar.compile(), grammar.flatten(), maxTokens);
+	}
+
+	/**
+	 * Returns the grammar this sampler was built from.
+	 *
+	 * @return the source grammar
+	 */
+	public Grammar getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of rules of the source grammar when the sampler was built.
+	 *
+	 * @return the rule count
+	 */
+	public int getRuleCount() {
+		return ruleCounts.length;
+	}
+
+	/**
+	 * Returns the largest number of terminals a sample can be asked to have.
+	 *
+	 * @return the maximum sentence length in terminals
+	 */
+	public int getMaxTokens() {
+		return maxTokens;
+	}
+
+	/**
+	 * Returns the number of derivations of the start rule with exactly the given number of
+	 * terminals.
+	 *
+	 * @param tokens the number of terminals
+	 * @return the number of derivations, zero if there is none or no start rule
+	 * @throws IllegalArgumentException if {@code tokens} is negative or above the maximum
+	 */
+	public double count(int tokens) {
+		checkTokens(tokens);
+		return startRuleId == NO_RULE ? 0 : ruleCounts[startRuleId][tokens];
+	}
+
+	/**
+	 * Draws a sentence uniformly among the derivations with exactly the given number of
+	 * terminals. The sentence is trimmed like those of {@link Grammar#generate(Grammar, RandomGenerator)}.
+	 *
+	 * @param tokens the number of terminals
+	 * @param random the random generator
+	 * @return the sentence
+	 * @throws IllegalArgumentException if {@code tokens} is negative or above the maximum, or no
+	 *     derivation has that many terminals
+	 */
+	public String sample(int tokens, RandomGenerator random) {
+		if (count(tokens) == 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		StringBuilder out = new StringBuilder();
+		ArrayDeque<int[]> stack = new ArrayDeque<>(); // Position, end and terminals left of each alternative
+		stack.push(frame(chooseAlternative(startRuleId, tokens, random), tokens));
+		while (!stack.isEmpty()) {
+			int[] frame = stack.peek();
+			int position = frame[0];
+			if (position == frame[1]) {
+				stack.pop();
+				continue;
+			}
+			int code = symbols[position];
+			frame[0]++;
+			if ((code & NONTERMINAL_BIT) == 0) {
+				if (out.length() > 0) {
+					out.append(terminals[code >>> 1]);
+				} else {
+					Grammar.appendStripped(out, terminals[code >>> 1]); // Nothing visible yet: skip the separator
+				}
+				frame[2]--;
+			} else {
+				int rule = code >>> 1;
+				int share = chooseShare(rule, position, frame[1], frame[2], random);
+				frame[2] -= share;
+				stack.push(frame(chooseAlternative(rule, share, random), share));
+			}
+		}
+		Grammar.trimEnd(out, 0);
+		return out.toString();
+	}
+
+	/**
+	 * Draws a sentence uniformly among the derivations with at most the given number of
+	 * terminals.
+	 *
+	 * @param maxTokens the largest number of terminals
+	 * @param random the random generator
+	 * @return the sentence
+	 * @throws IllegalArgumentException if {@code maxTokens} is negative or above the maximum, or
+	 *     no derivation is that short
+	 */
+	public String sampleAtMost(int maxTokens, RandomGenerator random) {
+		double total = 0;
+		for (int n = 0; n <= maxTokens; n++) {
+			total += count(n);
+		}
+		if (total == 0) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+		double target = random.nextDouble() * total;
+		int length = -1;
+		for (int n = 0; n <= maxTokens; n++) {
+			double c = ruleCounts[startRuleId][n];
+			if (c > 0) {
+				length = n;
+				target -= c;
+				if (target < 0) {
+					break;
+				}
+			}
+		}
+		return sample(length, random);
+	}
+
+	private void checkTokens(int tokens) {
+		if (tokens < 0 || tokens > maxTokens) {
+			throw new IllegalArgumentException(CustomException.INVALID_INPUT.getDetailMessage());
+		}
+	}
+
+	private int[] frame(int alternative, int tokens) {
+		return new int[] {alternativeSymbols[alternative], alternativeSymbols[alternative + 1], tokens};
+	}
+
+	/** Picks an alternative of a rule with probability proportional to its derivations of length {@code n}. */
+	private int chooseAlternative(int rule, int n, RandomGenerator random) {
+		double target = random.nextDouble() * ruleCounts[rule][n];
+		int chosen = -1;
+		for (int a = ruleAlternatives[rule]; a < ruleAlternatives[rule + 1]; a++) {
+			double c = alternativeCount(a, n);
+			if (c > 0) {
+				chosen = a;
+				target -= c;
+				if (target < 0) {
+					break;
+				}
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * Picks how many of the {@code n} terminals left in an alternative the nonterminal at
+	 * {@code position} produces, trying the shares 0, n, 1, n - 1 and so on.
+	 */
+	private int chooseShare(int rule, int position, int end, int n, RandomGenerator random) {
+		double target = random.nextDouble() * suffixCounts[position][n];
+		int chosen = -1;
+		for (int k = 0; k <= n; k++) {
+			int share = (k & 1) == 0 ? k >> 1 : n - (k >> 1);
+			double c = ruleCounts[rule][share] * rest(position, end, n - share);
+			if (c > 0) {
+				chosen = share;
+				target -= c;
+				if (target < 0) {
+					break;
+				}
+			}
+		}
+		return chosen;
+	}
+
+	/** Returns the derivations of the symbols after {@code position} with {@code n} terminals. */
+	private double rest(int position, int end, int n) {
+		return position + 1 == end ? (n == 0 ? 1 : 0) : suffixCounts[position + 1][n];
+	}
+
+	private double alternativeCount(int alternative, int n) {
+		int from = alternativeSymbols[alternative];
+		return from == alternativeSymbols[alternative + 1] ? (n == 0 ? 1 : 0) : suffixCounts[from][n];
+	}
+
+	/**
+	 * Fills the count tables one length at a time. Within a length, a rule's count can depend
+	 * on another rule's count for the same length only through a nonterminal whose neighbours
+	 * in the alternative can all produce nothing, so rules are visited in an order where such a
+	 * nonterminal comes first. The positions of an alternative that follow a symbol producing
+	 * at least one terminal only need shorter lengths of that prefix, and are filled after
+	 * every rule.
+	 */
+	private void count() {
+		int ruleCount = ruleCounts.length;
+		boolean[] nullable = new boolean[ruleCount];
+		boolean[] productive = new boolean[ruleCount];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < ruleCount; r++) {
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					boolean allNullable = true;
+					boolean allProductive = true;
+					for (int s = alternativeSymbols[a]; s < alternativeSymbols[a + 1]; s++) {
+						int code = symbols[s];
+						allNullable &= (code & NONTERMINAL_BIT) != 0 && nullable[code >>> 1];
+						allProductive &= (code & NONTERMINAL_BIT) == 0 || productive[code >>> 1];
+					}
+					if (allNullable && !nullable[r] || allProductive && !productive[r]) {
+						nullable[r] |= allNullable;
+						productive[r] |= allProductive;
+						changed = true;
+					}
+				}
+			}
+		}
+
+		int[] nullablePrefixEnd = new int[alternativeSymbols.length - 1]; // The last position after a nullable prefix
+		int[] dependents = new int[ruleCount]; // Same-length dependencies not yet satisfied
+		List<List<Integer>> callers = new ArrayList<>();
+		for (int r = 0; r < ruleCount; r++) {
+			callers.add(new ArrayList<>());
+		}
+		for (int r = 0; r < ruleCount; r++) {
+			for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+				int from = alternativeSymbols[a];
+				int to = alternativeSymbols[a + 1];
+				int last = from;
+				while (last < to - 1 && (symbols[last] & NONTERMINAL_BIT) != 0 && nullable[symbols[last] >>> 1]) {
+					last++;
+				}
+				nullablePrefixEnd[a] = last;
+				for (int s = from; s <= last && s < to; s++) {
+					int code = symbols[s];
+					if ((code & NONTERMINAL_BIT) != 0 && productive[code >>> 1] && productive[r]
+							&& restNullable(s, to, nullable)) {
+						dependents[r]++;
+						callers.get(code >>> 1).add(r);
+					}
+				}
+			}
+		}
+		int[] order = new int[ruleCount];
+		int size = 0;
+		for (int r = 0; r < ruleCount; r++) {
+			if (dependents[r] == 0) {
+				order[size++] = r;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			for (int caller : callers.get(order[i])) {
+				if (--dependents[caller] == 0) {
+					order[size++] = caller;
+				}
+			}
+		}
+		if (size < ruleCount) {
+			throw new IllegalArgumentException(CustomException.UNIT_CYCLE.getDetailMessage());
+		}
+
+		for (int n = 0; n <= maxTokens; n++) {
+			for (int r : order) {
+				double total = 0;
+				for (int a = ruleAlternatives[r]; a < ruleAlternatives[r + 1]; a++) {
+					int from = alternativeSymbols[a];
+					int to = alternativeSymbols[a + 1];
+					for (int s = Math.min(nullablePrefixEnd[a], to - 1); s >= from; s--) {
+						fillSuffix(s, to, n);
+					}
+					total += alternativeCount(a, n);
+				}
+				if (Double.isInfinite(total)) {
+					throw new IllegalArgumentException(CustomException.COUNT_OVERFLOW.getDetailMessage());
+				}
+				ruleCounts[r][n] = total;
+			}
+			for (int a = 0; a < nullablePrefixEnd.length; a++) {
+				int to = alternativeSymbols[a + 1];
+				for (int s = to - 1; s > nullablePrefixEnd[a]; s--) {
+					fillSuffix(s, to, n);
+				}
+			}
+		}
+	}
+
+	private boolean restNullable(int position, int end, boolean[] nullable) {
+		for (int s = position + 1; s < end; s++) {
+			if ((symbols[s] & NONTERMINAL_BIT) == 0 || !nullable[symbols[s] >>> 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void fillSuffix(int position, int end, int n) {
+		int code = symbols[position];
+		double total;
+		if ((code & NONTERMINAL_BIT) == 0) {
+			total = n == 0 ? 0 : rest(position, end, n - 1);
+		} else {
+			double[] counts = ruleCounts[code >>> 1];
+			total = 0;
+			for (int share = 0; share <= n; share++) {
+				if (counts[share] != 0) {
+					total += counts[share] * rest(position, end, n - share);
+				}
+			}
+		}
+		suffixCounts[position][n] = total;
+	}
+
+	@Override
+	public String toString() {
+		return "UniformSampler{maxTokens=" + maxTokens + ", counts=" + (startRuleId == NO_RULE ? "[]"
+				: Arrays.toString(ruleCounts[startRuleId])) + "}";
+	}
+}
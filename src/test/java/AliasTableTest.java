@@ -0,0 +1,41 @@
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AliasTableTest {
+
+    @Test
+    void sample_FollowsTheWeights() {
+        double[] weights = {1, 2, 7};
+        AliasTable table = new AliasTable(weights);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[weights.length];
+        int samples = 200_000;
+        for (int i = 0; i < samples; i++) {
+            counts[table.sample(random)]++;
+        }
+        assertEquals(0.1, counts[0] / (double) samples, 0.01);
+        assertEquals(0.2, counts[1] / (double) samples, 0.01);
+        assertEquals(0.7, counts[2] / (double) samples, 0.01);
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    void sample_SingleWeight_AlwaysReturnsZero() {
+        AliasTable table = new AliasTable(new double[] {5});
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, table.sample(random));
+        }
+    }
+
+    @Test
+    void constructor_RejectsInvalidWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] {1, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] {1, -2}));
+        assertThrows(IllegalArgumentException.class, () -> new AliasTable(new double[] {Double.NaN}));
+        assertThrows(IllegalArgumentException.class,
+            () -> new AliasTable(new double[] {Double.POSITIVE_INFINITY}));
+    }
+}
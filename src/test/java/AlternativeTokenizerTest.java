@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+class AlternativeTokenizerTest {
+
+    private AlternativeTokenizer tokenizer;
+
+    @BeforeEach
+    void setUp() {
+        tokenizer = new AlternativeTokenizer(new SymbolTable());
+    }
+
+    private List<Symbol> tokenize(String text) {
+        return tokenizer.tokenize(text).getSequence();
+    }
+
+    @Test
+    void tokenize_SplitsTerminalsAndNonterminals() {
+        assertEquals(List.of(new Terminal("You"), new NonterminalName("adj"), new Terminal(".")),
+                tokenize("You <adj> ."));
+    }
+
+    @Test
+    void tokenize_GluesPunctuationToNonterminals() {
+        assertEquals(List.of(new NonterminalName("adj"), new Terminal(",", true), new Terminal("and")),
+                tokenize("<adj>, and"));
+        assertEquals(List.of(new NonterminalName("a"), new NonterminalName("b"), new Terminal("'s", true)),
+                tokenize("<a><b>'s"));
+    }
+
+    @Test
+    void tokenize_TextBeforeANonterminalIsItsOwnTerminal() {
+        assertEquals(List.of(new Terminal("("), new NonterminalName("noun"), new Terminal(")", true)),
+                tokenize("(<noun>)"));
+    }
+
+    @Test
+    void tokenize_EscapedBracketsAreLiteral() {
+        assertEquals(List.of(new Terminal("<tag>"), new Terminal("a\\b")), tokenize("\\<tag\\> a\\\\b"));
+        assertEquals(List.of(new Terminal("x\\y")), tokenize("x\\y"));
+        assertEquals(List.of(new Terminal("<a>b")), tokenize("<a\\>b"));
+    }
+
+    @Test
+    void tokenize_UnmatchedBracketsAreLiteral() {
+        assertEquals(List.of(new Terminal("a<b"), new Terminal("<>"), new Terminal("c>")), tokenize("a<b <> c>"));
+        assertEquals(List.of(new Terminal("<"), new NonterminalName("a")), tokenize("<<a>"));
+    }
+
+    @Test
+    void tokenize_BlanksSplitLikeStringSplit() {
+        assertEquals(List.of(new Terminal("a"), new Terminal(""), new Terminal("b")), tokenize("a  b"));
+        assertEquals(List.of(new Terminal(""), new Terminal("a")), tokenize(" a"));
+        assertEquals(List.of(new Terminal("a")), tokenize("a  "));
+        assertEquals(List.of(new Terminal("")), tokenize(""));
+        assertEquals(List.of(), tokenize("   "));
+    }
+
+    @Test
+    void tokenize_GeneratesGluedText() {
+        Grammar grammar = new Grammar();
+        Rule start = new Rule("start");
+        start.addToArrayList(tokenizer.tokenize("It is <adj>, <adj>; (<adj>)"));
+        Rule adj = new Rule("adj");
+        adj.addToArrayList(tokenizer.tokenize("red"));
+        grammar.addToRuleArray(start);
+        grammar.addToRuleArray(adj);
+        assertEquals("It is red, red; ( red)", grammar.generate(grammar, new java.util.Random(1)));
+    }
+}
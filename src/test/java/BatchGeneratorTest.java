@@ -0,0 +1,113 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchGeneratorTest {
+
+    private Grammar grammar;
+
+    @BeforeEach
+    void setUp() {
+        grammar = new JsonFileParser("src/main/resources/grammar/insult_grammar.json").JsonFileParser();
+    }
+
+    @Test
+    void generate_ProducesTheRequestedNumberOfSentences() {
+        List<String> sentences = BatchGenerator.generate(grammar, 1000, 42).collect(Collectors.toList());
+        assertEquals(1000, sentences.size());
+        sentences.forEach(sentence -> assertFalse(sentence.isEmpty()));
+    }
+
+    @Test
+    void generate_SameSeed_IsReproducibleRegardlessOfThreadCount() {
+        long count = BatchGenerator.BLOCK_SIZE + 1000; // Spans more than one block
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            List<String> sequential = BatchGenerator.generate(grammar, count, 7, single).collect(Collectors.toList());
+            List<String> parallel = BatchGenerator.generate(grammar, count, 7, several).collect(Collectors.toList());
+            assertEquals(sequential, parallel);
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test
+    void generate_DifferentSeeds_GiveDifferentOutput() {
+        List<String> first = BatchGenerator.generate(grammar, 100, 1).collect(Collectors.toList());
+        List<String> second = BatchGenerator.generate(grammar, 100, 2).collect(Collectors.toList());
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void generate_ZeroCount_ReturnsEmptyStream() {
+        assertEquals(0, BatchGenerator.generate(grammar, 0, 1).count());
+    }
+
+    @Test
+    void generate_NegativeCount_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> BatchGenerator.generate(grammar, -1, 1));
+    }
+
+    @Test
+    void generateIndexed_AnyRangeCanBeRegeneratedOnItsOwn() {
+        List<String> run = BatchGenerator.generateIndexed(grammar, 5, 0, 600).collect(Collectors.toList());
+        List<String> shard = BatchGenerator.generateIndexed(grammar, 5, 300, 300).collect(Collectors.toList());
+        assertEquals(run.subList(300, 600), shard);
+        assertEquals(run.get(417), BatchGenerator.sentenceAt(grammar, 5, 417));
+    }
+
+    @Test
+    void generateIndexed_IsReproducibleRegardlessOfThreadCount() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            assertEquals(BatchGenerator.generateIndexed(grammar, 3, 10, 2000).collect(Collectors.toList()),
+                BatchGenerator.generateIndexed(grammar, 3, 10, 2000, single).collect(Collectors.toList()));
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void generateIndexed_NegativeArguments_Throw() {
+        assertThrows(IllegalArgumentException.class, () -> BatchGenerator.generateIndexed(grammar, 1, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> BatchGenerator.generateIndexed(grammar, 1, 0, -1));
+    }
+
+    @Test
+    void write_WritesTheGeneratedSentencesAsLines() throws IOException {
+        long count = BatchGenerator.BLOCK_SIZE + 300; // Spans more than one block
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BatchGenerator.write(grammar, count, 11, pool, out);
+            assertEquals(BatchGenerator.generate(grammar, count, 11).map(s -> s + "\n").collect(Collectors.joining()),
+                out.toString(StandardCharsets.UTF_8));
+            out.reset();
+            BatchGenerator.writeIndexed(grammar, 11, 40, 700, pool, out);
+            assertEquals(BatchGenerator.generateIndexed(grammar, 11, 40, 700).map(s -> s + "\n")
+                .collect(Collectors.joining()), out.toString(StandardCharsets.UTF_8));
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchGenerator.write(grammar, -1, 1, ForkJoinPool.commonPool(), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void generate_IteratorPastTheEnd_Throws() {
+        Iterator<String> iterator = BatchGenerator.generate(grammar, 1, 1).iterator();
+        iterator.next();
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+}
@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class BinaryGrammarFormatTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Grammar roundTrip(Grammar grammar) throws IOException {
+        Path file = tempDir.resolve("grammar" + BinaryGrammarFormat.EXTENSION);
+        BinaryGrammarFormat.write(grammar, file);
+        return BinaryGrammarFormat.read(file);
+    }
+
+    @Test
+    void read_BundledGrammars_EqualTheJsonGrammars() throws IOException {
+        for (String name : new String[] {"insult_grammar.json", "poem_grammar.json", "term_paper_grammar.json"}) {
+            Grammar json = new JsonFileParser("src/main/resources/grammar/" + name).parse();
+            Grammar binary = roundTrip(json);
+            assertEquals(json, binary, name);
+            assertEquals(json.getGrammarName(), binary.getGrammarName());
+            assertEquals(json.getGrammarDesc(), binary.getGrammarDesc());
+        }
+    }
+
+    @Test
+    void read_SameSeed_GeneratesTheSameSentences() throws IOException {
+        Grammar json = new JsonFileParser("src/main/resources/grammar/poem_grammar.json").parse();
+        Grammar binary = roundTrip(json);
+        for (long seed = 0; seed < 50; seed++) {
+            assertEquals(json.generate(json, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)),
+                    binary.generate(binary, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)));
+        }
+    }
+
+    @Test
+    void read_KeepsWeightsAndUnicodeText() throws IOException {
+        Path json = tempDir.resolve("weighted.json");
+        Files.writeString(json, "{\"grammarTitle\": \"\u00dcn\u00efcode\", \"start\": ["
+                + "{\"text\": \"h\u00e9llo <name>\", \"weight\": 3}, \"bye\"], \"name\": [\"w\u00f6rld\"]}");
+        Grammar grammar = new JsonFileParser(json.toString()).parse();
+        Grammar binary = roundTrip(grammar);
+        assertEquals(grammar, binary);
+        assertEquals("\u00dcn\u00efcode", binary.getGrammarName());
+        assertNull(binary.getGrammarDesc());
+        assertTrue(binary.getRule(0).isWeighted());
+        assertEquals(3.0, binary.getRule(0).getWeight(0));
+    }
+
+    @Test
+    void read_KeepsGluedTerminals() throws IOException {
+        Path json = tempDir.resolve("glued.json");
+        Files.writeString(json, "{\"start\": [\"<a>, <a>.\"], \"a\": [\"x\"]}");
+        Grammar grammar = new JsonFileParser(json.toString()).parse();
+        Grammar binary = roundTrip(grammar);
+        assertEquals(grammar, binary);
+        assertEquals("x, x.", binary.generate(binary, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, 1)));
+    }
+
+    @Test
+    void read_InternsSymbolsIntoTheGivenTable() throws IOException {
+        Grammar json = new JsonFileParser("src/main/resources/grammar/insult_grammar.json").parse();
+        Path file = tempDir.resolve("insult" + BinaryGrammarFormat.EXTENSION);
+        BinaryGrammarFormat.write(json, file);
+        SymbolTable table = new SymbolTable();
+        Grammar first = BinaryGrammarFormat.read(file, table);
+        Grammar second = BinaryGrammarFormat.read(file, table);
+        int rule = first.findRule(0, "adj1");
+        Symbol word = first.getRule(rule).sequence.get(0).getSequence().get(0);
+        assertInstanceOf(Terminal.class, word);
+        assertSame(table.terminal(word.getName()), word);
+        assertSame(word, second.getRule(rule).sequence.get(0).getSequence().get(0));
+    }
+
+    @Test
+    void read_GeneratesFromTheFlatFormBeforeBuildingTheRules() throws IOException {
+        Path weighted = tempDir.resolve("weighted.json");
+        Files.writeString(weighted, "{\"start\": [{\"text\": \"<a> <b>\", \"weight\": 3}, \"<b>, <a>\"],"
+                + " \"a\": [\"x\", \"y\"], \"b\": [\"<a> z\", {\"text\": \"w\", \"weight\": 0.5}]}");
+        for (String name : new String[] {"src/main/resources/grammar/insult_grammar.json", weighted.toString()}) {
+            Grammar json = new JsonFileParser(name).parse();
+            Path file = tempDir.resolve("flat" + BinaryGrammarFormat.EXTENSION);
+            BinaryGrammarFormat.write(json, file);
+            SymbolTable table = new SymbolTable();
+            Grammar binary = BinaryGrammarFormat.read(file, table);
+            FlatGrammar flat = binary.flatten();
+            assertEquals(json.flatten().getTerminalCount(), flat.getTerminalCount(), name);
+            for (long seed = 0; seed < 50; seed++) {
+                assertEquals(json.generate(json, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)),
+                        flat.generate(binary, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)), name);
+            }
+            assertEquals(0, table.getSymbolCount(), name); // No symbol object was built
+            assertEquals(json, binary, name);
+            assertTrue(table.getSymbolCount() > 0, name);
+            assertSame(flat, binary.flatten());
+        }
+    }
+
+    @Test
+    void read_NotABinaryGrammar_ThrowsIOException() throws IOException {
+        Path file = tempDir.resolve("bad" + BinaryGrammarFormat.EXTENSION);
+        Files.writeString(file, "{\"grammarTitle\": \"json\"}");
+        assertThrows(IOException.class, () -> BinaryGrammarFormat.read(file));
+        Files.write(file, new byte[] {1, 2});
+        assertThrows(IOException.class, () -> BinaryGrammarFormat.read(file));
+    }
+}
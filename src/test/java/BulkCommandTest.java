@@ -0,0 +1,147 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkCommandTest {
+
+    private static final String POEM = "src/main/resources/grammar/poem_grammar.json";
+
+    @TempDir
+    Path tempDir;
+
+    private String run(String... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BulkCommand.parse(args).run(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void isBulk_SelectsOptionsButNotCompile() {
+        assertTrue(BulkCommand.isBulk(new String[] {"--grammar", POEM}));
+        assertFalse(BulkCommand.isBulk(new String[] {"--compile", "a.json", "b.gbin"}));
+        assertFalse(BulkCommand.isBulk(new String[] {"--serve", "grammar"}));
+        assertFalse(BulkCommand.isBulk(new String[] {"grammar"}));
+        assertFalse(BulkCommand.isBulk(new String[] {}));
+    }
+
+    @Test
+    void parse_RejectsInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> BulkCommand.parse(new String[] {"--count", "3"}));
+        assertThrows(IllegalArgumentException.class, () -> BulkCommand.parse(new String[] {"--grammar"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--color", "red"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--count", "many"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--count", "-1"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--threads", "0"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--format", "xml"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--split", "1000"}));
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--out", "a.txt", "--split", "0"}));
+        assertThrows(IllegalArgumentException.class, () -> BulkCommand.parse(
+            new String[] {"--grammar", POEM, "--out", "a.txt", "--split", "1000", "--format", "jsonl"}));
+    }
+
+    @Test
+    void run_MaterializeGeneratesFromTheMaterializedGrammar() throws IOException {
+        String text = run("--grammar", POEM, "--count", "20", "--seed", "4", "--materialize", "100");
+        Grammar materialized = GrammarMaterializer.materialize(new JsonFileParser(POEM).parse(), 100);
+        String expected = BatchGenerator.generateIndexed(materialized, 4, 0, 20).map(s -> s + "\n")
+            .collect(Collectors.joining());
+        assertEquals(expected, text);
+        assertThrows(IllegalArgumentException.class,
+            () -> BulkCommand.parse(new String[] {"--grammar", POEM, "--materialize", "-2"}));
+    }
+
+    @Test
+    void parse_KeepsTheGivenSeed() {
+        BulkCommand command = BulkCommand.parse(new String[] {"--grammar", POEM, "--seed", "42"});
+        assertEquals(42, command.getSeed());
+        assertFalse(command.isSeedChosen());
+        assertTrue(BulkCommand.parse(new String[] {"--grammar", POEM}).isSeedChosen());
+    }
+
+    @Test
+    void run_WritesCountSentencesMatchingBatchGenerator() throws IOException {
+        String text = run("--grammar", POEM, "--count", "20", "--seed", "9");
+        Grammar grammar = new JsonFileParser(POEM).parse();
+        grammar.compile();
+        String expected = BatchGenerator.generateIndexed(grammar, 9, 0, 20)
+            .map(sentence -> sentence + "\n")
+            .collect(Collectors.joining());
+        assertEquals(expected, text);
+        assertEquals("", run("--grammar", POEM, "--count", "0"));
+    }
+
+    @Test
+    void run_OutputDoesNotDependOnTheThreadCount() throws IOException {
+        String one = run("--grammar", POEM, "--count", "500", "--seed", "5", "--threads", "1");
+        String four = run("--grammar", POEM, "--count", "500", "--seed", "5", "--threads", "4");
+        assertEquals(one, four);
+    }
+
+    @Test
+    void run_JsonlFormatIndexesAndEscapes() throws IOException {
+        Path file = tempDir.resolve("quote.json");
+        Files.writeString(file, "{\"start\": [\"say \\\"hi\\\"\\t\\\\\"]}");
+        String jsonl = run("--grammar", file.toString(), "--count", "2", "--format", "jsonl");
+        assertEquals("{\"index\":0,\"text\":\"say \\\"hi\\\"\\t\\\\\"}\n"
+            + "{\"index\":1,\"text\":\"say \\\"hi\\\"\\t\\\\\"}\n", jsonl);
+    }
+
+    @Test
+    void writeJsonEscaped_EscapesControlCharacters() throws IOException {
+        StringWriter writer = new StringWriter();
+        BulkCommand.writeJsonEscaped(writer, "a\nb\rc\u0001d");
+        assertEquals("a\\nb\\rc\\u0001d", writer.toString());
+    }
+
+    @Test
+    void run_WritesToTheOutputFileFromABinaryGrammar() throws IOException {
+        Path binary = tempDir.resolve("poem" + BinaryGrammarFormat.EXTENSION);
+        BinaryGrammarFormat.write(new JsonFileParser(POEM).parse(), binary);
+        Path out = tempDir.resolve("out.txt");
+        assertEquals("", run("--grammar", binary.toString(), "--count", "7", "--seed", "1",
+            "--out", out.toString()));
+        List<String> lines = Files.readAllLines(out);
+        assertEquals(7, lines.size());
+        assertEquals(run("--grammar", POEM, "--count", "7", "--seed", "1"),
+            String.join("\n", lines) + "\n");
+    }
+
+    @Test
+    void run_SplitWritesTheIndexedRunWithCorpusWriter() throws IOException {
+        Path out = tempDir.resolve("corpus.txt.gz");
+        assertEquals("", run("--grammar", POEM, "--count", "3000", "--seed", "2", "--threads", "2",
+            "--out", out.toString(), "--split", "20000"));
+        assertFalse(Files.exists(out));
+        Grammar grammar = GrammarOptimizer.optimize(new JsonFileParser(POEM).parse()).getGrammar();
+        String expected = BatchGenerator.generateIndexed(grammar, 2, 0, 3000)
+            .map(sentence -> sentence + "\n")
+            .collect(Collectors.joining());
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (int i = 0; Files.exists(tempDir.resolve(String.format("corpus-%05d.txt.gz", i))); i++) {
+            try (InputStream in = new GZIPInputStream(
+                Files.newInputStream(tempDir.resolve(String.format("corpus-%05d.txt.gz", i))))) {
+                in.transferTo(all);
+            }
+        }
+        assertTrue(Files.exists(tempDir.resolve("corpus-00001.txt.gz")));
+        assertEquals(expected, all.toString(StandardCharsets.UTF_8));
+        assertEquals(expected, run("--grammar", POEM, "--count", "3000", "--seed", "2")); // A seed means one corpus
+    }
+}
@@ -193,6 +193,18 @@ public class CollectionOfSymbolTest {
         assertEquals(cos1.hashCode(), cos2.hashCode(), "Equal sequences should have the same hash code.");
     }
 
+    @Test
+    @DisplayName("Test generateInto appends the same text as generate")
+    void testGenerateInto() {
+        collectionOfSymbol.addToSequence(new Terminal("Hello"));
+        collectionOfSymbol.addToSequence(new Terminal("World!"));
+
+        StringBuilder out = new StringBuilder("prefix");
+        collectionOfSymbol.generateInto(out, mockGrammar, mockRandom);
+
+        assertEquals("prefix Hello World!", out.toString());
+    }
+
 
 
 }
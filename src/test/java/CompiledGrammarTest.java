@@ -0,0 +1,102 @@
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledGrammarTest {
+
+    private Grammar grammar;
+    private NonterminalName objectRef;
+
+    @BeforeEach
+    void setUp() {
+        grammar = new Grammar();
+        Rule start = new Rule("start");
+        CollectionOfSymbol startAlt = new CollectionOfSymbol();
+        startAlt.addToSequence(new Terminal("The"));
+        objectRef = new NonterminalName("object");
+        startAlt.addToSequence(objectRef);
+        start.addToArrayList(startAlt);
+
+        Rule object = new Rule("object");
+        CollectionOfSymbol objectAlt = new CollectionOfSymbol();
+        objectAlt.addToSequence(new Terminal("waves"));
+        object.addToArrayList(objectAlt);
+
+        grammar.addToRuleArray(object);
+        grammar.addToRuleArray(start);
+    }
+
+    @Test
+    void compile_AssignsRuleIdsInListOrder() {
+        CompiledGrammar compiled = grammar.compile();
+        assertEquals(2, compiled.getRuleCount());
+        assertEquals(0, compiled.getRuleId("object"));
+        assertEquals(1, compiled.getStartRuleId());
+        assertEquals(-1, compiled.getRuleId("missing"));
+        assertSame(grammar.getRule(1), compiled.getStartRule());
+        assertSame(grammar, compiled.getSource());
+    }
+
+    @Test
+    void compile_BindsNonterminalsToRuleIds() {
+        CompiledGrammar compiled = grammar.compile();
+        assertEquals(0, objectRef.getRuleId(compiled));
+        assertSame(grammar.getRule(0), compiled.resolve(objectRef));
+    }
+
+    @Test
+    void compile_RebindsASharedNonterminalWithoutMixingGrammars() {
+        CompiledGrammar first = grammar.compile();
+        Grammar other = TestGrammars.grammar(TestGrammars.rule("padding", "x"), grammar.getRule(0),
+            grammar.getRule(1));
+        CompiledGrammar second = other.compile();
+        assertEquals(-1, objectRef.getRuleId(first));
+        assertEquals(1, objectRef.getRuleId(second));
+        assertSame(grammar.getRule(0), first.resolve(objectRef));
+        assertSame(grammar.getRule(0), second.resolve(objectRef));
+    }
+
+    @Test
+    void compile_IsCachedUntilARuleIsAdded() {
+        CompiledGrammar first = grammar.compile();
+        assertSame(first, grammar.compile());
+        grammar.addToRuleArray(new Rule("extra"));
+        assertNotSame(first, grammar.compile());
+    }
+
+    @Test
+    void resolve_UnboundNonterminal_FallsBackToName() {
+        CompiledGrammar compiled = grammar.compile();
+        NonterminalName unbound = new NonterminalName("object");
+        assertEquals(-1, unbound.getRuleId(compiled));
+        assertSame(grammar.getRule(0), compiled.resolve(unbound));
+    }
+
+    @Test
+    void resolve_UnknownNonterminal_Throws() {
+        CompiledGrammar compiled = grammar.compile();
+        assertThrows(IllegalStateException.class, () -> compiled.resolve(new NonterminalName("missing")));
+    }
+
+    @Test
+    void compile_UndefinedNonterminal_ThrowsAtCompileTime() {
+        CollectionOfSymbol broken = new CollectionOfSymbol();
+        broken.addToSequence(new NonterminalName("nowhere"));
+        grammar.getRule(0).addToArrayList(broken);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> CompiledGrammar.compile(grammar));
+        assertTrue(e.getMessage().contains("nowhere"));
+    }
+
+    @Test
+    void generate_UsesCompiledRules() {
+        assertEquals("The waves", grammar.generate(grammar, new Random(0)));
+    }
+
+    @Test
+    void compile_GrammarWithoutStart_HasNoStartRule() {
+        CompiledGrammar compiled = new Grammar().compile();
+        assertEquals(-1, compiled.getStartRuleId());
+        assertNull(compiled.getStartRule());
+    }
+}
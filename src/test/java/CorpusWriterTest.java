@@ -0,0 +1,117 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusWriterTest {
+
+    private static final String POEM = "src/main/resources/grammar/poem_grammar.json";
+
+    @TempDir
+    Path tempDir;
+
+    private static String expected(Grammar grammar, long count, long seed) {
+        return BatchGenerator.generateIndexed(grammar, seed, 0, count)
+            .map(sentence -> sentence + "\n")
+            .collect(Collectors.joining());
+    }
+
+    private static String read(List<Path> files, boolean compressed) throws IOException {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (Path file : files) {
+            try (InputStream in = compressed ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+                in.transferTo(all);
+            }
+        }
+        return all.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void write_MatchesIndexedGenerationWhateverTheThreadCount() throws IOException {
+        Grammar grammar = new JsonFileParser(POEM).parse();
+        long count = CorpusWriter.BLOCK_SENTENCES * 3L + 17;
+        for (int threads : new int[] {1, 4}) {
+            CorpusWriter.Report report = new CorpusWriter(tempDir, "t" + threads, Long.MAX_VALUE, false)
+                .write(grammar, count, 11, threads);
+            assertEquals(List.of(tempDir.resolve("t" + threads + "-00000.txt")), report.getFiles());
+            String text = read(report.getFiles(), false);
+            assertEquals(expected(grammar, count, 11), text);
+            assertEquals(count, report.getSentences());
+            assertEquals(text.getBytes(StandardCharsets.UTF_8).length, report.getBytes());
+            assertEquals(report.getBytes(), report.getDiskBytes());
+            assertTrue(report.getSentencesPerSecond() > 0);
+            assertTrue(report.toString().startsWith("Wrote " + count + " sentences"));
+        }
+    }
+
+    @Test
+    void write_RollsFilesAtWholeLines() throws IOException {
+        Grammar grammar = new JsonFileParser(POEM).parse();
+        CorpusWriter.Report report = new CorpusWriter(tempDir, "roll", 1000, false).write(grammar, 5000, 3, 2);
+        assertTrue(report.getFiles().size() > 1);
+        for (Path file : report.getFiles()) {
+            String text = Files.readString(file);
+            assertTrue(text.length() <= 1000);
+            assertTrue(text.endsWith("\n"));
+        }
+        assertEquals(expected(grammar, 5000, 3), read(report.getFiles(), false));
+    }
+
+    @Test
+    void write_CompressesEachFileInGzipFormat() throws IOException {
+        Grammar grammar = new JsonFileParser(POEM).parse();
+        CorpusWriter.Report report = new CorpusWriter(tempDir, "gz", 200_000, true).write(grammar, 20_000, 5, 3);
+        assertTrue(report.getFiles().size() > 1);
+        assertTrue(report.getFiles().get(0).toString().endsWith("gz-00000.txt.gz"));
+        assertEquals(expected(grammar, 20_000, 5), read(report.getFiles(), true));
+        assertTrue(report.getDiskBytes() < report.getBytes());
+    }
+
+    @Test
+    void write_GrowsBuffersAndKeepsLongLinesWhole() throws IOException {
+        Path file = tempDir.resolve("long.json");
+        Files.writeString(file, "{\"start\": [\"" + "x".repeat(3000) + " <n>\"], \"n\": [\"1\", \"2\"]}");
+        Grammar grammar = new JsonFileParser(file.toString()).parse();
+        CorpusWriter.Report report = new CorpusWriter(tempDir, "long", 100, false).write(grammar, 1000, 7, 2);
+        assertEquals(1000, report.getFiles().size());
+        assertEquals(expected(grammar, 1000, 7), read(report.getFiles(), false));
+    }
+
+    @Test
+    void write_NothingToWrite() throws IOException {
+        Grammar grammar = new JsonFileParser(POEM).parse();
+        CorpusWriter.Report report = new CorpusWriter(tempDir, "none", 100, true).write(grammar, 0, 1, 2);
+        assertEquals(List.of(), report.getFiles());
+        assertEquals(0, report.getBytes());
+    }
+
+    @Test
+    void write_ReportsGenerationFailures() {
+        Grammar grammar = new Grammar();
+        Rule start = new Rule("start");
+        CollectionOfSymbol loop = new CollectionOfSymbol();
+        loop.addToSequence(new Terminal("y"));
+        loop.addToSequence(new NonterminalName("start"));
+        start.addToArrayList(loop);
+        grammar.addToRuleArray(start);
+        CorpusWriter writer = new CorpusWriter(tempDir, "fail", 100, false);
+        assertThrows(IllegalStateException.class, () -> writer.write(grammar, 10, 1, 2));
+    }
+
+    @Test
+    void invalidArguments() {
+        Grammar grammar = new Grammar();
+        assertThrows(IllegalArgumentException.class, () -> new CorpusWriter(tempDir, "x", 0, false));
+        CorpusWriter writer = new CorpusWriter(tempDir, "x", 100, false);
+        assertThrows(IllegalArgumentException.class, () -> writer.write(grammar, -1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> writer.write(grammar, 1, 1, 0));
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpansionEngineTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    @Test
+    void generate_MatchesRecursiveGenerationForTheSameSeed() {
+        ExpansionEngine engine = new ExpansionEngine();
+        for (String file : new String[] {"insult_grammar.json", "poem_grammar.json", "term_paper_grammar.json"}) {
+            Grammar grammar = new JsonFileParser(GRAMMAR_DIR + file).JsonFileParser();
+            for (int seed = 0; seed < 50; seed++) {
+                assertEquals(grammar.generate(grammar, new Random(seed)),
+                    engine.generate(grammar, new Random(seed)), file + " seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void generate_DeepRecursion_DoesNotOverflowTheStack() {
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        Random random = new Random() {
+            private int calls;
+
+            @Override
+            public int nextInt(int bound) {
+                return ++calls < 200_000 ? bound - 1 : 0;
+            }
+        };
+        ExpansionEngine engine = new ExpansionEngine(Integer.MAX_VALUE, Long.MAX_VALUE);
+        String sentence = engine.generate(grammar, random);
+        assertTrue(sentence.startsWith("x y y"));
+    }
+
+    @Test
+    void generate_DepthLimitExceeded_FailsFastAndRestoresBuffer() {
+        ExpansionEngine engine = new ExpansionEngine(100, Long.MAX_VALUE);
+        StringBuilder out = new StringBuilder("kept");
+        assertThrows(IllegalStateException.class,
+            () -> engine.generateInto(out, TestGrammars.leftRecursiveGrammar(), TestGrammars.alwaysLast()));
+        assertEquals("kept", out.toString());
+    }
+
+    @Test
+    void generate_UnitCycle_FailsFastInsteadOfSpinning(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("cycle.json");
+        Files.writeString(file, "{\"start\":[\"<a>\"],\"a\":[\"<b>\"],\"b\":[\"<a>\"]}");
+        Grammar grammar = GenerateProcessing.loadGrammar(file, new SymbolTable());
+        StringBuilder out = new StringBuilder("kept");
+        IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(
+            IllegalStateException.class, () -> new ExpansionEngine().generateInto(out, grammar, new Random(1))));
+        assertEquals(CustomException.UNIT_CYCLE.getMessage(), e.getMessage());
+        assertEquals("kept", out.toString());
+    }
+
+    @Test
+    void generate_TokenLimitExceeded_FailsFast() {
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        Random random = new Random() {
+            private int calls;
+
+            @Override
+            public int nextInt(int bound) {
+                return ++calls < 10 ? bound - 1 : 0;
+            }
+        };
+        ExpansionEngine engine = new ExpansionEngine(1000, 5);
+        assertThrows(IllegalStateException.class, () -> engine.generate(grammar, random));
+    }
+
+    @Test
+    void generate_EngineIsReusableAfterFailure() {
+        ExpansionEngine engine = new ExpansionEngine(50, 1000);
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        assertThrows(IllegalStateException.class, () -> engine.generate(grammar, TestGrammars.alwaysLast()));
+        assertEquals("x", engine.generate(grammar, new Random() {
+            @Override
+            public int nextInt(int bound) {
+                return 0;
+            }
+        }));
+    }
+
+    @Test
+    void generate_RightRecursionReusesTheStackFrame() {
+        Grammar grammar = new JsonFileParser(GRAMMAR_DIR + "insult_grammar.json").JsonFileParser();
+        ExpansionEngine engine = new ExpansionEngine(8, Long.MAX_VALUE);
+        for (int seed = 0; seed < 50; seed++) {
+            assertFalse(engine.generate(grammar, new Random(seed)).isEmpty());
+        }
+    }
+
+    @Test
+    void generate_NoStartRule_ReturnsEmptyString() {
+        assertEquals("", new ExpansionEngine().generate(new Grammar(), new Random(0)));
+    }
+
+    @Test
+    void constructor_RejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpansionEngine(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ExpansionEngine(10, 0));
+        ExpansionEngine engine = new ExpansionEngine(3, 4);
+        assertEquals(3, engine.getMaxDepth());
+        assertEquals(4, engine.getMaxTokens());
+    }
+}
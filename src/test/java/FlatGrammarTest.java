@@ -0,0 +1,220 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatGrammarTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void generate_MatchesObjectGraphForTheSameSeed() {
+        for (String file : new String[] {"insult_grammar.json", "poem_grammar.json", "term_paper_grammar.json"}) {
+            Grammar grammar = new JsonFileParser(GRAMMAR_DIR + file).JsonFileParser();
+            FlatGrammar flat = grammar.flatten();
+            for (int seed = 0; seed < 50; seed++) {
+                assertEquals(grammar.generate(grammar, new Random(seed)),
+                    flat.generate(grammar, new Random(seed)), file + " seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void generate_WeightedAndGluedGrammar_MatchesObjectGraph() throws IOException {
+        Path file = tempDir.resolve("weighted.json");
+        Files.writeString(file, "{\"start\": [{\"text\": \"<a>, <a>!\", \"weight\": 5}, \"<a>\"],"
+            + " \"a\": [{\"text\": \"x\", \"weight\": 0.5}, {\"text\": \"y\", \"weight\": 3}, \"z\"]}");
+        Grammar grammar = new JsonFileParser(file.toString()).parse();
+        FlatGrammar flat = FlatGrammar.flatten(grammar);
+        StringBuilder out = new StringBuilder("> ");
+        for (long seed = 0; seed < 100; seed++) {
+            String expected = grammar.generate(grammar, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed));
+            assertEquals(expected, flat.generate(grammar, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)));
+            out.setLength(2);
+            flat.generateInto(out, grammar, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed));
+            assertEquals("> " + expected, out.toString());
+        }
+    }
+
+    @Test
+    void flatten_PoolsTerminalText() {
+        Grammar grammar = new JsonFileParser(GRAMMAR_DIR + "insult_grammar.json").JsonFileParser();
+        FlatGrammar flat = grammar.flatten();
+        assertSame(grammar, flat.getSource());
+        assertEquals(grammar.getRules().size(), flat.getRuleCount());
+        int alternatives = 0;
+        int symbols = 0;
+        for (Rule rule : grammar.getRules()) {
+            alternatives += rule.sequence.size();
+            for (CollectionOfSymbol alternative : rule.sequence) {
+                symbols += alternative.getSequence().size();
+            }
+        }
+        assertEquals(alternatives, flat.getAlternativeCount());
+        assertEquals(symbols, flat.getSymbolCount());
+        assertTrue(flat.getTerminalCount() < symbols);
+    }
+
+    @Test
+    void flatten_IsCachedUntilARuleIsAdded() {
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        FlatGrammar flat = grammar.flatten();
+        assertSame(flat, grammar.flatten());
+        grammar.addToRuleArray(new Rule("other"));
+        assertNotSame(flat, grammar.flatten());
+    }
+
+    @Test
+    void generate_DeepRecursion_StopsAtTheDepthLimit() {
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        FlatGrammar flat = FlatGrammar.flatten(grammar, 50, 1_000);
+        StringBuilder out = new StringBuilder("kept");
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> flat.generateInto(out, grammar, TestGrammars.alwaysLast()));
+        assertEquals("Maximum expansion depth exceeded.", e.getMessage());
+        assertEquals("kept", out.toString());
+    }
+
+    @Test
+    void generate_TailRecursion_StopsAtTheTokenLimit() {
+        Grammar grammar = new Grammar();
+        Rule start = new Rule("start");
+        CollectionOfSymbol loop = new CollectionOfSymbol();
+        loop.addToSequence(new Terminal("y"));
+        loop.addToSequence(new NonterminalName("start"));
+        start.addToArrayList(loop);
+        grammar.addToRuleArray(start);
+
+        FlatGrammar flat = FlatGrammar.flatten(grammar, 4, 100);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> flat.generate(grammar, new Random(0)));
+        assertEquals("Maximum sentence length exceeded.", e.getMessage());
+    }
+
+    @Test
+    void generate_UnitCycle_FailsFastOnEveryOutputPath() throws IOException {
+        Path file = tempDir.resolve("cycle.json");
+        Files.writeString(file, "{\"start\":[\"<a>\"],\"a\":[\"<b>\"],\"b\":[\"<a>\"]}");
+        Grammar grammar = GenerateProcessing.loadGrammar(file, new SymbolTable());
+        FlatGrammar flat = grammar.flatten();
+        StringBuilder out = new StringBuilder("kept");
+        ByteBuffer bytes = ByteBuffer.allocate(16);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> flat.generateInto(out, grammar, new Random(1)));
+            assertEquals(CustomException.UNIT_CYCLE.getMessage(), e.getMessage());
+            assertThrows(IllegalStateException.class, () -> flat.generateInto(bytes, grammar, new Random(1)));
+            assertThrows(IllegalStateException.class,
+                () -> flat.writeTo(new ByteArrayOutputStream(), grammar, new Random(1)));
+        });
+        assertEquals("kept", out.toString());
+        assertEquals(0, bytes.position());
+    }
+
+    @Test
+    void generate_NoStartRuleOrOtherGrammar() {
+        Grammar empty = new Grammar();
+        assertEquals("", empty.flatten().generate(empty, new Random(0)));
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        assertThrows(IllegalArgumentException.class, () -> grammar.flatten().generate(empty, new Random(0)));
+        assertThrows(IllegalArgumentException.class, () -> FlatGrammar.flatten(grammar, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> FlatGrammar.flatten(grammar, 1, 0));
+    }
+
+    @Test
+    void byteOutput_MatchesTheStringEncodedAsUtf8() throws IOException {
+        Path file = tempDir.resolve("unicode.json");
+        Files.writeString(file, "{\"start\": [\"  <a>, <a>!  \", \"<a> \\u00e9t\\u00e9 \"],"
+            + " \"a\": [\"na\\u00efve\", \"\\u65e5\\u672c\", \"x  y\"]}");
+        Grammar grammar = new JsonFileParser(file.toString()).parse();
+        FlatGrammar flat = grammar.flatten();
+        ByteBuffer direct = ByteBuffer.allocateDirect(1024);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (long seed = 0; seed < 100; seed++) {
+            byte[] expected = grammar.generate(grammar, RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed))
+                .getBytes(StandardCharsets.UTF_8);
+
+            direct.clear();
+            assertEquals(expected.length, flat.generateInto(direct, grammar,
+                RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)));
+            byte[] written = new byte[direct.flip().remaining()];
+            direct.get(written);
+            assertArrayEquals(expected, written);
+
+            stream.reset();
+            assertEquals(expected.length, flat.writeTo(stream, grammar,
+                RandomAlgorithms.create(RandomAlgorithms.DEFAULT, seed)));
+            assertArrayEquals(expected, stream.toByteArray());
+        }
+    }
+
+    /** A random source that recurses {@code depth} times before picking the first alternative. */
+    private Random recurse(int depth) {
+        return new Random() {
+            private int calls;
+
+            @Override
+            public int nextInt(int bound) {
+                return ++calls < depth ? bound - 1 : 0;
+            }
+        };
+    }
+
+    @Test
+    void byteOutput_LongSentencesGrowTheScratchBuffer() throws IOException {
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        FlatGrammar flat = grammar.flatten();
+        String expected = flat.generate(grammar, recurse(2_000));
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        flat.writeTo(stream, grammar, recurse(2_000));
+        assertEquals(expected, stream.toString(StandardCharsets.UTF_8));
+        assertTrue(expected.length() > 1_000);
+    }
+
+    @Test
+    void byteOutput_WorksAfterASentenceLargerThanTheRetainedBuffer() throws IOException {
+        Grammar grammar = TestGrammars.leftRecursiveGrammar();
+        FlatGrammar flat = FlatGrammar.flatten(grammar, 50_000, 100_000);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        assertTrue(flat.writeTo(stream, grammar, recurse(40_000)) > 1 << 16);
+        assertEquals(flat.generate(grammar, recurse(40_000)), stream.toString(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        flat.generateInto(buffer, grammar, recurse(3));
+        assertEquals(flat.generate(grammar, recurse(3)),
+            new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void byteOutput_LeavesTheBufferUnchangedOnFailure() {
+        Grammar grammar = new JsonFileParser(GRAMMAR_DIR + "term_paper_grammar.json").JsonFileParser();
+        FlatGrammar flat = grammar.flatten();
+        ByteBuffer small = ByteBuffer.allocate(4);
+        small.put((byte) 'a');
+        assertThrows(BufferOverflowException.class, () -> flat.generateInto(small, grammar, new Random(0)));
+        assertEquals(1, small.position());
+
+        Grammar recursive = TestGrammars.leftRecursiveGrammar();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        assertThrows(IllegalStateException.class,
+            () -> FlatGrammar.flatten(recursive, 5, 100).generateInto(buffer, recursive, TestGrammars.alwaysLast()));
+        assertEquals(0, buffer.position());
+        assertThrows(IllegalStateException.class,
+            () -> FlatGrammar.flatten(recursive, 100, 5)
+                .writeTo(new ByteArrayOutputStream(), recursive, TestGrammars.alwaysLast()));
+        assertThrows(IllegalArgumentException.class,
+            () -> flat.writeTo(new ByteArrayOutputStream(), recursive, new Random(0)));
+        Grammar empty = new Grammar();
+        assertEquals(0, empty.flatten().generateInto(buffer, empty, new Random(0)));
+    }
+}
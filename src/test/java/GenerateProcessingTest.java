@@ -1,4 +1,6 @@
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -43,6 +45,60 @@ class GenerateProcessingTest {
             "Grammar list should not be empty after parsing valid JSON files");
     }
 
+    @Test
+    void parseJsonFileToGrammar_InternsSymbolsAcrossGrammars() {
+        generateProcessing.parseJsonFileToGrammar(tempDir);
+        SymbolTable symbols = generateProcessing.getSymbolTable();
+        assertTrue(symbols.getDistinctSymbolCount() < symbols.getSymbolCount(),
+            "Repeated symbols should share one object");
+        assertTrue(symbols.getEstimatedBytesSaved() > 0);
+    }
+
+    @Test
+    void parseJsonFileToGrammar_OrdersGrammarsByPathAndReportsBadFiles(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("b.json"),
+            "{\"grammarTitle\": \"B\", \"grammarDesc\": \"\", \"start\": [\"b\"]}");
+        Files.writeString(dir.resolve("a.json"),
+            "{\"grammarTitle\": \"A\", \"grammarDesc\": \"\", \"start\": [\"a\"]}");
+        Files.writeString(dir.resolve("c.json"), "not json");
+        Files.writeString(dir.resolve("d.json"),
+            "{\"grammarTitle\": \"D\", \"grammarDesc\": \"\", \"start\": [\"<missing>\"]}");
+
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+        try {
+            generateProcessing.parseJsonFileToGrammar(dir);
+        } finally {
+            System.setOut(original);
+        }
+
+        List<Grammar> grammars = generateProcessing.getGrammarList();
+        assertEquals(2, grammars.size());
+        assertEquals("A", grammars.get(0).getGrammarName());
+        assertEquals("B", grammars.get(1).getGrammarName());
+        String output = captured.toString();
+        assertTrue(output.contains("Failed to load grammar."));
+        assertTrue(output.contains("c.json"));
+        assertTrue(output.contains("d.json"));
+    }
+
+    @Test
+    void parseJsonFileToGrammar_LoadsBinaryGrammarFiles(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("a.json"),
+            "{\"grammarTitle\": \"A\", \"grammarDesc\": \"\", \"start\": [\"a\"]}");
+        Grammar binary = new JsonFileParser(dir.resolve("a.json").toString()).parse();
+        binary.grammarName = "B";
+        BinaryGrammarFormat.write(binary, dir.resolve("b" + BinaryGrammarFormat.EXTENSION));
+
+        generateProcessing.parseJsonFileToGrammar(dir);
+
+        List<Grammar> grammars = generateProcessing.getGrammarList();
+        assertEquals(2, grammars.size());
+        assertEquals("B", grammars.get(1).getGrammarName());
+        assertEquals("a", grammars.get(1).generate(grammars.get(1), RandomAlgorithms.create(RandomAlgorithms.DEFAULT, 1)));
+    }
+
     @Test
     void parseJsonFileToGrammar_NoJsonFiles_DoesNotAddGrammarsToList() {
         // Make sure there are no .json files in the temp directory.
@@ -0,0 +1,216 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationMetricsTest {
+
+    private static Grammar grammar(Rule... rules) {
+        Grammar grammar = TestGrammars.grammar(rules);
+        grammar.grammarName = "Test \"Grammar\"";
+        return grammar;
+    }
+
+    private static Grammar simple() {
+        return grammar(TestGrammars.rule("start", "<a> <b>"), TestGrammars.rule("a", "x", "y"),
+            TestGrammars.rule("b", "z"));
+    }
+
+    private static Grammar recursive() {
+        return grammar(TestGrammars.rule("start", "<list> .", "<list> \uD83D\uDE42"),
+            TestGrammars.rule("list", "\u00edtem", "\u00edtem , <list>", "<pair>"),
+            TestGrammars.rule("pair", "( <list> )"));
+    }
+
+    @Test
+    void enableMetrics_IsOffByDefaultAndStartsOverWhenRulesChange() {
+        Grammar grammar = simple();
+        assertNull(grammar.getMetrics());
+        GenerationMetrics metrics = grammar.enableMetrics();
+        assertSame(metrics, grammar.enableMetrics());
+        assertSame(metrics, grammar.getMetrics());
+        grammar.disableMetrics();
+        assertNull(grammar.getMetrics());
+        metrics = grammar.enableMetrics();
+        grammar.generate(grammar, new SplittableRandom(1));
+        grammar.addToRuleArray(TestGrammars.rule("c", "w"));
+        GenerationMetrics restarted = grammar.getMetrics();
+        assertNotSame(metrics, restarted);
+        assertEquals(4, restarted.snapshot().getRuleNames().size());
+        assertEquals(0, restarted.snapshot().getSentences());
+        grammar.generate(grammar, new SplittableRandom(1));
+        assertEquals(1, grammar.getMetrics().snapshot().getSentences());
+        grammar.disableMetrics();
+        grammar.addToRuleArray(TestGrammars.rule("d", "v"));
+        assertNull(grammar.getMetrics());
+    }
+
+    @Test
+    void recordsEveryChoiceAndSentence() {
+        Grammar grammar = simple();
+        GenerationMetrics metrics = grammar.enableMetrics();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(3, grammar.generate(grammar, random).length());
+        }
+        GenerationMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals("Test \"Grammar\"", snapshot.getGrammarName());
+        assertEquals(List.of("start", "a", "b"), snapshot.getRuleNames());
+        assertEquals(100, snapshot.getSentences());
+        assertEquals(100, snapshot.getExpansions("start"));
+        assertEquals(100, snapshot.getExpansions("a"));
+        assertEquals(100, snapshot.getChoices("a")[0] + snapshot.getChoices("a")[1]);
+        assertTrue(snapshot.getChoices("a")[0] > 0 && snapshot.getChoices("a")[1] > 0);
+        assertEquals(100, snapshot.getExpansions("b"));
+        assertEquals(100, snapshot.getDepthHistogram()[GenerationMetrics.bucket(2)]);
+        assertEquals(200, snapshot.getDepthSum());
+        assertEquals(100, snapshot.getLengthHistogram()[GenerationMetrics.bucket(3)]);
+        assertEquals(300, snapshot.getLengthSum());
+        assertTrue(snapshot.getSentencesPerSecond() > 0);
+    }
+
+    @Test
+    void everyGenerationPathRecordsTheSameChoicesAndLengths() throws IOException {
+        Grammar grammar = recursive();
+        int sentences = 500;
+        List<GenerationMetrics.Snapshot> snapshots = new ArrayList<>();
+        for (int path = 0; path < 4; path++) {
+            GenerationMetrics metrics = grammar.enableMetrics();
+            SplittableRandom random = new SplittableRandom(42);
+            ExpansionEngine engine = new ExpansionEngine();
+            FlatGrammar flat = grammar.flatten();
+            for (int i = 0; i < sentences; i++) {
+                switch (path) {
+                    case 0 -> grammar.generate(grammar, random);
+                    case 1 -> engine.generate(grammar, random);
+                    case 2 -> flat.generate(grammar, random);
+                    default -> flat.writeTo(new ByteArrayOutputStream(), grammar, random);
+                }
+            }
+            snapshots.add(metrics.snapshot());
+            grammar.disableMetrics();
+        }
+        GenerationMetrics.Snapshot recursive = snapshots.get(0);
+        for (GenerationMetrics.Snapshot snapshot : snapshots) {
+            assertEquals(sentences, snapshot.getSentences());
+            assertEquals(recursive.getLengthSum(), snapshot.getLengthSum());
+            for (String rule : recursive.getRuleNames()) {
+                assertArrayEquals(recursive.getChoices(rule), snapshot.getChoices(rule));
+            }
+        }
+        // The stack paths count unfinished alternatives, which recursive nesting never undercuts
+        assertEquals(snapshots.get(1).getDepthSum(), snapshots.get(2).getDepthSum());
+        assertEquals(snapshots.get(1).getDepthSum(), snapshots.get(3).getDepthSum());
+        assertTrue(recursive.getDepthSum() >= snapshots.get(1).getDepthSum());
+    }
+
+    @Test
+    void generationIsUnchangedByMetrics() {
+        Grammar grammar = recursive();
+        SplittableRandom plain = new SplittableRandom(5);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            expected.add(grammar.generate(grammar, plain));
+        }
+        grammar.enableMetrics();
+        SplittableRandom measured = new SplittableRandom(5);
+        for (String sentence : expected) {
+            assertEquals(sentence, grammar.generate(grammar, measured));
+        }
+    }
+
+    @Test
+    void concurrentThreadsLoseNoCounts() throws Exception {
+        Grammar grammar = simple();
+        GenerationMetrics metrics = grammar.enableMetrics();
+        FlatGrammar flat = grammar.flatten();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long seed = t;
+                futures.add(pool.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    for (int i = 0; i < 10_000; i++) {
+                        flat.generate(grammar, random);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        GenerationMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(40_000, snapshot.getSentences());
+        assertEquals(40_000, snapshot.getExpansions("a"));
+        assertEquals(120_000, snapshot.getLengthSum());
+    }
+
+    @Test
+    void bucket_HoldsPowersOfTwo() {
+        assertEquals(0, GenerationMetrics.bucket(0));
+        assertEquals(1, GenerationMetrics.bucket(1));
+        assertEquals(2, GenerationMetrics.bucket(2));
+        assertEquals(2, GenerationMetrics.bucket(3));
+        assertEquals(3, GenerationMetrics.bucket(4));
+        assertEquals(GenerationMetrics.BUCKETS - 1, GenerationMetrics.bucket(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void toText_WritesPrometheusFamilies() {
+        Grammar grammar = simple();
+        GenerationMetrics metrics = grammar.enableMetrics();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 10; i++) {
+            grammar.generate(grammar, random);
+        }
+        String text = GenerationMetrics.toText(Map.of(2, metrics.snapshot()));
+        String label = "grammar=\"2\",title=\"Test \\\"Grammar\\\"\"";
+        assertTrue(text.contains("# TYPE grammar_sentences_total counter\n"));
+        assertTrue(text.contains("grammar_sentences_total{" + label + "} 10\n"));
+        assertTrue(text.contains("grammar_rule_expansions_total{" + label + ",rule=\"b\"} 10\n"));
+        assertTrue(text.contains("grammar_alternative_choices_total{" + label + ",rule=\"b\",alternative=\"0\"} 10\n"));
+        assertTrue(text.contains("# TYPE grammar_derivation_depth histogram\n"));
+        assertTrue(text.contains("grammar_derivation_depth_bucket{" + label + ",le=\"1\"} 0\n"));
+        assertTrue(text.contains("grammar_derivation_depth_bucket{" + label + ",le=\"3\"} 10\n"));
+        assertTrue(text.contains("grammar_derivation_depth_bucket{" + label + ",le=\"+Inf\"} 10\n"));
+        assertTrue(text.contains("grammar_sentence_length_sum{" + label + "} 30\n"));
+        assertTrue(text.contains("grammar_sentence_length_count{" + label + "} 10\n"));
+        assertFalse(GenerationMetrics.toText(Map.of()).contains("{"));
+    }
+
+    @Test
+    void toText_KeepsGrammarsWithTheSameTitleApartAndSkipsShadowedRules() {
+        Grammar first = simple();
+        Grammar second = grammar(TestGrammars.rule("start", "<a>"), TestGrammars.rule("a", "x"),
+            TestGrammars.rule("a", "never", "nor this"));
+        Map<Integer, GenerationMetrics.Snapshot> snapshots = new LinkedHashMap<>();
+        snapshots.put(1, first.enableMetrics().snapshot());
+        snapshots.put(2, second.enableMetrics().snapshot());
+        String text = GenerationMetrics.toText(snapshots);
+        String[] lines = text.split("\n");
+        assertEquals(lines.length, new HashSet<>(List.of(lines)).size());
+        assertTrue(text.contains("grammar_sentences_total{grammar=\"1\","));
+        assertTrue(text.contains("grammar_sentences_total{grammar=\"2\","));
+        String shadowed = "grammar_alternative_choices_total{grammar=\"2\",title=\"Test \\\"Grammar\\\"\",rule=\"a\"";
+        assertTrue(text.contains(shadowed + ",alternative=\"0\"} 0\n"));
+        assertFalse(text.contains(shadowed + ",alternative=\"1\""));
+    }
+
+    @Test
+    void escape_QuotesLabelValues() {
+        assertEquals("a\\\\b\\\"c\\nd", GenerationMetrics.escape("a\\b\"c\nd"));
+        assertEquals("plain", GenerationMetrics.escape("plain"));
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationServerTest {
+
+    private GenerationServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = GenerationServer.load(Path.of("src/main/resources/grammar"), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+    }
+
+    private HttpURLConnection open(String pathAndQuery) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + pathAndQuery).openConnection();
+    }
+
+    private String body(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void grammars_ListsEveryGrammarAsJson() throws IOException {
+        HttpURLConnection connection = open("/grammars");
+        String json = body(connection);
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("application/json"));
+        assertEquals(3, server.getGrammars().size());
+        assertTrue(json.startsWith("[{\"id\":1,\"title\":\"Insult Generator\",\"description\":"));
+        assertTrue(json.contains("{\"id\":2,\"title\":\"Poem Generator\""));
+        assertTrue(json.endsWith("}]"));
+    }
+
+    @Test
+    void generate_StreamsTheIndexedSentencesOfTheSeed() throws IOException {
+        HttpURLConnection connection = open("/generate?grammar=poem+generator&count=50&seed=9");
+        String text = body(connection);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("9", connection.getHeaderField(GenerationServer.SEED_HEADER));
+        Grammar poem = server.getGrammars().get(1);
+        String[] lines = text.split("\n");
+        assertEquals(50, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(BatchGenerator.sentenceAt(poem, 9, i), lines[i]);
+        }
+        assertEquals(text, body(open("/generate?grammar=2&count=50&seed=9")));
+    }
+
+    @Test
+    void generate_DrawsASeedWhenNoneIsGiven() throws IOException {
+        HttpURLConnection connection = open("/generate?grammar=1");
+        String text = body(connection);
+        long seed = Long.parseLong(connection.getHeaderField(GenerationServer.SEED_HEADER));
+        assertEquals(BatchGenerator.sentenceAt(server.getGrammars().get(0), seed, 0) + "\n", text);
+        assertEquals("", body(open("/generate?grammar=1&count=0")));
+    }
+
+    @Test
+    void generate_RejectsBadRequests() throws IOException {
+        assertEquals(404, open("/generate?grammar=4").getResponseCode());
+        assertEquals(404, open("/generate?grammar=nothing").getResponseCode());
+        assertEquals(404, open("/generate").getResponseCode());
+        assertEquals(400, open("/generate?grammar=1&count=x").getResponseCode());
+        assertEquals(400, open("/generate?grammar=1&seed=").getResponseCode());
+        HttpURLConnection tooMany = open("/generate?grammar=1&count=" + (GenerationServer.MAX_COUNT + 1));
+        assertEquals(400, tooMany.getResponseCode());
+        assertTrue(body(tooMany).contains("count must be between 0 and"));
+        HttpURLConnection post = open("/grammars");
+        post.setRequestMethod("DELETE");
+        assertEquals(405, post.getResponseCode());
+        assertEquals("GET", post.getHeaderField("Allow"));
+    }
+
+    @Test
+    void generate_AbortsTheResponseWhenASentenceFails() throws IOException {
+        Grammar cycle = TestGrammars.grammar(TestGrammars.rule("start", "<a>"), TestGrammars.rule("a", "<b>"),
+            TestGrammars.rule("b", "<a>"));
+        cycle.grammarName = "Cycle";
+        GenerationServer failing = new GenerationServer(List.of(cycle), new InetSocketAddress(0));
+        failing.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + failing.getPort() + "/generate?grammar=1&count=3").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertThrows(IOException.class, () -> connection.getInputStream().readAllBytes());
+        } finally {
+            failing.stop(0);
+        }
+    }
+
+    @Test
+    void grammars_FollowsTheReloader(@TempDir Path dir) throws IOException {
+        Path poem = Files.copy(Path.of("src/main/resources/grammar/poem_grammar.json"), dir.resolve("poem.json"));
+        GrammarReloader reloader = new GrammarReloader(dir);
+        GenerationServer reloading = new GenerationServer(reloader, new InetSocketAddress(0));
+        reloading.start();
+        try {
+            URL url = new URL("http://localhost:" + reloading.getPort() + "/grammars");
+            assertTrue(body((HttpURLConnection) url.openConnection()).contains("Poem Generator"));
+            Files.delete(poem);
+            reloader.reload(List.of(poem));
+            assertEquals("[]", body((HttpURLConnection) url.openConnection()));
+            assertEquals(List.of(), reloading.getGrammars());
+        } finally {
+            reloading.stop(0);
+        }
+    }
+
+    @Test
+    void parseQuery_DecodesAndKeepsTheFirstValue() {
+        assertEquals(Map.of("a", "b c", "d", "", "e", "&"), GenerationServer.parseQuery("a=b+c&d&e=%26&a=x"));
+        assertEquals(Map.of(), GenerationServer.parseQuery(null));
+    }
+
+    @Test
+    void load_FailsWithoutGrammars() {
+        assertThrows(IllegalArgumentException.class, () -> GenerationServer.load(Path.of("no-such-directory"), 0));
+        ExecutorService executor = GenerationServer.newExecutor();
+        assertNotNull(executor);
+        executor.shutdown();
+    }
+
+    @Test
+    void metrics_ReportsTheGenerationOfServedGrammars() throws IOException {
+        HttpURLConnection connection = open("/metrics");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+        assertFalse(body(connection).contains("{"));
+        assertFalse(server.isMetricsEnabled());
+
+        server.setMetricsEnabled(true);
+        body(open("/generate?grammar=2&count=5&seed=1"));
+        String text = body(open("/metrics"));
+        assertTrue(text.contains("grammar_sentences_total{grammar=\"2\",title=\"Poem Generator\"} 5\n"));
+        assertTrue(text.contains("grammar_sentences_total{grammar=\"1\",title=\"Insult Generator\"} 0\n"));
+        assertTrue(text.contains("grammar_sentence_length_count{grammar=\"2\",title=\"Poem Generator\"} 5\n"));
+
+        server.setMetricsEnabled(false);
+        assertNull(server.getGrammars().get(1).getMetrics());
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarAnalyzerTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void finiteGrammar_CountsAndLengths() {
+        // Terminals append a blank and their text: " x" has length 2, " ab" length 3
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<a> <b>", "x"),
+            TestGrammars.rule("a", "1", "22"), TestGrammars.rule("b", "ab", "<a>"));
+        GrammarAnalyzer analyzer = new GrammarAnalyzer(grammar);
+        assertEquals(BigInteger.valueOf(7), analyzer.getDerivationCount("start", 3));
+        assertEquals(BigInteger.valueOf(3), analyzer.getDerivationCount("start", 2));
+        assertEquals(BigInteger.ZERO, analyzer.getDerivationCount("start", 0));
+        assertEquals(BigInteger.valueOf(3), analyzer.getDerivationCount("b", 5));
+        assertTrue(analyzer.hasFiniteDerivations("start"));
+        assertFalse(analyzer.isRecursive("start"));
+        assertEquals(2, analyzer.getMinLength("start"));
+        assertEquals(6, analyzer.getMaxLength("start"));
+        assertEquals(2.5, analyzer.getExpectedLength("a"), 1e-9);
+        assertEquals(2.75, analyzer.getExpectedLength("b"), 1e-9);
+        assertEquals(0.5 * 2 + 0.5 * (2.5 + 2.75), analyzer.getExpectedLength("start"), 1e-9);
+        assertEquals(3, analyzer.getRuleCount());
+    }
+
+    @Test
+    void recursiveGrammar_UnboundedAndExpectedLength() {
+        // w expands to "a" with probability 1/2 and to two copies of itself otherwise
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<w>"),
+            TestGrammars.rule("w", "a", "<w> <w>", "<w> b"));
+        GrammarAnalyzer analyzer = new GrammarAnalyzer(grammar);
+        assertTrue(analyzer.isRecursive("w"));
+        assertFalse(analyzer.isRecursive("start"));
+        assertFalse(analyzer.hasFiniteDerivations("start"));
+        assertEquals(GrammarAnalyzer.UNBOUNDED, analyzer.getMaxLength("start"));
+        assertEquals(2, analyzer.getMinLength("start"));
+        // E = (2 + 2E + E + 2) / 3 has no finite solution: each w expands to 1 w on average
+        assertEquals(Double.POSITIVE_INFINITY, analyzer.getExpectedLength("w"));
+
+        Grammar subcritical = TestGrammars.grammar(TestGrammars.rule("start", "<w>"),
+            TestGrammars.rule("w", "a", "bb", "<w> c"));
+        GrammarAnalyzer sub = new GrammarAnalyzer(subcritical);
+        // E = (2 + 3 + E + 2) / 3, so E = 3.5
+        assertEquals(3.5, sub.getExpectedLength("start"), 1e-9);
+        assertEquals(BigInteger.valueOf(2 * 20), sub.getDerivationCount("w", 20));
+    }
+
+    @Test
+    void recursionThatAddsNothing_IsBoundedButInfinite() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<a>"), TestGrammars.rule("a", "x", "<b>"),
+            TestGrammars.rule("b", "<a>"));
+        GrammarAnalyzer analyzer = new GrammarAnalyzer(grammar);
+        assertTrue(analyzer.isRecursive("a"));
+        assertTrue(analyzer.isRecursive("b"));
+        assertFalse(analyzer.hasFiniteDerivations("start"));
+        assertEquals(2, analyzer.getMaxLength("start"));
+        assertEquals(2, analyzer.getMinLength("b"));
+    }
+
+    @Test
+    void rulesThatNeverFinish() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<loop> x", "y"),
+            TestGrammars.rule("loop", "<loop> z"), TestGrammars.rule("empty"));
+        GrammarAnalyzer analyzer = new GrammarAnalyzer(grammar);
+        assertEquals(GrammarAnalyzer.NO_LENGTH, analyzer.getMinLength("loop"));
+        assertEquals(GrammarAnalyzer.NO_LENGTH, analyzer.getMaxLength("loop"));
+        assertEquals(BigInteger.ZERO, analyzer.getDerivationCount("loop", 10));
+        assertTrue(analyzer.hasFiniteDerivations("loop"));
+        assertEquals(2, analyzer.getMaxLength("start"));
+        assertTrue(analyzer.hasFiniteDerivations("start"));
+        assertEquals(Double.POSITIVE_INFINITY, analyzer.getExpectedLength("start"));
+        assertEquals(Double.POSITIVE_INFINITY, analyzer.getExpectedLength("empty"));
+        assertEquals(GrammarAnalyzer.NO_LENGTH, analyzer.getMinLength("empty"));
+    }
+
+    @Test
+    void weightsChangeOnlyTheExpectedLength() throws IOException {
+        Path file = tempDir.resolve("weighted.json");
+        Files.writeString(file, "{\"start\": [{\"text\": \"a\", \"weight\": 3}, \"bbbbb\"]}");
+        GrammarAnalyzer analyzer = new GrammarAnalyzer(new JsonFileParser(file.toString()).parse());
+        assertEquals(0.75 * 2 + 0.25 * 6, analyzer.getExpectedLength("start"), 1e-9);
+        assertEquals(2, analyzer.getMinLength("start"));
+        assertEquals(6, analyzer.getMaxLength("start"));
+    }
+
+    @Test
+    void bundledGrammars_AgreeWithSamplingAndEnumeration() {
+        for (String file : new String[] {"insult_grammar.json", "poem_grammar.json", "term_paper_grammar.json"}) {
+            Grammar grammar = new JsonFileParser(GRAMMAR_DIR + file).JsonFileParser();
+            GrammarAnalyzer analyzer = new GrammarAnalyzer(grammar);
+            LanguageEnumerator enumerator = new LanguageEnumerator(grammar);
+            assertEquals(enumerator.count(6), analyzer.getDerivationCount("start", 6));
+            assertEquals(enumerator.isFinite(), analyzer.hasFiniteDerivations("start"));
+            StringBuilder out = new StringBuilder();
+            Random random = new Random(1);
+            long total = 0;
+            int samples = 20_000;
+            for (int i = 0; i < samples; i++) {
+                out.setLength(0);
+                grammar.compile().getStartRule().generateInto(out, grammar, random);
+                assertTrue(out.length() >= analyzer.getMinLength("start"), file);
+                assertTrue(out.length() <= analyzer.getMaxLength("start"), file);
+                total += out.length();
+            }
+            double expected = analyzer.getExpectedLength("start");
+            assertEquals(expected, (double) total / samples, expected * 0.05, file);
+            assertTrue(analyzer.summary(3).contains("start"));
+        }
+    }
+
+    @Test
+    void unknownRule() {
+        GrammarAnalyzer analyzer = new GrammarAnalyzer(TestGrammars.grammar(TestGrammars.rule("start", "x")));
+        assertThrows(IllegalArgumentException.class, () -> analyzer.isRecursive("nope"));
+        assertThrows(IllegalArgumentException.class, () -> analyzer.getDerivationCount("start", -1));
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarMaterializerTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    private static Map<String, Double> table(Rule rule) {
+        double total = 0;
+        for (int i = 0; i < rule.sequence.size(); i++) {
+            total += rule.getWeight(i);
+        }
+        Map<String, Double> texts = new HashMap<>();
+        for (int i = 0; i < rule.sequence.size(); i++) {
+            List<Symbol> symbols = rule.sequence.get(i).getSequence();
+            assertEquals(1, symbols.size());
+            assertTrue(((Terminal) symbols.get(0)).isGlued());
+            texts.put(symbols.get(0).getName(), rule.getWeight(i) / total);
+        }
+        return texts;
+    }
+
+    @Test
+    void materialize_TablesHoldTheExactProbabilities() {
+        Rule adjective = TestGrammars.rule("adj", "big", "red");
+        adjective.addToArrayList(new AlternativeTokenizer(new SymbolTable()).tokenize("<adj2>"), 2.0);
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "the <adj> <noun>,"), adjective,
+            TestGrammars.rule("adj2", "red", "old"),
+            TestGrammars.rule("noun", "cat"));
+        Grammar materialized = GrammarMaterializer.materialize(grammar);
+        Map<String, Double> adj = table(materialized.getRules().get(1));
+        assertEquals(3, adj.size());
+        assertEquals(0.25 + 0.25, adj.get(" red"), 1e-12); // Once directly and once through adj2
+        assertEquals(0.25, adj.get(" big"), 1e-12);
+        assertEquals(0.25, adj.get(" old"), 1e-12);
+        Map<String, Double> start = table(materialized.getRules().get(0));
+        assertEquals(0.5, start.get(" the red cat,"), 1e-12);
+        assertEquals(materialized.getRules().get(3), grammar.getRules().get(3)); // A lone terminal is already a lookup
+        assertEquals(List.of("start", "adj", "adj2", "noun"),
+            materialized.getRules().stream().map(Rule::getRuleName).toList());
+    }
+
+    @Test
+    void materialize_KeepsRecursiveAndLargeRules() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<list> <pair>"),
+            TestGrammars.rule("list", "x", "<list> x"),
+            TestGrammars.rule("pair", "<d> <d>"), TestGrammars.rule("d", "0", "1", "2"));
+        Grammar small = GrammarMaterializer.materialize(grammar, 8);
+        assertEquals(grammar.getRules().get(0), small.getRules().get(0));
+        assertEquals(grammar.getRules().get(1), small.getRules().get(1));
+        assertEquals(grammar.getRules().get(2), small.getRules().get(2)); // Nine derivations
+        assertEquals(9, table(GrammarMaterializer.materialize(grammar, 9).getRules().get(2)).size());
+        assertNotSame(grammar.getRules().get(0), small.getRules().get(0));
+        assertNotSame(grammar.getRules().get(0).sequence.get(0).getSequence().get(0),
+            small.getRules().get(0).sequence.get(0).getSequence().get(0));
+        assertThrows(IllegalArgumentException.class, () -> GrammarMaterializer.materialize(grammar, -1));
+    }
+
+    @Test
+    void materialize_UniformTablesStayUnweighted() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<a> <a>"), TestGrammars.rule("a", "p", "q"));
+        Rule start = GrammarMaterializer.materialize(grammar).getRules().get(0);
+        assertFalse(start.isWeighted());
+        assertEquals(4, start.sequence.size());
+    }
+
+    @Test
+    void materialize_PreservesTheSentenceDistribution() throws Exception {
+        Grammar grammar = new JsonFileParser(GRAMMAR_DIR + "poem_grammar.json").parse();
+        Grammar materialized = GrammarMaterializer.materialize(grammar);
+        assertEquals(grammar.getGrammarName(), materialized.getGrammarName());
+        int samples = 60_000;
+        Map<String, Integer> original = new HashMap<>();
+        Map<String, Integer> tabled = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < samples; i++) {
+            original.merge(grammar.generate(grammar, random), 1, Integer::sum);
+            tabled.merge(materialized.generate(materialized, random), 1, Integer::sum);
+        }
+        assertEquals(original.keySet(), tabled.keySet());
+        for (String sentence : original.keySet()) {
+            assertEquals(original.get(sentence), tabled.get(sentence), samples * 0.01, sentence);
+        }
+    }
+
+    @Test
+    void materialize_GeneratesFromEveryBundledGrammar() throws Exception {
+        for (String file : new String[] {"insult_grammar.json", "term_paper_grammar.json"}) {
+            Grammar materialized = GrammarMaterializer.materialize(new JsonFileParser(GRAMMAR_DIR + file).parse());
+            String sentence = materialized.flatten().generate(materialized, new SplittableRandom(1));
+            assertFalse(sentence.isEmpty());
+            assertEquals(sentence, sentence.trim());
+        }
+    }
+
+    @Test
+    void materialize_KeepsRulesThatReachARecursiveRuleBesideAnEmptyRule() {
+        // The first alternative of start has no derivations, since b has no alternatives, so
+        // start counts one derivation although it refers to the recursive rule c
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<c> <b>", "z"), TestGrammars.rule("b"),
+            TestGrammars.rule("c", "<c> x", "y"));
+        Grammar materialized = GrammarMaterializer.materialize(grammar, 10);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(grammar.getRules().get(i), materialized.getRules().get(i));
+        }
+    }
+
+    @Test
+    void materialize_LongChainOfRulesDoesNotOverflowTheStack() {
+        int length = 100_000;
+        Rule[] rules = new Rule[length + 1];
+        rules[0] = TestGrammars.rule("start", "<r1> <r1>");
+        for (int i = 1; i < length; i++) {
+            rules[i] = TestGrammars.rule("r" + i, "<r" + (i + 1) + ">");
+        }
+        rules[length] = TestGrammars.rule("r" + length, "x", "y");
+        Grammar materialized = GrammarMaterializer.materialize(TestGrammars.grammar(rules));
+        assertEquals(4, materialized.getRules().get(0).sequence.size());
+        assertEquals(2, materialized.getRules().get(1).sequence.size());
+    }
+}
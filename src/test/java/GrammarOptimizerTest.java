@@ -0,0 +1,103 @@
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarOptimizerTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    private static List<String> names(Grammar grammar) {
+        return grammar.getRules().stream().map(Rule::getRuleName).toList();
+    }
+
+    @Test
+    void optimize_InlinesFusesAndRemovesDeadRules() {
+        Grammar grammar = TestGrammars.grammar(
+            TestGrammars.rule("start", "You are so <adj> that even a <noun> would not want to"),
+            TestGrammars.rule("adj", "ugly", "rude"), TestGrammars.rule("noun", "<animal>"),
+            TestGrammars.rule("animal", "dead fish"),
+            TestGrammars.rule("unused", "x"), TestGrammars.rule("adj", "hidden"));
+        GrammarOptimizer.Result result = GrammarOptimizer.optimize(grammar);
+        Grammar optimized = result.getGrammar();
+        assertEquals(List.of("start", "adj", GrammarOptimizer.DRAW), names(optimized));
+        List<Symbol> start = optimized.getRules().get(0).sequence.get(0).getSequence();
+        // The inlined noun and animal each leave a draw, after the text they were fused into
+        assertEquals(List.of(" You are so", "adj", " that even a dead fish would not want to", GrammarOptimizer.DRAW,
+            GrammarOptimizer.DRAW), start.stream().map(Symbol::getName).toList());
+        assertTrue(((Terminal) start.get(0)).isGlued());
+        assertTrue(optimized.getRules().get(2).sequence.get(0).getSequence().isEmpty());
+        assertEquals(6, result.getBefore().getRules());
+        assertEquals(19, result.getBefore().getSymbols());
+        assertEquals(3, result.getBefore().getNonterminals());
+        assertEquals(3, result.getAfter().getRules());
+        assertEquals(4, result.getAfter().getAlternatives());
+        assertEquals(7, result.getAfter().getSymbols());
+        assertEquals(3, result.getAfter().getNonterminals());
+        assertTrue(result.toString().startsWith("Before: 6 rules, 7 alternatives, 19 symbols (16 terminals, 3 nonterminals)"));
+        assertEquals(grammar.generate(grammar, new SplittableRandom(3)), optimized.generate(optimized, new SplittableRandom(3)));
+    }
+
+    @Test
+    void optimize_KeepsCyclesOfSingleAlternativeRules() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<a>", "end"),
+            TestGrammars.rule("a", "x <b>"), TestGrammars.rule("b", "y <a> <start>"));
+        Grammar optimized = GrammarOptimizer.optimize(grammar).getGrammar();
+        assertEquals(List.of("start", "a", GrammarOptimizer.DRAW), names(optimized));
+        List<Symbol> a = optimized.getRules().get(1).sequence.get(0).getSequence();
+        assertEquals(List.of(" x y", GrammarOptimizer.DRAW, "a", "start"), a.stream().map(Symbol::getName).toList());
+        Grammar loop = GrammarOptimizer.optimize(TestGrammars.grammar(TestGrammars.rule("start", "<a>"),
+            TestGrammars.rule("a", "<b>"), TestGrammars.rule("b", "<c>"),
+            TestGrammars.rule("c", "<a>"))).getGrammar();
+        assertEquals(List.of("start", "a", GrammarOptimizer.DRAW), names(loop));
+        assertEquals(List.of(GrammarOptimizer.DRAW, GrammarOptimizer.DRAW, "a"),
+            loop.getRules().get(1).sequence.get(0).getSequence().stream().map(Symbol::getName).toList());
+    }
+
+    @Test
+    void optimize_KeepsWeightsAndEveryRuleWithoutAStartRule() {
+        Rule weighted = TestGrammars.rule("w", "a b");
+        weighted.addToArrayList(new AlternativeTokenizer(new SymbolTable()).tokenize("c"), 3.0);
+        Grammar optimized = GrammarOptimizer.optimize(TestGrammars.grammar(weighted,
+            TestGrammars.rule("other", "<w> <one>"),
+            TestGrammars.rule("one", "z"))).getGrammar();
+        assertEquals(List.of("w", "other", "one", GrammarOptimizer.DRAW), names(optimized));
+        assertEquals(3.0, optimized.getRules().get(0).getWeight(1));
+        assertEquals(1, optimized.getRules().get(0).sequence.get(0).getSequence().size());
+        assertEquals(List.of("w", GrammarOptimizer.DRAW, "z"),
+            optimized.getRules().get(1).sequence.get(0).getSequence().stream().map(Symbol::getName).toList());
+    }
+
+    @Test
+    void optimize_KeepsWeightedSingleAlternativesAndAvoidsTakenDrawNames() {
+        // A weighted rule samples an alias table, which draws twice even for one alternative
+        Rule weighted = new Rule("one");
+        weighted.addToArrayList(new AlternativeTokenizer(new SymbolTable()).tokenize("z"), 2.0);
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<one> <two> <three>", "x"), weighted,
+            TestGrammars.rule("two", "y"), TestGrammars.rule("three", "p", "q"), TestGrammars.rule(GrammarOptimizer.DRAW, "w"));
+        Grammar optimized = GrammarOptimizer.optimize(grammar).getGrammar();
+        assertEquals(List.of("start", "one", "three", GrammarOptimizer.DRAW + "'"), names(optimized));
+        for (long seed = 0; seed < 100; seed++) {
+            assertEquals(grammar.generate(grammar, new SplittableRandom(seed)),
+                optimized.generate(optimized, new SplittableRandom(seed)));
+        }
+    }
+
+    @Test
+    void optimize_GeneratesTheSameBytesForTheSameSeed() throws Exception {
+        for (String file : new String[] {"insult_grammar.json", "poem_grammar.json", "term_paper_grammar.json"}) {
+            Grammar grammar = new JsonFileParser(GRAMMAR_DIR + file).parse();
+            Grammar optimized = GrammarOptimizer.optimize(grammar).getGrammar();
+            assertTrue(GrammarOptimizer.SymbolCounts.of(optimized).getSymbols()
+                <= GrammarOptimizer.SymbolCounts.of(grammar).getSymbols());
+            for (long seed = 0; seed < 500; seed++) {
+                String expected = grammar.generate(grammar, new SplittableRandom(seed));
+                assertEquals(expected, optimized.generate(optimized, new SplittableRandom(seed)));
+                assertEquals(expected, new ExpansionEngine().generate(optimized, new SplittableRandom(seed)));
+                assertEquals(expected, optimized.flatten().generate(optimized, new SplittableRandom(seed)));
+                assertEquals(BatchGenerator.sentenceAt(grammar, seed, 7), BatchGenerator.sentenceAt(optimized, seed, 7));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrammarReloaderTest {
+
+    private static final Path POEM = Path.of("src/main/resources/grammar/poem_grammar.json");
+    private static final Path INSULT = Path.of("src/main/resources/grammar/insult_grammar.json");
+
+    @TempDir
+    Path dir;
+
+    private Path poem;
+    private Path insult;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        poem = Files.copy(POEM, dir.resolve("poem.json"));
+        insult = Files.copy(INSULT, dir.resolve("insult.json"));
+        Files.writeString(dir.resolve("notes.txt"), "not a grammar");
+    }
+
+    private static void retitle(Path file, String title) throws IOException {
+        String json = Files.readString(file, StandardCharsets.UTF_8);
+        Files.writeString(file, json.replaceFirst("\"grammarTitle\": \"[^\"]*\"", "\"grammarTitle\": \"" + title + "\""));
+    }
+
+    private static List<String> titles(GrammarReloader.Snapshot snapshot) {
+        return snapshot.getGrammars().stream().map(Grammar::getGrammarName).toList();
+    }
+
+    @Test
+    void constructor_LoadsEveryGrammarInPathOrder() throws IOException {
+        GrammarReloader reloader = new GrammarReloader(dir);
+        GrammarReloader.Snapshot snapshot = reloader.getSnapshot();
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(List.of("Insult Generator", "Poem Generator"), titles(snapshot));
+        assertEquals(List.of(insult, poem), List.copyOf(snapshot.getGrammarsByPath().keySet()));
+        assertTrue(snapshot.getFailures().isEmpty());
+        assertSame(snapshot.getGrammars(), reloader.getGrammars());
+    }
+
+    @Test
+    void reload_ReplacesOnlyTheChangedFileAndKeepsOldSnapshots() throws IOException {
+        GrammarReloader reloader = new GrammarReloader(dir);
+        GrammarReloader.Snapshot old = reloader.getSnapshot();
+        Grammar oldInsult = old.getGrammars().get(0);
+        retitle(poem, "Verse Generator");
+        GrammarReloader.Snapshot next = reloader.reload(List.of(poem));
+        assertEquals(2, next.getVersion());
+        assertEquals(List.of("Insult Generator", "Verse Generator"), titles(next));
+        assertSame(oldInsult, next.getGrammars().get(0));
+        assertEquals(List.of("Insult Generator", "Poem Generator"), titles(old));
+        assertFalse(next.getGrammars().get(1).generate(next.getGrammars().get(1), new java.util.Random(1)).isEmpty());
+    }
+
+    @Test
+    void reload_KeepsTheLastGoodVersionOfABrokenFile() throws IOException {
+        GrammarReloader reloader = new GrammarReloader(dir);
+        Grammar good = reloader.getGrammars().get(1);
+        Files.writeString(poem, "{ \"grammarTitle\": ");
+        GrammarReloader.Snapshot broken = reloader.reload(List.of(poem));
+        assertSame(good, broken.getGrammars().get(1));
+        assertTrue(broken.getFailures().containsKey(poem));
+        Files.copy(POEM, poem, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        GrammarReloader.Snapshot fixed = reloader.reload(List.of(poem));
+        assertTrue(fixed.getFailures().isEmpty());
+        assertNotSame(good, fixed.getGrammars().get(1));
+        assertEquals(good, fixed.getGrammars().get(1));
+        // Each reload interns into its own table, so the new version shares no symbols with the old
+        assertNotSame(firstTerminal(good), firstTerminal(fixed.getGrammars().get(1)));
+    }
+
+    private static Symbol firstTerminal(Grammar grammar) {
+        return grammar.getRules().stream().flatMap(rule -> rule.sequence.stream())
+            .flatMap(alternative -> alternative.getSequence().stream())
+            .filter(symbol -> symbol instanceof Terminal).findFirst().orElseThrow();
+    }
+
+    @Test
+    void reload_DropsDeletedFilesAndIgnoresOthers() throws IOException {
+        GrammarReloader reloader = new GrammarReloader(dir);
+        GrammarReloader.Snapshot same = reloader.reload(List.of(dir.resolve("notes.txt")));
+        assertEquals(1, same.getVersion());
+        Files.delete(insult);
+        GrammarReloader.Snapshot next = reloader.reload(List.of(insult));
+        assertEquals(List.of("Poem Generator"), titles(next));
+    }
+
+    @Test
+    void start_PublishesChangesMadeOnDisk() throws Exception {
+        try (GrammarReloader reloader = new GrammarReloader(dir)) {
+            reloader.start();
+            assertThrows(IllegalStateException.class, reloader::start);
+            Path sub = Files.createDirectory(dir.resolve("more"));
+            Path copy = Files.copy(POEM, sub.resolve("copy.json"));
+            retitle(copy, "Copied Poem");
+            awaitTitles(reloader, List.of("Insult Generator", "Copied Poem", "Poem Generator"));
+            retitle(insult, "Rude Generator");
+            Files.delete(poem);
+            awaitTitles(reloader, List.of("Rude Generator", "Copied Poem"));
+        }
+    }
+
+    @Test
+    void start_KeepsWatchingAfterTheDirectoryIsRemovedAndRecreated() throws Exception {
+        Path root = Files.createDirectory(dir.resolve("watched"));
+        Path nested = Files.createDirectory(root.resolve("nested"));
+        Path copy = Files.copy(INSULT, nested.resolve("insult.json"));
+        try (GrammarReloader reloader = new GrammarReloader(root)) {
+            reloader.start();
+            // Removing a directory triggers a rescan, which fails while the root is gone
+            Files.delete(copy);
+            Files.delete(nested);
+            Files.delete(root);
+            Thread.sleep(GrammarReloader.RETRY_MILLIS);
+            Files.createDirectory(root);
+            Files.copy(POEM, root.resolve("poem.json"));
+            awaitTitles(reloader, List.of("Poem Generator"));
+        }
+    }
+
+    private static void awaitTitles(GrammarReloader reloader, List<String> expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (!titles(reloader.getSnapshot()).equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(GrammarReloader.QUIET_MILLIS);
+        }
+        assertEquals(expected, titles(reloader.getSnapshot()));
+    }
+}
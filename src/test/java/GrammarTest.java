@@ -1,4 +1,5 @@
 import java.util.Random;
+import java.util.random.RandomGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -14,7 +15,7 @@ class GrammarTest {
         grammar = new Grammar();
         ruleStart = new Rule("start") {
             @Override
-            public String generate(Grammar grammar, Random random) {
+            public String generate(Grammar grammar, RandomGenerator random) {
                 return "Generated String";
             }
         };
@@ -36,9 +37,20 @@ class GrammarTest {
 
     @Test
     void addToRuleArray_AddsRuleToGrammar() {
-        int initialSize = grammar.rules.size();
+        int initialSize = grammar.getRules().size();
         grammar.addToRuleArray(ruleStart);
-        assertEquals(initialSize + 1, grammar.rules.size());
+        assertEquals(initialSize + 1, grammar.getRules().size());
+    }
+
+    @Test
+    void getRules_IsReadOnlySoTheCompiledViewCannotGoStale() {
+        grammar.addToRuleArray(ruleStart);
+        CompiledGrammar compiled = grammar.compile();
+        assertThrows(UnsupportedOperationException.class, () -> grammar.getRules().set(0, new Rule("start")));
+        assertSame(compiled, grammar.compile());
+        grammar.addToRuleArray(new Rule("other"));
+        assertNotSame(compiled, grammar.compile());
+        assertEquals(2, grammar.compile().getRuleCount());
     }
 
     @Test
@@ -147,6 +159,60 @@ class GrammarTest {
         assertEquals("", result);
     }
 
+    @Test
+    void generateInto_MatchesGenerateForTheSameSeed() {
+        Grammar insult = new JsonFileParser("src/main/resources/grammar/insult_grammar.json").JsonFileParser();
+        StringBuilder out = new StringBuilder();
+        for (int seed = 0; seed < 50; seed++) {
+            out.setLength(0);
+            insult.generateInto(out, insult, new Random(seed));
+            assertEquals(insult.generate(insult, new Random(seed)), out.toString());
+        }
+    }
+
+    @Test
+    void generateInto_AppendsAfterExistingContent() {
+        Rule start = new Rule("start");
+        CollectionOfSymbol alternative = new CollectionOfSymbol();
+        alternative.addToSequence(new Terminal(""));
+        alternative.addToSequence(new Terminal("word"));
+        alternative.addToSequence(new Terminal(""));
+        start.addToArrayList(alternative);
+        grammar.addToRuleArray(start);
+
+        StringBuilder out = new StringBuilder("1:");
+        grammar.generateInto(out, grammar, random);
+        assertEquals("1:word", out.toString());
+    }
+
+    @Test
+    void generateInto_SkipsLeadingWhitespaceThroughNestedRules() {
+        Rule start = new Rule("start");
+        CollectionOfSymbol alternative = new CollectionOfSymbol();
+        alternative.addToSequence(new NonterminalName("lead"));
+        alternative.addToSequence(new Terminal("tail"));
+        start.addToArrayList(alternative);
+        Rule lead = new Rule("lead");
+        CollectionOfSymbol padded = new CollectionOfSymbol();
+        padded.addToSequence(new Terminal(" "));
+        padded.addToSequence(new Terminal("\t first", true));
+        lead.addToArrayList(padded);
+        grammar.addToRuleArray(start);
+        grammar.addToRuleArray(lead);
+
+        StringBuilder out = new StringBuilder("2:");
+        grammar.generateInto(out, grammar, random);
+        assertEquals("2:first tail", out.toString());
+        assertEquals("first tail", grammar.generate(grammar, random));
+    }
+
+    @Test
+    void generateInto_StartRuleDoesNotExist_AppendsNothing() {
+        StringBuilder out = new StringBuilder("x");
+        grammar.generateInto(out, grammar, random);
+        assertEquals("x", out.toString());
+    }
+
     @Test
     void testEquals_NonGrammarObject_ReturnsFalse() {
         Object nonGrammarObject = new Object();
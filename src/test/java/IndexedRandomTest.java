@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedRandomTest {
+
+    @Test
+    void jump_SameSeedAndIndex_GivesTheSameStream() {
+        IndexedRandom first = new IndexedRandom(42, 7);
+        IndexedRandom second = new IndexedRandom(42).jump(7);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.nextLong(), second.nextLong());
+        }
+    }
+
+    @Test
+    void jump_BackToAnIndex_RestartsItsStream() {
+        IndexedRandom random = new IndexedRandom(42, 3);
+        int first = random.nextInt(1000);
+        random.nextInt(1000);
+        random.jump(3);
+        assertEquals(first, random.nextInt(1000));
+        assertEquals(3, random.getIndex());
+        assertEquals(42, random.getGrammarSeed());
+    }
+
+    @Test
+    void jump_DifferentIndexesOrSeeds_GiveDifferentStreams() {
+        assertNotEquals(new IndexedRandom(42, 0).nextLong(), new IndexedRandom(42, 1).nextLong());
+        assertNotEquals(new IndexedRandom(42, 0).nextLong(), new IndexedRandom(43, 0).nextLong());
+    }
+
+    @Test
+    void setSeed_RepositionsAtIndexZero() {
+        IndexedRandom random = new IndexedRandom(1, 5);
+        random.setSeed(9);
+        assertEquals(0, random.getIndex());
+        assertEquals(new IndexedRandom(9, 0).nextLong(), random.nextLong());
+    }
+
+    @Test
+    void nextInt_StaysWithinBound() {
+        IndexedRandom random = new IndexedRandom(0);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(7);
+            assertTrue(value >= 0 && value < 7);
+        }
+    }
+
+    @Test
+    void generate_SentenceCanBeRegeneratedFromItsIndex() {
+        Grammar grammar = new JsonFileParser("src/main/resources/grammar/insult_grammar.json").JsonFileParser();
+        IndexedRandom random = new IndexedRandom(11);
+        String[] sentences = new String[20];
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = grammar.generate(grammar, random.jump(i));
+        }
+        assertEquals(sentences[13], grammar.generate(grammar, new IndexedRandom(11, 13)));
+    }
+}
@@ -45,7 +45,109 @@ class JsonFileParserTest {
         assertNotNull(result);
         assertEquals("Test Grammar", result.getGrammarName());
         assertEquals("A description", result.getGrammarDesc());
-        assertEquals(1, result.rules.size()); // Assuming we expect one rule here
+        assertEquals(1, result.getRules().size()); // Assuming we expect one rule here
+    }
+
+    @Test
+    void parse_WeightedAlternatives_SetsRuleWeights() throws IOException {
+        String weightedJson = "{ \"grammarTitle\": \"Weighted\", \"grammarDesc\": \"d\", "
+            + "\"start\": [\"plain\", {\"text\": \"heavy <start>\", \"weight\": 4}] }";
+        File tempFile = createTempFile(weightedJson);
+
+        Grammar result = new JsonFileParser(tempFile.getAbsolutePath()).JsonFileParser();
+
+        Rule start = result.getRule(0);
+        assertEquals(2, start.sequence.size());
+        assertTrue(start.isWeighted());
+        assertEquals(1.0, start.getWeight(0));
+        assertEquals(4.0, start.getWeight(1));
+        assertEquals(new NonterminalName("start"), start.sequence.get(1).getSequence().get(1));
+    }
+
+    @Test
+    void parse_RepeatedSymbols_AreInterned() throws IOException {
+        String json = "{ \"grammarTitle\": \"T\", \"grammarDesc\": \"d\", "
+            + "\"start\": [\"a <x> a\", \"<x>\"], \"x\": [\"a\"] }";
+        File tempFile = createTempFile(json);
+        SymbolTable symbols = new SymbolTable();
+
+        Grammar result = new JsonFileParser(tempFile.getAbsolutePath(), symbols).JsonFileParser();
+
+        Rule start = result.getRule(result.findRule(0, "start"));
+        Rule x = result.getRule(result.findRule(0, "x"));
+        assertSame(start.sequence.get(0).getSequence().get(0), start.sequence.get(0).getSequence().get(2));
+        assertSame(start.sequence.get(0).getSequence().get(0), x.sequence.get(0).getSequence().get(0));
+        assertSame(start.sequence.get(0).getSequence().get(1), start.sequence.get(1).getSequence().get(0));
+        assertEquals(5, symbols.getSymbolCount());
+        assertEquals(2, symbols.getDistinctSymbolCount());
+    }
+
+    @Test
+    void parse_NonterminalGluedToPunctuation_IsRecognised() throws IOException {
+        File tempFile = createTempFile("{ \"start\": [\"so <adj>, so <adj>!\"], \"adj\": [\"lame\"] }");
+
+        Grammar result = new JsonFileParser(tempFile.getAbsolutePath()).parse();
+
+        assertEquals("so lame, so lame!", result.generate(result, new java.util.Random(0)));
+    }
+
+    @Test
+    void sortNoTermOrTerm_ClassifiesWholeTokens() {
+        JsonFileParser parser = new JsonFileParser("unused.json");
+        assertEquals(new NonterminalName("adj"), parser.sortNoTermOrTerm("<adj>"));
+        assertEquals(new Terminal("<>"), parser.sortNoTermOrTerm("<>"));
+        assertEquals(new Terminal("word"), parser.sortNoTermOrTerm("word"));
+    }
+
+    @Test
+    void parse_KeepsRulesInFileOrder() throws IOException {
+        File tempFile = createTempFile("{ \"grammarTitle\": \"T\", \"grammarDesc\": \"d\", "
+            + "\"z\": [\"z\"], \"start\": [\"<z> <a>\"], \"a\": [\"a\"] }");
+
+        Grammar result = new JsonFileParser(tempFile.getAbsolutePath()).parse();
+
+        assertEquals("z", result.getRule(0).getRuleName());
+        assertEquals("start", result.getRule(1).getRuleName());
+        assertEquals("a", result.getRule(2).getRuleName());
+    }
+
+    @Test
+    void parse_SyntaxError_ReportsLineAndColumn() throws IOException {
+        File tempFile = createTempFile("{\n  \"grammarTitle\": \"T\",\n  \"start\": [\"a\" \"b\"]\n}");
+
+        GrammarSyntaxException e = assertThrows(GrammarSyntaxException.class,
+            () -> new JsonFileParser(tempFile.getAbsolutePath()).parse());
+
+        assertEquals(3, e.getLine());
+        assertEquals(17, e.getColumn());
+    }
+
+    @Test
+    void parse_InvalidGrammars_ThrowSyntaxErrors() throws IOException {
+        assertParseError("{ \"start\": [\"a\"], \"start\": [\"b\"] }", "Duplicate key");
+        assertParseError("{ \"start\": \"a\" }", "Expected an array");
+        assertParseError("{ \"grammarTitle\": 1 }", "Expected a string");
+        assertParseError("{ \"start\": [{\"text\": \"a\"}] }", "needs a");
+        assertParseError("{ \"start\": [{\"text\": \"a\", \"weight\": -1}] }", "Weights must be positive");
+        assertParseError("{ \"start\": [\"a\"] } {}", "end of the document");
+    }
+
+    @Test
+    void parse_WeightedAlternative_IgnoresOtherMembers() throws IOException {
+        File tempFile = createTempFile(
+            "{ \"start\": [{\"weight\": 2, \"note\": [1, {}], \"text\": \"a\"}, \"b\"] }");
+
+        Rule start = new JsonFileParser(tempFile.getAbsolutePath()).parse().getRule(0);
+
+        assertEquals(2.0, start.getWeight(0));
+        assertEquals(new Terminal("a"), start.sequence.get(0).getSequence().get(0));
+    }
+
+    private void assertParseError(String json, String message) throws IOException {
+        File tempFile = createTempFile(json);
+        GrammarSyntaxException e = assertThrows(GrammarSyntaxException.class,
+            () -> new JsonFileParser(tempFile.getAbsolutePath()).parse());
+        assertTrue(e.getMessage().contains(message), e.getMessage());
     }
 
     @Test
@@ -0,0 +1,122 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+class JsonGrammarReaderTest {
+
+    private JsonGrammarReader reader(String json) {
+        return new JsonGrammarReader(new StringReader(json));
+    }
+
+    @Test
+    void reads_ObjectsArraysStringsAndNumbers() throws IOException {
+        JsonGrammarReader json = reader("{ \"a\" : [\"x\", \"y\"], \"b\": -2.5e1 }");
+        json.beginObject();
+        assertTrue(json.hasNext());
+        assertEquals("a", json.nextName());
+        json.beginArray();
+        assertTrue(json.hasNext());
+        assertEquals("x", json.nextString());
+        assertTrue(json.hasNext());
+        assertEquals("y", json.nextString());
+        assertFalse(json.hasNext());
+        json.endArray();
+        assertTrue(json.hasNext());
+        assertEquals("b", json.nextName());
+        assertEquals(JsonGrammarReader.Token.NUMBER, json.peek());
+        assertEquals(-25.0, json.nextDouble());
+        assertFalse(json.hasNext());
+        json.endObject();
+        json.endDocument();
+        assertEquals(JsonGrammarReader.Token.END_DOCUMENT, json.peek());
+    }
+
+    @Test
+    void nextString_DecodesEscapes() throws IOException {
+        JsonGrammarReader json = reader("\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\\b\\f\\r\"");
+        assertEquals("a\"b\\c/d\n\t\u00e9\b\f\r", json.nextString());
+    }
+
+    @Test
+    void skipValue_SkipsNestedValues() throws IOException {
+        JsonGrammarReader json = reader("[{\"a\": [1, true, null, {\"b\": false}]}, \"kept\"]");
+        json.beginArray();
+        assertTrue(json.hasNext());
+        json.skipValue();
+        assertTrue(json.hasNext());
+        assertEquals("kept", json.nextString());
+        assertFalse(json.hasNext());
+        json.endArray();
+    }
+
+    @Test
+    void errors_ReportLineAndColumn() {
+        GrammarSyntaxException e = assertThrows(GrammarSyntaxException.class, () -> {
+            JsonGrammarReader json = reader("{\n  \"a\": [\"x\"\n    \"y\"]\n}");
+            json.beginObject();
+            json.hasNext();
+            json.nextName();
+            json.beginArray();
+            json.hasNext();
+            json.nextString();
+            json.hasNext();
+        });
+        assertEquals(3, e.getLine());
+        assertEquals(5, e.getColumn());
+        assertTrue(e.getMessage().contains("Expected ','"));
+        assertTrue(e.getMessage().endsWith("at line 3, column 5"));
+    }
+
+    @Test
+    void errors_MalformedDocuments() {
+        assertSyntaxError("[\"x\",]", "Trailing comma");
+        assertSyntaxError("[\"unterminated", "Unterminated string");
+        assertSyntaxError("[\"bad \\q\"]", "Invalid escape");
+        assertSyntaxError("[\"bad \\u12g4\"]", "Invalid unicode escape");
+        assertSyntaxError("[\"line\nbreak\"]", "Control character");
+        assertSyntaxError("[1.2.3]", "Invalid number");
+        assertSyntaxError("[nope]", "Invalid literal");
+        assertSyntaxError("[?]", "Unexpected character");
+    }
+
+    @Test
+    void errors_WrongTokens() {
+        assertThrows(GrammarSyntaxException.class, () -> reader("[]").beginObject());
+        assertThrows(GrammarSyntaxException.class, () -> reader("{}").beginArray());
+        assertThrows(GrammarSyntaxException.class, () -> reader("1").nextString());
+        assertThrows(GrammarSyntaxException.class, () -> reader("\"x\"").nextDouble());
+        assertThrows(GrammarSyntaxException.class, () -> reader("]").endArray());
+        assertThrows(GrammarSyntaxException.class, () -> {
+            JsonGrammarReader json = reader("{1: 2}");
+            json.beginObject();
+            json.hasNext();
+            json.nextName();
+        });
+        assertThrows(GrammarSyntaxException.class, () -> {
+            JsonGrammarReader json = reader("{\"a\" 2}");
+            json.beginObject();
+            json.hasNext();
+            json.nextName();
+        });
+        assertThrows(GrammarSyntaxException.class, () -> {
+            JsonGrammarReader json = reader("[] []");
+            json.beginArray();
+            json.endArray();
+            json.endDocument();
+        });
+    }
+
+    private void assertSyntaxError(String json, String message) {
+        GrammarSyntaxException e = assertThrows(GrammarSyntaxException.class, () -> {
+            JsonGrammarReader reader = reader(json);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+        });
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+}
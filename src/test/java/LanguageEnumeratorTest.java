@@ -0,0 +1,105 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LanguageEnumeratorTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    private static List<String> list(Iterable<String> sentences) {
+        List<String> list = new ArrayList<>();
+        sentences.forEach(list::add);
+        return list;
+    }
+
+    @Test
+    void iterator_ListsSentencesByDepth() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<a> <b>", "x"),
+            TestGrammars.rule("a", "1", "2"), TestGrammars.rule("b", "y", "<a>"));
+        LanguageEnumerator enumerator = new LanguageEnumerator(grammar);
+        assertEquals(List.of("x", "1 y", "2 y", "1 1", "1 2", "2 1", "2 2"), list(enumerator));
+        assertTrue(enumerator.isFinite());
+        assertEquals(BigInteger.valueOf(7), enumerator.size());
+        assertEquals(BigInteger.ONE, enumerator.count(1));
+        assertEquals(BigInteger.valueOf(3), enumerator.count(2));
+        assertEquals(BigInteger.valueOf(4), enumerator.countAtDepth(3));
+        assertEquals(BigInteger.ZERO, enumerator.countAtDepth(4));
+        assertEquals(List.of("x", "1 y", "2 y"), list(new LanguageEnumerator(grammar, 2)));
+    }
+
+    @Test
+    void iterator_RecursiveGrammarNeverStopsAtOneDepth() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "x", "<start> y"));
+        LanguageEnumerator enumerator = new LanguageEnumerator(grammar);
+        assertFalse(enumerator.isFinite());
+        assertNull(enumerator.size());
+        assertEquals(List.of("x", "x y", "x y y", "x y y y"),
+            enumerator.stream().limit(4).collect(Collectors.toList()));
+        assertEquals(BigInteger.ONE, enumerator.countAtDepth(50));
+        LanguageEnumerator bounded = new LanguageEnumerator(grammar, 3);
+        assertEquals(BigInteger.valueOf(3), bounded.size());
+        assertEquals(3, bounded.stream().count());
+    }
+
+    @Test
+    void iterator_CountsGrowWithoutMaterializingTheLanguage() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<w>"),
+            TestGrammars.rule("w", "a", "b", "<w> <w>"));
+        LanguageEnumerator enumerator = new LanguageEnumerator(grammar, 40);
+        assertTrue(enumerator.count(12).bitLength() > 1000);
+        assertEquals(List.of("a", "b", "a a", "a b"), enumerator.stream().limit(4).collect(Collectors.toList()));
+    }
+
+    @Test
+    void iterator_SkipsRulesThatNeverFinish() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<loop> <z>", "z"),
+            TestGrammars.rule("loop", "<loop>"), TestGrammars.rule("z", "z"));
+        LanguageEnumerator enumerator = new LanguageEnumerator(grammar);
+        assertTrue(enumerator.isFinite());
+        assertEquals(List.of("z"), list(enumerator));
+    }
+
+    @Test
+    void iterator_BundledGrammarMatchesRandomSentences() {
+        Grammar grammar = new JsonFileParser(GRAMMAR_DIR + "poem_grammar.json").JsonFileParser();
+        LanguageEnumerator enumerator = new LanguageEnumerator(grammar);
+        assertTrue(enumerator.isFinite());
+        Set<String> language = new HashSet<>(list(enumerator));
+        assertEquals(enumerator.size().longValueExact(), language.size());
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(language.contains(grammar.generate(grammar, random)));
+        }
+    }
+
+    @Test
+    void iterator_EmptyGrammar() {
+        LanguageEnumerator enumerator = new LanguageEnumerator(new Grammar());
+        Iterator<String> iterator = enumerator.iterator();
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertEquals(BigInteger.ZERO, enumerator.count(5));
+        assertEquals(BigInteger.ZERO, enumerator.countAtDepth(5));
+        assertEquals(BigInteger.ZERO, enumerator.size());
+    }
+
+    @Test
+    void invalidArguments() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "x"));
+        assertThrows(IllegalArgumentException.class, () -> new LanguageEnumerator(grammar, 0));
+        LanguageEnumerator enumerator = new LanguageEnumerator(grammar);
+        assertThrows(IllegalArgumentException.class, () -> enumerator.count(-1));
+        assertThrows(IllegalArgumentException.class, () -> enumerator.countAtDepth(0));
+        Iterator<String> iterator = enumerator.iterator();
+        assertEquals("x", iterator.next());
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomAlgorithmsTest {
+
+    @Test
+    void names_AreAllSupported() {
+        for (String name : RandomAlgorithms.NAMES) {
+            assertTrue(RandomAlgorithms.isSupported(name), name);
+            assertNotNull(RandomAlgorithms.create(name));
+        }
+        assertTrue(RandomAlgorithms.isSupported(RandomAlgorithms.DEFAULT));
+    }
+
+    @Test
+    void isSupported_UnknownName_ReturnsFalse() {
+        assertFalse(RandomAlgorithms.isSupported("NoSuchRandom"));
+        assertThrows(IllegalArgumentException.class, () -> RandomAlgorithms.create("NoSuchRandom"));
+    }
+
+    @Test
+    void create_SameSeed_GivesTheSameSentences() {
+        Grammar grammar = new JsonFileParser("src/main/resources/grammar/insult_grammar.json").JsonFileParser();
+        for (String name : RandomAlgorithms.NAMES) {
+            RandomGenerator first = RandomAlgorithms.create(name, 99);
+            RandomGenerator second = RandomAlgorithms.create(name, 99);
+            for (int i = 0; i < 20; i++) {
+                assertEquals(grammar.generate(grammar, first), grammar.generate(grammar, second), name);
+            }
+        }
+    }
+
+    @Test
+    void threadLocal_GivesEachThreadItsOwnGenerator() throws InterruptedException {
+        ThreadLocal<RandomGenerator> local = RandomAlgorithms.threadLocal("Xoroshiro128PlusPlus");
+        RandomGenerator mine = local.get();
+        assertSame(mine, local.get());
+        RandomGenerator[] other = new RandomGenerator[1];
+        Thread thread = new Thread(() -> other[0] = local.get());
+        thread.start();
+        thread.join();
+        assertNotNull(other[0]);
+        assertNotSame(mine, other[0]);
+    }
+}
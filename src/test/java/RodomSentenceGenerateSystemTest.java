@@ -1,3 +1,5 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -8,12 +10,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Scanner;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class RodomSentenceGenerateSystemTest {
   private final PrintStream standardOut = System.out;
@@ -46,6 +50,111 @@ class RodomSentenceGenerateSystemTest {
     });
   }
 
+  @Test
+  void mainWithRandomAlgorithm() {
+    String input = "1\ny\nn\nq\n";
+    System.setIn(new ByteArrayInputStream(input.getBytes()));
+    String[] args1 = {"grammar", "Xoroshiro128PlusPlus"};
+    Assertions.assertDoesNotThrow(() -> {
+      RodomSentenceGenerateSystem.main(args1);
+    });
+  }
+
+  @Test
+  void mainWithUnknownRandomAlgorithm() {
+    String[] args1 = {"grammar", "NoSuchRandom"};
+    RodomSentenceGenerateSystem.main(args1);
+    assertTrue(outputStreamCaptor.toString().contains("Unknown random algorithm."));
+  }
+
+  @Test
+  void mainCompileWritesBinaryGrammar(@TempDir Path dir) throws IOException {
+    Path out = dir.resolve("poem" + BinaryGrammarFormat.EXTENSION);
+    String json = "src/main/resources/grammar/poem_grammar.json";
+    RodomSentenceGenerateSystem.main(new String[] {"--compile", json, out.toString()});
+    assertEquals(new JsonFileParser(json).parse(), BinaryGrammarFormat.read(out));
+    assertTrue(outputStreamCaptor.toString().contains("Wrote " + out));
+  }
+
+  @Test
+  void mainCompileReportsBadInput(@TempDir Path dir) {
+    RodomSentenceGenerateSystem.main(new String[] {"--compile", "missing.json"});
+    assertTrue(outputStreamCaptor.toString().contains("Invalid input provided."));
+    RodomSentenceGenerateSystem.main(
+        new String[] {"--compile", dir.resolve("missing.json").toString(), dir.resolve("x.gbin").toString()});
+    assertTrue(outputStreamCaptor.toString().contains("Failed to load grammar."));
+  }
+
+  @Test
+  void mainServeReportsBadInput() {
+    RodomSentenceGenerateSystem.main(new String[] {"--serve", "grammar", "--port", "x"});
+    assertTrue(outputStreamCaptor.toString().contains("Invalid input provided."));
+    RodomSentenceGenerateSystem.main(new String[] {"--serve", "grammar", "--metrics", "--port", "99999"});
+    assertTrue(outputStreamCaptor.toString().contains("Failed to load grammar."));
+    outputStreamCaptor.reset();
+    RodomSentenceGenerateSystem.main(new String[] {"--serve", "grammar", "--metrics", "--verbose"});
+    assertTrue(outputStreamCaptor.toString().contains("Invalid input provided."));
+  }
+
+  @Test
+  void mainBulkWritesSentences(@TempDir Path dir) throws IOException {
+    Path out = dir.resolve("poems.txt");
+    RodomSentenceGenerateSystem.main(new String[] {"--grammar", "src/main/resources/grammar/poem_grammar.json",
+        "--count", "5", "--seed", "3", "--out", out.toString()});
+    assertEquals(5, Files.readAllLines(out).size());
+    assertEquals("", outputStreamCaptor.toString());
+  }
+
+  @Test
+  void bulkReportsFailuresOnStandardErrorWithStatusOne(@TempDir Path dir) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    PrintStream errStream = new PrintStream(err, true);
+    assertEquals(1, RodomSentenceGenerateSystem.bulk(new String[] {"--count", "x"}, out, errStream));
+    assertTrue(err.toString().contains("Invalid input provided."));
+    assertTrue(err.toString().contains(BulkCommand.USAGE));
+    assertEquals(1, RodomSentenceGenerateSystem.bulk(
+        new String[] {"--grammar", dir.resolve("missing.json").toString(), "--seed", "1"}, out, errStream));
+    assertTrue(err.toString().contains("Failed to load grammar."));
+    Path cycle = dir.resolve("cycle.json");
+    Files.writeString(cycle, "{\"start\":[\"<a>\"],\"a\":[\"<b>\"],\"b\":[\"<a>\"]}");
+    Path corpus = dir.resolve("corpus.txt");
+    assertEquals(1, RodomSentenceGenerateSystem.bulk(
+        new String[] {"--grammar", cycle.toString(), "--seed", "1", "--out", corpus.toString()}, out, errStream));
+    assertTrue(err.toString().contains("Failed to generate sentences."));
+    assertFalse(Files.exists(corpus));
+    assertEquals("", out.toString());
+    assertEquals("", outputStreamCaptor.toString());
+  }
+
+  @Test
+  void bulkReportsTheChosenSeedOnStandardError() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    String[] args = {"--grammar", "src/main/resources/grammar/poem_grammar.json", "--count", "3"};
+    assertEquals(0, RodomSentenceGenerateSystem.bulk(args, out, new PrintStream(err, true)));
+    assertTrue(err.toString().startsWith("Seed: "));
+    String seed = err.toString().substring("Seed: ".length()).trim();
+    ByteArrayOutputStream again = new ByteArrayOutputStream();
+    err.reset();
+    assertEquals(0, RodomSentenceGenerateSystem.bulk(new String[] {"--grammar", args[1], "--count", "3", "--seed", seed},
+        again, new PrintStream(err, true)));
+    assertEquals("", err.toString());
+    assertEquals(out.toString(), again.toString());
+  }
+
+  @Test
+  void bulkReportsTheThroughputOfASplitRunOnStandardError(@TempDir Path dir) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    String[] args = {"--grammar", "src/main/resources/grammar/poem_grammar.json", "--count", "30", "--seed", "3",
+        "--out", dir.resolve("corpus.txt").toString(), "--split", "1000"};
+    assertEquals(0, RodomSentenceGenerateSystem.bulk(args, out, new PrintStream(err, true)));
+    assertTrue(err.toString().startsWith("Wrote 30 sentences"), err.toString());
+    assertTrue(err.toString().contains("sentences/s"));
+    assertEquals("", out.toString());
+  }
+
   @Test
   public void testPathDoesNotExist() {
     // Assuming that args[0] would be the path, and we pass an invalid path.
@@ -2,6 +2,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 class RuleTest {
 
@@ -43,7 +45,7 @@ class RuleTest {
     void generate_ReturnsCorrectStringFromSequence() {
         CollectionOfSymbol collection = new CollectionOfSymbol() {
             @Override
-            public String generate(Grammar grammar, Random random) {
+            public String generate(Grammar grammar, RandomGenerator random) {
                 return "generatedString";
             }
         };
@@ -125,6 +127,47 @@ class RuleTest {
         assertNotEquals(rule1.hashCode(), rule2.hashCode());
     }
 
+    @Test
+    void addToArrayList_WithoutWeights_KeepsTheUniformFastPath() {
+        rule.addToArrayList(new CollectionOfSymbol());
+        rule.addToArrayList(new CollectionOfSymbol());
+        assertFalse(rule.isWeighted());
+        assertEquals(1.0, rule.getWeight(1));
+        assertEquals(0, rule.chooseIndex(stubRandom));
+    }
+
+    @Test
+    void addToArrayList_WithWeights_SamplesByWeight() {
+        rule.addToArrayList(new CollectionOfSymbol());
+        rule.addToArrayList(new CollectionOfSymbol(), 3.0);
+        assertTrue(rule.isWeighted());
+        assertEquals(1.0, rule.getWeight(0));
+        assertEquals(3.0, rule.getWeight(1));
+
+        SplittableRandom random = new SplittableRandom(3);
+        int second = 0;
+        for (int i = 0; i < 100_000; i++) {
+            second += rule.chooseIndex(random);
+        }
+        assertEquals(0.75, second / 100_000.0, 0.01);
+    }
+
+    @Test
+    void addToArrayList_InvalidWeight_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> rule.addToArrayList(new CollectionOfSymbol(), 0));
+        assertThrows(IllegalArgumentException.class, () -> rule.addToArrayList(new CollectionOfSymbol(), Double.NaN));
+        assertTrue(rule.sequence.isEmpty());
+    }
+
+    @Test
+    void equals_DifferentWeights_ReturnsFalse() {
+        CollectionOfSymbol collection = new CollectionOfSymbol();
+        Rule weighted = new Rule("TestRule");
+        weighted.addToArrayList(collection, 2.0);
+        rule.addToArrayList(collection);
+        assertNotEquals(rule, weighted);
+    }
+
     @Test
     void constructorShouldInitializeNameAndSequence() {
         // Arrange
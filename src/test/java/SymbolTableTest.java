@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    private SymbolTable table;
+
+    @BeforeEach
+    void setUp() {
+        table = new SymbolTable();
+    }
+
+    @Test
+    void terminal_SameName_ReturnsTheSameObject() {
+        Terminal first = table.terminal("word");
+        assertSame(first, table.terminal("word"));
+        assertNotSame(first, table.terminal("other"));
+        assertEquals("word", first.getName());
+    }
+
+    @Test
+    void terminal_Glued_IsInternedSeparately() {
+        Terminal glued = table.terminal(",", true);
+        assertTrue(glued.isGlued());
+        assertSame(glued, table.forGrammar().terminal(",", true));
+        assertNotSame(glued, table.terminal(","));
+        assertFalse(table.terminal(",").isGlued());
+    }
+
+    @Test
+    void nonterminal_SameName_ReturnsTheSameObject() {
+        NonterminalName first = table.nonterminal("adj");
+        assertSame(first, table.nonterminal("adj"));
+        assertEquals("adj", first.getName());
+    }
+
+    @Test
+    void forGrammar_SharesTerminalsButNotNonterminals() {
+        SymbolTable other = table.forGrammar();
+        assertSame(table.terminal("word"), other.terminal("word"));
+        assertNotSame(table.nonterminal("adj"), other.nonterminal("adj"));
+    }
+
+    @Test
+    void statistics_CountOccurrencesDistinctSymbolsAndSavings() {
+        table.terminal("word");
+        table.terminal("word");
+        table.forGrammar().terminal("word");
+        table.nonterminal("adj");
+
+        assertEquals(4, table.getSymbolCount());
+        assertEquals(2, table.getDistinctSymbolCount());
+        assertEquals(2 * (16 + 24 + 24), table.getEstimatedBytesSaved());
+        assertTrue(table.report().contains("Interned 4 symbols into 2 distinct objects"));
+    }
+}
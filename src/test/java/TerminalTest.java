@@ -64,9 +64,38 @@ class TerminalTest {
         assertEquals(terminal.hashCode(), sameTerminal.hashCode());
     }
 
+    @Test
+    void testGenerateInto() {
+        StringBuilder out = new StringBuilder("a");
+        terminal.generateInto(out, mockGrammar, mockRandom);
+        assertEquals("a test", out.toString());
+    }
+
     @Test
     void testToString() {
         String expected = "Terminal{variableName='test', BLANK=' '}";
         assertEquals(expected, terminal.toString());
     }
+
+    @Test
+    void gluedTerminal_HasNoSeparator() {
+        Terminal glued = new Terminal(",", true);
+        assertTrue(glued.isGlued());
+        assertFalse(terminal.isGlued());
+        assertEquals(",", glued.generate(mockGrammar, mockRandom));
+        StringBuilder out = new StringBuilder("word");
+        glued.generateInto(out, mockGrammar, mockRandom);
+        assertEquals("word,", out.toString());
+        assertNotEquals(new Terminal(","), glued);
+        assertEquals(new Terminal(",", true), glued);
+        assertEquals(new Terminal(",", true).hashCode(), glued.hashCode());
+        assertEquals("Terminal{variableName=',', BLANK=''}", glued.toString());
+    }
+
+    @Test
+    void getEncoded_IsTheUtf8SeparatorAndName() {
+        assertArrayEquals(" test".getBytes(java.nio.charset.StandardCharsets.UTF_8), terminal.getEncoded());
+        assertArrayEquals("\u00e9t\u00e9".getBytes(java.nio.charset.StandardCharsets.UTF_8),
+            new Terminal("\u00e9t\u00e9", true).getEncoded());
+    }
 }
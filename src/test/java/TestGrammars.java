@@ -0,0 +1,49 @@
+import java.util.Random;
+
+/**
+ * Small grammars and random sources shared by the tests.
+ */
+final class TestGrammars {
+
+    private TestGrammars() {
+    }
+
+    /**
+     * Builds a rule from alternatives written like those of a grammar file, e.g. {@code "<a> x"}.
+     */
+    static Rule rule(String name, String... alternatives) {
+        AlternativeTokenizer tokenizer = new AlternativeTokenizer(new SymbolTable());
+        Rule rule = new Rule(name);
+        for (String alternative : alternatives) {
+            rule.addToArrayList(tokenizer.tokenize(alternative));
+        }
+        return rule;
+    }
+
+    /** Builds a grammar from rules, in order. */
+    static Grammar grammar(Rule... rules) {
+        Grammar grammar = new Grammar();
+        for (Rule rule : rules) {
+            grammar.addToRuleArray(rule);
+        }
+        return grammar;
+    }
+
+    /**
+     * Builds the grammar {@code start -> <a>}, {@code a -> x | <a> y}, which nests one level
+     * deeper for every {@code y}.
+     */
+    static Grammar leftRecursiveGrammar() {
+        return grammar(rule("start", "<a>"), rule("a", "x", "<a> y"));
+    }
+
+    /** A random source that always picks the last alternative, forcing infinite recursion. */
+    static Random alwaysLast() {
+        return new Random() {
+            @Override
+            public int nextInt(int bound) {
+                return bound - 1;
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniformSamplerTest {
+
+    private static final String GRAMMAR_DIR = "src/main/resources/grammar/";
+
+    private static Map<String, Double> frequencies(UniformSampler sampler, int tokens, int samples) {
+        SplittableRandom random = new SplittableRandom(42);
+        Map<String, Double> frequencies = new HashMap<>();
+        for (int i = 0; i < samples; i++) {
+            frequencies.merge(sampler.sample(tokens, random), 1.0 / samples, Double::sum);
+        }
+        return frequencies;
+    }
+
+    @Test
+    void count_BinaryTreesAreCatalanNumbers() {
+        UniformSampler sampler = UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "<n>"),
+            TestGrammars.rule("n", "x", "<n> <n>")), 8);
+        double[] catalan = {0, 1, 1, 2, 5, 14, 42, 132, 429};
+        for (int n = 0; n <= 8; n++) {
+            assertEquals(catalan[n], sampler.count(n), 0, "n=" + n);
+        }
+        assertEquals("x x x x", sampler.sample(4, new SplittableRandom(1)));
+    }
+
+    @Test
+    void sample_IsUniformOverDerivationsNotAlternatives() {
+        // One derivation of length 2 under <a>, four under <b>
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<a>", "<b>"), TestGrammars.rule("a", "x y"),
+            TestGrammars.rule("b", "<c> <c>"), TestGrammars.rule("c", "p", "q"));
+        UniformSampler sampler = UniformSampler.build(grammar, 2);
+        assertEquals(5, sampler.count(2));
+        Map<String, Double> frequencies = frequencies(sampler, 2, 50_000);
+        assertEquals(5, frequencies.size());
+        for (double frequency : frequencies.values()) {
+            assertEquals(0.2, frequency, 0.01);
+        }
+    }
+
+    @Test
+    void sample_RecursiveRuleSpreadsOverAllShapes() {
+        // Three terminals: two tree shapes times eight words, each string derived by both shapes
+        UniformSampler sampler = UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "<s>"),
+            TestGrammars.rule("s", "a", "b", "<s> <s>")), 3);
+        assertEquals(16, sampler.count(3));
+        Map<String, Double> frequencies = frequencies(sampler, 3, 40_000);
+        assertEquals(8, frequencies.size());
+        for (double frequency : frequencies.values()) {
+            assertEquals(0.125, frequency, 0.01);
+        }
+    }
+
+    @Test
+    void sampleAtMost_WeighsLengthsByTheirCounts() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "z", "<c> <c>"),
+            TestGrammars.rule("c", "p", "q"));
+        UniformSampler sampler = UniformSampler.build(grammar, 3);
+        SplittableRandom random = new SplittableRandom(7);
+        int shortOnes = 0;
+        for (int i = 0; i < 50_000; i++) {
+            shortOnes += sampler.sampleAtMost(3, random).equals("z") ? 1 : 0;
+        }
+        assertEquals(0.2, shortOnes / 50_000.0, 0.01);
+        assertEquals("z", sampler.sampleAtMost(1, random));
+    }
+
+    @Test
+    void nullableRules_CountEmptyExpansions() {
+        // The blank alternative of e has no symbols at all
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "<e> x <e>"),
+            TestGrammars.rule("e", "   ", "y"));
+        UniformSampler sampler = UniformSampler.build(grammar, 4);
+        assertEquals(0, sampler.count(0));
+        assertEquals(1, sampler.count(1));
+        assertEquals(2, sampler.count(2));
+        assertEquals(1, sampler.count(3));
+        assertEquals(0, sampler.count(4));
+        assertEquals("x", sampler.sample(1, new SplittableRandom(0)));
+        assertEquals("y x y", sampler.sample(3, new SplittableRandom(0)));
+    }
+
+    @Test
+    void unitCyclesAndOverflowAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "<a>"),
+                TestGrammars.rule("a", "<start>", "x")), 5));
+        assertThrows(IllegalArgumentException.class,
+            () -> UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "<e> <start>", "x"),
+                TestGrammars.rule("e", "   ", "y")), 5));
+        assertThrows(IllegalArgumentException.class,
+            () -> UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "<n>"),
+                TestGrammars.rule("n", "x", "<n> <n>")), 1000));
+        // A cycle of rules that never finish has no derivation to count
+        UniformSampler sampler = UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "<loop>", "x"),
+            TestGrammars.rule("loop", "<loop>")), 2);
+        assertEquals(1, sampler.count(1));
+        assertDoesNotThrow(
+            () -> UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "x", "<start> y")), 100));
+    }
+
+    @Test
+    void invalidLengths() {
+        UniformSampler sampler = UniformSampler.build(TestGrammars.grammar(TestGrammars.rule("start", "x y")), 3);
+        assertThrows(IllegalArgumentException.class, () -> UniformSampler.build(new Grammar(), -1));
+        assertThrows(IllegalArgumentException.class, () -> sampler.count(4));
+        assertThrows(IllegalArgumentException.class, () -> sampler.sample(1, new SplittableRandom(0)));
+        assertThrows(IllegalArgumentException.class, () -> sampler.sampleAtMost(1, new SplittableRandom(0)));
+        UniformSampler empty = UniformSampler.build(new Grammar(), 3);
+        assertEquals(0, empty.count(2));
+        assertTrue(empty.toString().contains("maxTokens=3"));
+    }
+
+    @Test
+    void grammar_CachesTheSamplerUntilItIsOutgrown() {
+        Grammar grammar = TestGrammars.grammar(TestGrammars.rule("start", "x", "<start> y"));
+        UniformSampler sampler = grammar.uniformSampler(10);
+        assertSame(grammar, sampler.getSource());
+        assertSame(sampler, grammar.uniformSampler(5));
+        UniformSampler larger = grammar.uniformSampler(20);
+        assertEquals(20, larger.getMaxTokens());
+        assertSame(larger, grammar.uniformSampler(10));
+        grammar.addToRuleArray(TestGrammars.rule("other", "z"));
+        assertNotSame(larger, grammar.uniformSampler(10));
+    }
+
+    @Test
+    void bundledGrammars_SampleEveryReachableLengthFromSharedTables() {
+        for (String file : new String[] {"insult_grammar.json", "poem_grammar.json", "term_paper_grammar.json"}) {
+            Grammar grammar = new JsonFileParser(GRAMMAR_DIR + file).JsonFileParser();
+            UniformSampler sampler = grammar.uniformSampler(60);
+            List<Integer> lengths = IntStream.rangeClosed(0, 60).filter(n -> sampler.count(n) > 0)
+                .boxed().collect(Collectors.toList());
+            assertFalse(lengths.isEmpty(), file);
+            List<String> sentences = lengths.parallelStream()
+                .map(n -> sampler.sample(n, new SplittableRandom(n)))
+                .collect(Collectors.toList());
+            assertEquals(lengths.size(), sentences.size());
+            assertFalse(sentences.get(0).isEmpty(), file);
+        }
+    }
+}